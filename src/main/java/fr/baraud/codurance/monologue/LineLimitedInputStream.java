@@ -0,0 +1,72 @@
+package fr.baraud.codurance.monologue;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A LineLimitedInputStream fails once a line gets longer than a limit, so
+ * that a reader buffering a whole line, as a Scanner does, holds a bounded
+ * number of bytes whatever the client sends.
+ */
+final class LineLimitedInputStream extends FilterInputStream {
+
+    private final int maxLineLength;
+
+    /**
+     * The number of bytes read since the last line return
+     */
+    private int lineLength;
+
+    /**
+     * True once a line got longer than the limit
+     */
+    private boolean exceeded;
+
+    /**
+     * @param in the stream to read
+     * @param maxLineLength the number of bytes a line can have, without its
+     * line return
+     */
+    LineLimitedInputStream(InputStream in, int maxLineLength){
+        super(in);
+        this.maxLineLength = maxLineLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+    }
+
+    /**
+     * @throws IOException if the line read gets longer than the limit
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (exceeded){
+            throw new IOException("line longer than " + maxLineLength + " bytes");
+        }
+        int read = in.read(b, off, len);
+        for (int position = off; position < off + read; position++){
+            lineLength = b[position] == '\n' ? 0 : lineLength + 1;
+            if (lineLength > maxLineLength){
+                exceeded = true;
+                throw new IOException("line longer than " + maxLineLength + " bytes");
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        throw new IOException("skip is not supported");
+    }
+
+    /**
+     * @return true once a line got longer than the limit
+     */
+    boolean isExceeded() {
+        return exceeded;
+    }
+}
@@ -2,17 +2,35 @@ package fr.baraud.codurance.monologue;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Date;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import fr.baraud.codurance.monologue.timelines.SharedSocialStack;
 import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.bulk.BulkLoader;
+import fr.baraud.codurance.monologue.timelines.cache.CachedSocialStack;
+import fr.baraud.codurance.monologue.timelines.cache.WallCache;
+import fr.baraud.codurance.monologue.timelines.journal.FsyncPolicy;
+import fr.baraud.codurance.monologue.timelines.journal.Journal;
+import fr.baraud.codurance.monologue.timelines.journal.JournaledSocialStack;
 import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
 import fr.baraud.codurance.monologue.ui.Action;
 import fr.baraud.codurance.monologue.ui.Instruction;
 import fr.baraud.codurance.monologue.ui.UserInterface;
 import fr.baraud.codurance.monologue.ui.console.ConsoleInterface;
+import fr.baraud.codurance.monologue.ui.console.ExitInstruction;
 
 /**
  * Monologue is a social networking application.
@@ -22,6 +40,31 @@ import fr.baraud.codurance.monologue.ui.console.ConsoleInterface;
 public class Monologue {
 
     private static final String CONSOLE_PROPERTIES = "console-interface.properties";
+    // system property choosing when the journal is forced to the disk, see FsyncPolicy
+    private static final String PROPERTY_JOURNAL_FSYNC = "monologue.journal.fsync";
+    // system property with the interval in ms between two syncs of the PERIODIC policy
+    private static final String PROPERTY_JOURNAL_FSYNC_INTERVAL = "monologue.journal.fsync.interval";
+    private static final long DEFAULT_FSYNC_INTERVAL = 1000L;
+    // system property with the number of posts and follows between two snapshots of the journal
+    private static final String PROPERTY_JOURNAL_SNAPSHOT_INTERVAL = "monologue.journal.snapshot.interval";
+    // system properties with the maximum size and delay in µs of a batch of the GROUP policy
+    private static final String PROPERTY_JOURNAL_BATCH_SIZE = "monologue.journal.batch.size";
+    private static final String PROPERTY_JOURNAL_BATCH_DELAY = "monologue.journal.batch.delay";
+    // system property reading the snapshot of the journal in place instead of loading it, see MappedSocialStack
+    private static final String PROPERTY_JOURNAL_MAPPED = "monologue.journal.mapped";
+    // system property with the memory budget in bytes of the wall cache, no cache if 0
+    private static final String PROPERTY_WALL_CACHE_SIZE = "monologue.wall.cache.size";
+    // system property with the port to listen on for sessions, the console being used if not set
+    private static final String PROPERTY_SERVER_PORT = "monologue.server.port";
+    // system property serving the sessions from a few event loops instead of a thread each, see NioMonologueServer
+    private static final String PROPERTY_SERVER_NIO = "monologue.server.nio";
+    // system property with the number of event loops of the NIO server
+    private static final String PROPERTY_SERVER_EVENT_LOOPS = "monologue.server.event.loops";
+    private static final int DEFAULT_EVENT_LOOPS = 2;
+    // system property with the path of a dump of posts and follows to load at start, see BulkLoader
+    private static final String PROPERTY_IMPORT = "monologue.import";
+    // system property with the path of a file of instructions to run instead of listening to the console
+    private static final String PROPERTY_SCRIPT = "monologue.script";
 
     /**
      * listenInstructions will wait and loop on user instructions.
@@ -33,17 +76,104 @@ public class Monologue {
      * @see fr.baraud.codurance.monologue.ui.UserInterface
      */
     void listenInstructions(UserInterface userInterface, SocialStack socialStack){
+        listenSession(userInterface, new SharedSocialStack(socialStack));
+    }
+
+    /**
+     * listenSession will wait and loop on the instructions of a session,
+     * other sessions changing the same stack at the same time. An
+     * instruction changing the stack is applied again if another session
+     * changed it first. Quitting ends the session only, the stack being left
+     * to the other sessions. The next instruction is only read once the
+     * changes of the last one are durable.
+     * @param userInterface the user interface of the session
+     * @param socialStack the database of users and timelines, shared by the sessions
+     * @return the number of instructions read in the session, the end of the
+     * input not being one
+     * @see fr.baraud.codurance.monologue.timelines.SharedSocialStack
+     */
+    long listenSession(UserInterface userInterface, SharedSocialStack socialStack){
+        long instructionCount = 0;
         Instruction instruction;
-        SocialStack newSocialStack = socialStack;
         do {
             instruction = userInterface.getNextInstruction();
-            newSocialStack = instruction.apply(newSocialStack, userInterface, new Date());
+            if (instruction != ExitInstruction.END_OF_INPUT){
+                instructionCount++;
+            }
+            Date instructionDate = new Date();
+            if (Action.EXIT != instruction.getAction()){
+                apply(instruction, userInterface, socialStack, instructionDate).join();
+            }
         } while (Action.EXIT != instruction.getAction());
         userInterface.close();
+        return instructionCount;
+    }
+
+    /**
+     * Apply an instruction to the shared stack. If it cannot be recorded,
+     * the stack is left as it was and the session is told why, so that it
+     * can go on.
+     * @return completed once the stack updated is durable, the session being
+     * told first if it cannot be made durable
+     * @see SocialStack#whenDurable()
+     */
+    static CompletableFuture<Void> apply(Instruction instruction, UserInterface userInterface,
+                                         SharedSocialStack socialStack, Date instructionDate){
+        try {
+            SocialStack updated = socialStack.update(stack -> instruction.apply(stack, userInterface,
+                instructionDate));
+            if (updated == null){
+                return CompletableFuture.completedFuture(null);
+            }
+            return updated.whenDurable().handle((durable, failure) -> {
+                if (failure != null){
+                    reportError(userInterface, failure instanceof CompletionException
+                        && failure.getCause() != null ? failure.getCause() : failure);
+                }
+                return null;
+            });
+        } catch (UncheckedIOException | IllegalArgumentException e) {
+            reportError(userInterface, e);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private static void reportError(UserInterface userInterface, Throwable e){
+        Logger.getLogger(Monologue.class.getCanonicalName()).log(Level.WARNING, e.getMessage(), e);
+        userInterface.writeError(e.getMessage());
+    }
+
+    /**
+     * runScript runs the instructions of a script without any prompt, its
+     * output being buffered, and logs how many instructions were run per
+     * second.
+     * @param script the instructions, one per line, UTF-8 encoded
+     * @param out the output stream to where write the output of the script
+     * @param consoleProps the property file with the messages and pattern to display
+     * @param symbols the table of the user names known by the SocialStack
+     * @param socialStack the database of users and timelines
+     * @return the number of instructions read from the script
+     * @see ConsoleInterface#script(InputStream, java.io.OutputStream, Properties, SymbolTable)
+     */
+    long runScript(InputStream script, OutputStream out, Properties consoleProps, SymbolTable symbols,
+                   SocialStack socialStack){
+        long start = System.nanoTime();
+        long instructionCount = listenSession(ConsoleInterface.script(script, out, consoleProps, symbols),
+            new SharedSocialStack(socialStack));
+        long elapsed = Math.max(System.nanoTime() - start, 1L);
+        Logger.getLogger(Monologue.class.getCanonicalName()).info(String.format(
+            "%d instructions in %d ms, %d instructions/s", instructionCount, elapsed / 1_000_000L,
+            instructionCount * 1_000_000_000L / elapsed));
+        return instructionCount;
     }
 
     /**
-     * Runs a new instance a the app with a console interface handler
+     * Runs a new instance a the app with a console interface handler.
+     * If a directory is passed as argument, the posts and follows are
+     * journaled into it, and restored from it at the next start.
+     * If the monologue.server.port property is set, the sessions connect to
+     * this port instead of using the console. If the monologue.script
+     * property is set, the instructions are read from this file instead.
      */
     public static void main(String[] args) {
         Monologue monologue = new Monologue();
@@ -54,7 +184,86 @@ public class Monologue {
         } catch (IOException e) {
             logger.log(Level.SEVERE, e.getMessage(), e);
         }
-        monologue.listenInstructions(new ConsoleInterface(System.in, System.out, consoleProps), new MemorySocialStack());
+        SymbolTable symbols = new SymbolTable();
+        if (args.length == 0){
+            try {
+                listen(monologue, consoleProps, symbols, withWallCache(importDump(new MemorySocialStack(), symbols)));
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, e.getMessage(), e);
+            }
+            return;
+        }
+        FsyncPolicy policy = FsyncPolicy.valueOf(System.getProperty(PROPERTY_JOURNAL_FSYNC,
+            FsyncPolicy.PERIODIC.name()));
+        long syncInterval = Long.getLong(PROPERTY_JOURNAL_FSYNC_INTERVAL, DEFAULT_FSYNC_INTERVAL);
+        long snapshotInterval = Long.getLong(PROPERTY_JOURNAL_SNAPSHOT_INTERVAL, Journal.DEFAULT_SNAPSHOT_INTERVAL);
+        int maxBatchSize = Integer.getInteger(PROPERTY_JOURNAL_BATCH_SIZE, Journal.DEFAULT_MAX_BATCH_SIZE);
+        long maxBatchDelay = Long.getLong(PROPERTY_JOURNAL_BATCH_DELAY, Journal.DEFAULT_MAX_BATCH_DELAY);
+        try (Journal journal = new Journal(Paths.get(args[0]), symbols, policy, syncInterval, snapshotInterval,
+            maxBatchSize, maxBatchDelay)) {
+            SocialStack socialStack = JournaledSocialStack.open(new MemorySocialStack(), journal,
+                Boolean.getBoolean(PROPERTY_JOURNAL_MAPPED));
+            listen(monologue, consoleProps, symbols, withWallCache(importDump(socialStack, symbols)));
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Listen to the console, or run the script if one is configured, or
+     * listen to the sessions connected to the port of the server if one is
+     * configured
+     */
+    private static void listen(Monologue monologue, Properties consoleProps, SymbolTable symbols,
+                               SocialStack socialStack) throws IOException {
+        String script = System.getProperty(PROPERTY_SCRIPT);
+        if (script != null){
+            try (InputStream in = Files.newInputStream(Paths.get(script))) {
+                monologue.runScript(in, System.out, consoleProps, symbols, socialStack);
+            }
+            return;
+        }
+        Integer port = Integer.getInteger(PROPERTY_SERVER_PORT);
+        if (port == null){
+            monologue.listenInstructions(new ConsoleInterface(System.in, System.out, consoleProps, symbols),
+                socialStack);
+            return;
+        }
+        if (Boolean.getBoolean(PROPERTY_SERVER_NIO)){
+            try (NioMonologueServer server = new NioMonologueServer(
+                ServerSocketChannel.open().bind(new InetSocketAddress(port)), new SharedSocialStack(socialStack),
+                consoleProps, symbols, Integer.getInteger(PROPERTY_SERVER_EVENT_LOOPS, DEFAULT_EVENT_LOOPS),
+                Runtime.getRuntime().availableProcessors())) {
+                server.run();
+            }
+            return;
+        }
+        try (MonologueServer server = new MonologueServer(new ServerSocket(port),
+            new SharedSocialStack(socialStack), consoleProps, symbols)) {
+            server.run();
+        }
+    }
+
+    /**
+     * @return the stack with the posts and follows of the dump to import,
+     * if one is configured
+     */
+    private static SocialStack importDump(SocialStack socialStack, SymbolTable symbols) throws IOException {
+        String dump = System.getProperty(PROPERTY_IMPORT);
+        if (dump == null){
+            return socialStack;
+        }
+        try (InputStream in = Files.newInputStream(Paths.get(dump))) {
+            return new BulkLoader(symbols, Runtime.getRuntime().availableProcessors()).load(in, socialStack);
+        }
+    }
+
+    /**
+     * @return the stack with its walls cached if a cache size is configured
+     */
+    private static SocialStack withWallCache(SocialStack socialStack){
+        long cacheSize = Long.getLong(PROPERTY_WALL_CACHE_SIZE, 0L);
+        return cacheSize > 0 ? new CachedSocialStack(socialStack, new WallCache(cacheSize)) : socialStack;
     }
 
     /**
@@ -0,0 +1,151 @@
+package fr.baraud.codurance.monologue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.baraud.codurance.monologue.timelines.SharedSocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.ui.console.ConsoleInterface;
+
+/**
+ * MonologueServer accepts socket connections and runs a console session per
+ * connection, all the sessions sharing the same stack. A session ends when
+ * its user quits or its connection is closed.
+ * Each session blocks its own thread: a virtual thread when the Java runtime
+ * provides them, otherwise a platform thread with a small stack.
+ * A session whose line gets longer than 64 KiB is closed, as with the
+ * NioMonologueServer.
+ * @see Monologue#listenSession(fr.baraud.codurance.monologue.ui.UserInterface, SharedSocialStack)
+ */
+public final class MonologueServer implements Runnable, Closeable {
+
+    // the stack size in bytes of a session thread when there is no virtual thread
+    private static final long SESSION_STACK_SIZE = 256 * 1024L;
+    // the bytes of a line above which the session is closed
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    // the pauses in ms before accepting again after a failure, doubled from one failure to the next
+    private static final long MIN_ACCEPT_PAUSE = 10L;
+    private static final long MAX_ACCEPT_PAUSE = 1000L;
+
+    private final ServerSocket serverSocket;
+    private final SharedSocialStack socialStack;
+    private final Properties consoleProps;
+    private final SymbolTable symbols;
+    private final ExecutorService sessions;
+    private final Monologue monologue = new Monologue();
+    private final Logger logger = Logger.getLogger(MonologueServer.class.getCanonicalName());
+
+    /**
+     * @param serverSocket the socket bound to the port to listen on
+     * @param socialStack the stack shared by the sessions
+     * @param consoleProps the messages and patterns of the console sessions
+     * @param symbols the table of the user names, shared by the sessions
+     */
+    public MonologueServer(ServerSocket serverSocket, SharedSocialStack socialStack,
+                           Properties consoleProps, SymbolTable symbols){
+        this.serverSocket = serverSocket;
+        this.socialStack = socialStack;
+        this.consoleProps = consoleProps;
+        this.symbols = symbols;
+        this.sessions = newSessionExecutor();
+    }
+
+    /**
+     * Accept the connections and start their sessions until the server is
+     * closed. After a failure to accept, such as too many open files, the
+     * server pauses before accepting again.
+     */
+    @Override
+    public void run(){
+        long pause = MIN_ACCEPT_PAUSE;
+        while (!serverSocket.isClosed()){
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+                pause = MIN_ACCEPT_PAUSE;
+            } catch (IOException e) {
+                if (serverSocket.isClosed()){
+                    return;
+                }
+                logger.log(Level.SEVERE, e.getMessage() + ", accepting again in " + pause + " ms", e);
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                pause = Math.min(pause * 2, MAX_ACCEPT_PAUSE);
+                continue;
+            }
+            sessions.execute(() -> listen(socket));
+        }
+    }
+
+    private void listen(Socket socket){
+        LineLimitedInputStream input = null;
+        try (Socket connection = socket) {
+            connection.setTcpNoDelay(true);
+            input = new LineLimitedInputStream(connection.getInputStream(), MAX_LINE_LENGTH);
+            monologue.listenSession(new ConsoleInterface(input, connection.getOutputStream(), consoleProps,
+                symbols), socialStack);
+        } catch (NoSuchElementException | SocketException e) {
+            // the client closed the connection without quitting
+        } catch (IOException e) {
+            logger.log(Level.WARNING, e.getMessage(), e);
+        }
+        if (input != null && input.isExceeded()){
+            logger.log(Level.WARNING, "line too long, the session was closed");
+        }
+    }
+
+    /**
+     * @return the stack shared by the sessions
+     */
+    public SharedSocialStack getSocialStack() {
+        return socialStack;
+    }
+
+    /**
+     * Stop accepting connections, the sessions already started being left
+     * until their users quit
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        sessions.shutdown();
+    }
+
+    /**
+     * Wait for the sessions started to end, once the server is closed
+     * @return true if all the sessions ended before the timeout
+     */
+    boolean awaitSessions(long timeout, TimeUnit unit) throws InterruptedException {
+        return sessions.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * @return an executor starting a virtual thread per session if the Java
+     * runtime provides them, a platform thread per session otherwise
+     */
+    private static ExecutorService newSessionExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(null, runnable, "monologue-session", SESSION_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
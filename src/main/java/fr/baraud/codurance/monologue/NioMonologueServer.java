@@ -0,0 +1,243 @@
+package fr.baraud.codurance.monologue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.baraud.codurance.monologue.timelines.SharedSocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+
+/**
+ * NioMonologueServer serves the same console sessions as MonologueServer
+ * without a thread per session: the connections are spread over a few event
+ * loops, each watching its connections with a selector and parsing their
+ * lines from a buffer it lends to them, and the instructions are applied by
+ * a pool of threads. An idle session only keeps its connection and the
+ * state of its console.
+ * @see NioSession
+ * @see MonologueServer
+ */
+public final class NioMonologueServer implements Runnable, Closeable {
+
+    // the size in bytes of the buffers read by the event loops
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ServerSocketChannel serverChannel;
+    private final SharedSocialStack socialStack;
+    private final Properties consoleProps;
+    private final SymbolTable symbols;
+    private final EventLoop[] eventLoops;
+    private final ExecutorService executor;
+    private volatile boolean closed;
+    private final Logger logger = Logger.getLogger(NioMonologueServer.class.getCanonicalName());
+
+    /**
+     * @param serverChannel the channel bound to the port to listen on
+     * @param socialStack the stack shared by the sessions
+     * @param consoleProps the messages and patterns of the console sessions
+     * @param symbols the table of the user names, shared by the sessions
+     * @param eventLoopCount the number of threads reading and writing the connections
+     * @param executorThreads the number of threads applying the instructions
+     * @throws IOException if a selector cannot be opened
+     */
+    public NioMonologueServer(ServerSocketChannel serverChannel, SharedSocialStack socialStack,
+                              Properties consoleProps, SymbolTable symbols,
+                              int eventLoopCount, int executorThreads) throws IOException {
+        this.serverChannel = serverChannel;
+        this.socialStack = socialStack;
+        this.consoleProps = consoleProps;
+        this.symbols = symbols;
+        this.eventLoops = new EventLoop[eventLoopCount];
+        for (int i = 0; i < eventLoopCount; i++){
+            eventLoops[i] = new EventLoop(Selector.open(), "monologue-event-loop-" + i);
+        }
+        this.executor = Executors.newFixedThreadPool(executorThreads, runnable -> {
+            Thread thread = new Thread(runnable, "monologue-executor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Start the event loops, then accept the connections and spread them over
+     * the loops until the server is closed
+     */
+    @Override
+    public void run(){
+        for (EventLoop eventLoop : eventLoops){
+            eventLoop.thread.start();
+        }
+        int next = 0;
+        while (!closed){
+            try {
+                SocketChannel channel = serverChannel.accept();
+                eventLoops[next].register(channel);
+                next = (next + 1) % eventLoops.length;
+            } catch (IOException e) {
+                if (!closed){
+                    logger.log(Level.SEVERE, e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the stack shared by the sessions
+     */
+    public SharedSocialStack getSocialStack() {
+        return socialStack;
+    }
+
+    /**
+     * Stop accepting connections and close the sessions
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverChannel.close();
+        for (EventLoop eventLoop : eventLoops){
+            eventLoop.selector.wakeup();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * An EventLoop reads and writes the connections registered to its
+     * selector, and resumes their sessions once their instructions are
+     * applied
+     */
+    private final class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final Thread thread;
+
+        /**
+         * The connections accepted, to be registered by the loop
+         */
+        private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+
+        /**
+         * The sessions whose instruction is applied, to be resumed by the loop
+         */
+        private final Queue<NioSession> executed = new ConcurrentLinkedQueue<>();
+
+        /**
+         * The buffers lent to the sessions to read their connections
+         */
+        private final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<>();
+
+        EventLoop(Selector selector, String name){
+            this.selector = selector;
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        void register(SocketChannel channel){
+            accepted.add(channel);
+            selector.wakeup();
+        }
+
+        void resume(NioSession session){
+            executed.add(session);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run(){
+            try {
+                while (!closed){
+                    selector.select();
+                    registerAccepted();
+                    resumeExecuted();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()){
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        handle(key);
+                    }
+                }
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, e.getMessage(), e);
+            } finally {
+                for (SelectionKey key : selector.keys()){
+                    ((NioSession) key.attachment()).close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    logger.log(Level.FINE, e.getMessage(), e);
+                }
+            }
+        }
+
+        private void registerAccepted() {
+            SocketChannel channel;
+            while ((channel = accepted.poll()) != null){
+                try {
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    NioSession session = new NioSession(channel, key, consoleProps, symbols, executor,
+                        socialStack, this::resume);
+                    key.attach(session);
+                    session.flushAndWatch();
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, e.getMessage(), e);
+                    try {
+                        channel.close();
+                    } catch (IOException closing) {
+                        logger.log(Level.FINE, closing.getMessage(), closing);
+                    }
+                }
+            }
+        }
+
+        private void resumeExecuted() {
+            NioSession session;
+            while ((session = executed.poll()) != null){
+                try {
+                    session.resume();
+                } catch (IOException e) {
+                    session.close();
+                }
+            }
+        }
+
+        private void handle(SelectionKey key){
+            NioSession session = (NioSession) key.attachment();
+            if (!key.isValid()){
+                // closed while its instruction was resumed
+                return;
+            }
+            try {
+                if (key.isReadable()){
+                    ByteBuffer buffer = buffers.isEmpty() ? ByteBuffer.allocate(BUFFER_SIZE) : buffers.pop();
+                    try {
+                        session.read(buffer);
+                    } finally {
+                        buffers.push(buffer);
+                    }
+                }
+                if (key.isValid() && key.isWritable()){
+                    session.flushAndWatch();
+                }
+            } catch (IOException e) {
+                // the connection is broken or closed by the client
+                session.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package fr.baraud.codurance.monologue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import fr.baraud.codurance.monologue.timelines.SharedSocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.ui.Action;
+import fr.baraud.codurance.monologue.ui.Instruction;
+import fr.baraud.codurance.monologue.ui.console.ConsoleInterface;
+
+/**
+ * A NioSession is the console session of a connection to a
+ * NioMonologueServer. Its lines are parsed by the event loop of the
+ * connection straight from the buffer read, with the same patterns as the
+ * console, and the instructions are applied by an executor, one at a time
+ * and in their order: the lines following an instruction being applied wait
+ * for it, the session keeping only the bytes of these lines between reads.
+ * The output is queued, then sent with a gathering write. While too much
+ * of it is queued, the client not reading it, the session neither parses
+ * nor reads any more lines.
+ * Except #execute(Instruction, Date) and #executed(), its methods are called by the event
+ * loop of the connection only.
+ * @see NioMonologueServer
+ */
+final class NioSession {
+
+    // the bytes of the lines waiting to be parsed above which the connection is not read anymore
+    private static final int MAX_PENDING_INPUT = 64 * 1024;
+    // the bytes of output queued above which the lines are not parsed nor read anymore
+    private static final int MAX_QUEUED_OUTPUT = 256 * 1024;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final Executor executor;
+    private final SharedSocialStack socialStack;
+
+    /**
+     * Called by the executor once an instruction is applied, to resume the
+     * session on its event loop
+     */
+    private final Consumer<NioSession> onExecuted;
+
+    /**
+     * The output not written to the connection yet, shared by the event loop
+     * and the executor
+     */
+    private final List<ByteBuffer> responses = new ArrayList<>();
+
+    /**
+     * The number of bytes left to write in the responses, guarded by them
+     */
+    private long queuedOutput;
+
+    /**
+     * True when complete lines are left to parse until the output queued is
+     * written
+     */
+    private boolean outputBlocked;
+
+    private final ConsoleInterface userInterface;
+
+    /**
+     * The bytes read and not parsed yet: a line not complete yet, or the
+     * lines following an instruction being applied
+     */
+    private byte[] pendingInput = new byte[0];
+    private int pendingLength;
+
+    /**
+     * True from the submission of an instruction to the executor to the
+     * resumption of the session on the event loop
+     */
+    private boolean executing;
+
+    /**
+     * True once the user quits, the session being closed once the goodbye
+     * message is written
+     */
+    private boolean closing;
+
+    private final Logger logger = Logger.getLogger(NioSession.class.getCanonicalName());
+
+    NioSession(SocketChannel channel, SelectionKey key, Properties consoleProps, SymbolTable symbols,
+               Executor executor, SharedSocialStack socialStack, Consumer<NioSession> onExecuted){
+        this.channel = channel;
+        this.key = key;
+        this.executor = executor;
+        this.socialStack = socialStack;
+        this.onExecuted = onExecuted;
+        this.userInterface = new ConsoleInterface(new ByteArrayInputStream(new byte[0]), new ResponseStream(),
+            consoleProps, symbols);
+        userInterface.writePrompt();
+    }
+
+    /**
+     * Read the bytes available, parse the complete lines and write the
+     * output, until an instruction has to be applied
+     * @param buffer a heap buffer borrowed from the event loop, free again
+     * once the method returns
+     * @throws IOException if the connection is broken or closed by the client
+     */
+    void read(ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        int read = channel.read(buffer);
+        if (read < 0){
+            throw new IOException("closed by the client");
+        }
+        byte[] bytes = buffer.array();
+        int from = buffer.arrayOffset();
+        int to = from + read;
+        if (pendingLength == 0){
+            from = parseLines(bytes, from, to);
+            appendPending(bytes, from, to);
+        } else {
+            appendPending(bytes, from, to);
+            parsePending();
+        }
+        flushAndWatch();
+    }
+
+    /**
+     * Write the output of the instruction applied, then parse the lines
+     * read in the meantime
+     * @throws IOException if the connection is broken
+     */
+    void resume() throws IOException {
+        if (!channel.isOpen()){
+            return;
+        }
+        executing = false;
+        if (!closing){
+            parsePending();
+        }
+        flushAndWatch();
+    }
+
+    /**
+     * Write as much of the output as the connection accepts
+     * @throws IOException if the connection is broken
+     */
+    void flushAndWatch() throws IOException {
+        boolean written = writeResponses();
+        if (outputBlocked && !outputFull() && !executing && !closing){
+            outputBlocked = false;
+            parsePending();
+            written = writeResponses();
+        }
+        if (closing && !executing && written){
+            close();
+            return;
+        }
+        if (!executing && !outputBlocked && pendingLength >= MAX_PENDING_INPUT){
+            logger.log(Level.WARNING, "line too long, closing the session");
+            close();
+            return;
+        }
+        int interest = 0;
+        if (!closing && pendingLength < MAX_PENDING_INPUT && !outputFull()){
+            interest |= SelectionKey.OP_READ;
+        }
+        if (!written){
+            interest |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(interest);
+    }
+
+    /**
+     * @return true if all the responses are written
+     */
+    private boolean writeResponses() throws IOException {
+        synchronized (responses){
+            if (!responses.isEmpty()){
+                queuedOutput -= channel.write(responses.toArray(new ByteBuffer[0]));
+                responses.removeIf(response -> !response.hasRemaining());
+            }
+            return responses.isEmpty();
+        }
+    }
+
+    private boolean outputFull(){
+        synchronized (responses){
+            return queuedOutput >= MAX_QUEUED_OUTPUT;
+        }
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.log(Level.FINE, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parse the complete lines of a range of bytes, until an instruction
+     * has to be applied
+     * @return the position of the first byte not parsed
+     */
+    private int parseLines(byte[] bytes, int from, int to){
+        int lineStart = from;
+        for (int position = from; position < to && !executing && !closing; position++){
+            if (bytes[position] == '\n'){
+                if (outputFull()){
+                    outputBlocked = true;
+                    break;
+                }
+                int lineEnd = position > lineStart && bytes[position - 1] == '\r' ? position - 1 : position;
+                parse(new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+                lineStart = position + 1;
+            }
+        }
+        return lineStart;
+    }
+
+    private void parsePending(){
+        int parsed = parseLines(pendingInput, 0, pendingLength);
+        System.arraycopy(pendingInput, parsed, pendingInput, 0, pendingLength - parsed);
+        pendingLength -= parsed;
+    }
+
+    private void appendPending(byte[] bytes, int from, int to){
+        int length = to - from;
+        if (pendingLength + length > pendingInput.length){
+            pendingInput = Arrays.copyOf(pendingInput, Math.max(pendingInput.length * 2, pendingLength + length));
+        }
+        System.arraycopy(bytes, from, pendingInput, pendingLength, length);
+        pendingLength += length;
+    }
+
+    private void parse(String line){
+        Instruction instruction = userInterface.parseLine(line);
+        if (instruction == null){
+            userInterface.writePrompt();
+            return;
+        }
+        executing = true;
+        executor.execute(() -> execute(instruction, new Date()));
+    }
+
+    /**
+     * Apply an instruction on the executor, then hand the session back to
+     * its event loop once the change is durable. The executor is not held
+     * while the change is forced to the disk, the prompt being written by it
+     * afterwards.
+     */
+    private void execute(Instruction instruction, Date instructionDate){
+        try {
+            if (Action.EXIT == instruction.getAction()){
+                userInterface.close();
+                closing = true;
+            } else {
+                CompletableFuture<Void> durable = Monologue.apply(instruction, userInterface, socialStack,
+                    instructionDate);
+                if (!durable.isDone()){
+                    durable.whenCompleteAsync((done, failure) -> executed(), executor);
+                    return;
+                }
+                userInterface.writePrompt();
+            }
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
+            closing = true;
+        }
+        onExecuted.accept(this);
+    }
+
+    /**
+     * Write the prompt of an instruction made durable, then hand the session
+     * back to its event loop
+     */
+    private void executed(){
+        try {
+            userInterface.writePrompt();
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
+            closing = true;
+        } finally {
+            onExecuted.accept(this);
+        }
+    }
+
+    /**
+     * Queue the output of the console to the responses
+     */
+    private final class ResponseStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            synchronized (responses){
+                responses.add(ByteBuffer.wrap(Arrays.copyOfRange(b, off, off + len)));
+                queuedOutput += len;
+            }
+        }
+    }
+}
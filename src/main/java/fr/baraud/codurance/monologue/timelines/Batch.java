@@ -0,0 +1,39 @@
+package fr.baraud.codurance.monologue.timelines;
+
+import java.util.Date;
+
+/**
+ * A Batch applies many posts and follows to a SocialStack at once, the
+ * result being a single new instance of the SocialStack: the instances in
+ * between are not exposed, so an implementation can change its state in
+ * place until the batch is frozen.
+ * A batch is used by a single thread, and cannot be changed once frozen.
+ * @see SocialStack#batch()
+ */
+public interface Batch {
+
+    /**
+     * Add a post to the batch
+     * @see SocialStack#post(int, String, Date)
+     * @return this batch
+     * @throws IllegalStateException if the batch is already frozen
+     */
+    Batch post(int user, String message, Date messageTimestamp);
+
+    /**
+     * Add a follow to the batch, ignored if one of the users does not exist
+     * at this point of the batch
+     * @see SocialStack#follow(int, int)
+     * @return this batch
+     * @throws IllegalStateException if the batch is already frozen
+     */
+    Batch follow(int user, int following);
+
+    /**
+     * End the batch
+     * @return the new instance of the SocialStack with all the posts and
+     * follows of the batch, or the same instance if none changed it
+     * @throws IllegalStateException if the batch is already frozen
+     */
+    SocialStack freeze();
+}
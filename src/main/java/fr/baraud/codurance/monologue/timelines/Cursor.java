@@ -0,0 +1,22 @@
+package fr.baraud.codurance.monologue.timelines;
+
+/**
+ * A Cursor is an opaque position in a timeline or a wall, returned with a
+ * Page to read the following page.
+ * As the timelines are immutable, the position is the first post of the next
+ * page itself: it stays valid whatever is posted afterwards, and resuming
+ * from it does not depend on the size of the history already read.
+ * @see Page
+ */
+public final class Cursor {
+
+    private final Timeline position;
+
+    Cursor(Timeline position){
+        this.position = position;
+    }
+
+    Timeline getPosition() {
+        return position;
+    }
+}
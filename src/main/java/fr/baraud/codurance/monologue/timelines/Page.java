@@ -0,0 +1,52 @@
+package fr.baraud.codurance.monologue.timelines;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Page is a limited number of consecutive posts of a timeline or a wall,
+ * with the cursor to read the next ones.
+ * @see Cursor
+ */
+public final class Page {
+
+    private final List<Timeline> posts;
+    private final Cursor next;
+
+    private Page(List<Timeline> posts, Cursor next){
+        this.posts = posts;
+        this.next = next;
+    }
+
+    /**
+     * Read a page, only walking the posts of the page
+     * @param first the first post of the page, null for an empty page
+     * @param limit the maximum number of posts in the page, should be positive
+     * @return the page of posts starting with the first one
+     */
+    static Page read(Timeline first, int limit){
+        List<Timeline> posts = new ArrayList<>(Math.min(limit, 64));
+        Timeline post = first;
+        while (post != null && posts.size() < limit){
+            posts.add(post);
+            post = post.getNext();
+        }
+        return new Page(Collections.unmodifiableList(posts), post == null ? null : new Cursor(post));
+    }
+
+    /**
+     * @return the posts of the page, newest first. Their getNext() can go
+     * beyond the page.
+     */
+    public List<Timeline> getPosts() {
+        return posts;
+    }
+
+    /**
+     * @return the cursor to read the next page, or null if this is the last one
+     */
+    public Cursor getNext() {
+        return next;
+    }
+}
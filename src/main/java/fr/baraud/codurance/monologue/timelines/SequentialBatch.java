@@ -0,0 +1,44 @@
+package fr.baraud.codurance.monologue.timelines;
+
+import java.util.Date;
+
+/**
+ * A SequentialBatch applies each post and follow as it is added, building
+ * every instance in between
+ */
+final class SequentialBatch implements Batch {
+
+    private SocialStack stack;
+    private boolean frozen;
+
+    SequentialBatch(SocialStack stack){
+        this.stack = stack;
+    }
+
+    @Override
+    public Batch post(int user, String message, Date messageTimestamp) {
+        checkNotFrozen();
+        stack = stack.post(user, message, messageTimestamp);
+        return this;
+    }
+
+    @Override
+    public Batch follow(int user, int following) {
+        checkNotFrozen();
+        stack = stack.follow(user, following);
+        return this;
+    }
+
+    @Override
+    public SocialStack freeze() {
+        checkNotFrozen();
+        frozen = true;
+        return stack;
+    }
+
+    private void checkNotFrozen(){
+        if (frozen){
+            throw new IllegalStateException("the batch is already frozen");
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package fr.baraud.codurance.monologue.timelines;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.UnaryOperator;
+
+/**
+ * SharedSocialStack is a handle on the newest version of a SocialStack,
+ * shared by concurrent sessions. Reading it returns an immutable version,
+ * without any lock.
+ * A change is applied to the newest version, then published by a
+ * compare-and-set. If another session published a version meanwhile, the
+ * change is applied again on it: a few times at once, then after a random
+ * pause whose bound doubles with each attempt, so that the sessions
+ * contending for the stack spread out instead of failing together.
+ */
+public final class SharedSocialStack {
+
+    // the attempts retried at once, before pausing
+    private static final int SPIN_ATTEMPTS = 2;
+    private static final long MIN_BACKOFF = 1000L;
+    private static final long MAX_BACKOFF = 1000000L;
+
+    private final AtomicReference<SocialStack> newest;
+    private final long minBackoff;
+    private final long maxBackoff;
+    private final LongAdder retryCount = new LongAdder();
+
+    /**
+     * @param socialStack the first version of the stack
+     */
+    public SharedSocialStack(SocialStack socialStack){
+        this(socialStack, MIN_BACKOFF, MAX_BACKOFF);
+    }
+
+    /**
+     * @param socialStack the first version of the stack
+     * @param minBackoff the bound in ns of the first pause, 0 to retry
+     * without pausing
+     * @param maxBackoff the maximum bound in ns of the pauses
+     */
+    SharedSocialStack(SocialStack socialStack, long minBackoff, long maxBackoff){
+        this.newest = new AtomicReference<>(socialStack);
+        this.minBackoff = minBackoff;
+        this.maxBackoff = maxBackoff;
+    }
+
+    /**
+     * @return the newest version of the stack
+     */
+    public SocialStack get(){
+        return newest.get();
+    }
+
+    /**
+     * Apply a change to the newest version of the stack, and publish it
+     * @param change returns the changed version of the stack it receives. It
+     * can be applied several times, to different versions.
+     * @return the version published by the change
+     */
+    public SocialStack update(UnaryOperator<SocialStack> change){
+        long backoff = minBackoff;
+        for (int attempt = 0; ; attempt++){
+            SocialStack current = newest.get();
+            try {
+                SocialStack changed = change.apply(current);
+                if (changed == current || newest.compareAndSet(current, changed)){
+                    return changed;
+                }
+            } catch (StaleVersionException e) {
+                // the newer version is being published by another session
+            }
+            retryCount.increment();
+            if (attempt >= SPIN_ATTEMPTS && backoff > 0){
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(backoff) + 1);
+                backoff = Math.min(backoff * 2, maxBackoff);
+            }
+        }
+    }
+
+    /**
+     * @see SocialStack#post(int, String, Date)
+     * @return the version published with the post
+     */
+    public SocialStack post(int user, String message, Date messageTimestamp){
+        return update(socialStack -> socialStack.post(user, message, messageTimestamp));
+    }
+
+    /**
+     * @see SocialStack#follow(int, int)
+     * @return the version published with the follow
+     */
+    public SocialStack follow(int user, int following){
+        return update(socialStack -> socialStack.follow(user, following));
+    }
+
+    /**
+     * @return the number of changes applied again because another session
+     * published a version first
+     */
+    public long getRetryCount(){
+        return retryCount.sum();
+    }
+}
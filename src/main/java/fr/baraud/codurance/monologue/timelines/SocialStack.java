@@ -1,14 +1,19 @@
 package fr.baraud.codurance.monologue.timelines;
 
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
 
 /**
  * A SocialStack is a database of all the users and their timeline.
  * It is immutable so if a new post is created or a user gets a new follower,
- * a new instance is returned
+ * a new instance is returned.
+ * The users are identified by the int interned for their name in a
+ * SymbolTable, the names themselves are not stored by the stack.
  *
  *@see Timeline
  *@see User
+ *@see SymbolTable
  */
 public interface SocialStack {
 
@@ -17,44 +22,123 @@ public interface SocialStack {
      * exist). It does not affect the current instance of the SocialStack, only
      * the new instance returned.
      *
-     * @param user the author of the message. Should not contains space.
+     * @param user the identifier of the author of the message
      * @param message the content of the message
      * @param messageTimestamp the date of the message creation
      * @return a new instance of the SocialStack representing the new state with
      * the added post
      */
-    SocialStack post(String user, String message, Date messageTimestamp);
+    SocialStack post(int user, String message, Date messageTimestamp);
 
     /**
      * Add a new user to the following list of this user. It does not affect 
      * the current instance of the SocialStack, only the new instance returned.
-     * @param user the user that wants to follow
-     * @param following the user to follow
+     * @param user the identifier of the user that wants to follow
+     * @param following the identifier of the user to follow
      * @return a new instance of the SocialStack with the updated following list
      * for this user. If the request user or the user to follow don't exist,
      * returns the same instance
      */
-    SocialStack follow(String user, String following);
+    SocialStack follow(int user, int following);
+
+    /**
+     * Start a batch of posts and follows to apply to this version of the
+     * stack. The default implementation applies them one after the other,
+     * an implementation can skip the versions in between.
+     * @return an empty batch, building a new instance of the SocialStack
+     * @see Batch
+     */
+    default Batch batch(){
+        return new SequentialBatch(this);
+    }
 
     /**
      * Get the personal timeline for the user
-     * @param user owner of the personal timeline
+     * @param user identifier of the owner of the personal timeline
      * @return the timeline if the user exist, null otherwise
      */
-    Timeline getTimeline(String user);
+    Timeline getTimeline(int user);
 
     /**
      * Get the user's wall. A wall is an aggregation of the personal timeline
      * of the user and the personal timeline of the users he follows
-     * @param user owner of the wall
+     * @param user identifier of the owner of the wall
      * @return the wall if the user exist, null otherwise
      */
-    Timeline getWall(String user);
+    Timeline getWall(int user);
+
+    /**
+     * Get a page of the personal timeline for the user. The default
+     * implementation only walks the posts of the page.
+     * @param user identifier of the owner of the personal timeline
+     * @param limit the maximum number of posts in the page, should be positive
+     * @param cursor the cursor returned with the previous page, or null to
+     * read the first page
+     * @return the page, empty if the user does not exist
+     */
+    default Page getTimeline(int user, int limit, Cursor cursor){
+        return Page.read(cursor == null ? getTimeline(user) : cursor.getPosition(), limit);
+    }
+
+    /**
+     * Get a page of the user's wall. The default implementation only walks
+     * the posts of the page.
+     * @param user identifier of the owner of the wall
+     * @param limit the maximum number of posts in the page, should be positive
+     * @param cursor the cursor returned with the previous page, or null to
+     * read the first page
+     * @return the page, empty if the user does not exist
+     */
+    default Page getWall(int user, int limit, Cursor cursor){
+        return Page.read(cursor == null ? getWall(user) : cursor.getPosition(), limit);
+    }
+
+    /**
+     * Refresh a wall returned before: the posts newer than its first post
+     * are merged in front of it. The posts of the users followed since the
+     * previous wall are only merged from its first post on, the whole wall
+     * should be read again after a follow. The default implementation walks
+     * the newer posts of a lazily merged wall.
+     * @param user identifier of the owner of the wall
+     * @param previousWall a wall of the user returned before, null to read
+     * the whole wall
+     * @return the refreshed wall, null if the user does not exist
+     */
+    default Timeline refreshWall(int user, Timeline previousWall){
+        return WallMerger.prepend(getWall(user), previousWall);
+    }
 
     /**
      * Return true if the user exists (has posted a message at least once) or
      * false otherwise
      */
-    boolean userExist(String user);
+    boolean userExist(int user);
+
+    /**
+     * A stack kept in memory only is as durable as it gets once it is
+     * returned, so the default implementation is already completed.
+     * @return completed once the changes of this version of the stack are
+     * recorded as durably as the stack records them, or completed
+     * exceptionally with an UncheckedIOException if they cannot be
+     */
+    default CompletableFuture<Void> whenDurable(){
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * List all the users of this version of the stack, for instance to save
+     * it
+     * @param action called with the identifier of each user, in no
+     * particular order
+     */
+    void forEachUser(IntConsumer action);
+
+    /**
+     * List the users followed by a user in this version of the stack
+     * @param user the identifier of the follower
+     * @param action called with the identifier of each followed user, the
+     * first followed first
+     */
+    void forEachFollowed(int user, IntConsumer action);
 
 }
@@ -0,0 +1,16 @@
+package fr.baraud.codurance.monologue.timelines;
+
+/**
+ * Thrown by a SocialStack keeping a single history, such as a journaled one,
+ * when a version which is no longer the newest one is changed. The change
+ * should be applied again on the newest version.
+ * @see SharedSocialStack
+ */
+public class StaleVersionException extends IllegalStateException {
+
+    private static final long serialVersionUID = 1L;
+
+    public StaleVersionException(String message){
+        super(message);
+    }
+}
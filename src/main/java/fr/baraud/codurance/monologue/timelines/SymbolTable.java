@@ -0,0 +1,111 @@
+package fr.baraud.codurance.monologue.timelines;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * A SymbolTable interns the user names into dense int identifiers: the first
+ * name interned gets 0, the next one 1, and so on. The SocialStack only deals
+ * with these identifiers, the names are resolved back only to be displayed.
+ * Interning is thread-safe, and resolving an identifier does not lock.
+ * The names known by a stack but not interned yet, such as the users of a
+ * snapshot read in place, are found through a directory: they are interned
+ * the first time they are looked up.
+ */
+public final class SymbolTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Value returned by #lookup(String) for a name never interned
+     */
+    public static final int UNKNOWN = -1;
+
+    private final Map<String, Integer> identifiers = new ConcurrentHashMap<>();
+
+    /**
+     * The names indexed by their identifier. The array is replaced when it
+     * grows, so a reader always sees a consistent version.
+     */
+    private volatile String[] names = new String[INITIAL_CAPACITY];
+
+    private volatile int size;
+
+    /**
+     * Accepts the names to intern when they are looked up, null if none
+     */
+    private volatile Predicate<String> directory;
+
+    /**
+     * @param name the name to intern, should not be null
+     * @return the identifier of the name, a new one if the name was never
+     * interned before
+     */
+    public int intern(String name){
+        Integer identifier = identifiers.get(name);
+        if (identifier != null){
+            return identifier;
+        }
+        synchronized (this){
+            identifier = identifiers.get(name);
+            if (identifier != null){
+                return identifier;
+            }
+            int newIdentifier = size;
+            String[] currentNames = names;
+            if (newIdentifier == currentNames.length){
+                currentNames = Arrays.copyOf(currentNames, currentNames.length * 2);
+            }
+            currentNames[newIdentifier] = name;
+            names = currentNames;
+            size = newIdentifier + 1;
+            identifiers.put(name, newIdentifier);
+            return newIdentifier;
+        }
+    }
+
+    /**
+     * @param name the name to look for
+     * @return the identifier of the name, or #UNKNOWN if it was never
+     * interned and the directory does not know it
+     */
+    public int lookup(String name){
+        Integer identifier = identifiers.get(name);
+        if (identifier != null){
+            return identifier;
+        }
+        Predicate<String> knownNames = directory;
+        return knownNames != null && knownNames.test(name) ? intern(name) : UNKNOWN;
+    }
+
+    /**
+     * @param directory accepts the names known by the stack, to intern them
+     * when they are looked up for the first time
+     */
+    public void setDirectory(Predicate<String> directory){
+        this.directory = directory;
+    }
+
+    /**
+     * @param identifier an identifier returned by #intern(String)
+     * @return the name interned with this identifier
+     * @throws IllegalArgumentException if the identifier was never returned
+     * by this table
+     */
+    public String nameOf(int identifier){
+        // size is published after names, so it has to be read first
+        if (identifier < 0 || identifier >= size){
+            throw new IllegalArgumentException("unknown user identifier " + identifier);
+        }
+        return names[identifier];
+    }
+
+    /**
+     * @return the number of names interned, which is also the next identifier
+     */
+    public int size(){
+        return size;
+    }
+}
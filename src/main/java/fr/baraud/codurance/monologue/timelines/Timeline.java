@@ -1,5 +1,6 @@
 package fr.baraud.codurance.monologue.timelines;
 
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Objects;
 
@@ -8,20 +9,35 @@ import java.util.Objects;
  * A timeline is linked to the previous post via the getNext() method.
  * If a new post is created, a new timeline should be instanciated a this one
  * should be set as the next of the new instance.
+ * Subclasses can provide the history lazily by overriding getNext(), as long
+ * as it always returns the same history.
  */
 public class Timeline implements Comparable<Timeline>{
+
+    /**
+     * Orders the top posts of two timelines by timestamp (newer is bigger),
+     * then by author, like #compareTo(Timeline) does. Two posts of the same
+     * author at the same time are equal: they keep the order of his/her
+     * timeline when the walls are merged.
+     * The authors are compared by identifier, not by name: the posts of the
+     * same millisecond are ordered by the order in which the SymbolTable
+     * first saw their authors. This order may change after a restart, as a
+     * snapshot interns its users by name and a journal by first record.
+     */
+    public static final Comparator<Timeline> POST_ORDER = Timeline::comparePost;
+
     private final String message;
-    private final String user;
+    private final int user;
     private final Date messageTimestamp;
     private final Timeline next;
 
     /**
      * @param message the message of the post
-     * @param user the author of the post
+     * @param user the identifier of the author of the post
      * @param messageTimestamp the time the post was sent
      * @param next the previous message in the personal timeline of this user
      */
-    public Timeline(String message, String user, Date messageTimestamp, Timeline next){
+    public Timeline(String message, int user, Date messageTimestamp, Timeline next){
         this.message = message;
         this.user = user;
         this.messageTimestamp = messageTimestamp;
@@ -32,7 +48,7 @@ public class Timeline implements Comparable<Timeline>{
         return message;
     }
 
-    public String getUser() {
+    public int getUser() {
         return user;
     }
 
@@ -40,62 +56,88 @@ public class Timeline implements Comparable<Timeline>{
         return messageTimestamp;
     }
 
+    /**
+     * @return the time the post was sent, in ms since the epoch
+     */
+    public long getTimestamp() {
+        return messageTimestamp.getTime();
+    }
+
     public Timeline getNext() {
         return next;
     }
 
     /**
      * A timeline will be considered equal with another one only
-     * if all posted messages, authors, and timestamps are equal
+     * if all posted messages, authors, and timestamps are equal.
+     * The histories are compared iteratively, whatever their implementation.
      */
     @Override
     public boolean equals(Object o) {
         if (this == o){
             return true;
         }
-        if ( o == null){
+        if (!(o instanceof Timeline)){
             return false;
         }
-        if (this.getClass() != o.getClass()){
-            return false;
+        Timeline left = this;
+        Timeline right = (Timeline) o;
+        while (left != null && right != null){
+            if (left == right){
+                return true;
+            }
+            if (!Objects.equals(left.getMessage(), right.getMessage())
+                || left.getUser() != right.getUser()
+                || !Objects.equals(left.getMessageTimestamp(), right.getMessageTimestamp())){
+                return false;
+            }
+            left = left.getNext();
+            right = right.getNext();
         }
-        Timeline timeline = (Timeline) o;
-        return Objects.equals(message, timeline.getMessage())
-            && Objects.equals(user, timeline.getUser())
-            && Objects.equals(messageTimestamp, timeline.getMessageTimestamp())
-            && Objects.equals(next, timeline.getNext());
+        return left == right;
     }
 
     @Override
     public int hashCode() {
-        return  Objects.hash(message, user, messageTimestamp);
+        return  Objects.hash(getMessage(), getUser(), getMessageTimestamp());
     }
 
     /**
      * A timeline is ordered by its timestamp first (newer is bigger)
-     * then the alphabetical order of the author, then the alphabetical order
-     * of the message
+     * then the identifier of the author, as POST_ORDER, then the
+     * alphabetical order of the message, then by its history (a longer
+     * history is bigger)
      */
     @Override
     public int compareTo(Timeline timeline) {
-        if (!messageTimestamp.equals(timeline.getMessageTimestamp())){
-            return messageTimestamp.compareTo(timeline.getMessageTimestamp());
-        }
-        if (!user.equals(timeline.getUser())){
-            return user.compareTo(timeline.getUser());
-        }
-        if (!message.equals(timeline.getMessage())){
-            return message.compareTo(timeline.getMessage());
-        }
-        if (next != null && timeline.getNext() == null){
-            return 1;
+        Objects.requireNonNull(timeline);
+        Timeline left = this;
+        Timeline right = timeline;
+        while (left != right){
+            if (right == null){
+                return 1;
+            }
+            if (left == null){
+                return -1;
+            }
+            int postComparison = left.comparePost(right);
+            if (postComparison != 0){
+                return postComparison;
+            }
+            if (!left.getMessage().equals(right.getMessage())){
+                return left.getMessage().compareTo(right.getMessage());
+            }
+            left = left.getNext();
+            right = right.getNext();
         }
-        if (next == null && timeline.getNext() != null){
-            return -1;
-        }
-        if (next == null && timeline.getNext() == null){
-            return 0;
+        return 0;
+    }
+
+    private int comparePost(Timeline timeline) {
+        long timestamp = getTimestamp();
+        if (timestamp != timeline.getTimestamp()){
+            return Long.compare(timestamp, timeline.getTimestamp());
         }
-        return next.compareTo(timeline.getNext());
+        return Integer.compare(getUser(), timeline.getUser());
     }
 }
@@ -1,37 +1,31 @@
 package fr.baraud.codurance.monologue.timelines;
 
-import java.util.List;
 import java.util.Objects;
 
 /**
  * A User is a representation of a Monologue user once he/she published. 
  * It's immutable so when the timeline changes a new instance should be created.
- *
+ * The users he/she follows are not part of the User: they are kept by the
+ * SocialStack as identifiers, so that a follower always reads the current timeline
+ * of the users he/she follows.
  */
 public class User {
 
-    private final String name;
-    private final List<User> following;
+    private final int id;
     private final Timeline timeline;
 
     /**
-     * @param name the name of the user. Should not contains any space.
-     * @param following the list of users he/she follows. Should not be null.
+     * @param id the identifier of the user name in the SymbolTable
      * @param timeline the timeline of the user. Should not be null
      * @see Timeline
      */
-    public User(String name, List<User> following, Timeline timeline){
-        this.name = name;
-        this.following =  following;
+    public User(int id, Timeline timeline){
+        this.id = id;
         this.timeline =  timeline;
     }
 
-    public String getName() {
-        return name;
-    }
-
-    public List<User> getFollowing() {
-        return following;
+    public int getId() {
+        return id;
     }
 
     public Timeline getTimeline() {
@@ -39,8 +33,8 @@ public class User {
     }
 
     /**
-     * A user with the same name, following the same person, and having a
-     * similar timeline will be considered equal with this one.
+     * A user with the same identifier and having a similar timeline will be
+     * considered equal with this one.
      */
     @Override
     public boolean equals(Object o) {
@@ -54,13 +48,12 @@ public class User {
             return false;
         }
         User user = (User)o;
-        return name.equals(user.getName())
-            && following.equals(user.getFollowing())
+        return id == user.getId()
             && timeline.equals(user.getTimeline());
     }
 
     @Override
     public int hashCode() {
-        return  Objects.hash(name, following);
+        return  Objects.hash(id);
     }
 }
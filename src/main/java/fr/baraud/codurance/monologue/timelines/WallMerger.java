@@ -0,0 +1,210 @@
+package fr.baraud.codurance.monologue.timelines;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.IntPredicate;
+
+/**
+ * WallMerger merges several timelines into one wall, newest posts first.
+ * The merge is lazy: only the first post is computed by #merge(), each next
+ * post is computed the first time getNext() is called on the previous one,
+ * with O(log F) work for F merged timelines. Reading the first posts of a
+ * huge wall then only costs a few steps.
+ * A WallMerger is meant to be used once, to build one wall.
+ */
+public final class WallMerger {
+
+    private static final IntPredicate ALL_AUTHORS = author -> true;
+
+    /**
+     * The next post of each merged timeline, the newest on top
+     */
+    private final PriorityQueue<Source> sources = new PriorityQueue<>();
+
+    /**
+     * Add a timeline to merge into the wall
+     * @param timeline the timeline to merge, null is ignored
+     * @return this merger
+     */
+    public WallMerger add(Timeline timeline){
+        return add(timeline, ALL_AUTHORS);
+    }
+
+    /**
+     * Add a timeline to merge into the wall, keeping only the posts of some
+     * authors
+     * @param timeline the timeline to merge, null is ignored
+     * @param authors accepts the identifiers of the authors to keep
+     * @return this merger
+     */
+    public WallMerger add(Timeline timeline, IntPredicate authors){
+        Timeline first = skipFiltered(timeline, authors);
+        if (first != null){
+            sources.add(new Source(first, authors));
+        }
+        return this;
+    }
+
+    /**
+     * @return the wall of all the added timelines, lazily merged, or null if
+     * there is no post to merge
+     */
+    public Timeline merge(){
+        return nextPost();
+    }
+
+    /**
+     * Pull the newest post among the merged timelines
+     * @return a wall node for this post, or null if all the timelines are
+     * exhausted
+     */
+    private synchronized Timeline nextPost(){
+        Source newest = sources.poll();
+        if (newest == null){
+            return null;
+        }
+        Timeline post = newest.current;
+        Timeline next = skipFiltered(post.getNext(), newest.authors);
+        if (next != null){
+            newest.current = next;
+            sources.add(newest);
+        }
+        return new MergedTimeline(post, this);
+    }
+
+    /**
+     * Link the posts of a wall newer than the first post of a previous wall
+     * in front of the previous wall. Only the newer posts are walked.
+     * A post sent in the same millisecond as the first post of the previous
+     * wall is newer if the previous wall does not have it already, and is
+     * linked in front of it whatever its author.
+     * @param wall the current wall, newest post first, null if empty
+     * @param previousWall a wall returned before, null if empty
+     * @return the newer posts followed by the previous wall
+     */
+    public static Timeline prepend(Timeline wall, Timeline previousWall){
+        if (previousWall == null){
+            return wall;
+        }
+        long newestTimestamp = previousWall.getTimestamp();
+        // the posts of the previous wall sent in the same millisecond as its first one
+        List<Timeline> lastPosts = new ArrayList<>();
+        for (Timeline post = previousWall; post != null && post.getTimestamp() == newestTimestamp;
+             post = post.getNext()){
+            lastPosts.add(post);
+        }
+        Deque<Timeline> newerPosts = new ArrayDeque<>();
+        for (Timeline post = wall; post != null && post.getTimestamp() >= newestTimestamp; post = post.getNext()){
+            if (post.getTimestamp() > newestTimestamp || !removeSamePost(lastPosts, post)){
+                newerPosts.push(post);
+            }
+        }
+        Timeline result = previousWall;
+        while (!newerPosts.isEmpty()){
+            Timeline post = newerPosts.pop();
+            result = new Timeline(post.getMessage(), post.getUser(), post.getMessageTimestamp(), result);
+        }
+        return result;
+    }
+
+    /**
+     * @param posts posts sent in the same millisecond
+     * @param post a post sent in this millisecond too
+     * @return true if a post of the same author with the same message was
+     * found and removed from the posts
+     */
+    private static boolean removeSamePost(List<Timeline> posts, Timeline post){
+        for (Iterator<Timeline> same = posts.iterator(); same.hasNext();){
+            Timeline candidate = same.next();
+            if (candidate.getUser() == post.getUser() && Objects.equals(candidate.getMessage(), post.getMessage())){
+                same.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Timeline skipFiltered(Timeline timeline, IntPredicate authors){
+        Timeline current = timeline;
+        while (current != null && !authors.test(current.getUser())){
+            current = current.getNext();
+        }
+        return current;
+    }
+
+    /**
+     * The position of the merge in one of the timelines
+     */
+    private static final class Source implements Comparable<Source> {
+
+        private Timeline current;
+        private final IntPredicate authors;
+
+        Source(Timeline current, IntPredicate authors){
+            this.current = current;
+            this.authors = authors;
+        }
+
+        /**
+         * The newest post comes first in the queue
+         */
+        @Override
+        public int compareTo(Source source) {
+            return Timeline.POST_ORDER.compare(source.current, current);
+        }
+    }
+
+    /**
+     * A post of a merged wall, whose next post is merged on first access.
+     * It reads the post through the merged timeline, which may compute its
+     * fields on demand.
+     */
+    private static final class MergedTimeline extends Timeline {
+
+        private final Timeline post;
+        private WallMerger merger;
+        private Timeline next;
+
+        MergedTimeline(Timeline post, WallMerger merger){
+            super(null, 0, null, null);
+            this.post = post;
+            this.merger = merger;
+        }
+
+        @Override
+        public String getMessage() {
+            return post.getMessage();
+        }
+
+        @Override
+        public int getUser() {
+            return post.getUser();
+        }
+
+        @Override
+        public Date getMessageTimestamp() {
+            return post.getMessageTimestamp();
+        }
+
+        @Override
+        public long getTimestamp() {
+            return post.getTimestamp();
+        }
+
+        @Override
+        public synchronized Timeline getNext() {
+            if (merger != null){
+                next = merger.nextPost();
+                // the merger is no longer needed by this post
+                merger = null;
+            }
+            return next;
+        }
+    }
+}
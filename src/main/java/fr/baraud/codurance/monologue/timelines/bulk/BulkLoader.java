@@ -0,0 +1,337 @@
+package fr.baraud.codurance.monologue.timelines.bulk;
+
+import fr.baraud.codurance.monologue.timelines.Batch;
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * BulkLoader builds a SocialStack from a dump of posts and follows, one
+ * record per line, without going through the user interface:
+ * <pre>
+ * post,&lt;user name&gt;,&lt;timestamp in ms&gt;,&lt;message, up to the end of the line&gt;
+ * follow,&lt;user name&gt;,&lt;followed user name&gt;
+ * </pre>
+ * The dump is read in blocks cut at line ends and the blocks are parsed in
+ * parallel. The posts of each user are then ordered by timestamp, the order
+ * of the dump being kept for the same timestamp, and applied to the stack in
+ * a single Batch, user after user, before the follows in the order of the
+ * dump. A follow of a user who never posts is ignored, as with the console.
+ * @see Batch
+ */
+public final class BulkLoader {
+
+    /**
+     * The size in bytes of the blocks parsed in parallel, when no other size
+     * is provided
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 8 * 1024 * 1024;
+
+    private static final byte SEPARATOR = ',';
+    private static final byte[] POST = "post".getBytes();
+    private static final byte[] FOLLOW = "follow".getBytes();
+
+    private final SymbolTable symbols;
+    private final int threads;
+    private final int blockSize;
+
+    /**
+     * @param symbols the table where to intern the user names
+     * @param threads the number of threads parsing the blocks
+     */
+    public BulkLoader(SymbolTable symbols, int threads){
+        this(symbols, threads, DEFAULT_BLOCK_SIZE);
+    }
+
+    BulkLoader(SymbolTable symbols, int threads, int blockSize){
+        this.symbols = symbols;
+        this.threads = threads;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Apply the posts and follows of a dump to a stack
+     * @param dump the dump, UTF-8 encoded, read until its end but not closed
+     * @param stack the stack to apply the records to, typically an empty
+     * one: the posts of the dump should be newer than the posts of the stack
+     * @return the stack with all the posts and follows of the dump
+     * @throws IOException if the dump cannot be read or contains a malformed
+     * record, in which case nothing is applied
+     */
+    public SocialStack load(InputStream dump, SocialStack stack) throws IOException {
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "monologue-bulk-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<ParsedBlock>> parsed = new ArrayList<>();
+            long offset = 0;
+            byte[] block = new byte[blockSize];
+            int length = 0;
+            boolean ended = false;
+            while (!ended){
+                int read = dump.read(block, length, block.length - length);
+                if (read < 0){
+                    ended = true;
+                } else {
+                    length += read;
+                    if (length < block.length){
+                        continue;
+                    }
+                }
+                int cut = ended ? length : lastLineEnd(block, length);
+                if (cut == 0 && !ended){
+                    // a line longer than the block
+                    block = Arrays.copyOf(block, block.length * 2);
+                    continue;
+                }
+                byte[] lines = block;
+                long linesOffset = offset;
+                int linesLength = cut;
+                parsed.add(parsers.submit(() -> parse(lines, linesLength, linesOffset)));
+                block = new byte[Math.max(blockSize, (length - cut) * 2)];
+                System.arraycopy(lines, cut, block, 0, length - cut);
+                length -= cut;
+                offset += cut;
+            }
+            List<ParsedBlock> blocks = new ArrayList<>(parsed.size());
+            for (Future<ParsedBlock> parsedBlock : parsed){
+                blocks.add(parsedBlock.get());
+            }
+            return apply(blocks, stack);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while parsing the dump");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException){
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            parsers.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the position following the last line end of the block, 0 if
+     * it has none
+     */
+    private static int lastLineEnd(byte[] block, int length){
+        for (int position = length - 1; position >= 0; position--){
+            if (block[position] == '\n'){
+                return position + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param block the lines to parse, the last one ending the block
+     * @param length the length of the lines in the block
+     * @param blockOffset the position of the block in the dump
+     */
+    private ParsedBlock parse(byte[] block, int length, long blockOffset) throws IOException {
+        ParsedBlock parsed = new ParsedBlock();
+        int lineStart = 0;
+        while (lineStart < length){
+            int lineEnd = lineStart;
+            while (lineEnd < length && block[lineEnd] != '\n'){
+                lineEnd++;
+            }
+            int contentEnd = lineEnd > lineStart && block[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > lineStart){
+                parseRecord(block, lineStart, contentEnd, parsed, blockOffset);
+            }
+            lineStart = lineEnd + 1;
+        }
+        return parsed;
+    }
+
+    private void parseRecord(byte[] line, int start, int end, ParsedBlock parsed, long blockOffset)
+        throws IOException {
+        int typeEnd = indexOf(line, start, end);
+        int userEnd = typeEnd < 0 ? -1 : indexOf(line, typeEnd + 1, end);
+        if (userEnd > typeEnd + 1 && startsWith(line, start, typeEnd, POST)){
+            int timestampEnd = indexOf(line, userEnd + 1, end);
+            if (timestampEnd > userEnd + 1){
+                long timestamp = parseLong(line, userEnd + 1, timestampEnd);
+                if (timestamp >= 0){
+                    parsed.addPost(intern(line, typeEnd + 1, userEnd), timestamp,
+                        new String(line, timestampEnd + 1, end - timestampEnd - 1, StandardCharsets.UTF_8));
+                    return;
+                }
+            }
+        } else if (userEnd > typeEnd + 1 && userEnd < end - 1 && startsWith(line, start, typeEnd, FOLLOW)){
+            parsed.addFollow(intern(line, typeEnd + 1, userEnd), intern(line, userEnd + 1, end));
+            return;
+        }
+        throw new IOException("malformed record at byte " + (blockOffset + start) + " of the dump: "
+            + new String(line, start, end - start, StandardCharsets.UTF_8));
+    }
+
+    private int intern(byte[] line, int start, int end){
+        return symbols.intern(new String(line, start, end - start, StandardCharsets.UTF_8));
+    }
+
+    private static int indexOf(byte[] line, int start, int end){
+        for (int position = start; position < end; position++){
+            if (line[position] == SEPARATOR){
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] line, int start, int end, byte[] word){
+        if (end - start != word.length){
+            return false;
+        }
+        for (int i = 0; i < word.length; i++){
+            if (line[start + i] != word[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the decimal number, or -1 if it is not one
+     */
+    private static long parseLong(byte[] line, int start, int end){
+        if (end - start > 18){
+            return -1;
+        }
+        long result = 0;
+        for (int position = start; position < end; position++){
+            int digit = line[position] - '0';
+            if (digit < 0 || digit > 9){
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * Order the posts of the blocks by user, then by timestamp, and apply
+     * them and the follows to the stack in a batch
+     */
+    private SocialStack apply(List<ParsedBlock> blocks, SocialStack stack){
+        int userCount = symbols.size();
+        int[] starts = new int[userCount + 1];
+        int postCount = 0;
+        for (ParsedBlock block : blocks){
+            for (int post = 0; post < block.postCount; post++){
+                starts[block.postUsers[post] + 1]++;
+            }
+            postCount += block.postCount;
+        }
+        for (int user = 0; user < userCount; user++){
+            starts[user + 1] += starts[user];
+        }
+        // counting sort by user, keeping the order of the dump
+        long[] timestamps = new long[postCount];
+        String[] messages = new String[postCount];
+        int[] next = Arrays.copyOf(starts, userCount);
+        for (ParsedBlock block : blocks){
+            for (int post = 0; post < block.postCount; post++){
+                int position = next[block.postUsers[post]]++;
+                timestamps[position] = block.postTimestamps[post];
+                messages[position] = block.messages[post];
+            }
+        }
+        Batch batch = stack.batch();
+        for (int user = 0; user < userCount; user++){
+            sortByTimestamp(timestamps, messages, starts[user], starts[user + 1]);
+            for (int post = starts[user]; post < starts[user + 1]; post++){
+                batch.post(user, messages[post], new Date(timestamps[post]));
+            }
+        }
+        for (ParsedBlock block : blocks){
+            for (int follow = 0; follow < block.followCount; follow++){
+                batch.follow(block.followers[follow], block.followed[follow]);
+            }
+        }
+        return batch.freeze();
+    }
+
+    /**
+     * Sort the posts of a user by timestamp, keeping the order of the dump
+     * for the same timestamp. The posts of a dump are usually in order
+     * already, so they are only checked.
+     */
+    private static void sortByTimestamp(long[] timestamps, String[] messages, int from, int to){
+        boolean sorted = true;
+        for (int post = from + 1; post < to && sorted; post++){
+            sorted = timestamps[post - 1] <= timestamps[post];
+        }
+        if (sorted){
+            return;
+        }
+        Integer[] order = new Integer[to - from];
+        for (int i = 0; i < order.length; i++){
+            order[i] = from + i;
+        }
+        Arrays.sort(order, (left, right) -> Long.compare(timestamps[left], timestamps[right]));
+        long[] sortedTimestamps = new long[order.length];
+        String[] sortedMessages = new String[order.length];
+        for (int i = 0; i < order.length; i++){
+            sortedTimestamps[i] = timestamps[order[i]];
+            sortedMessages[i] = messages[order[i]];
+        }
+        System.arraycopy(sortedTimestamps, 0, timestamps, from, order.length);
+        System.arraycopy(sortedMessages, 0, messages, from, order.length);
+    }
+
+    /**
+     * The posts and follows of a block, in the order of the dump
+     */
+    private static final class ParsedBlock {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        int postCount;
+        int[] postUsers = new int[INITIAL_CAPACITY];
+        long[] postTimestamps = new long[INITIAL_CAPACITY];
+        String[] messages = new String[INITIAL_CAPACITY];
+
+        int followCount;
+        int[] followers = new int[INITIAL_CAPACITY];
+        int[] followed = new int[INITIAL_CAPACITY];
+
+        void addPost(int user, long timestamp, String message){
+            if (postCount == postUsers.length){
+                postUsers = Arrays.copyOf(postUsers, postCount * 2);
+                postTimestamps = Arrays.copyOf(postTimestamps, postCount * 2);
+                messages = Arrays.copyOf(messages, postCount * 2);
+            }
+            postUsers[postCount] = user;
+            postTimestamps[postCount] = timestamp;
+            messages[postCount] = message;
+            postCount++;
+        }
+
+        void addFollow(int follower, int followedUser){
+            if (followCount == followers.length){
+                followers = Arrays.copyOf(followers, followCount * 2);
+                followed = Arrays.copyOf(followed, followCount * 2);
+            }
+            followers[followCount] = follower;
+            followed[followCount] = followedUser;
+            followCount++;
+        }
+    }
+}
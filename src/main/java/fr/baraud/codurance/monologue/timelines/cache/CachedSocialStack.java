@@ -0,0 +1,142 @@
+package fr.baraud.codurance.monologue.timelines.cache;
+
+import fr.baraud.codurance.monologue.timelines.Cursor;
+import fr.baraud.codurance.monologue.timelines.Page;
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.memory.PersistentHashMap;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
+
+/**
+ * CachedSocialStack serves the walls of another SocialStack from a
+ * WallCache, so that a wall read again and again is only merged once and its
+ * posts are only merged the first time they are read.
+ * Each version of the stack keeps the stamp of the last post or follow of
+ * each user, a cached wall being current as long as the stamps of its owner
+ * and of the users he/she follows did not change, the users followed being
+ * listed by the other stack.
+ * The pages of the walls are read from the cached walls.
+ * @see WallCache
+ */
+public final class CachedSocialStack implements SocialStack {
+
+    private final SocialStack stack;
+    private final WallCache cache;
+
+    /**
+     * The stamp of the last change of each user, absent if the user did not
+     * change since the stack was wrapped
+     */
+    private final PersistentHashMap<Integer, Long> stamps;
+
+    /**
+     * @param stack the stack whose walls are cached
+     * @param cache the cache, shared by all the versions of this stack
+     */
+    public CachedSocialStack(SocialStack stack, WallCache cache){
+        this(stack, cache, PersistentHashMap.empty());
+    }
+
+    private CachedSocialStack(SocialStack stack, WallCache cache, PersistentHashMap<Integer, Long> stamps){
+        this.stack = stack;
+        this.cache = cache;
+        this.stamps = stamps;
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#post(int, String, Date)
+     */
+    @Override
+    public SocialStack post(int user, String message, Date messageTimestamp) {
+        return changed(stack.post(user, message, messageTimestamp), user);
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#follow(int, int)
+     */
+    @Override
+    public SocialStack follow(int user, int following) {
+        return changed(stack.follow(user, following), user);
+    }
+
+    private SocialStack changed(SocialStack newStack, int user){
+        if (newStack == stack){
+            return this;
+        }
+        return new CachedSocialStack(newStack, cache, stamps.put(user, cache.nextStamp()));
+    }
+
+    @Override
+    public Timeline getTimeline(int user) {
+        return stack.getTimeline(user);
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#getWall(int)
+     */
+    @Override
+    public Timeline getWall(int user) {
+        Timeline cached = cache.get(user, this);
+        if (cached != null){
+            return cached;
+        }
+        Timeline wall = stack.getWall(user);
+        if (wall != null){
+            List<Integer> sources = new ArrayList<>();
+            sources.add(user);
+            stack.forEachFollowed(user, sources::add);
+            int[] sourceUsers = new int[sources.size()];
+            long[] sourceStamps = new long[sources.size()];
+            for (int i = 0; i < sourceUsers.length; i++){
+                sourceUsers[i] = sources.get(i);
+                sourceStamps[i] = stampOf(sourceUsers[i]);
+            }
+            return cache.put(user, wall, sourceUsers, sourceStamps);
+        }
+        return wall;
+    }
+
+    @Override
+    public Page getTimeline(int user, int limit, Cursor cursor) {
+        return stack.getTimeline(user, limit, cursor);
+    }
+
+    @Override
+    public Timeline refreshWall(int user, Timeline previousWall) {
+        return stack.refreshWall(user, previousWall);
+    }
+
+    @Override
+    public boolean userExist(int user) {
+        return stack.userExist(user);
+    }
+
+    @Override
+    public CompletableFuture<Void> whenDurable() {
+        return stack.whenDurable();
+    }
+
+    @Override
+    public void forEachUser(IntConsumer action) {
+        stack.forEachUser(action);
+    }
+
+    @Override
+    public void forEachFollowed(int user, IntConsumer action) {
+        stack.forEachFollowed(user, action);
+    }
+
+    /**
+     * @return the stamp of the last change of the user in this version, 0 if
+     * he/she did not change since the stack was wrapped
+     */
+    long stampOf(int user){
+        Long stamp = stamps.get(user);
+        return stamp == null ? 0L : stamp;
+    }
+}
@@ -0,0 +1,240 @@
+package fr.baraud.codurance.monologue.timelines.cache;
+
+import fr.baraud.codurance.monologue.timelines.Timeline;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WallCache keeps the walls recently read, shared by all the versions of a
+ * CachedSocialStack. It is bounded by a memory budget, the least recently
+ * read walls being evicted first.
+ * A wall is cached with the stamps of the last change of its owner and of
+ * each user he/she follows: it is only served to a version of the stack
+ * where none of them has posted or followed since.
+ * A wall is merged lazily, so the cache serves it through nodes of its own
+ * which charge the entry for each post the first time it is read: the size
+ * of an entry grows with the part of the wall read, and the least recently
+ * read walls are evicted when it exceeds the budget.
+ * @see CachedSocialStack
+ */
+public final class WallCache {
+
+    // estimate of an entry and the merger of its wall
+    private static final long ENTRY_SIZE = 192L;
+    // an identifier and a stamp
+    private static final long SOURCE_SIZE = 12L;
+    // estimate of a node of a cached wall and of the merged post it reads
+    private static final long POST_SIZE = 80L;
+
+    private final long maxSize;
+
+    /**
+     * The entries by owner, the least recently read first
+     */
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The stamps given to the changes, unique whatever the version of the
+     * stack changed
+     */
+    private final AtomicLong stamps = new AtomicLong();
+
+    private long size;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maxSize the memory budget in bytes of the cache
+     */
+    public WallCache(long maxSize){
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return a new stamp for a change, bigger than all the previous ones
+     */
+    long nextStamp(){
+        return stamps.incrementAndGet();
+    }
+
+    /**
+     * @param owner the identifier of the owner of the wall
+     * @param stack the version of the stack reading the wall
+     * @return the wall cached if it is current for this version, or null
+     */
+    synchronized Timeline get(int owner, CachedSocialStack stack){
+        Entry entry = entries.get(owner);
+        if (entry != null && entry.isCurrent(stack)){
+            hitCount++;
+            return entry.wall;
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Cache a wall, evicting the least recently read walls if the budget is
+     * exceeded
+     * @param owner the identifier of the owner of the wall
+     * @param wall the wall
+     * @param sources the identifiers of the owner and of the users he/she follows
+     * @param sourceStamps the stamps of the last change of each source
+     * @return the wall as served by the cache
+     */
+    synchronized Timeline put(int owner, Timeline wall, int[] sources, long[] sourceStamps){
+        Entry entry = new Entry(sources, sourceStamps);
+        entry.wall = new CachedPost(wall, entry);
+        Entry previous = entries.put(owner, entry);
+        if (previous != null){
+            previous.cached = false;
+            size -= previous.size();
+        }
+        size += entry.size();
+        evict();
+        return entry.wall;
+    }
+
+    /**
+     * Charge an entry for a post of its wall read for the first time
+     */
+    private synchronized void charge(Entry entry){
+        entry.posts++;
+        if (entry.cached){
+            size += POST_SIZE;
+            evict();
+        }
+    }
+
+    /**
+     * Evict the least recently read walls until the budget is met
+     */
+    private void evict(){
+        Iterator<Map.Entry<Integer, Entry>> eldest = entries.entrySet().iterator();
+        while (size > maxSize && eldest.hasNext()){
+            Entry evicted = eldest.next().getValue();
+            eldest.remove();
+            evicted.cached = false;
+            size -= evicted.size();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * @return the number of walls served from the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of walls not cached, or outdated
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of walls evicted to keep the cache within its budget
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the estimated size in bytes of the walls cached
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private static final class Entry {
+
+        private Timeline wall;
+        private final int[] sources;
+        private final long[] sourceStamps;
+
+        /**
+         * The number of posts of the wall read, guarded by the cache
+         */
+        private long posts = 1L;
+
+        /**
+         * False once the entry is evicted or replaced, guarded by the cache
+         */
+        private boolean cached = true;
+
+        private Entry(int[] sources, long[] sourceStamps){
+            this.sources = sources;
+            this.sourceStamps = sourceStamps;
+        }
+
+        private boolean isCurrent(CachedSocialStack stack){
+            for (int i = 0; i < sources.length; i++){
+                if (stack.stampOf(sources[i]) != sourceStamps[i]){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long size(){
+            return ENTRY_SIZE + SOURCE_SIZE * sources.length + POST_SIZE * posts;
+        }
+    }
+
+    /**
+     * A post of a cached wall, whose next post is read on first access and
+     * charged to the entry of the wall
+     */
+    private final class CachedPost extends Timeline {
+
+        private final Timeline post;
+        private Entry entry;
+        private Timeline next;
+
+        CachedPost(Timeline post, Entry entry){
+            super(null, 0, null, null);
+            this.post = post;
+            this.entry = entry;
+        }
+
+        @Override
+        public String getMessage() {
+            return post.getMessage();
+        }
+
+        @Override
+        public int getUser() {
+            return post.getUser();
+        }
+
+        @Override
+        public Date getMessageTimestamp() {
+            return post.getMessageTimestamp();
+        }
+
+        @Override
+        public long getTimestamp() {
+            return post.getTimestamp();
+        }
+
+        @Override
+        public synchronized Timeline getNext() {
+            if (entry != null){
+                Timeline nextPost = post.getNext();
+                if (nextPost != null){
+                    next = new CachedPost(nextPost, entry);
+                    charge(entry);
+                }
+                // the entry is no longer needed by this post
+                entry = null;
+            }
+            return next;
+        }
+    }
+}
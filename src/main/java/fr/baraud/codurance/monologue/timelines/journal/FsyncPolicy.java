@@ -0,0 +1,36 @@
+package fr.baraud.codurance.monologue.timelines.journal;
+
+/**
+ * FsyncPolicy enumerates when a Journal forces its records to the disk
+ * @see Journal
+ */
+public enum FsyncPolicy {
+
+    /**
+     * Each record is forced to the disk before the write is acknowledged.
+     * Nothing acknowledged can be lost, but each write waits for the disk.
+     */
+    ALWAYS,
+
+    /**
+     * The records are forced to the disk by a background thread at a fixed
+     * interval. A crash can lose the writes of the last interval.
+     */
+    PERIODIC,
+
+    /**
+     * The records of concurrent writers are gathered into batches by a
+     * background thread, each batch being written and forced to the disk at
+     * once. Nothing is acknowledged before it is forced, but a writer has to
+     * wait for the durability of its write apart from the write itself.
+     * @see JournaledSocialStack#whenDurable()
+     */
+    GROUP,
+
+    /**
+     * The records are left to the operating system, which writes them when
+     * it sees fit. A crash of the application loses nothing, a crash of the
+     * system can lose several seconds of writes.
+     */
+    OS
+}
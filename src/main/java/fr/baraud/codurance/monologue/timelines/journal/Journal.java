@@ -0,0 +1,803 @@
+package fr.baraud.codurance.monologue.timelines.journal;
+
+import fr.baraud.codurance.monologue.timelines.Batch;
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.StaleVersionException;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.mapped.MappedSocialStack;
+import fr.baraud.codurance.monologue.timelines.mapped.StackImage;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A Journal is an append-only binary log of the posts and follows applied to
+ * a SocialStack, replayed to rebuild the stack when the application starts.
+ * Each record is written as its length, its CRC32 and its content: a record
+ * partly written by a crash is detected and cut off when the journal is
+ * replayed.
+ * The records identify the users with the identifiers of the SymbolTable,
+ * which are only valid until the application stops: before the first record
+ * of a user in a segment, a record binds his/her identifier to his/her name.
+ * The journal is a directory of numbered segments, a new one being started
+ * at each start and each snapshot. Every given number of records, a snapshot
+ * of the stack is written by a background thread; once it is complete, the
+ * segments it covers are deleted. The stack being immutable, the snapshot
+ * does not block the changes made meanwhile. The snapshots are StackImage
+ * files, either loaded into the stack given to replay the journal, or read
+ * in place by a MappedSocialStack.
+ * @see JournaledSocialStack
+ * @see StackImage
+ */
+public final class Journal implements Closeable {
+
+    private static final byte USER_RECORD = 1;
+    private static final byte POST_RECORD = 2;
+    private static final byte FOLLOW_RECORD = 3;
+
+    // the length and the CRC32 of a record
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MAX_RECORD_SIZE = 1 << 24;
+    // the size of the fields of a record before its text, after its type
+    private static final int POST_CONTENT_SIZE = 16;
+    private static final int USER_CONTENT_SIZE = 8;
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    /**
+     * The number of records between two snapshots, when no other interval
+     * is provided
+     */
+    public static final long DEFAULT_SNAPSHOT_INTERVAL = 100000L;
+
+    /**
+     * The maximum number of posts and follows in a batch of the GROUP
+     * policy, when no other size is provided
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1024;
+
+    /**
+     * The time in µs a batch of the GROUP policy waits for more records,
+     * when no other delay is provided: a batch is written as soon as the
+     * previous one is forced, gathering the records written meanwhile
+     */
+    public static final long DEFAULT_MAX_BATCH_DELAY = 0L;
+
+    private static final CompletableFuture<Void> WRITTEN = CompletableFuture.completedFuture(null);
+
+    private final Path directory;
+    private final SymbolTable symbols;
+    private final FsyncPolicy policy;
+    private final long snapshotInterval;
+    private final int maxBatchSize;
+    private final long maxBatchDelay;
+
+    /**
+     * The segment being written, null until the journal is replayed
+     */
+    private volatile FileChannel channel;
+
+    /**
+     * The number of the segment being written
+     */
+    private long segment;
+
+    /**
+     * The thread forcing the records to the disk with the PERIODIC policy,
+     * null with the other ones
+     */
+    private final ScheduledExecutorService syncer;
+
+    /**
+     * The thread writing and forcing the batches with the GROUP policy,
+     * null with the other ones
+     */
+    private final Thread committer;
+
+    /**
+     * The completions of the records of the batch being gathered, with the
+     * GROUP policy. The records themselves are in the pending buffer.
+     */
+    private final List<CompletableFuture<Void>> batch = new ArrayList<>();
+
+    /**
+     * The first failure to write or force a batch: the records are then
+     * refused, as the journal may have lost some of the previous ones
+     */
+    private IOException failure;
+
+    private boolean closing;
+
+    /**
+     * The thread writing the snapshots
+     */
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(
+        daemonThreads("journal-snapshot"));
+
+    /**
+     * The identifiers already bound to their name in the journal since it
+     * was opened
+     */
+    private final BitSet namedUsers = new BitSet();
+
+    /**
+     * The records to write, reused from one write to the next one. With the
+     * GROUP policy, it holds the records of the batch being gathered.
+     */
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    /**
+     * The number of posts and follows in the journal
+     */
+    private long version;
+
+    private boolean replayed;
+
+    /**
+     * The version of the last snapshot, or of the journal when it was
+     * replayed
+     */
+    private long snapshotVersion;
+
+    /**
+     * True while a snapshot is being written
+     */
+    private boolean snapshotting;
+
+    /**
+     * True if records were written since the last time they were forced
+     */
+    private volatile boolean dirty;
+
+    private final Logger logger = Logger.getLogger(Journal.class.getCanonicalName());
+
+    /**
+     * Open a journal taking a snapshot every DEFAULT_SNAPSHOT_INTERVAL records
+     * @see #Journal(Path, SymbolTable, FsyncPolicy, long, long)
+     */
+    public Journal(Path directory, SymbolTable symbols, FsyncPolicy policy, long syncInterval) throws IOException {
+        this(directory, symbols, policy, syncInterval, DEFAULT_SNAPSHOT_INTERVAL);
+    }
+
+    /**
+     * Open a journal, creating its directory if it does not exist
+     * @param directory the directory of the journal segments and snapshots
+     * @param symbols the table of the user names, shared with the user interface
+     * @param policy when the records are forced to the disk
+     * @param syncInterval the interval in ms between two syncs, only used by
+     * the PERIODIC policy
+     * @param snapshotInterval the number of records between two snapshots
+     * @throws IOException if the directory cannot be created
+     */
+    public Journal(Path directory, SymbolTable symbols, FsyncPolicy policy, long syncInterval,
+                   long snapshotInterval) throws IOException {
+        this(directory, symbols, policy, syncInterval, snapshotInterval, DEFAULT_MAX_BATCH_SIZE,
+            DEFAULT_MAX_BATCH_DELAY);
+    }
+
+    /**
+     * Open a journal, creating its directory if it does not exist
+     * @param directory the directory of the journal segments and snapshots
+     * @param symbols the table of the user names, shared with the user interface
+     * @param policy when the records are forced to the disk
+     * @param syncInterval the interval in ms between two syncs, only used by
+     * the PERIODIC policy
+     * @param snapshotInterval the number of records between two snapshots
+     * @param maxBatchSize the number of posts and follows from which a batch
+     * is written without waiting any longer, only used by the GROUP policy
+     * @param maxBatchDelay the maximum time in µs a batch waits for more
+     * records before being written, only used by the GROUP policy
+     * @throws IOException if the directory cannot be created
+     */
+    public Journal(Path directory, SymbolTable symbols, FsyncPolicy policy, long syncInterval,
+                   long snapshotInterval, int maxBatchSize, long maxBatchDelay) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.symbols = symbols;
+        this.policy = policy;
+        this.snapshotInterval = snapshotInterval;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchDelay = maxBatchDelay;
+        if (policy == FsyncPolicy.PERIODIC){
+            syncer = Executors.newSingleThreadScheduledExecutor(daemonThreads("journal-sync"));
+            syncer.scheduleAtFixedRate(this::syncIfDirty, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+        if (policy == FsyncPolicy.GROUP){
+            committer = daemonThreads("journal-commit").newThread(this::commitBatches);
+            committer.start();
+        } else {
+            committer = null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name){
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Load the newest snapshot, then apply the records of the newer
+     * segments. A record partly written at the end of the last segment is
+     * removed from the file. A new segment is then started.
+     * It has to be called once, before any record is appended.
+     * @param stack the stack to apply the records to, typically an empty one
+     * @param mapped true to read the snapshot in place with a
+     * MappedSocialStack, the stack provided being only used if there is no
+     * snapshot yet. False to load the snapshot into the stack provided.
+     * @return the stack with all the posts and follows of the journal
+     * @throws IOException if the journal cannot be read, or contains a
+     * record it does not understand
+     */
+    synchronized SocialStack replay(SocialStack stack, boolean mapped) throws IOException {
+        if (replayed){
+            throw new IllegalStateException("the journal " + directory + " is already replayed");
+        }
+        SocialStack result = stack;
+        List<Long> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long snapshotSegment = -1;
+        if (!snapshots.isEmpty()){
+            snapshotSegment = snapshots.get(snapshots.size() - 1);
+            StackImage snapshot = StackImage.open(path(SNAPSHOT_PREFIX, snapshotSegment, SNAPSHOT_SUFFIX));
+            result = mapped ? new MappedSocialStack(snapshot, symbols) : snapshot.load(stack, symbols);
+            version = snapshot.getVersion();
+        }
+        List<Long> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        long lastSegment = snapshotSegment;
+        for (long replayedSegment : segments){
+            if (replayedSegment > snapshotSegment){
+                result = replaySegment(replayedSegment, result,
+                    replayedSegment == segments.get(segments.size() - 1));
+                lastSegment = replayedSegment;
+            }
+        }
+        // a crash may have happened before the deletion of the segments covered by the snapshot
+        deleteCoveredFiles(snapshotSegment);
+        segment = lastSegment + 1;
+        channel = FileChannel.open(path(SEGMENT_PREFIX, segment, SEGMENT_SUFFIX),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        snapshotVersion = version;
+        replayed = true;
+        return result;
+    }
+
+    private SocialStack replaySegment(long replayedSegment, SocialStack stack, boolean last) throws IOException {
+        Path file = path(SEGMENT_PREFIX, replayedSegment, SEGMENT_SUFFIX);
+        Batch batch = stack.batch();
+        Map<Integer, Integer> identifiers = new HashMap<>();
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))){
+            byte[] record;
+            while ((record = readRecord(in)) != null){
+                apply(record, batch, identifiers);
+                validLength += RECORD_HEADER_SIZE + record.length;
+            }
+        }
+        SocialStack result = batch.freeze();
+        if (validLength < Files.size(file)){
+            if (!last){
+                throw new IOException("the journal segment " + file + " is corrupted at " + validLength + " bytes");
+            }
+            logger.log(Level.WARNING, "Cutting the incomplete end of the journal {0} at {1} bytes",
+                new Object[]{file, validLength});
+            try (FileChannel truncated = FileChannel.open(file, StandardOpenOption.WRITE)){
+                truncated.truncate(validLength);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the next record, or null at the end of the journal or on the
+     * first record partly written or corrupted
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE){
+                return null;
+            }
+            int checksum = in.readInt();
+            byte[] record = new byte[length];
+            in.readFully(record);
+            CRC32 crc = new CRC32();
+            crc.update(record, 0, length);
+            return (int) crc.getValue() == checksum ? record : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private void apply(byte[] record, Batch batch, Map<Integer, Integer> identifiers) throws IOException {
+        ByteBuffer content = ByteBuffer.wrap(record);
+        byte type = content.get();
+        switch (type){
+            case USER_RECORD:
+                int identifier = content.getInt();
+                identifiers.put(identifier, symbols.intern(readString(content)));
+                return;
+            case POST_RECORD:
+                int author = user(identifiers, content.getInt());
+                long timestamp = content.getLong();
+                version++;
+                batch.post(author, readString(content), new Date(timestamp));
+                return;
+            case FOLLOW_RECORD:
+                int follower = user(identifiers, content.getInt());
+                int followed = user(identifiers, content.getInt());
+                version++;
+                batch.follow(follower, followed);
+                return;
+            default:
+                throw new IOException("unknown record type " + type + " in the journal " + directory);
+        }
+    }
+
+    private int user(Map<Integer, Integer> identifiers, int journalIdentifier) throws IOException {
+        Integer identifier = identifiers.get(journalIdentifier);
+        if (identifier == null){
+            throw new IOException("user " + journalIdentifier + " is not named in the journal " + directory);
+        }
+        return identifier;
+    }
+
+    /**
+     * Append a post to the journal, and force it to the disk if required by
+     * the policy
+     * @param expectedVersion the version of the stack posted to
+     * @return completed once the post is as durable as the policy makes it
+     * @throws StaleVersionException if the journal already recorded a newer
+     * version of the stack
+     * @throws UncheckedIOException if the record cannot be written
+     * @throws IllegalArgumentException if the message or the user name is
+     * too long to be replayed, nothing being written then
+     */
+    synchronized CompletableFuture<Void> appendPost(long expectedVersion, int user, String message, long timestamp){
+        checkVersion(expectedVersion);
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        checkRecordSize(POST_CONTENT_SIZE + bytes.length, "message");
+        checkName(user);
+        nameUser(user);
+        int start = beginRecord(POST_RECORD, POST_CONTENT_SIZE + bytes.length);
+        pending.putInt(user).putLong(timestamp).putInt(bytes.length).put(bytes);
+        endRecord(start);
+        return write();
+    }
+
+    /**
+     * Append a follow to the journal, and force it to the disk if required
+     * by the policy
+     * @param expectedVersion the version of the stack followed in
+     * @throws StaleVersionException if the journal already recorded a newer
+     * version of the stack
+     * @return completed once the follow is as durable as the policy makes it
+     * @throws UncheckedIOException if the record cannot be written
+     * @throws IllegalArgumentException if a user name is too long to be
+     * replayed, nothing being written then
+     */
+    synchronized CompletableFuture<Void> appendFollow(long expectedVersion, int user, int followed){
+        checkVersion(expectedVersion);
+        checkName(user);
+        checkName(followed);
+        nameUser(user);
+        nameUser(followed);
+        int start = beginRecord(FOLLOW_RECORD, 8);
+        pending.putInt(user).putInt(followed);
+        endRecord(start);
+        return write();
+    }
+
+    /**
+     * @return the number of posts and follows in the journal
+     */
+    synchronized long getVersion(){
+        return version;
+    }
+
+    /**
+     * The journal is a single history: only its newest version can be
+     * extended
+     */
+    private void checkVersion(long expectedVersion){
+        if (!replayed){
+            throw new IllegalStateException("the journal " + directory + " should be replayed before being written");
+        }
+        if (expectedVersion != version){
+            throw new StaleVersionException("the journal " + directory + " is at version " + version
+                + ", it cannot record a change to the version " + expectedVersion);
+        }
+        if (failure != null){
+            throw new UncheckedIOException("the journal " + directory + " failed to write a batch", failure);
+        }
+    }
+
+    /**
+     * A record longer than MAX_RECORD_SIZE would be taken for a corrupted
+     * one at replay, losing it and every record after it
+     * @param contentSize the size of the record after its type
+     * @param what what makes the record, for the message of the exception
+     * @throws IllegalArgumentException if the record would be too long
+     */
+    private static void checkRecordSize(long contentSize, String what){
+        if (1 + contentSize > MAX_RECORD_SIZE){
+            throw new IllegalArgumentException("the " + what + " is too long to be journaled, "
+                + (1 + contentSize) + " bytes for at most " + MAX_RECORD_SIZE);
+        }
+    }
+
+    private void checkName(int user){
+        if (!namedUsers.get(user)){
+            checkRecordSize(USER_CONTENT_SIZE + (long) symbols.nameOf(user).getBytes(StandardCharsets.UTF_8).length,
+                "user name");
+        }
+    }
+
+    private void nameUser(int user){
+        if (!namedUsers.get(user)){
+            byte[] name = symbols.nameOf(user).getBytes(StandardCharsets.UTF_8);
+            int start = beginRecord(USER_RECORD, USER_CONTENT_SIZE + name.length);
+            pending.putInt(user).putInt(name.length).put(name);
+            endRecord(start);
+            namedUsers.set(user);
+        }
+    }
+
+    /**
+     * Start a record in the pending buffer, leaving room for its header
+     * @return the position of the record in the buffer
+     */
+    private int beginRecord(byte type, int contentSize){
+        int recordSize = RECORD_HEADER_SIZE + 1 + contentSize;
+        if (pending.remaining() < recordSize){
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + recordSize));
+            // the Buffer casts keep the bytecode compatible with Java 8
+            ((Buffer) pending).flip();
+            pending = larger.put(pending);
+        }
+        int start = pending.position();
+        ((Buffer) pending).position(start + RECORD_HEADER_SIZE);
+        pending.put(type);
+        return start;
+    }
+
+    /**
+     * Fill the header of the record started at the position
+     */
+    private void endRecord(int start){
+        int length = pending.position() - start - RECORD_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(pending.array(), start + RECORD_HEADER_SIZE, length);
+        pending.putInt(start, length);
+        pending.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Write the pending records to the file. If they cannot be written, the
+     * file is cut back to its previous end so that the next records do not
+     * follow an incomplete one.
+     * With the GROUP policy, the records are left in the pending buffer for
+     * the committer.
+     * @return completed once the records are as durable as the policy makes them
+     */
+    private CompletableFuture<Void> write(){
+        version++;
+        if (policy == FsyncPolicy.GROUP){
+            CompletableFuture<Void> durable = new CompletableFuture<>();
+            batch.add(durable);
+            if (batch.size() == 1 || batch.size() >= maxBatchSize){
+                notifyAll();
+            }
+            return durable;
+        }
+        ((Buffer) pending).flip();
+        long end = -1;
+        try {
+            end = channel.position();
+            while (pending.hasRemaining()){
+                channel.write(pending);
+            }
+            if (policy == FsyncPolicy.ALWAYS){
+                channel.force(false);
+            } else {
+                dirty = true;
+            }
+            return WRITTEN;
+        } catch (IOException e) {
+            version--;
+            rollback(end);
+            throw new UncheckedIOException("cannot write to the journal " + directory, e);
+        } finally {
+            ((Buffer) pending).clear();
+        }
+    }
+
+    /**
+     * The loop of the committer with the GROUP policy: wait for a batch to
+     * be full or late enough, write it while holding the journal, then force
+     * it without, so that the next batch is gathered meanwhile
+     */
+    private void commitBatches(){
+        while (true){
+            List<CompletableFuture<Void>> committed;
+            FileChannel target;
+            synchronized (this){
+                try {
+                    while (batch.isEmpty() && !closing){
+                        wait();
+                    }
+                    long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(maxBatchDelay);
+                    long delay;
+                    while (batch.size() < maxBatchSize && !closing && (delay = deadline - System.nanoTime()) > 0){
+                        TimeUnit.NANOSECONDS.timedWait(this, delay);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    closing = true;
+                }
+                if (batch.isEmpty()){
+                    return;
+                }
+                committed = new ArrayList<>(batch);
+                batch.clear();
+                target = channel;
+                writeBatch();
+            }
+            try {
+                target.force(false);
+            } catch (ClosedChannelException e) {
+                // the segment was forced when it was closed by a snapshot
+            } catch (IOException e) {
+                fail(e);
+            }
+            IOException error;
+            synchronized (this){
+                error = failure;
+            }
+            for (CompletableFuture<Void> durable : committed){
+                if (error == null){
+                    durable.complete(null);
+                } else {
+                    durable.completeExceptionally(
+                        new UncheckedIOException("cannot write to the journal " + directory, error));
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the records gathered in the pending buffer, with the GROUP policy
+     */
+    private void writeBatch(){
+        ((Buffer) pending).flip();
+        try {
+            while (pending.hasRemaining()){
+                channel.write(pending);
+            }
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            ((Buffer) pending).clear();
+        }
+    }
+
+    private synchronized void fail(IOException e){
+        logger.log(Level.SEVERE, "Cannot write a batch to the journal " + directory, e);
+        if (failure == null){
+            failure = e;
+        }
+        namedUsers.clear();
+    }
+
+    private void rollback(long end){
+        // the names written with the failed records have to be written again
+        namedUsers.clear();
+        if (end < 0){
+            return;
+        }
+        try {
+            channel.truncate(end);
+            channel.position(end);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Start a snapshot in the background if enough records were written
+     * since the last one. The snapshot is skipped if the previous one is not
+     * complete yet.
+     * @param stack the newest version of the stack
+     * @param stackVersion the version of the stack
+     */
+    synchronized void snapshotIfDue(SocialStack stack, long stackVersion){
+        if (snapshotting || stackVersion != version || version - snapshotVersion < snapshotInterval){
+            return;
+        }
+        long coveredSegment = segment;
+        FileChannel newChannel;
+        try {
+            newChannel = FileChannel.open(path(SEGMENT_PREFIX, coveredSegment + 1, SEGMENT_SUFFIX),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Cannot start a new journal segment, the snapshot is skipped", e);
+            return;
+        }
+        if (policy == FsyncPolicy.GROUP){
+            // the records gathered belong to the segment covered by the snapshot
+            writeBatch();
+        }
+        closeSegment();
+        channel = newChannel;
+        segment = coveredSegment + 1;
+        namedUsers.clear();
+        snapshotting = true;
+        snapshotter.execute(() -> writeSnapshot(stack, stackVersion, coveredSegment));
+    }
+
+    private void writeSnapshot(SocialStack stack, long stackVersion, long coveredSegment){
+        boolean written = false;
+        try {
+            StackImage.write(stack, stackVersion, symbols, path(SNAPSHOT_PREFIX, coveredSegment, SNAPSHOT_SUFFIX));
+            written = true;
+            deleteCoveredFiles(coveredSegment);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Cannot write the snapshot of the journal " + directory, e);
+        } finally {
+            synchronized (this){
+                snapshotting = false;
+                if (written){
+                    snapshotVersion = stackVersion;
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete the segments covered by a snapshot and the older snapshots
+     * @param snapshotSegment the last segment covered by the snapshot, -1 if
+     * there is no snapshot
+     */
+    private void deleteCoveredFiles(long snapshotSegment) throws IOException {
+        for (long covered : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)){
+            if (covered <= snapshotSegment){
+                Files.delete(path(SEGMENT_PREFIX, covered, SEGMENT_SUFFIX));
+            }
+        }
+        for (long older : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)){
+            if (older < snapshotSegment){
+                Files.delete(path(SNAPSHOT_PREFIX, older, SNAPSHOT_SUFFIX));
+            }
+        }
+    }
+
+    /**
+     * @return the numbers of the files of the journal directory with this
+     * prefix and suffix, in ascending order
+     */
+    private List<Long> list(String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)){
+            for (Path file : files){
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    logger.log(Level.WARNING, "Ignoring the unexpected file {0}", file);
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private Path path(String prefix, long number, String suffix){
+        return directory.resolve(String.format("%s%019d%s", prefix, number, suffix));
+    }
+
+    private void syncIfDirty(){
+        if (dirty){
+            dirty = false;
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // the segment was forced when it was closed
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Force the segment being written to the disk and close it
+     */
+    private void closeSegment(){
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            if (policy == FsyncPolicy.GROUP){
+                // the committer relies on this force for the records written before
+                fail(e);
+            } else {
+                logger.log(Level.SEVERE, e.getMessage(), e);
+            }
+        }
+    }
+
+    private static String readString(ByteBuffer content){
+        byte[] bytes = new byte[content.getInt()];
+        content.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Wait for the last batch and the snapshot being written, then force the
+     * records to the disk and close the segment being written
+     * @throws IOException if the segment cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (syncer != null){
+            syncer.shutdown();
+        }
+        if (committer != null){
+            synchronized (this){
+                closing = true;
+                notifyAll();
+            }
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this){
+            if (channel != null && channel.isOpen()){
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package fr.baraud.codurance.monologue.timelines.journal;
+
+import fr.baraud.codurance.monologue.timelines.Cursor;
+import fr.baraud.codurance.monologue.timelines.Page;
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
+
+/**
+ * JournaledSocialStack is a durable SocialStack: it records every post and
+ * follow into a Journal before returning the new version of the stack, and
+ * is rebuilt from the journal when the application starts. The state itself
+ * is kept by another SocialStack, typically a MemorySocialStack, listed to
+ * write the snapshots.
+ * As the journal is a single history, only the newest version of the stack
+ * can be changed.
+ * @see Journal
+ */
+public final class JournaledSocialStack implements SocialStack {
+
+    private final SocialStack stack;
+    private final Journal journal;
+
+    /**
+     * The number of posts and follows recorded up to this version
+     */
+    private final long version;
+
+    /**
+     * Completed once this version is durable
+     */
+    private final CompletableFuture<Void> durable;
+
+    private JournaledSocialStack(SocialStack stack, Journal journal, long version,
+                                 CompletableFuture<Void> durable){
+        this.stack = stack;
+        this.journal = journal;
+        this.version = version;
+        this.durable = durable;
+    }
+
+    /**
+     * Rebuild a stack from a journal, then record its changes into it
+     * @param stack the stack to rebuild on, typically an empty one
+     * @param journal the journal to replay and to append to, not replayed yet
+     * @return the stack with all the posts and follows of the journal
+     * @throws IOException if the journal cannot be read
+     */
+    public static JournaledSocialStack open(SocialStack stack, Journal journal) throws IOException {
+        return open(stack, journal, false);
+    }
+
+    /**
+     * Rebuild a stack from a journal, then record its changes into it
+     * @param stack the stack to rebuild on, typically an empty one
+     * @param journal the journal to replay and to append to, not replayed yet
+     * @param mapped true to read the newest snapshot of the journal in place
+     * instead of loading it, the stack provided being only used if there is
+     * no snapshot yet
+     * @return the stack with all the posts and follows of the journal
+     * @throws IOException if the journal cannot be read
+     * @see fr.baraud.codurance.monologue.timelines.mapped.MappedSocialStack
+     */
+    public static JournaledSocialStack open(SocialStack stack, Journal journal, boolean mapped) throws IOException {
+        SocialStack replayed = journal.replay(stack, mapped);
+        return new JournaledSocialStack(replayed, journal, journal.getVersion(),
+            CompletableFuture.completedFuture(null));
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#post(int, String, Date)
+     * @throws fr.baraud.codurance.monologue.timelines.StaleVersionException
+     * if this is not the newest version
+     * @throws java.io.UncheckedIOException if the post cannot be recorded
+     * @throws IllegalArgumentException if the post is too long to be recorded
+     */
+    @Override
+    public SocialStack post(int user, String message, Date messageTimestamp) {
+        SocialStack newStack = stack.post(user, message, messageTimestamp);
+        if (newStack == stack){
+            return this;
+        }
+        CompletableFuture<Void> newDurable = journal.appendPost(version, user, message, messageTimestamp.getTime());
+        journal.snapshotIfDue(newStack, version + 1);
+        return new JournaledSocialStack(newStack, journal, version + 1, newDurable);
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#follow(int, int)
+     * @throws fr.baraud.codurance.monologue.timelines.StaleVersionException
+     * if this is not the newest version
+     * @throws java.io.UncheckedIOException if the follow cannot be recorded
+     * @throws IllegalArgumentException if a user name is too long to be recorded
+     */
+    @Override
+    public SocialStack follow(int user, int following) {
+        SocialStack newStack = stack.follow(user, following);
+        if (newStack == stack){
+            return this;
+        }
+        CompletableFuture<Void> newDurable = journal.appendFollow(version, user, following);
+        journal.snapshotIfDue(newStack, version + 1);
+        return new JournaledSocialStack(newStack, journal, version + 1, newDurable);
+    }
+
+    /**
+     * With the GROUP policy, the posts and follows of concurrent writers are
+     * forced together: a writer should release the newest version of the
+     * stack to the other writers before waiting for its own.
+     * @return completed once this version of the stack is as durable as the
+     * FsyncPolicy of the journal makes it, or completed exceptionally with
+     * an UncheckedIOException if it cannot be written
+     */
+    @Override
+    public CompletableFuture<Void> whenDurable() {
+        return durable;
+    }
+
+    @Override
+    public Timeline getTimeline(int user) {
+        return stack.getTimeline(user);
+    }
+
+    @Override
+    public Timeline getWall(int user) {
+        return stack.getWall(user);
+    }
+
+    @Override
+    public Page getTimeline(int user, int limit, Cursor cursor) {
+        return stack.getTimeline(user, limit, cursor);
+    }
+
+    @Override
+    public Page getWall(int user, int limit, Cursor cursor) {
+        return stack.getWall(user, limit, cursor);
+    }
+
+    @Override
+    public Timeline refreshWall(int user, Timeline previousWall) {
+        return stack.refreshWall(user, previousWall);
+    }
+
+    @Override
+    public boolean userExist(int user) {
+        return stack.userExist(user);
+    }
+
+    @Override
+    public void forEachUser(IntConsumer action) {
+        stack.forEachUser(action);
+    }
+
+    @Override
+    public void forEachFollowed(int user, IntConsumer action) {
+        stack.forEachFollowed(user, action);
+    }
+}
@@ -0,0 +1,192 @@
+package fr.baraud.codurance.monologue.timelines.mapped;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.WallMerger;
+import fr.baraud.codurance.monologue.timelines.memory.PersistentHashMap;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.function.IntConsumer;
+
+/**
+ * MappedSocialStack serves the users, timelines and follows of a StackImage
+ * read in place, with the posts and follows made since kept in memory on top
+ * of it: opening it costs nothing whatever the size of the image.
+ * A new post is linked in front of the timeline read from the image, and a
+ * new follow is added after the follows of the image. As the image only
+ * knows the user names, they are resolved to identifiers through the
+ * SymbolTable when read, the image being the directory of the table for
+ * the names not interned yet. The walls are merged when read.
+ * It is immutable, so if the state change, a new instance is returned.
+ * @see StackImage
+ */
+public final class MappedSocialStack implements SocialStack {
+
+    private static final int[] NO_FOLLOW = new int[0];
+
+    private final StackImage image;
+    private final SymbolTable symbols;
+
+    /**
+     * The timelines of the users who posted since the image, indexed by
+     * their identifier. They continue with the timelines of the image.
+     */
+    private final PersistentHashMap<Integer, Timeline> timelines;
+
+    /**
+     * The identifiers of the users followed since the image, indexed by the
+     * follower identifier, the first followed first
+     */
+    private final PersistentHashMap<Integer, int[]> following;
+
+    /**
+     * A stack serving an image, without any change yet
+     * @param image the image to read in place
+     * @param symbols the table of the user names, shared with the user
+     * interface, whose directory becomes the image
+     */
+    public MappedSocialStack(StackImage image, SymbolTable symbols){
+        this(image, symbols, PersistentHashMap.empty(), PersistentHashMap.empty());
+        symbols.setDirectory(name -> image.indexOf(name) >= 0);
+    }
+
+    private MappedSocialStack(StackImage image, SymbolTable symbols,
+                              PersistentHashMap<Integer, Timeline> timelines,
+                              PersistentHashMap<Integer, int[]> following){
+        this.image = image;
+        this.symbols = symbols;
+        this.timelines = timelines;
+        this.following = following;
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#post(int, String, Date)
+     */
+    @Override
+    public SocialStack post(int user, String message, Date messageTimestamp) {
+        if (message == null || message.isEmpty()){
+            return this;
+        }
+        Timeline timeline = new Timeline(message, user, messageTimestamp, getTimeline(user));
+        return new MappedSocialStack(image, symbols, timelines.put(user, timeline), following);
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#follow(int, int)
+     */
+    @Override
+    public SocialStack follow(int user, int toFollow) {
+        if (user == toFollow || !userExist(user) || !userExist(toFollow) || isFollowing(user, toFollow)){
+            return this;
+        }
+        int[] follows = following.get(user);
+        int[] newFollows = follows == null ? new int[1] : Arrays.copyOf(follows, follows.length + 1);
+        newFollows[newFollows.length - 1] = toFollow;
+        return new MappedSocialStack(image, symbols, timelines, following.put(user, newFollows));
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#getTimeline(int)
+     */
+    @Override
+    public Timeline getTimeline(int user) {
+        Timeline timeline = timelines.get(user);
+        if (timeline != null){
+            return timeline;
+        }
+        int index = imageIndex(user);
+        return index < 0 ? null : image.getTimeline(index, user);
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#getWall(int)
+     */
+    @Override
+    public Timeline getWall(int user) {
+        Timeline timeline = getTimeline(user);
+        if (timeline == null){
+            return null;
+        }
+        WallMerger wall = new WallMerger().add(timeline);
+        forEachFollowed(user, followed -> wall.add(getTimeline(followed)));
+        return wall.merge();
+    }
+
+    /**
+     * See {@link SocialStack#userExist(int)}
+     */
+    @Override
+    public boolean userExist(int user) {
+        return timelines.containsKey(user) || imageIndex(user) >= 0;
+    }
+
+    /**
+     * See {@link SocialStack#forEachUser(IntConsumer)}. The users of the
+     * image are interned into the SymbolTable.
+     */
+    @Override
+    public void forEachUser(IntConsumer action) {
+        for (int index = 0; index < image.getUserCount(); index++){
+            action.accept(symbols.intern(image.nameOf(index)));
+        }
+        timelines.forEach((user, timeline) -> {
+            if (imageIndex(user) < 0){
+                action.accept(user);
+            }
+        });
+    }
+
+    /**
+     * See {@link SocialStack#forEachFollowed(int, IntConsumer)}. The users
+     * followed in the image are interned into the SymbolTable.
+     */
+    @Override
+    public void forEachFollowed(int user, IntConsumer action) {
+        int index = imageIndex(user);
+        if (index >= 0){
+            for (int follow = 0; follow < image.followCount(index); follow++){
+                action.accept(symbols.intern(image.nameOf(image.followed(index, follow))));
+            }
+        }
+        int[] follows = following.get(user);
+        for (int followed : follows == null ? NO_FOLLOW : follows){
+            action.accept(followed);
+        }
+    }
+
+    private boolean isFollowing(int user, int toFollow){
+        int[] follows = following.get(user);
+        if (follows != null){
+            for (int followed : follows){
+                if (followed == toFollow){
+                    return true;
+                }
+            }
+        }
+        int index = imageIndex(user);
+        int followedIndex = imageIndex(toFollow);
+        if (index < 0 || followedIndex < 0){
+            return false;
+        }
+        for (int follow = 0; follow < image.followCount(index); follow++){
+            if (image.followed(index, follow) == followedIndex){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param user the identifier of a user
+     * @return the position of the user in the image, or -1 if he/she is not
+     * in the image
+     */
+    private int imageIndex(int user){
+        if (user < 0 || user >= symbols.size()){
+            return -1;
+        }
+        return image.indexOf(symbols.nameOf(user));
+    }
+}
@@ -0,0 +1,58 @@
+package fr.baraud.codurance.monologue.timelines.mapped;
+
+import fr.baraud.codurance.monologue.timelines.Timeline;
+
+import java.util.Date;
+
+/**
+ * A MappedTimeline is a post read in place from a StackImage: its message is
+ * decoded each time it is read, and the history is only walked on demand.
+ */
+final class MappedTimeline extends Timeline {
+
+    private final StackImage image;
+    private final int user;
+
+    /**
+     * The position of the post among the posts of the image
+     */
+    private final long post;
+
+    /**
+     * The number of posts from this one to the oldest of the timeline
+     */
+    private final int remaining;
+
+    MappedTimeline(StackImage image, int user, long post, int remaining){
+        super(null, user, null, null);
+        this.image = image;
+        this.user = user;
+        this.post = post;
+        this.remaining = remaining;
+    }
+
+    @Override
+    public String getMessage() {
+        return image.postMessage(post);
+    }
+
+    @Override
+    public int getUser() {
+        return user;
+    }
+
+    @Override
+    public Date getMessageTimestamp() {
+        return new Date(getTimestamp());
+    }
+
+    @Override
+    public long getTimestamp() {
+        return image.postTimestamp(post);
+    }
+
+    @Override
+    public Timeline getNext() {
+        return remaining > 1 ? new MappedTimeline(image, user, post + 1, remaining - 1) : null;
+    }
+}
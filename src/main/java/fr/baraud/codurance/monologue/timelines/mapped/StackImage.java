@@ -0,0 +1,411 @@
+package fr.baraud.codurance.monologue.timelines.mapped;
+
+import fr.baraud.codurance.monologue.timelines.Batch;
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A StackImage is a read-only copy of a version of a SocialStack laid out to
+ * be memory-mapped and read in place: nothing is loaded when it is opened,
+ * the operating system pages the data in when it is first read.
+ * The file holds, after a header:
+ * <ul>
+ *     <li>the user directory, sorted by name, with for each user the
+ *     position of his/her name, follows and posts</li>
+ *     <li>the follows of all the users in a single array of user positions,
+ *     the first followed first (a compressed sparse row graph)</li>
+ *     <li>the posts of all the users, each user's newest first, as fixed size
+ *     records of the timestamp and the position of the message</li>
+ *     <li>the names and the messages, encoded in UTF-8</li>
+ * </ul>
+ * The users are numbered by their position in the directory, the identifiers
+ * of the SymbolTable being only valid until the application stops.
+ * @see MappedSocialStack
+ */
+public final class StackImage {
+
+    // "MONOIMG" in ASCII, then the byte 1
+    private static final long MAGIC = 0x4d4f4e4f494d4701L;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int USER_RECORD_SIZE = 32;
+    private static final int POST_RECORD_SIZE = 20;
+
+    /**
+     * The size of the mapped regions, a buffer being limited to 2 GB
+     */
+    static final int REGION_SIZE = 1 << 30;
+
+    /**
+     * The regions overlap by the size of the largest record, so that any
+     * record can be read from a single region
+     */
+    private static final int REGION_OVERLAP = USER_RECORD_SIZE;
+
+    private final ByteBuffer[] regions;
+    private final int regionSize;
+    private final int userCount;
+    private final long version;
+    private final long followsOffset;
+    private final long postsOffset;
+
+    private StackImage(ByteBuffer[] regions, int regionSize){
+        this.regions = regions;
+        this.regionSize = regionSize;
+        this.userCount = getInt(12);
+        this.version = getLong(16);
+        this.followsOffset = getLong(24);
+        this.postsOffset = getLong(32);
+    }
+
+    /**
+     * Map an image file
+     * @param file the image file
+     * @return the image, whose content is read lazily
+     * @throws IOException if the file cannot be mapped, or is not an image
+     */
+    public static StackImage open(Path file) throws IOException {
+        return open(file, REGION_SIZE);
+    }
+
+    /**
+     * @param regionSize the size of the mapped regions, should be more than
+     * the header
+     */
+    static StackImage open(Path file, int regionSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            long size = channel.size();
+            if (size < HEADER_SIZE){
+                throw new IOException(file + " is not an image of a social stack");
+            }
+            ByteBuffer[] regions = new ByteBuffer[(int) ((size - 1) / regionSize + 1)];
+            for (int i = 0; i < regions.length; i++){
+                long start = (long) i * regionSize;
+                regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(regionSize + REGION_OVERLAP, size - start));
+            }
+            StackImage image = new StackImage(regions, regionSize);
+            if (image.getLong(0) != MAGIC || image.getInt(8) != FORMAT_VERSION || image.getLong(40) != size){
+                throw new IOException(file + " is not a complete image of this version of Monologue");
+            }
+            return image;
+        }
+    }
+
+    /**
+     * @return the version of the journal matching the image
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the number of users in the image
+     */
+    int getUserCount() {
+        return userCount;
+    }
+
+    /**
+     * Look for a user in the directory, by binary search
+     * @param name the name of the user
+     * @return the position of the user, or -1 if he/she is not in the image
+     */
+    int indexOf(String name){
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = userCount - 1;
+        while (low <= high){
+            int middle = (low + high) >>> 1;
+            long record = userRecord(middle);
+            int comparison = compare(getLong(record), getInt(record + 8), key);
+            if (comparison < 0){
+                low = middle + 1;
+            } else if (comparison > 0){
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index the position of a user
+     * @return the name of the user
+     */
+    String nameOf(int index){
+        long record = userRecord(index);
+        return getString(getLong(record), getInt(record + 8));
+    }
+
+    /**
+     * @param index the position of a user
+     * @param user the identifier of the user in the SymbolTable
+     * @return the timeline of the user, read in place, or null if it is empty
+     */
+    Timeline getTimeline(int index, int user){
+        long record = userRecord(index);
+        int postCount = getInt(record + 20);
+        return postCount == 0 ? null : new MappedTimeline(this, user, getLong(record + 24), postCount);
+    }
+
+    /**
+     * @param index the position of a user
+     * @return the number of users he/she follows
+     */
+    int followCount(int index){
+        return getInt(userRecord(index) + 16);
+    }
+
+    /**
+     * @param index the position of a user
+     * @param follow the rank of the follow, 0 for the first followed user
+     * @return the position of the followed user
+     */
+    int followed(int index, int follow){
+        long first = getInt(userRecord(index) + 12);
+        return getInt(followsOffset + (first + follow) * 4);
+    }
+
+    long postTimestamp(long post){
+        return getLong(postsOffset + post * POST_RECORD_SIZE);
+    }
+
+    String postMessage(long post){
+        long record = postsOffset + post * POST_RECORD_SIZE;
+        return getString(getLong(record + 8), getInt(record + 16));
+    }
+
+    /**
+     * Rebuild the content of the image in another stack, posting the
+     * messages of each user oldest first
+     * @param stack the stack to rebuild on, typically an empty one
+     * @param symbols the table where to intern the user names
+     * @return the stack with all the posts and follows of the image
+     */
+    public SocialStack load(SocialStack stack, SymbolTable symbols){
+        int[] users = new int[userCount];
+        Batch batch = stack.batch();
+        for (int index = 0; index < userCount; index++){
+            users[index] = symbols.intern(nameOf(index));
+            long record = userRecord(index);
+            long first = getLong(record + 24);
+            for (long post = first + getInt(record + 20) - 1; post >= first; post--){
+                batch.post(users[index], postMessage(post), new Date(postTimestamp(post)));
+            }
+        }
+        for (int index = 0; index < userCount; index++){
+            for (int follow = 0; follow < followCount(index); follow++){
+                batch.follow(users[index], users[followed(index, follow)]);
+            }
+        }
+        return batch.freeze();
+    }
+
+    /**
+     * Write a version of a stack into an image file. The file is written
+     * aside and then renamed, so that it is either complete or absent.
+     * The timelines are walked three times, to lay out each section without
+     * holding the posts in memory.
+     * @param stack the version of the stack to save, which should support
+     * the listing operations
+     * @param version the version of the journal matching the stack
+     * @param symbols the table of the user names
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(SocialStack stack, long version, SymbolTable symbols, Path file) throws IOException {
+        byte[][] userNames = new byte[symbols.size()][];
+        List<Integer> users = new ArrayList<>();
+        stack.forEachUser(user -> {
+            users.add(user);
+            userNames[user] = symbols.nameOf(user).getBytes(StandardCharsets.UTF_8);
+        });
+        users.sort((left, right) -> compare(userNames[left], userNames[right]));
+        List<byte[]> names = new ArrayList<>();
+        for (int user : users){
+            names.add(userNames[user]);
+        }
+        int[] indexes = new int[symbols.size()];
+        for (int index = 0; index < users.size(); index++){
+            indexes[users.get(index)] = index;
+        }
+        int[][] follows = new int[users.size()][];
+        int[] postCounts = new int[users.size()];
+        long followTotal = 0;
+        long postTotal = 0;
+        long nameBytes = 0;
+        for (int index = 0; index < users.size(); index++){
+            List<Integer> followed = new ArrayList<>();
+            stack.forEachFollowed(users.get(index), followed::add);
+            follows[index] = followed.stream().mapToInt(user -> indexes[user]).toArray();
+            followTotal += follows[index].length;
+            for (Timeline post = stack.getTimeline(users.get(index)); post != null; post = post.getNext()){
+                postCounts[index]++;
+            }
+            postTotal += postCounts[index];
+            nameBytes += names.get(index).length;
+        }
+        long followsOffset = HEADER_SIZE + (long) users.size() * USER_RECORD_SIZE;
+        long postsOffset = followsOffset + followTotal * 4;
+        long stringsOffset = postsOffset + postTotal * POST_RECORD_SIZE;
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            // the length of the file is only known once the messages are written
+            out.write(new byte[HEADER_SIZE]);
+            long nameOffset = stringsOffset;
+            int followStart = 0;
+            long postStart = 0;
+            for (int index = 0; index < users.size(); index++){
+                out.writeLong(nameOffset);
+                out.writeInt(names.get(index).length);
+                out.writeInt(followStart);
+                out.writeInt(follows[index].length);
+                out.writeInt(postCounts[index]);
+                out.writeLong(postStart);
+                nameOffset += names.get(index).length;
+                followStart += follows[index].length;
+                postStart += postCounts[index];
+            }
+            for (int[] followed : follows){
+                for (int index : followed){
+                    out.writeInt(index);
+                }
+            }
+            long messageOffset = stringsOffset + nameBytes;
+            for (int user : users){
+                for (Timeline post = stack.getTimeline(user); post != null; post = post.getNext()){
+                    int length = utf8Length(post.getMessage());
+                    out.writeLong(post.getTimestamp());
+                    out.writeLong(messageOffset);
+                    out.writeInt(length);
+                    messageOffset += length;
+                }
+            }
+            for (byte[] name : names){
+                out.write(name);
+            }
+            for (int user : users){
+                for (Timeline post = stack.getTimeline(user); post != null; post = post.getNext()){
+                    out.write(post.getMessage().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC).putInt(FORMAT_VERSION).putInt(users.size()).putLong(version)
+                .putLong(followsOffset).putLong(postsOffset).putLong(messageOffset);
+            ((Buffer) header).flip();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return the number of bytes of a string encoded in UTF-8, without
+     * encoding it
+     */
+    private static int utf8Length(String value){
+        int length = 0;
+        for (int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if (c < 0x80){
+                length++;
+            } else if (c < 0x800){
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(i + 1))){
+                length += 4;
+                i++;
+            } else {
+                // a lone surrogate is encoded as '?'
+                length += Character.isSurrogate(c) ? 1 : 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Compare two names by their UTF-8 bytes, which is the order of their
+     * code points
+     */
+    private static int compare(byte[] left, byte[] right){
+        int length = Math.min(left.length, right.length);
+        for (int i = 0; i < length; i++){
+            if (left[i] != right[i]){
+                return Integer.compare(left[i] & 0xff, right[i] & 0xff);
+            }
+        }
+        return Integer.compare(left.length, right.length);
+    }
+
+    /**
+     * Compare a name of the image with a name, without decoding it
+     */
+    private int compare(long offset, int length, byte[] key){
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++){
+            byte b = getByte(offset + i);
+            if (b != key[i]){
+                return Integer.compare(b & 0xff, key[i] & 0xff);
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    private long userRecord(int index){
+        return HEADER_SIZE + (long) index * USER_RECORD_SIZE;
+    }
+
+    private byte getByte(long position){
+        return regions[(int) (position / regionSize)].get((int) (position % regionSize));
+    }
+
+    private int getInt(long position){
+        return regions[(int) (position / regionSize)].getInt((int) (position % regionSize));
+    }
+
+    private long getLong(long position){
+        return regions[(int) (position / regionSize)].getLong((int) (position % regionSize));
+    }
+
+    private String getString(long position, int length){
+        byte[] bytes = new byte[length];
+        ByteBuffer region = regions[(int) (position / regionSize)];
+        int offset = (int) (position % regionSize);
+        if (offset + length <= region.limit()){
+            ByteBuffer view = region.duplicate();
+            ((Buffer) view).position(offset);
+            view.get(bytes);
+        } else {
+            // the string spans several regions
+            for (int i = 0; i < length; i++){
+                bytes[i] = getByte(position + i);
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
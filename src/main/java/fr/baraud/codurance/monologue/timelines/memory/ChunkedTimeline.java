@@ -0,0 +1,235 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+import fr.baraud.codurance.monologue.timelines.Timeline;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * ChunkedTimeline is a view on a post stored in a chunk of parallel arrays
+ * (timestamps, messages and authors) instead of a linked Timeline node.
+ * The chunks of a timeline are linked from the newest to the oldest, and are
+ * only appended to: every version of the timeline shares them, a version
+ * being only the position of its newest post. The first chunks are small so
+ * that the users who post little do not waste space, the next ones double in
+ * size up to a maximum.
+ * The messages can be kept out of the heap in a MessageArena, they are then
+ * decoded each time getMessage() is called.
+ * The views are created when the timeline is read, they are not retained.
+ */
+final class ChunkedTimeline extends Timeline {
+
+    private static final int FIRST_CHUNK_CAPACITY = 2;
+    private static final int MAX_CHUNK_CAPACITY = 256;
+
+    private final Chunk chunk;
+    private final int index;
+
+    private ChunkedTimeline(Chunk chunk, int index){
+        super(null, 0, null, null);
+        this.chunk = chunk;
+        this.index = index;
+    }
+
+    /**
+     * Append a post to a chunked timeline, keeping the messages in the heap
+     * and all the older posts
+     * @see #append(Timeline, int, String, long, MessageArena, long)
+     */
+    static ChunkedTimeline append(Timeline timeline, int author, String message, long timestamp){
+        return append(timeline, author, message, timestamp, null, Long.MAX_VALUE);
+    }
+
+    /**
+     * Append a post to a chunked timeline. When the version appended to is
+     * the newest one, the post is written in place in its last chunk.
+     * Otherwise another version was already appended to this one, and only
+     * the last chunk is copied: the older chunks are still shared.
+     * When a new chunk is started, the older chunks whose posts are all
+     * older than the retention are dropped from the new version.
+     * @param timeline the timeline to append to, null for an empty one
+     * @param author the identifier of the author
+     * @param message the message of the post
+     * @param timestamp the time of the post, in ms since the epoch
+     * @param arena the arena where to store the message, null to keep it in
+     * the heap. All the versions of a timeline should use the same.
+     * @param retention the minimum time in ms the posts are kept
+     * @return the new version of the timeline
+     * @throws IllegalArgumentException if the timeline is not a chunked one
+     */
+    static ChunkedTimeline append(Timeline timeline, int author, String message, long timestamp,
+                                  MessageArena arena, long retention){
+        if (timeline != null && !(timeline instanceof ChunkedTimeline)){
+            throw new IllegalArgumentException("only a chunked timeline can be appended to");
+        }
+        Chunk chunk;
+        int slot;
+        if (timeline == null){
+            chunk = new Chunk(FIRST_CHUNK_CAPACITY, null, arena != null);
+            slot = 0;
+        } else {
+            ChunkedTimeline head = (ChunkedTimeline) timeline;
+            chunk = head.chunk;
+            slot = head.index + 1;
+            if (slot == chunk.capacity()){
+                chunk = new Chunk(Math.min(chunk.capacity() * 2, MAX_CHUNK_CAPACITY),
+                    retain(chunk, timestamp - retention), arena != null);
+                slot = 0;
+            }
+        }
+        if (!chunk.claim(slot)){
+            chunk = chunk.copy(slot);
+        }
+        chunk.timestamps[slot] = timestamp;
+        chunk.authors[slot] = author;
+        if (arena == null){
+            chunk.messages[slot] = message;
+        } else {
+            chunk.segments[slot] = arena.store(message, chunk.messageReferences, slot);
+        }
+        return new ChunkedTimeline(chunk, slot);
+    }
+
+    /**
+     * @param newest the newest chunk of a timeline, full
+     * @param horizon the time before which the posts can be dropped
+     * @return the newest chunk of a timeline without the chunks whose posts
+     * are all older than the horizon. The chunks kept share the posts of the
+     * original ones.
+     */
+    private static Chunk retain(Chunk newest, long horizon){
+        Deque<Chunk> kept = new ArrayDeque<>();
+        Chunk chunk = newest;
+        // the newest post of a full chunk is its last one
+        while (chunk != null && chunk.timestamps[chunk.capacity() - 1] >= horizon){
+            kept.push(chunk);
+            chunk = chunk.previous;
+        }
+        if (chunk == null){
+            return newest;
+        }
+        Chunk result = null;
+        while (!kept.isEmpty()){
+            result = new Chunk(kept.pop(), result);
+        }
+        return result;
+    }
+
+    @Override
+    public String getMessage() {
+        return chunk.message(index);
+    }
+
+    @Override
+    public int getUser() {
+        return chunk.authors[index];
+    }
+
+    @Override
+    public Date getMessageTimestamp() {
+        return new Date(chunk.timestamps[index]);
+    }
+
+    @Override
+    public long getTimestamp() {
+        return chunk.timestamps[index];
+    }
+
+    @Override
+    public Timeline getNext() {
+        if (index > 0){
+            return new ChunkedTimeline(chunk, index - 1);
+        }
+        Chunk previous = chunk.previous;
+        // the previous chunks are always full
+        return previous == null ? null : new ChunkedTimeline(previous, previous.capacity() - 1);
+    }
+
+    /**
+     * A chunk of posts in parallel arrays, filled from index 0. The messages
+     * are either in the messages array, or in the arena segments with their
+     * references.
+     */
+    private static final class Chunk {
+
+        private static final AtomicIntegerFieldUpdater<Chunk> USED =
+            AtomicIntegerFieldUpdater.newUpdater(Chunk.class, "used");
+
+        private final long[] timestamps;
+        private final int[] authors;
+        private final String[] messages;
+        private final MessageArena.Segment[] segments;
+        private final long[] messageReferences;
+
+        /**
+         * The older chunk, null for the first one
+         */
+        private final Chunk previous;
+
+        /**
+         * The number of slots claimed by a version of the timeline
+         */
+        private volatile int used;
+
+        Chunk(int capacity, Chunk previous, boolean offHeap){
+            this.timestamps = new long[capacity];
+            this.authors = new int[capacity];
+            this.messages = offHeap ? null : new String[capacity];
+            this.segments = offHeap ? new MessageArena.Segment[capacity] : null;
+            this.messageReferences = offHeap ? new long[capacity] : null;
+            this.previous = previous;
+        }
+
+        /**
+         * A full chunk sharing the posts of another one, with another
+         * previous chunk
+         */
+        Chunk(Chunk posts, Chunk previous){
+            this.timestamps = posts.timestamps;
+            this.authors = posts.authors;
+            this.messages = posts.messages;
+            this.segments = posts.segments;
+            this.messageReferences = posts.messageReferences;
+            this.previous = previous;
+            this.used = posts.capacity();
+        }
+
+        int capacity(){
+            return timestamps.length;
+        }
+
+        String message(int index){
+            return messages != null ? messages[index] : segments[index].read(messageReferences[index]);
+        }
+
+        /**
+         * @param slot the slot following the newest post of a version
+         * @return true if the slot was free and is now claimed by the
+         * caller, false if another version already uses it
+         */
+        boolean claim(int slot){
+            return USED.compareAndSet(this, slot, slot + 1);
+        }
+
+        /**
+         * @param length the number of posts to keep
+         * @return a copy of the chunk with only its first posts, the
+         * following slot already claimed
+         */
+        Chunk copy(int length){
+            Chunk copy = new Chunk(capacity(), previous, messages == null);
+            System.arraycopy(timestamps, 0, copy.timestamps, 0, length);
+            System.arraycopy(authors, 0, copy.authors, 0, length);
+            if (messages != null){
+                System.arraycopy(messages, 0, copy.messages, 0, length);
+            } else {
+                System.arraycopy(segments, 0, copy.segments, 0, length);
+                System.arraycopy(messageReferences, 0, copy.messageReferences, 0, length);
+            }
+            copy.used = length + 1;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+/**
+ * FollowList is the immutable list of the users followed by one user, most
+ * recently followed first. Following someone new only allocates one node,
+ * the rest of the list is shared with the previous version.
+ * It stores identifiers and not users, so that it does not retain outdated
+ * versions of the followed users and their timelines.
+ * A list built by #indexed(int, FollowList) also keeps, once it is long
+ * enough, a persistent set of its users shared with the previous version,
+ * so that looking a user up does not walk the whole list.
+ */
+final class FollowList {
+
+    // the size from which an indexed list keeps the set of its users, shorter lists being walked
+    static final int INDEX_THRESHOLD = 16;
+
+    private final int followed;
+    private final FollowList next;
+    private final int size;
+
+    /**
+     * The users of the list, null if the list is not indexed or too short
+     */
+    private final PersistentHashMap<Integer, Boolean> index;
+
+    /**
+     * @param followed the identifier of the followed user
+     * @param next the users followed before, null if none
+     */
+    FollowList(int followed, FollowList next){
+        this(followed, next, null);
+    }
+
+    private FollowList(int followed, FollowList next, PersistentHashMap<Integer, Boolean> index){
+        this.followed = followed;
+        this.next = next;
+        this.size = size(next) + 1;
+        this.index = index;
+    }
+
+    /**
+     * A list whose users are looked up in O(log32 n) once it reaches
+     * INDEX_THRESHOLD users. The set is built once when the list reaches
+     * this size, then one path of it is copied by each user added.
+     * @param followed the identifier of the followed user
+     * @param next the users followed before, null if none, indexed too
+     * @return the list of the followed user then the users of next
+     */
+    static FollowList indexed(int followed, FollowList next){
+        if (size(next) + 1 < INDEX_THRESHOLD){
+            return new FollowList(followed, next);
+        }
+        PersistentHashMap<Integer, Boolean> index = next.index;
+        if (index == null){
+            index = PersistentHashMap.empty();
+            for (FollowList current = next; current != null; current = current.getNext()){
+                index = index.put(current.getFollowed(), Boolean.TRUE);
+            }
+        }
+        return new FollowList(followed, next, index.put(followed, Boolean.TRUE));
+    }
+
+    int getFollowed() {
+        return followed;
+    }
+
+    FollowList getNext() {
+        return next;
+    }
+
+    /**
+     * @param follows the list to count, can be null for an empty list
+     * @return the number of users in the list
+     */
+    static int size(FollowList follows){
+        return follows == null ? 0 : follows.size;
+    }
+
+    /**
+     * @param follows the list to look into, can be null for an empty list
+     * @param user the identifier of the user to find
+     * @return true if the user is part of the list
+     */
+    static boolean contains(FollowList follows, int user){
+        if (follows != null && follows.index != null){
+            return follows.index.containsKey(user);
+        }
+        for (FollowList current = follows; current != null; current = current.getNext()){
+            if (current.getFollowed() == user){
+                return true;
+            }
+        }
+        return false;
+    }
+}
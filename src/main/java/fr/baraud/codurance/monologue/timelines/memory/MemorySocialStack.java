@@ -1,10 +1,13 @@
 package fr.baraud.codurance.monologue.timelines.memory;
 
+import fr.baraud.codurance.monologue.timelines.Batch;
 import fr.baraud.codurance.monologue.timelines.Timeline;
 import fr.baraud.codurance.monologue.timelines.SocialStack;
 import fr.baraud.codurance.monologue.timelines.User;
+import fr.baraud.codurance.monologue.timelines.WallMerger;
 
 import java.util.*;
+import java.util.function.IntConsumer;
 
 /**
  * MemorySocialStack is a representation of a state of the history of Monologue
@@ -12,117 +15,502 @@ import java.util.*;
  * It does not store this info in a database so once it's no longer referenced
  * it is removed from the memory and the state is lost.
  * It is immutable, so if the state change, a new instance should be created.
+ * The walls are either merged when read or materialized when posting,
+ * depending on the WallDelivery chosen at creation, and the personal
+ * timelines are stored as chosen by the TimelineStorage.
+ * @see WallDelivery
+ * @see TimelineStorage
  */
 public class MemorySocialStack implements SocialStack {
 
     /**
-     * A list of users indexed by their name.
+     * The number of followers from which the posts of a user are no longer
+     * pushed with the HYBRID delivery, when no other threshold is provided
+     */
+    public static final int DEFAULT_CELEBRITY_THRESHOLD = 1000;
+
+    /**
+     * The retention keeping the posts forever
+     */
+    public static final long KEEP_ALL_POSTS = Long.MAX_VALUE;
+
+    /**
+     * A list of users indexed by their identifier. Being persistent, it is shared
+     * with the previous and next versions of the stack.
      * @see fr.baraud.codurance.monologue.timelines.User
      */
-    private final Map<String, User> users;
+    private final PersistentHashMap<Integer, User> users;
+
+    /**
+     * The identifiers of the users followed by each user, indexed by the
+     * follower identifier. It is kept apart from the users so that a post does not outdate
+     * the follows, the followed timelines are resolved when reading the wall.
+     */
+    private final PersistentHashMap<Integer, FollowList> following;
+
+    /**
+     * The reverse of the following index: the identifiers of the followers
+     * of each user, indexed by the followed user identifier.
+     */
+    private final PersistentHashMap<Integer, FollowList> followers;
+
+    /**
+     * The materialized walls indexed by their owner identifier, only filled
+     * with the PUSH and HYBRID deliveries. With HYBRID, they can contain
+     * outdated posts from users who have become celebrities since.
+     */
+    private final PersistentHashMap<Integer, Timeline> inboxes;
+
+    private final WallDelivery delivery;
+
+    private final TimelineStorage storage;
+
+    /**
+     * Where the messages are stored with the OFF_HEAP storage, null otherwise.
+     * It is shared by all the versions of the stack.
+     */
+    private final MessageArena arena;
+
+    /**
+     * The minimum time in ms the posts are kept, only applied by the CHUNKED
+     * and OFF_HEAP storages
+     */
+    private final long retention;
+
+    /**
+     * The number of followers from which a user is a celebrity with the
+     * HYBRID delivery
+     */
+    private final int celebrityThreshold;
 
     public MemorySocialStack(){
-        this.users = new HashMap<>();
+        this(WallDelivery.PULL);
+    }
+
+    /**
+     * An empty stack building the walls with the provided delivery
+     * @param delivery the way the walls are built
+     */
+    public MemorySocialStack(WallDelivery delivery){
+        this(delivery, DEFAULT_CELEBRITY_THRESHOLD);
+    }
+
+    /**
+     * An empty stack building the walls with the provided delivery
+     * @param delivery the way the walls are built
+     * @param celebrityThreshold the number of followers from which the posts
+     * of a user are merged when reading the walls instead of being pushed,
+     * only used by the HYBRID delivery
+     */
+    public MemorySocialStack(WallDelivery delivery, int celebrityThreshold){
+        this(delivery, celebrityThreshold, TimelineStorage.LINKED);
+    }
+
+    /**
+     * An empty stack building the walls with the provided delivery and
+     * storing the timelines with the provided storage
+     * @param delivery the way the walls are built
+     * @param celebrityThreshold the number of followers from which the posts
+     * of a user are merged when reading the walls instead of being pushed,
+     * only used by the HYBRID delivery
+     * @param storage the way the personal timelines are stored
+     */
+    public MemorySocialStack(WallDelivery delivery, int celebrityThreshold, TimelineStorage storage){
+        this(delivery, celebrityThreshold, storage, KEEP_ALL_POSTS);
+    }
+
+    /**
+     * An empty stack building the walls with the provided delivery and
+     * storing the timelines with the provided storage, dropping the old posts
+     * @param delivery the way the walls are built
+     * @param celebrityThreshold the number of followers from which the posts
+     * of a user are merged when reading the walls instead of being pushed,
+     * only used by the HYBRID delivery
+     * @param storage the way the personal timelines are stored
+     * @param retention the minimum time in ms the posts are kept, only
+     * applied by the CHUNKED and OFF_HEAP storages. The older posts of a user
+     * are dropped by whole chunks, when he/she posts.
+     */
+    public MemorySocialStack(WallDelivery delivery, int celebrityThreshold, TimelineStorage storage,
+                             long retention){
+        this(PersistentHashMap.empty(), PersistentHashMap.empty(), PersistentHashMap.empty(),
+            PersistentHashMap.empty(), delivery, celebrityThreshold, storage,
+            storage == TimelineStorage.OFF_HEAP ? new MessageArena() : null, retention);
     }
 
     /**
      * An existing list of users, that can be the result of a previous state
      * @param users existing users, can be an empty list but should not be null
      */
-    MemorySocialStack(Map<String, User> users){
+    MemorySocialStack(Map<Integer, User> users){
+        this(users, Collections.emptyMap());
+    }
+
+    /**
+     * An existing list of users and their follows, that can be the result of
+     * a previous state. The walls are merged when read.
+     * @param users existing users, can be an empty list but should not be null
+     * @param following the identifiers of the users followed by each user,
+     * can be an empty list but should not be null
+     */
+    MemorySocialStack(Map<Integer, User> users, Map<Integer, List<Integer>> following){
+        this(PersistentHashMap.fromMap(users), toFollowLists(following, false),
+            toFollowLists(following, true), PersistentHashMap.empty(), WallDelivery.PULL,
+            DEFAULT_CELEBRITY_THRESHOLD, TimelineStorage.LINKED, null, KEEP_ALL_POSTS);
+    }
+
+    private MemorySocialStack(PersistentHashMap<Integer, User> users,
+                              PersistentHashMap<Integer, FollowList> following,
+                              PersistentHashMap<Integer, FollowList> followers,
+                              PersistentHashMap<Integer, Timeline> inboxes,
+                              WallDelivery delivery, int celebrityThreshold, TimelineStorage storage,
+                              MessageArena arena, long retention){
         this.users = users;
+        this.following = following;
+        this.followers = followers;
+        this.inboxes = inboxes;
+        this.delivery = delivery;
+        this.celebrityThreshold = celebrityThreshold;
+        this.storage = storage;
+        this.arena = arena;
+        this.retention = retention;
     }
 
     /**
-     * @see fr.baraud.codurance.monologue.timelines.SocialStack#post(String, String, Date)
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#post(int, String, Date)
      */
     @Override
-    public SocialStack post(String username, String message, Date messageTimestamp){
+    public SocialStack post(int userId, String message, Date messageTimestamp){
+        return post(userId, message, messageTimestamp, null);
+    }
+
+    /**
+     * @param edit the token of the batch whose maps can be changed in place,
+     * null to keep this version unchanged
+     */
+    private MemorySocialStack post(int userId, String message, Date messageTimestamp, Object edit){
         if (message == null || message.isEmpty()){
             return this;
         }
-        User user = users.get(username);
-        List<User> following = user != null ? user.getFollowing() : new ArrayList<>();
-        Timeline timeline = user != null ?
-            new Timeline(message, username, messageTimestamp, user.getTimeline()) :
-            new Timeline(message, username, messageTimestamp, null);
-        Map<String, User> newUsers = new HashMap<>();
-        newUsers.putAll(users);
-        newUsers.put(username, new User(username, following, timeline));
-        return new MemorySocialStack(newUsers);
+        User user = users.get(userId);
+        Timeline previous = user != null ? user.getTimeline() : null;
+        Timeline timeline = storage == TimelineStorage.LINKED ?
+            new Timeline(message, userId, messageTimestamp, previous) :
+            ChunkedTimeline.append(previous, userId, message, messageTimestamp.getTime(), arena, retention);
+        PersistentHashMap<Integer, Timeline> newInboxes = inboxes;
+        if (isPushed(userId)){
+            newInboxes = deliver(newInboxes, userId, timeline, edit);
+            for (FollowList audience = followers.get(userId); audience != null; audience = audience.getNext()){
+                newInboxes = deliver(newInboxes, audience.getFollowed(), timeline, edit);
+            }
+        }
+        return new MemorySocialStack(users.put(userId, new User(userId, timeline), edit), following, followers,
+            newInboxes, delivery, celebrityThreshold, storage, arena, retention);
     }
 
     /**
-     * @see fr.baraud.codurance.monologue.timelines.SocialStack#getTimeline(String)
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#getTimeline(int)
      */
     @Override
-    public Timeline getTimeline(String username){
-        User user = users.get(username);
+    public Timeline getTimeline(int userId){
+        User user = users.get(userId);
         return user != null? user.getTimeline() : null;
     }
 
     /**
-     * @see fr.baraud.codurance.monologue.timelines.SocialStack#getWall(String)
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#getWall(int)
      */
     @Override
-    public Timeline getWall(String username){
-        User user = users.get(username);
+    public Timeline getWall(int userId){
+        User user = users.get(userId);
         if (user == null){
             return null;
         }
-        TreeSet<Timeline> allTimeline = new TreeSet<>();
-        allTimeline.add(user.getTimeline());
-        for (User following : user.getFollowing()){
-            allTimeline.add(following.getTimeline());
+        if (delivery == WallDelivery.PUSH){
+            return inboxes.get(userId);
         }
-        return buildWall(allTimeline);
+        if (delivery == WallDelivery.HYBRID){
+            return getHybridWall(userId);
+        }
+        WallMerger wall = new WallMerger().add(user.getTimeline());
+        for (FollowList follows = following.get(userId); follows != null; follows = follows.getNext()){
+            wall.add(users.get(follows.getFollowed()).getTimeline());
+        }
+        return wall.merge();
     }
 
     /**
-     * @see fr.baraud.codurance.monologue.timelines.SocialStack#follow(String, String)
+     * Only the timelines with a post newer than the previous wall are
+     * merged, and only their newer posts are walked. With the PUSH delivery,
+     * the newer posts are taken from the front of the materialized wall.
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#refreshWall(int, Timeline)
      */
-    public SocialStack follow(String username, String following){
-        User user = users.get(username);
-        User toFollow = users.get(following);
-        if (user != null && toFollow != null) {
-            List<User> newFollowing = new ArrayList<>();
-            newFollowing.addAll(user.getFollowing());
-            newFollowing.add(toFollow);
-            Map<String, User> newUsers = new HashMap<>();
-            newUsers.putAll(users);
-            newUsers.put(username, new User(username, newFollowing, user.getTimeline()));
-            return new MemorySocialStack(newUsers);
+    @Override
+    public Timeline refreshWall(int userId, Timeline previousWall){
+        User user = users.get(userId);
+        if (user == null || previousWall == null || delivery == WallDelivery.HYBRID){
+            return SocialStack.super.refreshWall(userId, previousWall);
+        }
+        if (delivery == WallDelivery.PUSH){
+            return WallMerger.prepend(inboxes.get(userId), previousWall);
+        }
+        WallMerger newerPosts = new WallMerger();
+        addIfNewer(newerPosts, user.getTimeline(), previousWall);
+        for (FollowList follows = following.get(userId); follows != null; follows = follows.getNext()){
+            addIfNewer(newerPosts, users.get(follows.getFollowed()).getTimeline(), previousWall);
         }
-        return this;
+        return WallMerger.prepend(newerPosts.merge(), previousWall);
     }
 
     /**
-     * Create the aggregation of posts ordered by their timestamp into one timeline
-     * @param followingAndPersonal the list of timeline to aggregate into one wall
-     * @return a wall as a timeline of one or several users posts
+     * Merge a timeline if its first post may be missing from the previous
+     * wall, the posts of the same millisecond as the first post of the
+     * previous wall being sorted out by WallMerger#prepend
      */
-    private Timeline buildWall(TreeSet<Timeline> followingAndPersonal){
-        if (followingAndPersonal.isEmpty()){
-            return null;
+    private static void addIfNewer(WallMerger wall, Timeline timeline, Timeline previousWall){
+        if (timeline.getTimestamp() >= previousWall.getTimestamp()){
+            wall.add(timeline);
+        }
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#follow(int, int)
+     */
+    public SocialStack follow(int userId, int toFollow){
+        return follow(userId, toFollow, null);
+    }
+
+    /**
+     * @param edit the token of the batch whose maps can be changed in place,
+     * null to keep this version unchanged
+     */
+    private MemorySocialStack follow(int userId, int toFollow, Object edit){
+        if (!users.containsKey(userId) || !users.containsKey(toFollow) || userId == toFollow){
+            return this;
+        }
+        FollowList follows = following.get(userId);
+        if (FollowList.contains(follows, toFollow)){
+            return this;
         }
-        Timeline last = followingAndPersonal.last();
-        TreeSet<Timeline> remainingFollowingAndPersonal =  new TreeSet<>();
-        for (Timeline timeline : followingAndPersonal) {
-            if (timeline == last && timeline.getNext() != null ) {
-                remainingFollowingAndPersonal.add(timeline.getNext());
+        PersistentHashMap<Integer, FollowList> newFollowers =
+            followers.put(toFollow, new FollowList(userId, followers.get(toFollow)), edit);
+        PersistentHashMap<Integer, Timeline> newInboxes = inboxes;
+        if (isPushed(toFollow, newFollowers)){
+            newInboxes = inboxes.put(userId, merge(inboxes.get(userId), users.get(toFollow).getTimeline()), edit);
+        }
+        return new MemorySocialStack(users,
+            following.put(userId, FollowList.indexed(toFollow, follows), edit),
+            newFollowers, newInboxes, delivery, celebrityThreshold, storage, arena, retention);
+    }
+
+    /**
+     * With the HYBRID delivery, the wall is the inbox of the user without the
+     * posts of the celebrities, merged with the timelines of the celebrities
+     * among the user and the users he/she follows.
+     * @param userId the identifier of an existing user
+     * @return the wall of the user
+     */
+    private Timeline getHybridWall(int userId){
+        WallMerger wall = new WallMerger();
+        boolean hasCelebrity = false;
+        if (!isPushed(userId)){
+            wall.add(users.get(userId).getTimeline());
+            hasCelebrity = true;
+        }
+        for (FollowList follows = following.get(userId); follows != null; follows = follows.getNext()){
+            if (!isPushed(follows.getFollowed())){
+                wall.add(users.get(follows.getFollowed()).getTimeline());
+                hasCelebrity = true;
             }
-            if ( timeline!= last && timeline != null) {
-                remainingFollowingAndPersonal.add(timeline);
+        }
+        Timeline inbox = inboxes.get(userId);
+        if (!hasCelebrity){
+            return inbox;
+        }
+        return wall.add(inbox, this::isPushed).merge();
+    }
+
+    /**
+     * @param userId the identifier of an author
+     * @return true if the posts of the author are pushed into the walls
+     */
+    private boolean isPushed(int userId){
+        return isPushed(userId, followers);
+    }
+
+    private boolean isPushed(int userId, PersistentHashMap<Integer, FollowList> followers){
+        if (delivery == WallDelivery.HYBRID){
+            return FollowList.size(followers.get(userId)) < celebrityThreshold;
+        }
+        return delivery == WallDelivery.PUSH;
+    }
+
+    /**
+     * Insert a post in the materialized wall of a user
+     * @param walls the materialized walls
+     * @param owner the identifier of the owner of the wall to update
+     * @param post the timeline whose top post is inserted
+     * @param edit the token of the batch, null if there is none
+     * @return the new version of the materialized walls
+     */
+    private static PersistentHashMap<Integer, Timeline> deliver(PersistentHashMap<Integer, Timeline> walls,
+                                                               int owner, Timeline post, Object edit){
+        return walls.put(owner, insert(walls.get(owner), post), edit);
+    }
+
+    /**
+     * Insert the top post of a timeline at its place in a wall. Usually the
+     * post is the newest one so it is added in front of the wall, otherwise
+     * only the newer posts of the wall are copied.
+     * @param wall the wall, null if empty
+     * @param post the timeline whose top post is inserted
+     * @return the new version of the wall
+     */
+    private static Timeline insert(Timeline wall, Timeline post){
+        Deque<Timeline> newerPosts = new ArrayDeque<>();
+        Timeline older = wall;
+        while (older != null && Timeline.POST_ORDER.compare(post, older) < 0){
+            newerPosts.push(older);
+            older = older.getNext();
+        }
+        Timeline result = copyPost(post, older);
+        while (!newerPosts.isEmpty()){
+            result = copyPost(newerPosts.pop(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Merge two walls into one, newest posts first
+     * @param first a wall, null if empty
+     * @param second another wall, null if empty
+     * @return the posts of both walls in a new wall
+     */
+    private static Timeline merge(Timeline first, Timeline second){
+        Deque<Timeline> posts = new ArrayDeque<>();
+        Timeline left = first;
+        Timeline right = second;
+        while (left != null || right != null){
+            if (right == null || (left != null && Timeline.POST_ORDER.compare(left, right) >= 0)){
+                posts.push(left);
+                left = left.getNext();
+            } else {
+                posts.push(right);
+                right = right.getNext();
             }
         }
-        return new Timeline(last.getMessage(), last.getUser(), last.getMessageTimestamp(), buildWall(remainingFollowingAndPersonal));
+        Timeline result = null;
+        while (!posts.isEmpty()){
+            result = copyPost(posts.pop(), result);
+        }
+        return result;
+    }
+
+    private static Timeline copyPost(Timeline post, Timeline next){
+        return new Timeline(post.getMessage(), post.getUser(), post.getMessageTimestamp(), next);
     }
 
     /**
-     * See {@link SocialStack#userExist(String)}
+     * The posts and follows of the batch change the maps of the stack in
+     * place once copied, instead of copying the path to each entry again.
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#batch()
      */
     @Override
-    public boolean userExist(String user) {
+    public Batch batch(){
+        return new MemoryBatch(this);
+    }
+
+    /**
+     * A MemoryBatch applies its posts and follows with an edit token of its
+     * own, retired once the batch is frozen so that the maps of the result
+     * are not changed anymore
+     */
+    private static final class MemoryBatch implements Batch {
+
+        private MemorySocialStack stack;
+        private Object edit = new Object();
+
+        MemoryBatch(MemorySocialStack stack){
+            this.stack = stack;
+        }
+
+        @Override
+        public Batch post(int user, String message, Date messageTimestamp) {
+            stack = stack.post(user, message, messageTimestamp, checkedEdit());
+            return this;
+        }
+
+        @Override
+        public Batch follow(int user, int following) {
+            stack = stack.follow(user, following, checkedEdit());
+            return this;
+        }
+
+        @Override
+        public SocialStack freeze() {
+            checkedEdit();
+            edit = null;
+            return stack;
+        }
+
+        private Object checkedEdit(){
+            if (edit == null){
+                throw new IllegalStateException("the batch is already frozen");
+            }
+            return edit;
+        }
+    }
+
+    /**
+     * See {@link SocialStack#userExist(int)}
+     */
+    @Override
+    public boolean userExist(int user) {
         return users.containsKey(user);
     }
+
+    /**
+     * See {@link SocialStack#forEachUser(IntConsumer)}
+     */
+    @Override
+    public void forEachUser(IntConsumer action) {
+        users.forEach((userId, user) -> action.accept(userId));
+    }
+
+    /**
+     * See {@link SocialStack#forEachFollowed(int, IntConsumer)}
+     */
+    @Override
+    public void forEachFollowed(int user, IntConsumer action) {
+        FollowList follows = following.get(user);
+        // the list starts with the last user followed
+        int[] followed = new int[FollowList.size(follows)];
+        for (int i = followed.length - 1; i >= 0; i--){
+            followed[i] = follows.getFollowed();
+            follows = follows.getNext();
+        }
+        for (int followedUser : followed){
+            action.accept(followedUser);
+        }
+    }
+
+    /**
+     * @param following the identifiers of the users followed by each user
+     * @param reverse false to index the lists by follower, true to index
+     * them by followed user
+     */
+    private static PersistentHashMap<Integer, FollowList> toFollowLists(Map<Integer, List<Integer>> following,
+                                                                       boolean reverse){
+        PersistentHashMap<Integer, FollowList> followLists = PersistentHashMap.empty();
+        for (Map.Entry<Integer, List<Integer>> follows : following.entrySet()){
+            for (int followed : follows.getValue()){
+                int key = reverse ? followed : follows.getKey();
+                int value = reverse ? follows.getKey() : followed;
+                FollowList previous = followLists.get(key);
+                followLists = followLists.put(key, reverse ? new FollowList(value, previous)
+                    : FollowList.indexed(value, previous));
+            }
+        }
+        return followLists;
+    }
 }
@@ -0,0 +1,105 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MessageArena stores the messages of the posts out of the heap, encoded in
+ * UTF-8 into large direct buffers, the segments. A post only keeps its
+ * segment and a reference packing the offset and the length of its message,
+ * which is decoded each time it is read.
+ * The arena only retains the segment being filled: a full segment is
+ * referenced by the posts it holds only, and its memory is released once
+ * they are all unreachable.
+ */
+final class MessageArena {
+
+    /**
+     * The default size of a segment, 1 MB
+     */
+    static final int SEGMENT_SIZE = 1 << 20;
+
+    private final int segmentSize;
+
+    /**
+     * The segment being filled, null until the first message
+     */
+    private Segment current;
+
+    MessageArena(){
+        this(SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize the size in bytes of the segments. A longer message
+     * gets a segment of its own.
+     */
+    MessageArena(int segmentSize){
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Write a message into the arena
+     * @param message the message to store
+     * @param references the array where to save the reference to the message
+     * @param slot the index of the reference in the array
+     * @return the segment holding the message
+     */
+    synchronized Segment store(String message, long[] references, int slot){
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        if (current == null || current.remaining() < bytes.length){
+            current = new Segment(Math.max(segmentSize, bytes.length));
+        }
+        references[slot] = (long) current.write(bytes) << 32 | bytes.length;
+        return current;
+    }
+
+    /**
+     * A direct buffer filled from its start
+     */
+    static final class Segment {
+
+        private final ByteBuffer buffer;
+        private int position;
+
+        private Segment(int size){
+            this.buffer = ByteBuffer.allocateDirect(size);
+        }
+
+        private int remaining(){
+            return buffer.capacity() - position;
+        }
+
+        /**
+         * @return the offset of the bytes written
+         */
+        private int write(byte[] bytes){
+            int offset = position;
+            at(offset).put(bytes, 0, bytes.length);
+            position += bytes.length;
+            return offset;
+        }
+
+        /**
+         * @return a view of the buffer from the offset, so that the bytes are
+         * copied at once without moving the position shared by the threads
+         */
+        private ByteBuffer at(int offset){
+            ByteBuffer view = buffer.duplicate();
+            ((Buffer) view).position(offset);
+            return view;
+        }
+
+        /**
+         * @param reference the reference saved by MessageArena#store
+         * @return the message decoded
+         */
+        String read(long reference){
+            int offset = (int) (reference >>> 32);
+            byte[] bytes = new byte[(int) reference];
+            at(offset).get(bytes, 0, bytes.length);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
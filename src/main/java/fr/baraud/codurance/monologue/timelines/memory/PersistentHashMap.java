@@ -0,0 +1,354 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * PersistentHashMap is an immutable map implemented as a hash array mapped trie.
+ * Adding an entry does not modify the current instance: only the path from the
+ * root to the modified entry is copied (at most 7 nodes of 32 slots), all the
+ * other nodes are shared with the previous version. A write then costs
+ * O(log32 n) allocations instead of a full copy of the map.
+ * Many entries can also be added with an edit token, as a batch: the nodes
+ * copied for the token are then changed in place by the following additions
+ * with the same token. The versions returned in between share these nodes,
+ * so only the last one should be kept, and the token should not be used
+ * anymore once it is returned.
+ *
+ * @param <K> the type of the keys, should be immutable and implement equals and hashCode
+ * @param <V> the type of the values
+ */
+public final class PersistentHashMap<K, V> {
+
+    private static final int BITS_PER_LEVEL = 5;
+    private static final int LEVEL_MASK = 0x1f;
+
+    private static final PersistentHashMap<Object, Object> EMPTY = new PersistentHashMap<>(null, 0);
+
+    /**
+     * The root of the trie, null when the map is empty
+     */
+    private final Node root;
+
+    private final int size;
+
+    private PersistentHashMap(Node root, int size){
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return the empty map, shared by all the types
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty(){
+        return (PersistentHashMap<K, V>) EMPTY;
+    }
+
+    /**
+     * Build a persistent map with the same entries as the provided map
+     * @param entries the entries to copy, should not be null
+     * @return a persistent map holding all the entries
+     */
+    public static <K, V> PersistentHashMap<K, V> fromMap(Map<K, V> entries){
+        PersistentHashMap<K, V> result = empty();
+        for (Map.Entry<K, V> entry : entries.entrySet()){
+            result = result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * @param key the key of the value, should not be null
+     * @return the value associated to the key, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key){
+        if (root == null){
+            return null;
+        }
+        return (V) root.find(0, hash(key), key);
+    }
+
+    /**
+     * @return true if a value is associated to the key in this version of the map
+     */
+    public boolean containsKey(Object key){
+        return get(key) != null;
+    }
+
+    /**
+     * Associate a value to a key. It does not affect the current instance,
+     * only the new instance returned.
+     * @param key the key, should not be null
+     * @param value the value, should not be null
+     * @return a new version of the map with the association, or the same
+     * instance if the key was already associated to this very value
+     */
+    public PersistentHashMap<K, V> put(K key, V value){
+        return put(key, value, null);
+    }
+
+    /**
+     * Associate a value to a key as part of a batch
+     * @param key the key, should not be null
+     * @param value the value, should not be null
+     * @param edit the token of the batch, the nodes copied with it being
+     * changed in place by the next additions with the same token. Null to
+     * leave this version unchanged, as #put(Object, Object).
+     * @return a version of the map with the association, sharing the nodes
+     * of the batch
+     */
+    PersistentHashMap<K, V> put(K key, V value, Object edit){
+        AddedLeaf addedLeaf = new AddedLeaf();
+        Node start = root == null ? BitmapNode.EMPTY : root;
+        Node newRoot = start.assoc(edit, 0, hash(key), key, value, addedLeaf);
+        // the root of a batch is the same node after an addition in place
+        if (newRoot == root && !addedLeaf.added){
+            return this;
+        }
+        return new PersistentHashMap<>(newRoot, addedLeaf.added ? size + 1 : size);
+    }
+
+    /**
+     * @return the number of keys in this version of the map
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Call the action on every entry of the map, in no particular order
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<? super K, ? super V> action){
+        if (root != null){
+            root.forEach((BiConsumer<Object, Object>) action);
+        }
+    }
+
+    /**
+     * Spread the higher bits of the hash code on the lower ones, as the
+     * lower bits are used by the first levels of the trie.
+     */
+    private static int hash(Object key){
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Tracks whether an assoc created a new entry or replaced an existing one
+     */
+    private static final class AddedLeaf {
+        boolean added;
+    }
+
+    private interface Node {
+
+        Object find(int shift, int hash, Object key);
+
+        /**
+         * @param edit the token of the batch, null if there is none
+         * @return the node with the association: this one if it belongs to
+         * the batch, a copy otherwise
+         */
+        Node assoc(Object edit, int shift, int hash, Object key, Object value, AddedLeaf addedLeaf);
+
+        void forEach(BiConsumer<Object, Object> action);
+    }
+
+    /**
+     * A node with up to 32 slots, only the slots in use are allocated.
+     * Each slot is a pair in the array: either (key, value) for an entry, or
+     * (null, child node) for a sub-trie.
+     * The node is only changed in place by the batch it was created for.
+     */
+    private static final class BitmapNode implements Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+        /**
+         * The token of the batch owning the node, null if it cannot be changed
+         */
+        private final Object edit;
+        private int bitmap;
+        private Object[] array;
+
+        BitmapNode(Object edit, int bitmap, Object[] array){
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int bit = bitPosition(hash, shift);
+            if ((bitmap & bit) == 0){
+                return null;
+            }
+            int index = index(bit);
+            Object storedKey = array[2 * index];
+            Object storedValue = array[2 * index + 1];
+            if (storedKey == null){
+                return ((Node) storedValue).find(shift + BITS_PER_LEVEL, hash, key);
+            }
+            return key.equals(storedKey) ? storedValue : null;
+        }
+
+        @Override
+        public Node assoc(Object edit, int shift, int hash, Object key, Object value, AddedLeaf addedLeaf) {
+            int bit = bitPosition(hash, shift);
+            int index = index(bit);
+            if ((bitmap & bit) == 0){
+                Object[] newArray = new Object[array.length + 2];
+                System.arraycopy(array, 0, newArray, 0, 2 * index);
+                newArray[2 * index] = key;
+                newArray[2 * index + 1] = value;
+                System.arraycopy(array, 2 * index, newArray, 2 * (index + 1), array.length - 2 * index);
+                addedLeaf.added = true;
+                if (isEditable(edit)){
+                    bitmap |= bit;
+                    array = newArray;
+                    return this;
+                }
+                return new BitmapNode(edit, bitmap | bit, newArray);
+            }
+            Object storedKey = array[2 * index];
+            Object storedValue = array[2 * index + 1];
+            if (storedKey == null){
+                Node child = (Node) storedValue;
+                Node newChild = child.assoc(edit, shift + BITS_PER_LEVEL, hash, key, value, addedLeaf);
+                if (newChild == child){
+                    return this;
+                }
+                return set(edit, 2 * index + 1, newChild);
+            }
+            if (key.equals(storedKey)){
+                if (value == storedValue){
+                    return this;
+                }
+                return set(edit, 2 * index + 1, value);
+            }
+            addedLeaf.added = true;
+            Node child = createNode(edit, shift + BITS_PER_LEVEL, storedKey, storedValue, hash, key, value);
+            BitmapNode result = set(edit, 2 * index + 1, child);
+            result.array[2 * index] = null;
+            return result;
+        }
+
+        private boolean isEditable(Object edit){
+            return edit != null && edit == this.edit;
+        }
+
+        /**
+         * @return this node with a slot changed if it belongs to the batch,
+         * otherwise a copy of it for the batch
+         */
+        private BitmapNode set(Object edit, int slot, Object value){
+            if (isEditable(edit)){
+                array[slot] = value;
+                return this;
+            }
+            return new BitmapNode(edit, bitmap, cloneAndSet(array, slot, value));
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2){
+                if (array[i] == null){
+                    ((Node) array[i + 1]).forEach(action);
+                } else {
+                    action.accept(array[i], array[i + 1]);
+                }
+            }
+        }
+
+        private int index(int bit){
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    /**
+     * A node for the keys that share the exact same hash, always copied as
+     * such keys are rare
+     */
+    private static final class CollisionNode implements Node {
+
+        private final int hash;
+        private final Object[] array;
+
+        CollisionNode(int hash, Object[] array){
+            this.hash = hash;
+            this.array = array;
+        }
+
+        @Override
+        public Object find(int shift, int hash, Object key) {
+            int index = indexOf(key);
+            return index < 0 ? null : array[index + 1];
+        }
+
+        @Override
+        public Node assoc(Object edit, int shift, int hash, Object key, Object value, AddedLeaf addedLeaf) {
+            if (hash != this.hash){
+                // nest this node in a bitmap node to split it from the new key
+                return new BitmapNode(edit, bitPosition(this.hash, shift), new Object[]{null, this})
+                    .assoc(edit, shift, hash, key, value, addedLeaf);
+            }
+            int index = indexOf(key);
+            if (index >= 0){
+                if (array[index + 1] == value){
+                    return this;
+                }
+                return new CollisionNode(hash, cloneAndSet(array, index + 1, value));
+            }
+            Object[] newArray = new Object[array.length + 2];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            newArray[array.length] = key;
+            newArray[array.length + 1] = value;
+            addedLeaf.added = true;
+            return new CollisionNode(hash, newArray);
+        }
+
+        @Override
+        public void forEach(BiConsumer<Object, Object> action) {
+            for (int i = 0; i < array.length; i += 2){
+                action.accept(array[i], array[i + 1]);
+            }
+        }
+
+        private int indexOf(Object key){
+            for (int i = 0; i < array.length; i += 2){
+                if (key.equals(array[i])){
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Create the smallest sub-trie holding the two entries
+     */
+    private static Node createNode(Object edit, int shift, Object key1, Object value1,
+                                   int hash2, Object key2, Object value2){
+        int hash1 = hash(key1);
+        if (hash1 == hash2){
+            return new CollisionNode(hash1, new Object[]{key1, value1, key2, value2});
+        }
+        AddedLeaf ignored = new AddedLeaf();
+        return BitmapNode.EMPTY
+            .assoc(edit, shift, hash1, key1, value1, ignored)
+            .assoc(edit, shift, hash2, key2, value2, ignored);
+    }
+
+    private static int bitPosition(int hash, int shift){
+        return 1 << ((hash >>> shift) & LEVEL_MASK);
+    }
+
+    private static Object[] cloneAndSet(Object[] array, int index, Object value){
+        Object[] clone = array.clone();
+        clone[index] = value;
+        return clone;
+    }
+}
@@ -0,0 +1,30 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+/**
+ * TimelineStorage enumerates the ways a MemorySocialStack can store the
+ * personal timelines
+ * @see MemorySocialStack
+ */
+public enum TimelineStorage {
+
+    /**
+     * Each post is a Timeline node linked to the previous one
+     */
+    LINKED,
+
+    /**
+     * The posts of a user are appended into chunks of parallel arrays,
+     * shared by all the versions of the timeline. Only the Timeline read
+     * are created, on demand.
+     * @see ChunkedTimeline
+     */
+    CHUNKED,
+
+    /**
+     * Like CHUNKED, but the messages are stored out of the heap and decoded
+     * when read. The walls materialized by the PUSH and HYBRID deliveries
+     * still keep their messages in the heap.
+     * @see MessageArena
+     */
+    OFF_HEAP
+}
@@ -0,0 +1,29 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+/**
+ * WallDelivery enumerates the ways a MemorySocialStack can build the walls
+ * @see MemorySocialStack
+ */
+public enum WallDelivery {
+
+    /**
+     * The wall is merged from the followed timelines every time it is read.
+     * Posting is cheap, reading costs the whole merge.
+     */
+    PULL,
+
+    /**
+     * Each post is copied into the wall of the author and of each of his/her
+     * followers when it is written (fan-out on write). Reading the wall is a
+     * plain read, posting costs one insertion per follower.
+     */
+    PUSH,
+
+    /**
+     * The posts of the users with less followers than a threshold are pushed
+     * like with PUSH, the posts of the other users (the celebrities) are
+     * merged when the wall is read, like with PULL. A user becomes a
+     * celebrity as soon as he/she reaches the threshold.
+     */
+    HYBRID
+}
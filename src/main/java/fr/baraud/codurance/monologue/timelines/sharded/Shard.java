@@ -0,0 +1,70 @@
+package fr.baraud.codurance.monologue.timelines.sharded;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.memory.PersistentHashMap;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * A Shard is a version of the users of a ShardedSocialStack owned by one
+ * shard: their timelines, kept by a SocialStack of their own, and the users
+ * they follow, who can belong to any shard.
+ * It is immutable, so if the state change, a new instance is returned.
+ */
+final class Shard {
+
+    private static final int[] NO_FOLLOW = new int[0];
+
+    private final SocialStack timelines;
+
+    /**
+     * The identifiers of the users followed by each user of the shard, the
+     * first followed first
+     */
+    private final PersistentHashMap<Integer, int[]> following;
+
+    Shard(SocialStack timelines){
+        this(timelines, PersistentHashMap.empty());
+    }
+
+    private Shard(SocialStack timelines, PersistentHashMap<Integer, int[]> following){
+        this.timelines = timelines;
+        this.following = following;
+    }
+
+    SocialStack getTimelines() {
+        return timelines;
+    }
+
+    Shard post(int user, String message, Date messageTimestamp){
+        SocialStack newTimelines = timelines.post(user, message, messageTimestamp);
+        return newTimelines == timelines ? this : new Shard(newTimelines, following);
+    }
+
+    /**
+     * @param user a user of the shard
+     * @param toFollow a user of any shard, who should exist
+     * @return the shard with the new follow, or the same instance if the
+     * user already follows him/her
+     */
+    Shard follow(int user, int toFollow){
+        int[] follows = getFollowed(user);
+        for (int followed : follows){
+            if (followed == toFollow){
+                return this;
+            }
+        }
+        int[] newFollows = Arrays.copyOf(follows, follows.length + 1);
+        newFollows[follows.length] = toFollow;
+        return new Shard(timelines, following.put(user, newFollows));
+    }
+
+    /**
+     * @return the users followed by a user of the shard, not to be modified
+     */
+    int[] getFollowed(int user){
+        int[] follows = following.get(user);
+        return follows == null ? NO_FOLLOW : follows;
+    }
+}
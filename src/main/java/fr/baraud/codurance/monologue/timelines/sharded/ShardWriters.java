@@ -0,0 +1,149 @@
+package fr.baraud.codurance.monologue.timelines.sharded;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+
+import java.io.Closeable;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * ShardWriters changes a ShardedSocialStack from concurrent sessions: each
+ * shard has a queue of changes applied by a thread of its own, the single
+ * writer of the shard, so the changes of users of different shards are
+ * applied in parallel without contending.
+ * The newest version of each shard is published once its change is applied,
+ * the readers get the newest version of all the shards without any lock.
+ * As the shards are published one by one, a version read while changes are
+ * applied can contain the change of one shard and not the earlier change of
+ * another shard. A follow waits for the changes queued before it to the
+ * shard of the followed user, though.
+ * @see ShardedSocialStack
+ */
+public final class ShardWriters implements Closeable {
+
+    private final AtomicReferenceArray<Shard> shards;
+    private final ExecutorService[] writers;
+
+    private final Object followLock = new Object();
+
+    /**
+     * The follows checked by the writer of the followed user and not
+     * applied yet, guarded by followLock: they are waited for before the
+     * writers are stopped
+     */
+    private int pendingFollows;
+
+    /**
+     * Start the writers of the shards
+     * @param socialStack the first version of the stack
+     */
+    public ShardWriters(ShardedSocialStack socialStack){
+        Shard[] firstShards = socialStack.getShards();
+        shards = new AtomicReferenceArray<>(firstShards);
+        writers = new ExecutorService[firstShards.length];
+        for (int i = 0; i < writers.length; i++){
+            String name = "shard-writer-" + i;
+            writers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @return the newest version of the stack
+     */
+    public SocialStack get(){
+        Shard[] newest = new Shard[shards.length()];
+        for (int i = 0; i < newest.length; i++){
+            newest[i] = shards.get(i);
+        }
+        return new ShardedSocialStack(newest);
+    }
+
+    /**
+     * Queue a post to the shard of its author
+     * @see SocialStack#post(int, String, Date)
+     * @return completed once the post is published
+     */
+    public CompletableFuture<Void> post(int user, String message, Date messageTimestamp){
+        int index = ShardedSocialStack.shardOf(user, shards.length());
+        return CompletableFuture.runAsync(
+            () -> shards.set(index, shards.get(index).post(user, message, messageTimestamp)), writers[index]);
+    }
+
+    /**
+     * Queue a follow to the shard of the follower. If the followed user
+     * belongs to another shard, he/she is looked for by the writer of that
+     * shard first, once the changes queued to it before are applied, so
+     * that a post queued just before the follow is not missed. The follow
+     * is then queued to the writer of the follower, after the changes
+     * queued to it in the meantime.
+     * @see SocialStack#follow(int, int)
+     * @return completed once the follow is published, or ignored if one of
+     * the users does not exist
+     */
+    public CompletableFuture<Void> follow(int user, int following){
+        int index = ShardedSocialStack.shardOf(user, shards.length());
+        int followedIndex = ShardedSocialStack.shardOf(following, shards.length());
+        if (followedIndex == index){
+            return CompletableFuture.runAsync(() -> applyFollow(index, user, following,
+                shards.get(index).getTimelines().userExist(following)), writers[index]);
+        }
+        synchronized (followLock){
+            pendingFollows++;
+        }
+        return CompletableFuture.supplyAsync(
+            () -> shards.get(followedIndex).getTimelines().userExist(following), writers[followedIndex])
+            .thenAcceptAsync(followedExists -> applyFollow(index, user, following, followedExists), writers[index])
+            .whenComplete((done, failure) -> {
+                synchronized (followLock){
+                    pendingFollows--;
+                    followLock.notifyAll();
+                }
+            });
+    }
+
+    /**
+     * Apply a follow on the writer of the shard of the follower
+     * @param followedExists true if the followed user exists
+     */
+    private void applyFollow(int index, int user, int following, boolean followedExists){
+        Shard shard = shards.get(index);
+        if (followedExists && user != following && shard.getTimelines().userExist(user)){
+            shards.set(index, shard.follow(user, following));
+        }
+    }
+
+    /**
+     * Apply the changes queued, then stop the writers
+     */
+    @Override
+    public void close() {
+        try {
+            // a follow checked by another writer is queued to the writer of the follower afterwards
+            synchronized (followLock){
+                while (pendingFollows > 0){
+                    followLock.wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (ExecutorService writer : writers){
+            writer.shutdown();
+        }
+        try {
+            for (ExecutorService writer : writers){
+                writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
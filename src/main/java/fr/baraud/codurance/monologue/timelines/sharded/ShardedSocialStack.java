@@ -0,0 +1,155 @@
+package fr.baraud.codurance.monologue.timelines.sharded;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.WallMerger;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * ShardedSocialStack partitions the users across several shards by the hash
+ * of their identifier, each shard keeping the timelines of its users in a
+ * SocialStack of its own and the users they follow. A change only copies
+ * the shard of the user, so the shards can be changed in parallel by
+ * ShardWriters.
+ * A wall is gathered from the shards owning the followed users, then merged
+ * lazily.
+ * It is immutable, so if the state change, a new instance is returned.
+ * @see ShardWriters
+ */
+public final class ShardedSocialStack implements SocialStack {
+
+    private final Shard[] shards;
+
+    /**
+     * An empty stack
+     * @param shardCount the number of shards
+     * @param storage creates the empty stack keeping the timelines of each shard
+     */
+    public ShardedSocialStack(int shardCount, Supplier<SocialStack> storage){
+        this(newShards(shardCount, storage));
+    }
+
+    ShardedSocialStack(Shard[] shards){
+        this.shards = shards;
+    }
+
+    private static Shard[] newShards(int shardCount, Supplier<SocialStack> storage){
+        Shard[] shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++){
+            shards[i] = new Shard(storage.get());
+        }
+        return shards;
+    }
+
+    /**
+     * @return the shard owning a user, the identifiers being mixed so that
+     * consecutive ones are spread
+     */
+    static int shardOf(int user, int shardCount){
+        return Math.floorMod(user * 0x9e3779b9, shardCount);
+    }
+
+    /**
+     * @return a copy of the shards of this version
+     */
+    Shard[] getShards(){
+        return shards.clone();
+    }
+
+    private Shard shard(int user){
+        return shards[shardOf(user, shards.length)];
+    }
+
+    private SocialStack with(int user, Shard newShard){
+        int index = shardOf(user, shards.length);
+        if (newShard == shards[index]){
+            return this;
+        }
+        Shard[] newShards = shards.clone();
+        newShards[index] = newShard;
+        return new ShardedSocialStack(newShards);
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#post(int, String, Date)
+     */
+    @Override
+    public SocialStack post(int user, String message, Date messageTimestamp) {
+        return with(user, shard(user).post(user, message, messageTimestamp));
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#follow(int, int)
+     */
+    @Override
+    public SocialStack follow(int user, int following) {
+        if (user == following || !userExist(user) || !userExist(following)){
+            return this;
+        }
+        return with(user, shard(user).follow(user, following));
+    }
+
+    @Override
+    public Timeline getTimeline(int user) {
+        return shard(user).getTimelines().getTimeline(user);
+    }
+
+    /**
+     * @see fr.baraud.codurance.monologue.timelines.SocialStack#getWall(int)
+     */
+    @Override
+    public Timeline getWall(int user) {
+        Shard owner = shard(user);
+        Timeline timeline = owner.getTimelines().getTimeline(user);
+        if (timeline == null){
+            return null;
+        }
+        WallMerger wall = new WallMerger().add(timeline);
+        for (int followed : owner.getFollowed(user)){
+            wall.add(getTimeline(followed));
+        }
+        return wall.merge();
+    }
+
+    @Override
+    public boolean userExist(int user) {
+        return shard(user).getTimelines().userExist(user);
+    }
+
+    /**
+     * See {@link SocialStack#whenDurable()}, completed once every shard is
+     */
+    @Override
+    public CompletableFuture<Void> whenDurable() {
+        CompletableFuture<?>[] durables = new CompletableFuture<?>[shards.length];
+        for (int i = 0; i < shards.length; i++){
+            durables[i] = shards[i].getTimelines().whenDurable();
+        }
+        return CompletableFuture.allOf(durables);
+    }
+
+    /**
+     * See {@link SocialStack#forEachUser(IntConsumer)}, the users being
+     * listed shard by shard
+     */
+    @Override
+    public void forEachUser(IntConsumer action) {
+        for (Shard shard : shards){
+            shard.getTimelines().forEachUser(action);
+        }
+    }
+
+    /**
+     * See {@link SocialStack#forEachFollowed(int, IntConsumer)}
+     */
+    @Override
+    public void forEachFollowed(int user, IntConsumer action) {
+        for (int followed : shard(user).getFollowed(user)){
+            action.accept(followed);
+        }
+    }
+}
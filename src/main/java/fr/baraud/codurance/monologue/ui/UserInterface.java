@@ -1,5 +1,6 @@
 package fr.baraud.codurance.monologue.ui;
 
+import fr.baraud.codurance.monologue.timelines.Page;
 import fr.baraud.codurance.monologue.timelines.Timeline;
 
 import java.util.Date;
@@ -36,6 +37,22 @@ public interface UserInterface {
      */
     void writeWall(Timeline wall, Date currentTime);
 
+    /**
+     * Send and display a page of the timeline of an user
+     * @param page the page of the timeline to display
+     * @param currentTime the current time, used to print the delay since the
+     * post was created
+     */
+    void writeTimeline(Page page, Date currentTime);
+
+    /**
+     * Send and display a page of the wall of an user
+     * @param page the page of the wall to display
+     * @param currentTime the current time, used to print the delay since the
+     * post was created
+     */
+    void writeWall(Page page, Date currentTime);
+
     /**
      * Print help for user
      */
@@ -43,8 +60,15 @@ public interface UserInterface {
 
     /**
      * Print warning message when user does not exist
+     * @param user the identifier of the user that does not exist
+     */
+    void writeWarningUnknownUser(int user);
+
+    /**
+     * Print an error message when an instruction could not be applied
+     * @param message the reason why the instruction failed
      */
-    void writeWarningUnknownUser(String user);
+    void writeError(String message);
 
     /**
      * Close the user interface
@@ -1,12 +1,23 @@
 package fr.baraud.codurance.monologue.ui.console;
 
+import fr.baraud.codurance.monologue.timelines.Cursor;
+import fr.baraud.codurance.monologue.timelines.Page;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
 import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.ui.Action;
 import fr.baraud.codurance.monologue.ui.Instruction;
 import fr.baraud.codurance.monologue.ui.UserInterface;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Properties;
 import java.util.Scanner;
@@ -33,60 +44,28 @@ public class ConsoleInterface implements UserInterface{
     private static final String PROPERTY_MESSAGE_UNKNOWN_COMMAND = "ui.console.message.unknown.command";
     // property key to the warning message when a user is not found
     private static final String PROPERTY_MESSAGE_UNKNOWN_USER = "ui.console.message.unknown.user";
+    // property key to the error message when an instruction could not be applied
+    private static final String PROPERTY_MESSAGE_ERROR = "ui.console.message.error";
+    // property key to the message when there is no more page to display
+    private static final String PROPERTY_MESSAGE_NO_MORE_POSTS = "ui.console.message.no.more.posts";
     // property key to format a message to the user (ex: adding a line return)
     private static final String PROPERTY_MESSAGE_INFO = "ui.console.message.information.format";
     // property key to format a timeline (should take 2 arguments, the message and the delay)
     private static final String PROPERTY_MESSAGE_TIMELINE = "ui.console.message.timeline.format";
     // property key to format a wall (should take 3 arguments, the user, the message and the delay)
     private static final String PROPERTY_MESSAGE_WALL = "ui.console.message.wall.format";
-    // property key to the unit base second in singular
-    private static final String PROPERTY_MESSAGE_SECOND_AGO = "ui.console.message.second.ago";
-    // property key to the unit base second in plural
-    private static final String PROPERTY_MESSAGE_SECONDS_AGO = "ui.console.message.seconds.ago";
-    // property key to the unit base second in singular
-    private static final String PROPERTY_MESSAGE_MINUTE_AGO = "ui.console.message.minute.ago";
-    // property key to the unit base second in plural
-    private static final String PROPERTY_MESSAGE_MINUTES_AGO = "ui.console.message.minutes.ago";
-    // property key to the unit base second in singular
-    private static final String PROPERTY_MESSAGE_HOUR_AGO = "ui.console.message.hour.ago";
-    // property key to the unit base second in plural
-    private static final String PROPERTY_MESSAGE_HOURS_AGO = "ui.console.message.hours.ago";
-    // property key to the unit base second in singular
-    private static final String PROPERTY_MESSAGE_DAY_AGO = "ui.console.message.day.ago";
-    // property key to the unit base second in plural
-    private static final String PROPERTY_MESSAGE_DAYS_AGO = "ui.console.message.days.ago";
-    // property key to the unit base second in singular
-    private static final String PROPERTY_MESSAGE_MONTH_AGO = "ui.console.message.month.ago";
-    // property key to the unit base second in plural
-    private static final String PROPERTY_MESSAGE_MONTHS_AGO = "ui.console.message.months.ago";
-    // property key to the unit base year in singular
-    private static final String PROPERTY_MESSAGE_YEAR_AGO = "ui.console.message.year.ago";
-    // property key to the unit base year in plural
-    private static final String PROPERTY_MESSAGE_YEARS_AGO = "ui.console.message.years.ago";
-    // property key to the pattern used to recognised the post instruction
-    private static final String PROPERTY_INSTRUCTION_POST = "ui.console.instructions.post";
-    // property key to the pattern used to recognised the wall instruction
-    private static final String PROPERTY_INSTRUCTION_WALL = "ui.console.instructions.wall";
-    // property key to the pattern used to recognised the follow instruction
-    private static final String PROPERTY_INSTRUCTION_FOLLOW = "ui.console.instructions.follow";
-    // property key to the pattern used to recognised the help instruction
-    private static final String PROPERTY_INSTRUCTION_HELP ="ui.console.instructions.help";
-    // property key to the pattern used to recognised the quit instruction
-    private static final String PROPERTY_INSTRUCTION_QUIT = "ui.console.instructions.quit";
-    // property key to the pattern used to split the instruction in sequences
-    private static final String PROPERTY_INSTRUCTION_SPLIT ="ui.console.instructions.split";
     // property key to the pattern printed before an instruction invite
     private static final String PROPERTY_DISPLAY_INSTRUCTION = "ui.console.display.instruction";
 
-    private static final long ONE_SECOND_IN_MS = 1000L;
-    private static final long ONE_MIN_IN_MS = 60000L;
-    private static final long ONE_HOUR_IN_MS = 3600000L;
-    private static final long ONE_DAY_IN_MS = 86400000L;
-    private static final long ONE_MONTH_IN_MS = 2592000000L;
-    private static final long ONE_YEAR_IN_MS = 31104000000L;
+    // the size in bytes of the buffers reading a script and holding its output
+    private static final int SCRIPT_BUFFER_SIZE = 64 * 1024;
+    // the number of chars rendered before they are encoded to the output
+    private static final int OUTPUT_CHUNK_SIZE = 8 * 1024;
 
+    private static final int NO_WORD_INSTRUCTION = 0;
     private static final int ONE_WORD_INSTRUCTION = 1;
     private static final int TWO_WORD_INSTRUCTION = 2;
+    private static final int THREE_WORD_INSTRUCTION = 3;
 
     /**
      * The properties that contains messages and display custom patters
@@ -94,14 +73,93 @@ public class ConsoleInterface implements UserInterface{
     private final Properties properties;
 
     /**
-     * A scanner to read from the user input, typically the standard input
+     * A scanner to read from the user input, typically the standard input,
+     * null when reading a script
      */
     private final Scanner userInputScanner;
 
     /**
-     * The output to display information to the user, typically the standard output
+     * The reader of the script, null when reading a user
      */
-    private final OutputStream userDisplayStream;
+    private final BufferedReader scriptReader;
+
+    /**
+     * False when reading a script: there is no banner nor prompt, and the
+     * output is only flushed when its buffer is full and on close
+     */
+    private final boolean interactive;
+
+    /**
+     * The output to display information to the user, typically the standard
+     * output, encoding the rendered text with the platform charset
+     */
+    private final Writer userDisplayWriter;
+
+    /**
+     * The text rendered and not encoded yet, reused from one command to the
+     * next
+     */
+    private final StringBuilder output = new StringBuilder();
+
+    /**
+     * A line rendered before being formatted as an information
+     */
+    private final StringBuilder line = new StringBuilder();
+
+    /**
+     * The chars copied from the output to the writer
+     */
+    private final char[] outputChunk = new char[OUTPUT_CHUNK_SIZE];
+
+    /**
+     * The parser of the instructions, with the keywords of the properties
+     */
+    private final InstructionParser parser;
+
+    /**
+     * The formatter of the time passed since the posts
+     */
+    private final RelativeTimeFormatter delays;
+
+    /**
+     * The formats and texts of the properties, compiled once
+     */
+    private final Template informationFormat;
+    private final Template timelineFormat;
+    private final Template wallFormat;
+    private final Template unknownUserFormat;
+    private final Template errorFormat;
+    private final String helpText;
+    private final String unknownCommandText;
+    private final String noMorePostsText;
+    private final String promptText;
+
+    /**
+     * The table interning the user names typed in the console into the
+     * identifiers used by the SocialStack, and resolving them for display
+     */
+    private final SymbolTable symbols;
+
+    /**
+     * The last paged instruction entered, SHOW_TIMELINE or SHOW_WALL, null if none
+     */
+    private Action pagedAction;
+
+    /**
+     * The owner of the timeline or wall read by the last paged instruction
+     */
+    private int pagedUser;
+
+    /**
+     * The page size of the last paged instruction
+     */
+    private int pageLimit;
+
+    /**
+     * The cursor to the page following the last page displayed, null if
+     * there is none
+     */
+    private Cursor nextPage;
 
     private final Logger logger = Logger.getLogger(ConsoleInterface.class.getCanonicalName());
 
@@ -114,50 +172,167 @@ public class ConsoleInterface implements UserInterface{
      * display
      */
     public ConsoleInterface(InputStream in, OutputStream out, Properties properties){
-        this.userInputScanner = new Scanner(in);
-        this.userDisplayStream = out;
+        this(in, out, properties, new SymbolTable());
+    }
+
+    /**
+     * Create an instance of ConsoleInterface sharing the user names of an
+     * existing SymbolTable
+     * @param in the input stream from where to read input, typically System.in
+     * @param out the output stream to where write output, typically System.out
+     * @param properties the property file with the messages and pattern to
+     * display
+     * @param symbols the table of the user names known by the SocialStack
+     */
+    public ConsoleInterface(InputStream in, OutputStream out, Properties properties, SymbolTable symbols){
+        this(new Scanner(in), null, out, properties, symbols, true);
+    }
+
+    private ConsoleInterface(Scanner userInputScanner, BufferedReader scriptReader, OutputStream out,
+                             Properties properties, SymbolTable symbols, boolean interactive){
+        this.userInputScanner = userInputScanner;
+        this.scriptReader = scriptReader;
+        this.userDisplayWriter = new OutputStreamWriter(out, Charset.defaultCharset());
         this.properties = properties;
+        this.symbols = symbols;
+        this.interactive = interactive;
+        this.parser = new InstructionParser(properties);
+        this.delays = new RelativeTimeFormatter(properties);
+        this.informationFormat = Template.compile(properties.getProperty(PROPERTY_MESSAGE_INFO));
+        this.timelineFormat = Template.compile(properties.getProperty(PROPERTY_MESSAGE_TIMELINE));
+        this.wallFormat = Template.compile(properties.getProperty(PROPERTY_MESSAGE_WALL));
+        this.unknownUserFormat = Template.compile(getText(PROPERTY_MESSAGE_UNKNOWN_USER));
+        this.errorFormat = Template.compile(getText(PROPERTY_MESSAGE_ERROR));
+        this.helpText = renderText(PROPERTY_MESSAGE_HELP);
+        this.unknownCommandText = renderText(PROPERTY_MESSAGE_UNKNOWN_COMMAND);
+        this.noMorePostsText = renderText(PROPERTY_MESSAGE_NO_MORE_POSTS);
+        this.promptText = renderText(PROPERTY_DISPLAY_INSTRUCTION);
         sayHello();
     }
 
+    /**
+     * Create an instance of ConsoleInterface reading the instructions of a
+     * script, for batch jobs: there is no banner nor prompt, the script ends
+     * with its last line if it does not quit before, and the output is
+     * buffered until the buffer is full or the interface is closed.
+     * @param in the script, UTF-8 encoded
+     * @param out the output stream to where write output, typically System.out
+     * @param properties the property file with the messages and pattern to
+     * display
+     * @param symbols the table of the user names known by the SocialStack
+     * @return the interface reading the script
+     */
+    public static ConsoleInterface script(InputStream in, OutputStream out, Properties properties,
+                                          SymbolTable symbols){
+        return new ConsoleInterface(null,
+            new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), SCRIPT_BUFFER_SIZE),
+            new BufferedOutputStream(out, SCRIPT_BUFFER_SIZE), properties, symbols, false);
+    }
+
     /**
      * Returns the next instruction entered for the input stream
      * If the instruction is not recognised, wait for a next one.
+     * At the end of a script, or if the input fails, the instruction is to
+     * exit.
      * @see UserInterface#getNextInstruction()
      */
     @Override
     public Instruction getNextInstruction() {
         Instruction userInstruction;
         do {
-            write(getText(PROPERTY_DISPLAY_INSTRUCTION));
-            userInstruction = parseInstruction(userInputScanner.nextLine());
+            writePrompt();
+            String userEntry = interactive ? userInputScanner.nextLine() : readScriptLine();
+            if (userEntry == null || (interactive && userInputScanner.ioException() != null)){
+                // the end of the script, or a line cut by a failure of the input
+                return ExitInstruction.END_OF_INPUT;
+            }
+            userInstruction = parseInstruction(userEntry);
         } while (userInstruction == null);
         return userInstruction;
     }
 
     /**
-     * display text to the user interface
-     * @param text the text to display to the user
+     * @return the next line of the script, or null at its end or if it
+     * cannot be read
      */
-    private void write(String text) {
+    private String readScriptLine(){
         try {
-            userDisplayStream.write(String.format(text).getBytes());
-            userDisplayStream.flush();
+            return scriptReader.readLine();
         } catch (IOException e) {
             logger.log(Level.SEVERE, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Display the invite to enter the next instruction, unless reading a
+     * script, with what is left of the output of the last instruction
+     */
+    public void writePrompt() {
+        if (interactive){
+            output.append(promptText);
         }
+        endCommand();
     }
 
     /**
-     * Write an information to the output, formatted as an information
+     * Parse a line read elsewhere than from the input stream of the
+     * interface, with the same patterns as #getNextInstruction()
+     * @param userEntry a full line entered by the user, without its line return
+     * @return the instruction entered, or null if it is not recognised, the
+     * user being warned in this case
+     */
+    public Instruction parseLine(String userEntry) {
+        return parseInstruction(userEntry);
+    }
+
+    /**
+     * Encode the text rendered so far to the output, and make it visible to
+     * the user unless reading a script
+     */
+    private void endCommand() {
+        try {
+            encodeOutput();
+            if (interactive){
+                userDisplayWriter.flush();
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Encode the text rendered so far if it fills a chunk, so that a long
+     * timeline or wall is not held in memory as a whole
+     */
+    private void encodeIfFull() {
+        if (output.length() >= OUTPUT_CHUNK_SIZE){
+            try {
+                encodeOutput();
+            } catch (IOException e) {
+                logger.log(Level.SEVERE, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void encodeOutput() throws IOException {
+        for (int offset = 0; offset < output.length(); offset += outputChunk.length){
+            int length = Math.min(outputChunk.length, output.length() - offset);
+            output.getChars(offset, offset + length, outputChunk, 0);
+            userDisplayWriter.write(outputChunk, 0, length);
+        }
+        output.setLength(0);
+    }
+
+    /**
+     * Render an information to the output, formatted as an information
      * (for instance a line return at the end)
      *
      * @param information the message to display
      * @see #PROPERTY_MESSAGE_INFO
      */
-    private void writeInformation(String information){
-        String messageFormat = properties.getProperty(PROPERTY_MESSAGE_INFO);
-        write(String.format(messageFormat, information));
+    private void renderInformation(CharSequence information){
+        informationFormat.render(output, information);
     }
 
     /**
@@ -165,17 +340,30 @@ public class ConsoleInterface implements UserInterface{
      */
     @Override
     public void writeHelp(){
-        writeInformation(getText(PROPERTY_MESSAGE_HELP));
+        renderInformation(helpText);
+        endCommand();
     }
 
     /**
      * Display a warning message regarding a user not found
-     * @param user the user that is missing
+     * @param user the identifier of the user that is missing
+     */
+    @Override
+    public void writeWarningUnknownUser(int user) {
+        line.setLength(0);
+        renderInformation(unknownUserFormat.render(line, symbols.nameOf(user)));
+        endCommand();
+    }
+
+    /**
+     * Display an error message regarding an instruction not applied
+     * @param message the reason why the instruction failed
      */
     @Override
-    public void writeWarningUnknownUser(String user) {
-        writeInformation(String.format(getText(PROPERTY_MESSAGE_UNKNOWN_USER),
-            user));
+    public void writeError(String message) {
+        line.setLength(0);
+        renderInformation(errorFormat.render(line, message));
+        endCommand();
     }
 
     /**
@@ -184,13 +372,11 @@ public class ConsoleInterface implements UserInterface{
      */
     @Override
     public void writeTimeline(Timeline timeline, Date currentTime) {
-        if (timeline != null){
-            writeInformation(String.format(
-                properties.getProperty(PROPERTY_MESSAGE_TIMELINE),
-                timeline.getMessage(),
-                printDelay(timeline.getMessageTimestamp(), currentTime)));
-            writeTimeline(timeline.getNext(), currentTime);
+        long now = currentTime.getTime();
+        for (Timeline post = timeline; post != null; post = post.getNext()){
+            renderTimelinePost(post, now);
         }
+        endCommand();
     }
 
     /**
@@ -199,35 +385,55 @@ public class ConsoleInterface implements UserInterface{
      */
     @Override
     public void writeWall(Timeline wall, Date currentTime) {
-        if (wall != null){
-            writeInformation(String.format(
-                properties.getProperty(PROPERTY_MESSAGE_WALL),
-                wall.getUser(),
-                wall.getMessage(),
-                printDelay(wall.getMessageTimestamp(), currentTime)));
-            writeWall(wall.getNext(), currentTime);
+        long now = currentTime.getTime();
+        for (Timeline post = wall; post != null; post = post.getNext()){
+            renderWallPost(post, now);
         }
+        endCommand();
+    }
 
+    /**
+     * Write a page of a timeline to the console, and remember where the next
+     * page starts
+     * @see fr.baraud.codurance.monologue.ui.UserInterface
+     */
+    @Override
+    public void writeTimeline(Page page, Date currentTime) {
+        long now = currentTime.getTime();
+        for (Timeline post : page.getPosts()){
+            renderTimelinePost(post, now);
+        }
+        nextPage = page.getNext();
+        endCommand();
     }
 
     /**
-     * Return the expression of delay in a sentence.
-     * Example: for 2500ms, if the base unit is 1000ms and the unit name is
-     * second, it will return "2 seconds ago"
-     * @param delay the time in ms to express as delay
-     * @param unit in ms to divide the delay in the base we desire
-     * @param delayExpressionSingular the sentence to express the delay for 0 or
-     * 1 unit. Ex: %1d second ago 
-     * @param delayExpressionPlural the sentence to express the delay for more
-     * than 1 unit. Ex: %1d seconds ago 
-     * @return the formatted delayExpression, the plural version or the singular
-     * version depending if the division delay/unit is superior to one or not.
+     * Write a page of a wall to the console, and remember where the next
+     * page starts
+     * @see fr.baraud.codurance.monologue.ui.UserInterface
      */
-    String printInUnit(long delay, long unit, String delayExpressionSingular,
-                       String delayExpressionPlural){
-        long result = delay/unit;
-        return result > 1 ? String.format(delayExpressionPlural, result) :
-            String.format(delayExpressionSingular, result);
+    @Override
+    public void writeWall(Page page, Date currentTime) {
+        long now = currentTime.getTime();
+        for (Timeline post : page.getPosts()){
+            renderWallPost(post, now);
+        }
+        nextPage = page.getNext();
+        endCommand();
+    }
+
+    private void renderTimelinePost(Timeline post, long currentTime){
+        line.setLength(0);
+        renderInformation(timelineFormat.render(line, post.getMessage(),
+            delays.format(post.getTimestamp(), currentTime)));
+        encodeIfFull();
+    }
+
+    private void renderWallPost(Timeline post, long currentTime){
+        line.setLength(0);
+        renderInformation(wallFormat.render(line, symbols.nameOf(post.getUser()), post.getMessage(),
+            delays.format(post.getTimestamp(), currentTime)));
+        encodeIfFull();
     }
 
     /**
@@ -239,124 +445,166 @@ public class ConsoleInterface implements UserInterface{
      * if the second date is the current Date and time
      */
     String printDelay(Date firstDate, Date now){
-
-        if (firstDate.compareTo(now) > 0){
-            throw new IllegalArgumentException("the date parameter should be "
-                + "previous to the second one");
-        }
-        long delay = now.getTime() - firstDate.getTime();
-        if (delay < ONE_MIN_IN_MS){
-            return printInUnit(delay, ONE_SECOND_IN_MS,
-                getText(PROPERTY_MESSAGE_SECOND_AGO),
-                getText(PROPERTY_MESSAGE_SECONDS_AGO));
-        }
-        if (delay < ONE_HOUR_IN_MS){
-            return printInUnit(delay, ONE_MIN_IN_MS,
-                getText(PROPERTY_MESSAGE_MINUTE_AGO),
-                getText(PROPERTY_MESSAGE_MINUTES_AGO));
-        }
-        if (delay < ONE_DAY_IN_MS) {
-            return printInUnit(delay, ONE_HOUR_IN_MS,
-                getText(PROPERTY_MESSAGE_HOUR_AGO),
-                getText(PROPERTY_MESSAGE_HOURS_AGO));
-        }
-        if (delay < ONE_MONTH_IN_MS) {
-            return printInUnit(delay, ONE_DAY_IN_MS,
-                getText(PROPERTY_MESSAGE_DAY_AGO),
-                getText(PROPERTY_MESSAGE_DAYS_AGO));
-        }
-        if (delay < ONE_YEAR_IN_MS) {
-            return printInUnit(delay, ONE_MONTH_IN_MS,
-                getText(PROPERTY_MESSAGE_MONTH_AGO),
-                getText(PROPERTY_MESSAGE_MONTHS_AGO));
-        }
-        return printInUnit(delay, ONE_YEAR_IN_MS,
-            getText(PROPERTY_MESSAGE_YEAR_AGO),
-            getText(PROPERTY_MESSAGE_YEARS_AGO));
+        return delays.format(firstDate.getTime(), now.getTime());
     }
 
     /**
      * Parse a user entry, that represents a line written in the terminal
      * before hitting return key. Depending on the pattern of the entry,
      * will create an Instruction of different Action type and will set
-     * associated characteristics such as the author or the content
+     * associated characteristics such as the author or the content.
+     * Only the author of a post is interned in the SymbolTable, the other
+     * names being looked up.
      * @param userEntry (a full line of an user entry)
      * @return a representation of the instruction entered, or null if
      * the pattern could not be mapped to any known Instruction
      */
     private Instruction parseInstruction(String userEntry){
-        final String quitInstruction = getText(PROPERTY_INSTRUCTION_QUIT);
-        final String followInstruction = getText(PROPERTY_INSTRUCTION_FOLLOW);
-        final String postInstruction = getText(PROPERTY_INSTRUCTION_POST);
-        final String helpInstruction = getText(PROPERTY_INSTRUCTION_HELP);
-        final String wallInstruction = getText(PROPERTY_INSTRUCTION_WALL);
+        int wordCount = parser.cut(userEntry);
+        switch (wordCount){
 
-        String[] instructionParts = userEntry.split(
-            getText(PROPERTY_INSTRUCTION_SPLIT));
-        switch (instructionParts.length){
+            case NO_WORD_INSTRUCTION:
+                return null;
 
             case ONE_WORD_INSTRUCTION:
-                String firstElement = instructionParts[0];
-                if (firstElement.isEmpty()){
-                    write("");
-                    return null;
-                }
-                if (firstElement.equals(quitInstruction)){
+                if (parser.isQuit(0)){
                     return new ExitInstruction();
                 }
-                if (firstElement.equals(helpInstruction)){
+                if (parser.isHelp(0)){
                     return new HelpInstruction();
                 }
-                return new ShowTimelineInstruction(instructionParts[0]);
+                if (parser.isMore(0)){
+                    return nextPageInstruction();
+                }
+                int reader = knownUser(0);
+                return reader == SymbolTable.UNKNOWN ? null : new ShowTimelineInstruction(reader);
 
             case TWO_WORD_INSTRUCTION:
-                if (instructionParts[1].equals(wallInstruction)){
-                    return new ShowWallInstruction(instructionParts[0]);
+                if (parser.isWall(1)){
+                    int wallOwner = knownUser(0);
+                    return wallOwner == SymbolTable.UNKNOWN ? null : new ShowWallInstruction(wallOwner);
+                }
+                int timelineLimit = parser.limit(1);
+                if (timelineLimit > 0){
+                    int timelineOwner = knownUser(0);
+                    return timelineOwner == SymbolTable.UNKNOWN ? null :
+                        firstPageInstruction(Action.SHOW_TIMELINE, timelineOwner, timelineLimit);
                 }
-                writeInformation(getText(PROPERTY_MESSAGE_UNKNOWN_COMMAND));
+                renderInformation(unknownCommandText);
                 return null;
 
             //3 or more words for instruction
             default:
-                String secondElement = instructionParts[1];
-                if (secondElement.equals(postInstruction)){
-                    String postMessage = userEntry.replaceFirst(
-                        instructionParts[0]+getText(PROPERTY_INSTRUCTION_SPLIT)
-                            +instructionParts[1]+getText(PROPERTY_INSTRUCTION_SPLIT),
-                        "");
-                    return new PostInstruction(instructionParts[0], postMessage);
+                if (wordCount == THREE_WORD_INSTRUCTION && parser.isWall(1)){
+                    int wallLimit = parser.limit(2);
+                    if (wallLimit > 0){
+                        int wallOwner = knownUser(0);
+                        return wallOwner == SymbolTable.UNKNOWN ? null :
+                            firstPageInstruction(Action.SHOW_WALL, wallOwner, wallLimit);
+                    }
                 }
-                if (secondElement.equals(followInstruction)){
-                    return new FollowInstruction(instructionParts[0], instructionParts[2]);
+                if (parser.isPost(1)){
+                    return new PostInstruction(symbols.intern(parser.word(0)), parser.afterSecondWord());
                 }
-                writeInformation(getText(PROPERTY_MESSAGE_UNKNOWN_COMMAND));
+                if (parser.isFollow(1)){
+                    int follower = knownUser(0);
+                    int followed = follower == SymbolTable.UNKNOWN ? SymbolTable.UNKNOWN : knownUser(2);
+                    return followed == SymbolTable.UNKNOWN ? null : new FollowInstruction(follower, followed);
+                }
+                renderInformation(unknownCommandText);
                 return null;
 
         }
     }
 
+    /**
+     * Look a user up without adding the name to the SymbolTable, so that
+     * reading or following does not grow it: the user is warned if the name
+     * is not known
+     * @param word the position of the name in the line
+     * @return the identifier of the user, or SymbolTable.UNKNOWN
+     */
+    private int knownUser(int word){
+        String name = parser.word(word);
+        int user = symbols.lookup(name);
+        if (user == SymbolTable.UNKNOWN){
+            line.setLength(0);
+            renderInformation(unknownUserFormat.render(line, name));
+        }
+        return user;
+    }
+
+    /**
+     * Create the instruction displaying the first page of a timeline or a
+     * wall, and remember it for the next pages
+     * @param action SHOW_TIMELINE or SHOW_WALL
+     * @param user the owner of the timeline or the wall
+     * @param limit the page size
+     * @return the instruction displaying the first page
+     */
+    private Instruction firstPageInstruction(Action action, int user, int limit){
+        pagedAction = action;
+        pagedUser = user;
+        pageLimit = limit;
+        nextPage = null;
+        return pageInstruction(null);
+    }
+
+    /**
+     * Create the instruction displaying the page following the last one
+     * displayed, or warn the user if there is none
+     * @return the instruction displaying the next page, or null if there is
+     * no more page
+     */
+    private Instruction nextPageInstruction(){
+        if (nextPage == null){
+            renderInformation(noMorePostsText);
+            return null;
+        }
+        return pageInstruction(nextPage);
+    }
+
+    private Instruction pageInstruction(Cursor cursor){
+        return pagedAction == Action.SHOW_WALL ?
+            new ShowWallInstruction(pagedUser, pageLimit, cursor) :
+            new ShowTimelineInstruction(pagedUser, pageLimit, cursor);
+    }
+
     /**
      * Display to the interface the welcome message
      */
     private void sayHello() {
-        writeInformation(getText(PROPERTY_MESSAGE_LOGO));
-        writeInformation(getText(PROPERTY_MESSAGE_WELCOME));
+        if (!interactive){
+            return;
+        }
+        renderInformation(renderText(PROPERTY_MESSAGE_LOGO));
+        renderInformation(renderText(PROPERTY_MESSAGE_WELCOME));
+        endCommand();
     }
 
     /**
      * Display to the interface the goodbye message
      */
     private void sayBye() {
-        writeInformation(getText(PROPERTY_MESSAGE_GOODBYE));
+        if (interactive){
+            renderInformation(renderText(PROPERTY_MESSAGE_GOODBYE));
+        }
     }
 
     /**
-     * In the case of the ConsoleInterface, there is nothing to close
+     * In the case of the ConsoleInterface, there is nothing to close, the
+     * output of a script is flushed
      * @see UserInterface#close()
      */
     @Override
     public void close() {
         sayBye();
+        try {
+            encodeOutput();
+            userDisplayWriter.flush();
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, e.getMessage(), e);
+        }
     }
 
     /**
@@ -371,4 +619,12 @@ public class ConsoleInterface implements UserInterface{
         return result == null? "": result;
     }
 
+    /**
+     * @param property the property key of a text to display
+     * @return the text, its line returns and other formats resolved
+     */
+    private String renderText(String property){
+        return Template.compile(getText(property)).render(new StringBuilder()).toString();
+    }
+
 }
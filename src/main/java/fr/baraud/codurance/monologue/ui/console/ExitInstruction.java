@@ -12,6 +12,12 @@ import java.util.Date;
  */
 public class ExitInstruction implements Instruction{
 
+    /**
+     * The exit returned once the input is exhausted, which is not read from
+     * any line
+     */
+    public static final ExitInstruction END_OF_INPUT = new ExitInstruction();
+
     @Override
     public Action getAction() {
         return Action.EXIT;
@@ -12,10 +12,10 @@ import java.util.Date;
  */
 public class FollowInstruction implements Instruction {
 
-    private final String follower;
-    private final String following;
+    private final int follower;
+    private final int following;
 
-    public FollowInstruction(String follower, String following){
+    public FollowInstruction(int follower, int following){
         this.follower = follower;
         this.following = following;
     }
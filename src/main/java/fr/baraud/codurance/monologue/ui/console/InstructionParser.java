@@ -0,0 +1,188 @@
+package fr.baraud.codurance.monologue.ui.console;
+
+import java.util.Properties;
+
+/**
+ * An InstructionParser cuts the lines entered in the console into words,
+ * with the separator and the keywords of the console properties read once
+ * when it is created. A line is cut in a single pass over its chars, the
+ * words being kept as offsets into it: only the words needed, such as a
+ * user name or the message of a post, are copied out of the line.
+ * As the properties, the words are cut as String#split would, but the
+ * separator is taken as a literal text instead of a regular expression.
+ * It keeps the last line cut, so it should be used by a single thread.
+ */
+final class InstructionParser {
+
+    // property key to the pattern used to recognised the post instruction
+    private static final String PROPERTY_INSTRUCTION_POST = "ui.console.instructions.post";
+    // property key to the pattern used to recognised the wall instruction
+    private static final String PROPERTY_INSTRUCTION_WALL = "ui.console.instructions.wall";
+    // property key to the pattern used to recognised the follow instruction
+    private static final String PROPERTY_INSTRUCTION_FOLLOW = "ui.console.instructions.follow";
+    // property key to the pattern used to recognised the help instruction
+    private static final String PROPERTY_INSTRUCTION_HELP ="ui.console.instructions.help";
+    // property key to the pattern used to recognised the quit instruction
+    private static final String PROPERTY_INSTRUCTION_QUIT = "ui.console.instructions.quit";
+    // property key to the pattern used to recognised the instruction displaying the next page
+    private static final String PROPERTY_INSTRUCTION_MORE = "ui.console.instructions.more";
+    // property key to the pattern used to split the instruction in sequences
+    private static final String PROPERTY_INSTRUCTION_SPLIT ="ui.console.instructions.split";
+
+    private static final String DEFAULT_SEPARATOR = " ";
+
+    // the number of words whose offsets are kept, the longest instructions having 3 words
+    private static final int MAX_WORDS = 3;
+
+    private final String separator;
+    private final String postKeyword;
+    private final String wallKeyword;
+    private final String followKeyword;
+    private final String helpKeyword;
+    private final String quitKeyword;
+    private final String moreKeyword;
+
+    /**
+     * The last line cut
+     */
+    private String line = "";
+
+    /**
+     * The number of words of the last line cut, without the empty words
+     * ending it
+     */
+    private int wordCount;
+
+    /**
+     * The offsets of the first words of the last line cut
+     */
+    private final int[] wordStarts = new int[MAX_WORDS];
+    private final int[] wordEnds = new int[MAX_WORDS];
+
+    /**
+     * @param properties the console properties with the separator and the
+     * keywords of the instructions
+     */
+    InstructionParser(Properties properties){
+        String split = properties.getProperty(PROPERTY_INSTRUCTION_SPLIT);
+        this.separator = split == null || split.isEmpty() ? DEFAULT_SEPARATOR : split;
+        this.postKeyword = keyword(properties, PROPERTY_INSTRUCTION_POST);
+        this.wallKeyword = keyword(properties, PROPERTY_INSTRUCTION_WALL);
+        this.followKeyword = keyword(properties, PROPERTY_INSTRUCTION_FOLLOW);
+        this.helpKeyword = keyword(properties, PROPERTY_INSTRUCTION_HELP);
+        this.quitKeyword = keyword(properties, PROPERTY_INSTRUCTION_QUIT);
+        this.moreKeyword = keyword(properties, PROPERTY_INSTRUCTION_MORE);
+    }
+
+    private static String keyword(Properties properties, String property){
+        String keyword = properties.getProperty(property);
+        return keyword == null ? "" : keyword;
+    }
+
+    /**
+     * Cut a line into words
+     * @param userEntry a full line entered by the user
+     * @return the number of words of the line, without the empty words
+     * ending it, 0 for an empty line
+     */
+    int cut(String userEntry){
+        line = userEntry;
+        wordCount = 0;
+        int words = 0;
+        int start = 0;
+        int position = 0;
+        int length = userEntry.length();
+        char first = separator.charAt(0);
+        while (position <= length){
+            boolean atSeparator = position < length && userEntry.charAt(position) == first
+                && userEntry.startsWith(separator, position);
+            if (position < length && !atSeparator){
+                position++;
+                continue;
+            }
+            if (words < MAX_WORDS){
+                wordStarts[words] = start;
+                wordEnds[words] = position;
+            }
+            words++;
+            if (position > start){
+                wordCount = words;
+            }
+            position += atSeparator ? separator.length() : 1;
+            start = position;
+        }
+        return wordCount;
+    }
+
+    /**
+     * @param word the position of a word of the last line cut, below 3
+     * @return a copy of the word
+     */
+    String word(int word){
+        return line.substring(wordStarts[word], wordEnds[word]);
+    }
+
+    /**
+     * @return the text after the second word and its separator, the message
+     * of a post
+     */
+    String afterSecondWord(){
+        return line.substring(Math.min(wordEnds[1] + separator.length(), line.length()));
+    }
+
+    boolean isPost(int word){
+        return is(word, postKeyword);
+    }
+
+    boolean isWall(int word){
+        return is(word, wallKeyword);
+    }
+
+    boolean isFollow(int word){
+        return is(word, followKeyword);
+    }
+
+    boolean isHelp(int word){
+        return is(word, helpKeyword);
+    }
+
+    boolean isQuit(int word){
+        return is(word, quitKeyword);
+    }
+
+    boolean isMore(int word){
+        return is(word, moreKeyword);
+    }
+
+    /**
+     * @param word the position of a word of the last line cut, below 3
+     * @return the positive number written as the word, or 0 if it is not one
+     */
+    int limit(int word){
+        int position = wordStarts[word];
+        int end = wordEnds[word];
+        if (position < end && line.charAt(position) == '+'){
+            position++;
+        }
+        if (position == end){
+            return 0;
+        }
+        long limit = 0;
+        for (; position < end; position++){
+            int digit = Character.digit(line.charAt(position), 10);
+            if (digit < 0){
+                return 0;
+            }
+            limit = limit * 10 + digit;
+            if (limit > Integer.MAX_VALUE){
+                return 0;
+            }
+        }
+        return (int) limit;
+    }
+
+    private boolean is(int word, String keyword){
+        int length = wordEnds[word] - wordStarts[word];
+        return length == keyword.length() && line.startsWith(keyword, wordStarts[word]);
+    }
+}
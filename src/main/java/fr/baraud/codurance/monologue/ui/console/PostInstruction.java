@@ -12,11 +12,11 @@ import java.util.Date;
  */
 public class PostInstruction implements Instruction {
 
-    private final String user;
+    private final int user;
     private final String content;
 
 
-    public PostInstruction(String user, String content){
+    public PostInstruction(int user, String content){
         this.user = user;
         this.content = content;
     }
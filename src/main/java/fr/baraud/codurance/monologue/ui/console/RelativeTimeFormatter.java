@@ -0,0 +1,114 @@
+package fr.baraud.codurance.monologue.ui.console;
+
+import java.util.Properties;
+
+/**
+ * A RelativeTimeFormatter expresses the time passed since a post in the
+ * largest unit it reaches, as "20 seconds ago" or "1 year ago".
+ * The formats of the units are read from the console properties once, and
+ * the sentences for the counts each unit can reach before the next one, up
+ * to a century, are rendered once too: formatting a delay only divides it.
+ */
+final class RelativeTimeFormatter {
+
+    // property key to the unit base second in singular
+    private static final String PROPERTY_MESSAGE_SECOND_AGO = "ui.console.message.second.ago";
+    // property key to the unit base second in plural
+    private static final String PROPERTY_MESSAGE_SECONDS_AGO = "ui.console.message.seconds.ago";
+    // property key to the unit base minute in singular
+    private static final String PROPERTY_MESSAGE_MINUTE_AGO = "ui.console.message.minute.ago";
+    // property key to the unit base minute in plural
+    private static final String PROPERTY_MESSAGE_MINUTES_AGO = "ui.console.message.minutes.ago";
+    // property key to the unit base hour in singular
+    private static final String PROPERTY_MESSAGE_HOUR_AGO = "ui.console.message.hour.ago";
+    // property key to the unit base hour in plural
+    private static final String PROPERTY_MESSAGE_HOURS_AGO = "ui.console.message.hours.ago";
+    // property key to the unit base day in singular
+    private static final String PROPERTY_MESSAGE_DAY_AGO = "ui.console.message.day.ago";
+    // property key to the unit base day in plural
+    private static final String PROPERTY_MESSAGE_DAYS_AGO = "ui.console.message.days.ago";
+    // property key to the unit base month in singular
+    private static final String PROPERTY_MESSAGE_MONTH_AGO = "ui.console.message.month.ago";
+    // property key to the unit base month in plural
+    private static final String PROPERTY_MESSAGE_MONTHS_AGO = "ui.console.message.months.ago";
+    // property key to the unit base year in singular
+    private static final String PROPERTY_MESSAGE_YEAR_AGO = "ui.console.message.year.ago";
+    // property key to the unit base year in plural
+    private static final String PROPERTY_MESSAGE_YEARS_AGO = "ui.console.message.years.ago";
+
+    private static final long ONE_SECOND_IN_MS = 1000L;
+    private static final long ONE_MIN_IN_MS = 60000L;
+    private static final long ONE_HOUR_IN_MS = 3600000L;
+    private static final long ONE_DAY_IN_MS = 86400000L;
+    private static final long ONE_MONTH_IN_MS = 2592000000L;
+    private static final long ONE_YEAR_IN_MS = 31104000000L;
+
+    // the units, from the smallest, each one being used until the delay reaches the next one
+    private static final long[] UNITS = {ONE_SECOND_IN_MS, ONE_MIN_IN_MS, ONE_HOUR_IN_MS, ONE_DAY_IN_MS,
+        ONE_MONTH_IN_MS, ONE_YEAR_IN_MS};
+    private static final String[] SINGULARS = {PROPERTY_MESSAGE_SECOND_AGO, PROPERTY_MESSAGE_MINUTE_AGO,
+        PROPERTY_MESSAGE_HOUR_AGO, PROPERTY_MESSAGE_DAY_AGO, PROPERTY_MESSAGE_MONTH_AGO, PROPERTY_MESSAGE_YEAR_AGO};
+    private static final String[] PLURALS = {PROPERTY_MESSAGE_SECONDS_AGO, PROPERTY_MESSAGE_MINUTES_AGO,
+        PROPERTY_MESSAGE_HOURS_AGO, PROPERTY_MESSAGE_DAYS_AGO, PROPERTY_MESSAGE_MONTHS_AGO,
+        PROPERTY_MESSAGE_YEARS_AGO};
+
+    // the number of years rendered in advance
+    private static final int CACHED_YEARS = 100;
+
+    private final Template[] singulars = new Template[UNITS.length];
+    private final Template[] plurals = new Template[UNITS.length];
+
+    /**
+     * The sentences of each unit, indexed by the count of the unit
+     */
+    private final String[][] sentences = new String[UNITS.length][];
+
+    /**
+     * @param properties the console properties with the formats of the units
+     */
+    RelativeTimeFormatter(Properties properties){
+        for (int unit = 0; unit < UNITS.length; unit++){
+            singulars[unit] = Template.compile(getText(properties, SINGULARS[unit]));
+            plurals[unit] = Template.compile(getText(properties, PLURALS[unit]));
+            int counts = unit + 1 < UNITS.length ? (int) (UNITS[unit + 1] / UNITS[unit]) : CACHED_YEARS;
+            sentences[unit] = new String[counts];
+            for (int count = 0; count < counts; count++){
+                sentences[unit][count] = render(unit, count);
+            }
+        }
+    }
+
+    private static String getText(Properties properties, String property){
+        String result = properties.getProperty(property);
+        return result == null ? "" : result;
+    }
+
+    /**
+     * @param timestamp the time in ms of a post, must be previous to now
+     * @param now the current time in ms
+     * @return a sentence representing the time spent since the timestamp
+     * @throws IllegalArgumentException if the timestamp is after now
+     */
+    String format(long timestamp, long now){
+        if (timestamp > now){
+            throw new IllegalArgumentException("the date parameter should be "
+                + "previous to the second one");
+        }
+        long delay = now - timestamp;
+        int unit = 0;
+        while (unit + 1 < UNITS.length && delay >= UNITS[unit + 1]){
+            unit++;
+        }
+        long count = delay / UNITS[unit];
+        return count < sentences[unit].length ? sentences[unit][(int) count] : render(unit, count);
+    }
+
+    /**
+     * @return the plural sentence of the unit for more than 1 unit, the
+     * singular one otherwise
+     */
+    private String render(int unit, long count){
+        Template sentence = count > 1 ? plurals[unit] : singulars[unit];
+        return sentence.render(new StringBuilder(), count).toString();
+    }
+}
@@ -1,5 +1,6 @@
 package fr.baraud.codurance.monologue.ui.console;
 
+import fr.baraud.codurance.monologue.timelines.Cursor;
 import fr.baraud.codurance.monologue.timelines.SocialStack;
 import fr.baraud.codurance.monologue.ui.Action;
 import fr.baraud.codurance.monologue.ui.Instruction;
@@ -12,10 +13,32 @@ import java.util.Date;
  */
 public class ShowTimelineInstruction implements Instruction {
 
-    private final String user;
+    private final int user;
 
-    public ShowTimelineInstruction(String user){
+    /**
+     * The maximum number of posts to display, 0 to display the whole timeline
+     */
+    private final int limit;
+
+    /**
+     * Where the page to display starts, null for the first page
+     */
+    private final Cursor cursor;
+
+    public ShowTimelineInstruction(int user){
+        this(user, 0, null);
+    }
+
+    /**
+     * Display only a page of the timeline
+     * @param user the owner of the timeline
+     * @param limit the maximum number of posts to display, 0 for all of them
+     * @param cursor where the page starts, null for the first page
+     */
+    public ShowTimelineInstruction(int user, int limit, Cursor cursor){
         this.user = user;
+        this.limit = limit;
+        this.cursor = cursor;
     }
 
 
@@ -28,6 +51,8 @@ public class ShowTimelineInstruction implements Instruction {
     public SocialStack apply(SocialStack socialStack, UserInterface ui, Date date) {
         if (!socialStack.userExist(user)){
             ui.writeWarningUnknownUser(user);
+        } else if (limit > 0){
+            ui.writeTimeline(socialStack.getTimeline(user, limit, cursor), date);
         } else {
             ui.writeTimeline(socialStack.getTimeline(user), date);
         }
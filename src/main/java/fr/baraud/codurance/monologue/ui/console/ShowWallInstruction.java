@@ -1,5 +1,6 @@
 package fr.baraud.codurance.monologue.ui.console;
 
+import fr.baraud.codurance.monologue.timelines.Cursor;
 import fr.baraud.codurance.monologue.timelines.SocialStack;
 import fr.baraud.codurance.monologue.ui.Action;
 import fr.baraud.codurance.monologue.ui.Instruction;
@@ -12,11 +13,32 @@ import java.util.Date;
  */
 public class ShowWallInstruction implements Instruction{
 
-    private final String user;
+    private final int user;
 
-    public ShowWallInstruction(String user){
-        this.user = user;
+    /**
+     * The maximum number of posts to display, 0 to display the whole wall
+     */
+    private final int limit;
+
+    /**
+     * Where the page to display starts, null for the first page
+     */
+    private final Cursor cursor;
 
+    public ShowWallInstruction(int user){
+        this(user, 0, null);
+    }
+
+    /**
+     * Display only a page of the wall
+     * @param user the owner of the wall
+     * @param limit the maximum number of posts to display, 0 for all of them
+     * @param cursor where the page starts, null for the first page
+     */
+    public ShowWallInstruction(int user, int limit, Cursor cursor){
+        this.user = user;
+        this.limit = limit;
+        this.cursor = cursor;
     }
 
     @Override
@@ -30,7 +52,11 @@ public class ShowWallInstruction implements Instruction{
             ui.writeWarningUnknownUser(user);
             return socialStack;
         }
+        if (limit > 0){
+            ui.writeWall(socialStack.getWall(user, limit, cursor), instructionDate);
+        } else {
             ui.writeWall(socialStack.getWall(user), instructionDate);
-            return socialStack;
+        }
+        return socialStack;
     }
 }
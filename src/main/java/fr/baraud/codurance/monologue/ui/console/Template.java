@@ -0,0 +1,216 @@
+package fr.baraud.codurance.monologue.ui.console;
+
+import java.util.ArrayList;
+import java.util.Formatter;
+import java.util.List;
+import java.util.MissingFormatArgumentException;
+
+/**
+ * A Template is a format of the console properties compiled once into its
+ * literal text and its arguments, so that it is rendered by appending them
+ * to a StringBuilder, without parsing the format again nor building a
+ * String for each line.
+ * It supports the subset of java.util.Formatter used by the properties:
+ * %n, %%, and the %s and %d conversions with an optional argument index,
+ * '-' flag and width. Any other format is rendered by a Formatter, as
+ * String.format would.
+ */
+final class Template {
+
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * The literal text before each argument, then after the last one
+     */
+    private final String[] literals;
+
+    /**
+     * The index of each argument, from 0
+     */
+    private final int[] arguments;
+
+    /**
+     * The minimum width of each argument, negative to pad it on the right
+     */
+    private final int[] widths;
+
+    /**
+     * The conversion of each argument, 's' or 'd'
+     */
+    private final char[] conversions;
+
+    /**
+     * The format when it is not supported, null otherwise
+     */
+    private final String unsupported;
+
+    private Template(String[] literals, int[] arguments, int[] widths, char[] conversions, String unsupported){
+        this.literals = literals;
+        this.arguments = arguments;
+        this.widths = widths;
+        this.conversions = conversions;
+        this.unsupported = unsupported;
+    }
+
+    /**
+     * @param format a format of java.util.Formatter, null being read as an
+     * empty one
+     * @return the compiled format
+     */
+    static Template compile(String format){
+        String text = format == null ? "" : format;
+        List<String> literals = new ArrayList<>();
+        List<int[]> arguments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int nextArgument = 0;
+        int position = 0;
+        while (position < text.length()){
+            char c = text.charAt(position++);
+            if (c != '%'){
+                literal.append(c);
+                continue;
+            }
+            int end = position;
+            while (end < text.length() && "-$0123456789".indexOf(text.charAt(end)) >= 0){
+                end++;
+            }
+            if (end >= text.length()){
+                return unsupported(text);
+            }
+            String specifier = text.substring(position, end);
+            char conversion = text.charAt(end);
+            position = end + 1;
+            if (specifier.isEmpty() && conversion == 'n'){
+                literal.append(LINE_SEPARATOR);
+                continue;
+            }
+            if (specifier.isEmpty() && conversion == '%'){
+                literal.append('%');
+                continue;
+            }
+            int dollar = specifier.indexOf('$');
+            String index = dollar < 0 ? "" : specifier.substring(0, dollar);
+            String flagAndWidth = specifier.substring(dollar + 1);
+            boolean left = flagAndWidth.startsWith("-");
+            String width = left ? flagAndWidth.substring(1) : flagAndWidth;
+            if ((conversion != 's' && conversion != 'd') || !isNumber(index, dollar < 0)
+                || !isNumber(width, !left) || (!width.isEmpty() && width.charAt(0) == '0')){
+                return unsupported(text);
+            }
+            int argument = dollar < 0 ? nextArgument++ : Integer.parseInt(index) - 1;
+            int minimumWidth = width.isEmpty() ? 0 : Integer.parseInt(width);
+            if (argument < 0){
+                return unsupported(text);
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            arguments.add(new int[]{argument, left ? -minimumWidth : minimumWidth, conversion});
+        }
+        literals.add(literal.toString());
+        int[] indexes = new int[arguments.size()];
+        int[] widths = new int[arguments.size()];
+        char[] conversions = new char[arguments.size()];
+        for (int slot = 0; slot < indexes.length; slot++){
+            indexes[slot] = arguments.get(slot)[0];
+            widths[slot] = arguments.get(slot)[1];
+            conversions[slot] = (char) arguments.get(slot)[2];
+        }
+        return new Template(literals.toArray(new String[0]), indexes, widths, conversions, null);
+    }
+
+    /**
+     * @param digits the text to check
+     * @param mayBeEmpty true if an empty text is valid
+     * @return true if the text is only made of digits
+     */
+    private static boolean isNumber(String digits, boolean mayBeEmpty){
+        if (digits.isEmpty()){
+            return mayBeEmpty;
+        }
+        for (int position = 0; position < digits.length(); position++){
+            if (!Character.isDigit(digits.charAt(position))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Template unsupported(String format){
+        return new Template(null, null, null, null, format);
+    }
+
+    /**
+     * Append the template without argument
+     * @param out where to render the template
+     * @return out
+     */
+    StringBuilder render(StringBuilder out){
+        return render(out, null, null, null);
+    }
+
+    /**
+     * Append the template with one argument
+     * @param out where to render the template
+     * @return out
+     */
+    StringBuilder render(StringBuilder out, Object first){
+        return render(out, first, null, null);
+    }
+
+    /**
+     * Append the template with two arguments
+     * @param out where to render the template
+     * @return out
+     */
+    StringBuilder render(StringBuilder out, Object first, Object second){
+        return render(out, first, second, null);
+    }
+
+    /**
+     * Append the template with up to three arguments, the missing ones being
+     * null
+     * @param out where to render the template
+     * @return out
+     * @throws java.util.MissingFormatArgumentException if the template takes
+     * more arguments
+     */
+    StringBuilder render(StringBuilder out, Object first, Object second, Object third){
+        if (unsupported != null){
+            new Formatter(out).format(unsupported, first, second, third);
+            return out;
+        }
+        for (int slot = 0; slot < arguments.length; slot++){
+            out.append(literals[slot]);
+            int argument = arguments[slot];
+            if (argument > 2){
+                throw new MissingFormatArgumentException("%" + (argument + 1) + "$" + conversions[slot]);
+            }
+            Object value = argument == 0 ? first : argument == 1 ? second : third;
+            int start = out.length();
+            if (conversions[slot] == 'd' && value instanceof Number){
+                out.append(((Number) value).longValue());
+            } else if (value instanceof CharSequence){
+                out.append((CharSequence) value);
+            } else {
+                out.append(value);
+            }
+            pad(out, start, widths[slot]);
+        }
+        return out.append(literals[literals.length - 1]);
+    }
+
+    /**
+     * Pad the text appended from start with spaces up to the width, on the
+     * left, or on the right if the width is negative
+     */
+    private static void pad(StringBuilder out, int start, int width){
+        int missing = Math.abs(width) - (out.length() - start);
+        for (int space = 0; space < missing; space++){
+            if (width < 0){
+                out.append(' ');
+            } else {
+                out.insert(start, ' ');
+            }
+        }
+    }
+}
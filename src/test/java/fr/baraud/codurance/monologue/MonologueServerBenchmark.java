@@ -0,0 +1,124 @@
+package fr.baraud.codurance.monologue;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import fr.baraud.codurance.monologue.timelines.SharedSocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+
+/**
+ * Latency of a command typed in one of many sessions connected at once to a
+ * server on localhost, with a thread per session or with the NIO event
+ * loops, its percentiles (p0.99 among them) being reported by the sample
+ * time mode. The number of sessions actually connected is printed once they
+ * are opened, the connections stopping at the first one refused, with the
+ * heap and the threads they use.
+ * The client and the server sockets of a session both count in the open
+ * files of the process, so 10000 sessions need a limit above 20000
+ * (ulimit -n).
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss256k")
+@State(Scope.Benchmark)
+public class MonologueServerBenchmark {
+
+    @Param({"1000", "10000"})
+    public int connections;
+
+    @Param({"threads", "nio"})
+    public String frontEnd;
+
+    private Closeable server;
+    private final List<SessionClient> clients = new ArrayList<>();
+
+    @Setup
+    public void connect() throws IOException {
+        Properties consoleProps = Monologue.loadProperties("console-interface.properties");
+        SharedSocialStack socialStack = new SharedSocialStack(new MemorySocialStack());
+        int port;
+        Runnable acceptLoop;
+        if ("nio".equals(frontEnd)){
+            ServerSocketChannel serverChannel = ServerSocketChannel.open()
+                .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), connections);
+            port = serverChannel.socket().getLocalPort();
+            NioMonologueServer nioServer = new NioMonologueServer(serverChannel, socialStack, consoleProps,
+                new SymbolTable(), 2, Runtime.getRuntime().availableProcessors());
+            server = nioServer;
+            acceptLoop = nioServer;
+        } else {
+            ServerSocket serverSocket = new ServerSocket(0, connections, InetAddress.getLoopbackAddress());
+            port = serverSocket.getLocalPort();
+            MonologueServer threadServer = new MonologueServer(serverSocket, socialStack, consoleProps,
+                new SymbolTable());
+            server = threadServer;
+            acceptLoop = threadServer;
+        }
+        Thread acceptor = new Thread(acceptLoop);
+        acceptor.setDaemon(true);
+        acceptor.start();
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        try {
+            for (int session = 0; session < connections; session++){
+                SessionClient client = new SessionClient("localhost", port);
+                clients.add(client);
+                client.send("user" + session + " -> Hello, this is my first post");
+            }
+        } catch (IOException e) {
+            System.out.printf("%nconnection refused: %s%n", e.getMessage());
+        }
+        System.out.printf("%nsessions connected: %d in %d ms, heap per session: %d bytes, threads: %d%n",
+            clients.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            (usedHeap() - heapBefore) / Math.max(clients.size(), 1), Thread.activeCount());
+    }
+
+    /**
+     * @return the heap used once collected, the clients included
+     */
+    private static long usedHeap(){
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @TearDown
+    public void disconnect() throws IOException {
+        for (SessionClient client : clients){
+            client.close();
+        }
+        server.close();
+    }
+
+    @Benchmark
+    public String post() throws IOException {
+        int session = ThreadLocalRandom.current().nextInt(clients.size());
+        SessionClient client = clients.get(session);
+        synchronized (client){
+            return client.send("user" + session + " -> Hello, this is a post of about forty chars");
+        }
+    }
+
+    @Benchmark
+    public String wall() throws IOException {
+        int session = ThreadLocalRandom.current().nextInt(clients.size());
+        SessionClient client = clients.get(session);
+        synchronized (client){
+            return client.send("user" + session + " wall");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package fr.baraud.codurance.monologue;
+
+import fr.baraud.codurance.monologue.timelines.SharedSocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import fr.baraud.codurance.monologue.ui.console.ConsoleInterface;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to run a script of a million instructions from 10000 users, eight
+ * posts and a follow for every timeline read, its output written to a file,
+ * through the interactive console, which prompts and flushes every line,
+ * against the script mode. The instructions per second are the million
+ * divided by the time.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ScriptBenchmark {
+
+    private static final int INSTRUCTION_COUNT = 1000000;
+    private static final int USER_COUNT = 10000;
+    private static final int INSTRUCTIONS_PER_READ = 10;
+
+    private byte[] script;
+    private Properties consoleProps;
+    private File output;
+
+    @Setup
+    public void writeScript() throws IOException {
+        StringBuilder instructions = new StringBuilder();
+        for (int instruction = 0; instruction < INSTRUCTION_COUNT - 1; instruction++){
+            int user = (instruction * 7919) % USER_COUNT;
+            switch (instruction % INSTRUCTIONS_PER_READ){
+                case 0:
+                    instructions.append("user").append(user);
+                    break;
+                case 1:
+                    instructions.append("user").append(user).append(" follows user")
+                        .append((user + instruction) % USER_COUNT);
+                    break;
+                default:
+                    instructions.append("user").append(user).append(" -> Hello, this is a post of about forty chars");
+            }
+            instructions.append('\n');
+        }
+        instructions.append("quit\n");
+        script = instructions.toString().getBytes(StandardCharsets.UTF_8);
+        consoleProps = Monologue.loadProperties("console-interface.properties");
+        output = File.createTempFile("script", ".out");
+        output.deleteOnExit();
+    }
+
+    @Benchmark
+    public long interactive() throws IOException {
+        try (OutputStream out = new FileOutputStream(output)) {
+            return new Monologue().listenSession(new ConsoleInterface(new ByteArrayInputStream(script), out,
+                consoleProps, new SymbolTable()), new SharedSocialStack(new MemorySocialStack()));
+        }
+    }
+
+    @Benchmark
+    public long script() throws IOException {
+        try (OutputStream out = new FileOutputStream(output)) {
+            return new Monologue().runScript(new ByteArrayInputStream(script), out, consoleProps,
+                new SymbolTable(), new MemorySocialStack());
+        }
+    }
+}
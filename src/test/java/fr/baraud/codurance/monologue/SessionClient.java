@@ -0,0 +1,83 @@
+package fr.baraud.codurance.monologue;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A client of a MonologueServer session, typing a command and reading the
+ * output until the next prompt
+ */
+class SessionClient implements Closeable {
+
+    private static final String PROMPT = " >";
+
+    private final Socket socket;
+    private final InputStream in;
+    private final OutputStream out;
+
+    /**
+     * Connect to a server, reading its welcome message up to the first prompt
+     */
+    SessionClient(String host, int port) throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        in = new BufferedInputStream(socket.getInputStream());
+        out = socket.getOutputStream();
+        readUntilPrompt();
+    }
+
+    /**
+     * @return the output of the command, without the next prompt
+     */
+    String send(String command) throws IOException {
+        type((command + "\n").getBytes(StandardCharsets.UTF_8));
+        return readUntilPrompt();
+    }
+
+    /**
+     * Send bytes without waiting for any output, e.g. part of a line or
+     * several lines at once
+     */
+    void type(byte[] bytes) throws IOException {
+        out.write(bytes);
+        out.flush();
+    }
+
+    /**
+     * Quit the session, then close the connection
+     */
+    void quit() throws IOException {
+        out.write("quit\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        while (in.read() >= 0){
+            // the server closes the connection once the goodbye is written
+        }
+        close();
+    }
+
+    /**
+     * @return the output up to the next prompt, without it
+     */
+    String readUntilPrompt() throws IOException {
+        StringBuilder output = new StringBuilder();
+        while (output.length() < PROMPT.length()
+            || output.indexOf(PROMPT, output.length() - PROMPT.length()) < 0){
+            int read = in.read();
+            if (read < 0){
+                throw new IOException("the session was closed");
+            }
+            output.append((char) read);
+        }
+        return output.substring(0, output.length() - PROMPT.length());
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -1,14 +1,23 @@
 package fr.baraud.codurance.monologue;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.Test;
 
+import fr.baraud.codurance.monologue.timelines.Page;
+import fr.baraud.codurance.monologue.timelines.SharedSocialStack;
 import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
 import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
 import fr.baraud.codurance.monologue.ui.Action;
 import fr.baraud.codurance.monologue.ui.Instruction;
 import fr.baraud.codurance.monologue.ui.UserInterface;
@@ -34,6 +43,90 @@ public class TestMonologue {
         monologue.listenInstructions(mockUI, null);
     }
 
+    @Test
+    public void runScript_shouldRunEveryInstructionAndWriteTheirOutput() throws IOException {
+        //given
+        Properties props = Monologue.loadProperties("console-interface.properties");
+        String script = String.format("Alice -> Hello%nBob -> Hi%nBob follows Alice%nBob wall%n");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        //when
+        long instructionCount = new Monologue().runScript(new ByteArrayInputStream(script.getBytes()), out,
+            props, new SymbolTable(), new MemorySocialStack());
+        //then
+        assertEquals(4, instructionCount);
+        String output = out.toString();
+        assertTrue(output.contains("Bob - Hi"));
+        assertTrue(output.contains("Alice - Hello"));
+    }
+
+    @Test
+    public void instructionNotRecorded_shouldBeReportedAndTheSessionGoOn(){
+        //given
+        List<String> errors = new ArrayList<>();
+        MockUI mockUI = new MockUI(Arrays.asList(new FailingInstruction(), new FakeExitInstruction())) {
+            @Override
+            public void writeError(String message) {
+                errors.add(message);
+            }
+        };
+        //when
+        long instructionCount = new Monologue().listenSession(mockUI, new SharedSocialStack(null));
+        //then
+        assertEquals(Collections.singletonList("disk full"), errors);
+        assertEquals(2, instructionCount);
+    }
+
+    @Test
+    public void changeNotDurable_shouldBeReportedBeforeTheNextInstruction(){
+        //given
+        List<String> output = new ArrayList<>();
+        Instruction notDurable = new FailingInstruction() {
+            @Override
+            public SocialStack apply(SocialStack socialStack, UserInterface ui, Date instructionDate) {
+                return new MemorySocialStack() {
+                    @Override
+                    public CompletableFuture<Void> whenDurable() {
+                        CompletableFuture<Void> durable = new CompletableFuture<>();
+                        durable.completeExceptionally(new UncheckedIOException("disk lost",
+                            new IOException("disk lost")));
+                        return durable;
+                    }
+                };
+            }
+        };
+        Instruction exit = new FakeExitInstruction() {
+            @Override
+            public Action getAction() {
+                output.add("next");
+                return super.getAction();
+            }
+        };
+        MockUI mockUI = new MockUI(Arrays.asList(notDurable, exit)) {
+            @Override
+            public void writeError(String message) {
+                output.add(message);
+            }
+        };
+        //when
+        new Monologue().listenSession(mockUI, new SharedSocialStack(new MemorySocialStack()));
+        //then
+        assertEquals("disk lost", output.get(0));
+        assertEquals("next", output.get(1));
+    }
+
+    public class FailingInstruction implements Instruction{
+
+        @Override
+        public Action getAction() {
+            return Action.POST;
+        }
+
+        @Override
+        public SocialStack apply(SocialStack socialStack, UserInterface ui, Date instructionDate) {
+            throw new UncheckedIOException("disk full", new IOException("disk full"));
+        }
+    }
+
     public class FakeTimelineInstruction implements Instruction{
 
         @Override
@@ -65,7 +158,10 @@ public class TestMonologue {
         Iterator<Instruction> instructionIterator;
 
         public MockUI(){
-            List<Instruction> instructions = Arrays.asList(new FakeTimelineInstruction(), new FakeExitInstruction());
+            this(Arrays.asList(new FakeTimelineInstruction(), new FakeExitInstruction()));
+        }
+
+        public MockUI(List<Instruction> instructions){
             instructionIterator = instructions.iterator();
         }
 
@@ -87,13 +183,28 @@ public class TestMonologue {
 
         }
 
+        @Override
+        public void writeTimeline(Page page, Date currentTime) {
+
+        }
+
+        @Override
+        public void writeWall(Page page, Date currentTime) {
+
+        }
+
         @Override
         public void writeHelp() {
 
         }
 
         @Override
-        public void writeWarningUnknownUser(String user) {
+        public void writeWarningUnknownUser(int user) {
+
+        }
+
+        @Override
+        public void writeError(String message) {
 
         }
 
@@ -0,0 +1,131 @@
+package fr.baraud.codurance.monologue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.baraud.codurance.monologue.timelines.SharedSocialStack;
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+
+public class TestMonologueServer {
+
+    private MonologueServer server;
+    private SymbolTable symbols;
+    private int port;
+
+    @Before
+    public void startServer() throws IOException {
+        Properties consoleProps = Monologue.loadProperties("console-interface.properties");
+        symbols = new SymbolTable();
+        ServerSocket serverSocket = new ServerSocket(0, 1000, InetAddress.getLoopbackAddress());
+        port = serverSocket.getLocalPort();
+        server = new MonologueServer(serverSocket, new SharedSocialStack(new MemorySocialStack()),
+            consoleProps, symbols);
+        Thread acceptor = new Thread(server::run);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void run_concurrentSessions_shareTheStack() throws Exception {
+        //given
+        int sessionCount = 50;
+        ExecutorService clients = Executors.newFixedThreadPool(sessionCount);
+        List<Future<?>> results = new ArrayList<>();
+        //when
+        for (int session = 0; session < sessionCount; session++){
+            String user = "user" + session;
+            results.add(clients.submit(() -> {
+                SessionClient client = new SessionClient("localhost", port);
+                client.send(user + " -> Hello from " + user);
+                client.send(user + " -> Bye from " + user);
+                client.quit();
+                return null;
+            }));
+        }
+        for (Future<?> result : results){
+            result.get();
+        }
+        clients.shutdown();
+        //then
+        SocialStack stack = server.getSocialStack().get();
+        for (int session = 0; session < sessionCount; session++){
+            Timeline timeline = stack.getTimeline(symbols.lookup("user" + session));
+            assertEquals("Bye from user" + session, timeline.getMessage());
+            assertEquals("Hello from user" + session, timeline.getNext().getMessage());
+        }
+    }
+
+    @Test
+    public void run_otherSessionQuits_readsPostsOfOtherSessions() throws Exception {
+        //given
+        SessionClient alice = new SessionClient("localhost", port);
+        alice.send("Alice -> I love the weather today");
+        alice.quit();
+        SessionClient closedWithoutQuitting = new SessionClient("localhost", port);
+        closedWithoutQuitting.close();
+        //when
+        SessionClient bob = new SessionClient("localhost", port);
+        String timeline = bob.send("Alice");
+        bob.quit();
+        //then
+        assertTrue(timeline, timeline.contains("I love the weather today"));
+    }
+
+    @Test
+    public void close_sessionsStarted_endWhenUsersQuit() throws Exception {
+        //given
+        SessionClient alice = new SessionClient("localhost", port);
+        //when
+        server.close();
+        alice.send("Alice -> Still there");
+        alice.quit();
+        //then
+        assertTrue(server.awaitSessions(10, TimeUnit.SECONDS));
+        assertEquals("Still there",
+            server.getSocialStack().get().getTimeline(symbols.lookup("Alice")).getMessage());
+    }
+
+    @Test
+    public void run_lineTooLong_closesTheSession() throws Exception {
+        //given
+        SessionClient client = new SessionClient("localhost", port);
+        byte[] line = new byte[70 * 1024];
+        Arrays.fill(line, (byte) 'a');
+        //when
+        client.type(line);
+        //then
+        try {
+            client.readUntilPrompt();
+            fail("the session should be closed");
+        } catch (IOException e) {
+            // closed by the server
+        } finally {
+            client.close();
+        }
+    }
+}
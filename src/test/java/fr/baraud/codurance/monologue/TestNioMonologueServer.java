@@ -0,0 +1,167 @@
+package fr.baraud.codurance.monologue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import fr.baraud.codurance.monologue.timelines.SharedSocialStack;
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+
+public class TestNioMonologueServer {
+
+    private NioMonologueServer server;
+    private SymbolTable symbols;
+    private int port;
+
+    @Before
+    public void startServer() throws IOException {
+        Properties consoleProps = Monologue.loadProperties("console-interface.properties");
+        symbols = new SymbolTable();
+        ServerSocketChannel serverChannel = ServerSocketChannel.open()
+            .bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1000);
+        port = serverChannel.socket().getLocalPort();
+        server = new NioMonologueServer(serverChannel, new SharedSocialStack(new MemorySocialStack()),
+            consoleProps, symbols, 2, 2);
+        Thread acceptor = new Thread(server);
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void run_concurrentSessions_shareTheStack() throws Exception {
+        //given
+        int sessionCount = 50;
+        ExecutorService clients = Executors.newFixedThreadPool(sessionCount);
+        List<Future<?>> results = new ArrayList<>();
+        //when
+        for (int session = 0; session < sessionCount; session++){
+            String user = "user" + session;
+            results.add(clients.submit(() -> {
+                SessionClient client = new SessionClient("localhost", port);
+                client.send(user + " -> Hello from " + user);
+                client.send(user + " -> Bye from " + user);
+                client.quit();
+                return null;
+            }));
+        }
+        for (Future<?> result : results){
+            result.get();
+        }
+        clients.shutdown();
+        //then
+        SocialStack stack = server.getSocialStack().get();
+        for (int session = 0; session < sessionCount; session++){
+            Timeline timeline = stack.getTimeline(symbols.lookup("user" + session));
+            assertEquals("Bye from user" + session, timeline.getMessage());
+            assertEquals("Hello from user" + session, timeline.getNext().getMessage());
+        }
+    }
+
+    @Test
+    public void run_linesSentAtOnce_appliedInOrder() throws Exception {
+        //given
+        SessionClient client = new SessionClient("localhost", port);
+        //when
+        client.type(("Alice -> First\r\nAlice -> Second\nAlice -> Third\nAlice 2\nmore\nmore\n")
+            .getBytes(StandardCharsets.UTF_8));
+        for (int line = 0; line < 3; line++){
+            client.readUntilPrompt();
+        }
+        String firstPage = client.readUntilPrompt();
+        String secondPage = client.readUntilPrompt();
+        String noMorePage = client.readUntilPrompt();
+        client.quit();
+        //then
+        assertTrue(firstPage, firstPage.contains("Third") && firstPage.contains("Second"));
+        assertTrue(secondPage, secondPage.contains("First") && !secondPage.contains("Second"));
+        assertTrue(noMorePage, noMorePage.contains("No more posts"));
+    }
+
+    @Test
+    public void run_lineSplitInsideCharacter_isDecodedOnceComplete() throws Exception {
+        //given
+        SessionClient client = new SessionClient("localhost", port);
+        byte[] line = "Chlo\u00e9 -> Caf\u00e9 cr\u00e8me\n".getBytes(StandardCharsets.UTF_8);
+        //when
+        client.type(Arrays.copyOfRange(line, 0, 5));
+        Thread.sleep(50);
+        client.type(Arrays.copyOfRange(line, 5, 14));
+        Thread.sleep(50);
+        client.type(Arrays.copyOfRange(line, 14, line.length));
+        client.readUntilPrompt();
+        client.quit();
+        //then
+        assertEquals("Caf\u00e9 cr\u00e8me",
+            server.getSocialStack().get().getTimeline(symbols.lookup("Chlo\u00e9")).getMessage());
+    }
+
+    @Test
+    public void run_unknownCommand_warnsAsTheConsole() throws Exception {
+        //given
+        SessionClient client = new SessionClient("localhost", port);
+        //when
+        String output = client.send("Alice likes Bob");
+        String afterWarning = client.send("Alice -> Still fine");
+        client.quit();
+        //then
+        assertTrue(output, output.contains("Unknown command"));
+        assertEquals("", afterWarning);
+        assertEquals("Still fine",
+            server.getSocialStack().get().getTimeline(symbols.lookup("Alice")).getMessage());
+    }
+
+    @Test
+    public void run_outputNotRead_isResumedOnceRead() throws Exception {
+        //given a wall of about 7 KiB, read more times than the output queued and the socket buffers hold
+        SessionClient client = new SessionClient("localhost", port);
+        StringBuilder posts = new StringBuilder();
+        for (int post = 0; post < 100; post++){
+            posts.append("Alice -> Post ").append(post).append(" of a wall long enough to fill the output\n");
+        }
+        client.type(posts.toString().getBytes(StandardCharsets.UTF_8));
+        for (int post = 0; post < 100; post++){
+            client.readUntilPrompt();
+        }
+        int wallCount = 1000;
+        StringBuilder walls = new StringBuilder();
+        for (int wall = 0; wall < wallCount; wall++){
+            walls.append("Alice wall\n");
+        }
+        //when the walls are only read once all sent
+        client.type(walls.toString().getBytes(StandardCharsets.UTF_8));
+        Thread.sleep(200);
+        List<String> outputs = new ArrayList<>();
+        for (int wall = 0; wall < wallCount; wall++){
+            outputs.add(client.readUntilPrompt());
+        }
+        client.quit();
+        //then
+        for (String output : outputs){
+            assertTrue(output.contains("Post 0 of") && output.contains("Post 99 of"));
+        }
+    }
+}
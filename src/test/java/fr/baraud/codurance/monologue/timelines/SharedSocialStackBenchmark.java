@@ -0,0 +1,73 @@
+package fr.baraud.codurance.monologue.timelines;
+
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of concurrent sessions sharing a stack, with and without the
+ * backoff between the attempts, a session posting once for every nine walls
+ * it reads. The retries per post are printed after each iteration.
+ * Run it once per number of sessions with the -t option, e.g. -t 1, -t 8,
+ * -t 64.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SharedSocialStackBenchmark {
+
+    private static final int USER_COUNT = 1000;
+    private static final int FOLLOWS_PER_USER = 10;
+    private static final int READS_PER_POST = 9;
+
+    /**
+     * The bound in ns of the first pause, 0 to retry without pausing
+     */
+    @Param({"0", "1000"})
+    public long minBackoff;
+
+    private SharedSocialStack shared;
+    private long retriesBefore;
+
+    @Setup
+    public void fillStack(){
+        SocialStack stack = new MemorySocialStack();
+        for (int user = 0; user < USER_COUNT; user++){
+            stack = stack.post(user, "Hello, this is my first post", new Date(user));
+        }
+        for (int user = 0; user < USER_COUNT; user++){
+            for (int follow = 1; follow <= FOLLOWS_PER_USER; follow++){
+                stack = stack.follow(user, (user + follow) % USER_COUNT);
+            }
+        }
+        shared = new SharedSocialStack(stack, minBackoff, 1000000L);
+    }
+
+    @TearDown(Level.Iteration)
+    public void printRetries(){
+        System.out.printf("%nretries: %d%n", shared.getRetryCount() - retriesBefore);
+        retriesBefore = shared.getRetryCount();
+    }
+
+    @Benchmark
+    public Object session(){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int user = random.nextInt(USER_COUNT);
+        if (random.nextInt(READS_PER_POST + 1) == 0){
+            return shared.post(user, "Hello, this is a post of about forty chars", new Date());
+        }
+        return shared.get().getWall(user).getMessage();
+    }
+
+    @Benchmark
+    public SocialStack postOnly(){
+        int user = ThreadLocalRandom.current().nextInt(USER_COUNT);
+        return shared.post(user, "Hello, this is a post of about forty chars", new Date());
+    }
+}
@@ -0,0 +1,85 @@
+package fr.baraud.codurance.monologue.timelines;
+
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TestSharedSocialStack {
+
+    @Test
+    public void post_concurrentSessions_noPostIsLost() throws Exception {
+        //given
+        SharedSocialStack shared = new SharedSocialStack(new MemorySocialStack());
+        int sessionCount = 8;
+        int postsPerSession = 200;
+        ExecutorService sessions = Executors.newFixedThreadPool(sessionCount);
+        List<Future<?>> results = new ArrayList<>();
+        //when
+        for (int session = 0; session < sessionCount; session++){
+            int user = session;
+            results.add(sessions.submit(() -> {
+                for (int post = 0; post < postsPerSession; post++){
+                    shared.post(user, "Post " + post, new Date(post));
+                    shared.follow(user, (user + 1) % sessionCount);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results){
+            result.get();
+        }
+        sessions.shutdown();
+        //then
+        SocialStack stack = shared.get();
+        for (int user = 0; user < sessionCount; user++){
+            int count = 0;
+            for (Timeline post = stack.getTimeline(user); post != null; post = post.getNext()){
+                assertEquals("Post " + (postsPerSession - 1 - count), post.getMessage());
+                count++;
+            }
+            assertEquals(postsPerSession, count);
+        }
+    }
+
+    @Test
+    public void update_staleVersion_isAppliedAgainOnNewest(){
+        //given
+        SocialStack first = new MemorySocialStack();
+        SocialStack second = first.post(0, "Hello", new Date(0L));
+        SharedSocialStack shared = new SharedSocialStack(first);
+        //when another session publishes a version while the first change is applied
+        SocialStack result = shared.update(stack -> {
+            if (stack == first){
+                shared.update(older -> second);
+                throw new StaleVersionException("not the newest version");
+            }
+            return stack.post(0, "Again", new Date(1000L));
+        });
+        //then
+        assertSame(result, shared.get());
+        assertEquals("Again", result.getTimeline(0).getMessage());
+        assertEquals("Hello", result.getTimeline(0).getNext().getMessage());
+        assertEquals(1L, shared.getRetryCount());
+    }
+
+    @Test
+    public void update_unchangedStack_keepsSameVersion(){
+        //given
+        SocialStack stack = new MemorySocialStack();
+        SharedSocialStack shared = new SharedSocialStack(stack);
+        //when
+        SocialStack result = shared.post(0, "", new Date(0L));
+        //then
+        assertSame(stack, result);
+        assertSame(stack, shared.get());
+    }
+}
@@ -0,0 +1,62 @@
+package fr.baraud.codurance.monologue.timelines;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestSymbolTable {
+
+    @Test
+    public void intern_newNames_getDenseIdentifiers(){
+        //given
+        SymbolTable symbols = new SymbolTable();
+        //then
+        assertEquals(0, symbols.intern("Alice"));
+        assertEquals(1, symbols.intern("Bob"));
+        assertEquals(2, symbols.size());
+    }
+
+    @Test
+    public void intern_sameNameTwice_getSameIdentifier(){
+        //given
+        SymbolTable symbols = new SymbolTable();
+        int alice = symbols.intern("Alice");
+        //then
+        assertEquals(alice, symbols.intern("Alice"));
+        assertEquals(1, symbols.size());
+    }
+
+    @Test
+    public void nameOf_internedIdentifier_returnName(){
+        //given
+        SymbolTable symbols = new SymbolTable();
+        for (int i = 0; i < 1000; i++){
+            symbols.intern("user" + i);
+        }
+        //then
+        assertEquals("user999", symbols.nameOf(999));
+        assertEquals(999, symbols.lookup("user999"));
+    }
+
+    @Test
+    public void lookup_unknownName_returnUnknown(){
+        //given
+        SymbolTable symbols = new SymbolTable();
+        //then
+        assertEquals(SymbolTable.UNKNOWN, symbols.lookup("Santa"));
+    }
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    @Test
+    public void nameOf_unknownIdentifier_throwsException(){
+        //given
+        SymbolTable symbols = new SymbolTable();
+        exception.expect(IllegalArgumentException.class);
+        //when
+        symbols.nameOf(0);
+    }
+}
@@ -16,9 +16,9 @@ public class TestTimeline {
     @Test
     public void timelinesWithSameAttributes_areEqual(){
         //given
-        Timeline timeline1 = new Timeline("this is the same as the other", "me",
+        Timeline timeline1 = new Timeline("this is the same as the other", 0,
             new Date(0), null);
-        Timeline timeline2 = new Timeline("this is the same as the other", "me",
+        Timeline timeline2 = new Timeline("this is the same as the other", 0,
             new Date(0), null);
         //then
         assertEquals(timeline1, timeline2);
@@ -27,9 +27,9 @@ public class TestTimeline {
     @Test
     public void timelinesWithFromDifferentUsers_areNotEqual(){
         //given
-        Timeline timeline1 = new Timeline("this is the same as the other", "other",
+        Timeline timeline1 = new Timeline("this is the same as the other", 1,
             new Date(0), null);
-        Timeline timeline2 = new Timeline("this is the same as the other", "me",
+        Timeline timeline2 = new Timeline("this is the same as the other", 0,
             new Date(0), null);
         //then
         assertNotEquals(timeline1, timeline2);
@@ -38,9 +38,9 @@ public class TestTimeline {
     @Test
     public void timelinesWithDiffentMessages_areNotEqual(){
         //given
-        Timeline timeline1 = new Timeline("this is not the same as the other", "me",
+        Timeline timeline1 = new Timeline("this is not the same as the other", 0,
             new Date(0), null);
-        Timeline timeline2 = new Timeline("this is different", "me", new Date(0),
+        Timeline timeline2 = new Timeline("this is different", 0, new Date(0),
             null);
         assertNotEquals(timeline1, timeline2);
     }
@@ -50,9 +50,9 @@ public class TestTimeline {
         //given
         Date firstTime = new Date(0);
         Date aMinuteLater = new Date(60000L);
-        Timeline timeline1 = new Timeline("this is the same as the other", "me",
+        Timeline timeline1 = new Timeline("this is the same as the other", 0,
             firstTime, null);
-        Timeline timeline2 = new Timeline("this is the same as the other", "me",
+        Timeline timeline2 = new Timeline("this is the same as the other", 0,
             aMinuteLater, null);
         //then
         assertNotEquals(timeline1, timeline2);
@@ -61,11 +61,11 @@ public class TestTimeline {
     @Test
     public void timelinesWithDifferentHistory_areNotEqual(){
         //given
-        Timeline next1 = new Timeline("hey", "friend", new Date(0), null);
-        Timeline next2 = new Timeline("ho", "me", new Date(0), null);
-        Timeline timeline1 = new Timeline("this is the same as the other", "me",
+        Timeline next1 = new Timeline("hey", 1, new Date(0), null);
+        Timeline next2 = new Timeline("ho", 0, new Date(0), null);
+        Timeline timeline1 = new Timeline("this is the same as the other", 0,
             new Date(0), next1);
-        Timeline timeline2 = new Timeline("this is the same as the other", "me",
+        Timeline timeline2 = new Timeline("this is the same as the other", 0,
             new Date(0), next2);
         //then
         assertNotEquals(timeline1, timeline2);
@@ -74,7 +74,7 @@ public class TestTimeline {
     @Test
     public void timelineEqualsItself(){
         //given
-        Timeline timeline = new Timeline("this is the same as the other", "me",
+        Timeline timeline = new Timeline("this is the same as the other", 0,
             new Date(0), null);
         //then
         assertEquals(timeline, timeline);
@@ -84,7 +84,7 @@ public class TestTimeline {
     @Test
     public void timelineDoesNotEqualsOtherThings(){
         //given
-        Timeline timeline = new Timeline("this is the same as the other", "me",
+        Timeline timeline = new Timeline("this is the same as the other", 0,
             new Date(0), null);
         //then
         assertNotEquals(timeline, "this is the same as the other");
@@ -93,7 +93,7 @@ public class TestTimeline {
     @Test
     public void timelineDoesNotEqualNullButIsNPESafe(){
         //given
-        Timeline timeline = new Timeline("this is the same as the other", "me",
+        Timeline timeline = new Timeline("this is the same as the other", 0,
             new Date(0), null);
         //then
         assertNotEquals(timeline, null);
@@ -102,11 +102,11 @@ public class TestTimeline {
     @Test
     public void timeline_similarTopMessage_haveSameHashCode(){
         //given
-        Timeline next1 = new Timeline("hey", "friend", new Date(0), null);
-        Timeline next2 = new Timeline("ho", "me", new Date(0), null);
-        Timeline timeline1 = new Timeline("this is the same as the other", "me",
+        Timeline next1 = new Timeline("hey", 1, new Date(0), null);
+        Timeline next2 = new Timeline("ho", 0, new Date(0), null);
+        Timeline timeline1 = new Timeline("this is the same as the other", 0,
             new Date(0), next1);
-        Timeline timeline2 = new Timeline("this is the same as the other", "me",
+        Timeline timeline2 = new Timeline("this is the same as the other", 0,
             new Date(0), next2);
         //then
         assertEquals(timeline1.hashCode(), timeline2.hashCode());
@@ -118,7 +118,7 @@ public class TestTimeline {
     @Test
     public void compareToNullRaisesNPE() {
         //given
-        Timeline timeline = new Timeline("this is the same as the other", "me", new Date(), null);
+        Timeline timeline = new Timeline("this is the same as the other", 0, new Date(), null);
         //then
         exception.expect(NullPointerException.class);
         //when
@@ -130,20 +130,20 @@ public class TestTimeline {
         //given
         Date before = new Date(0);
         Date fifteenSecLater = new Date(15000L);
-        Timeline timeline1 = new Timeline("this is the same as the other", "me",
+        Timeline timeline1 = new Timeline("this is the same as the other", 0,
             before, null);
-        Timeline timeline2 = new Timeline("this is the same as the other", "me",
+        Timeline timeline2 = new Timeline("this is the same as the other", 0,
             fifteenSecLater, null);
         //then
         assertTrue(timeline1.compareTo(timeline2) < 0);
     }
 
     @Test
-    public void timeline_withSameTimestamp_areClassifiedByUserName() {
+    public void timeline_withSameTimestamp_areClassifiedByUserId() {
         //given
-        Timeline timeline1 = new Timeline("this is the same as the other", "abc",
+        Timeline timeline1 = new Timeline("this is the same as the other", 0,
             new Date(0), null);
-        Timeline timeline2 = new Timeline("this is the same as the other", "efg",
+        Timeline timeline2 = new Timeline("this is the same as the other", 1,
             new Date(0), null);
         //then
         assertTrue(timeline1.compareTo(timeline2) < 0);
@@ -153,8 +153,8 @@ public class TestTimeline {
     public void timeline_withSameTimestampAndUser_areClassifiedByMessageContent() {
         //given
         Date now = new Date(0);
-        Timeline timeline1 = new Timeline("abc", "me", now, null);
-        Timeline timeline2 = new Timeline("efg", "me", now, null);
+        Timeline timeline1 = new Timeline("abc", 0, now, null);
+        Timeline timeline2 = new Timeline("efg", 0, now, null);
         //then
         assertTrue(timeline1.compareTo(timeline2) < 0);
     }
@@ -163,11 +163,11 @@ public class TestTimeline {
     public void timeline_withSameTopMessage_areClassifiedByHistory() {
         //given
         Date now = new Date(0);
-        Timeline next1 = new Timeline("abc", "me", now, null);
-        Timeline next2 = new Timeline("efg", "me", now, null);
-        Timeline timeline1 = new Timeline("this is the same as the other", "me",
+        Timeline next1 = new Timeline("abc", 0, now, null);
+        Timeline next2 = new Timeline("efg", 0, now, null);
+        Timeline timeline1 = new Timeline("this is the same as the other", 0,
             now, next1);
-        Timeline timeline2 = new Timeline("this is the same as the other", "me",
+        Timeline timeline2 = new Timeline("this is the same as the other", 0,
             now, next2);
         //then
         assertTrue(timeline1.compareTo(timeline2) < 0);
@@ -177,9 +177,9 @@ public class TestTimeline {
     public void timelineWithSimilarHistoryUserDateMessage_areEqual() {
         //given
         Date now = new Date(0);
-        Timeline timeline1 = new Timeline("this is the same as the other", "me",
+        Timeline timeline1 = new Timeline("this is the same as the other", 0,
             now, null);
-        Timeline timeline2 = new Timeline("this is the same as the other", "me",
+        Timeline timeline2 = new Timeline("this is the same as the other", 0,
             now, null);
         //then
         assertTrue(timeline1.compareTo(timeline2) == 0);
@@ -189,9 +189,9 @@ public class TestTimeline {
     public void timelineWithSameMessageButShorterHistory_isInferior() {
         //given
         Date now = new Date(0);
-        Timeline timeline1 = new Timeline("this is the same as the other", "me",
+        Timeline timeline1 = new Timeline("this is the same as the other", 0,
             now, null);
-        Timeline timeline2 = new Timeline("this is the same as the other", "me",
+        Timeline timeline2 = new Timeline("this is the same as the other", 0,
             now, timeline1);
         //then
         assertTrue(timeline1.compareTo(timeline2) < 0);
@@ -201,9 +201,9 @@ public class TestTimeline {
     public void timelineWithSameMessageButLongerHistory_isBigger() {
         //given
         Date now = new Date();
-        Timeline timeline2 = new Timeline("this is the same as the other", "me",
+        Timeline timeline2 = new Timeline("this is the same as the other", 0,
             now, null);
-        Timeline timeline1 = new Timeline("this is the same as the other", "me",
+        Timeline timeline1 = new Timeline("this is the same as the other", 0,
             now, timeline2);
         //then
         assertTrue(timeline1.compareTo(timeline2) > 0);
@@ -2,7 +2,6 @@ package fr.baraud.codurance.monologue.timelines;
 
 import org.junit.Test;
 
-import java.util.ArrayList;
 import java.util.Date;
 
 import static org.junit.Assert.assertEquals;
@@ -13,26 +12,26 @@ public class TestUser {
     @Test
     public void testEqualSameUser(){
         Date now = new Date();
-        User albert = new User("Albert", new ArrayList<>(), new Timeline("First message", "Albert", now, null));
-        User usurper = new User("Albert", new ArrayList<>(), new Timeline("First message", "Albert", now, null));
+        User albert = new User(0, new Timeline("First message", 0, now, null));
+        User usurper = new User(0, new Timeline("First message", 0, now, null));
         assertEquals(albert, usurper);
     }
 
     @Test
     public void testEqualItself(){
-        User albert = new User("Albert", new ArrayList<>(), new Timeline("First message", "Albert", new Date(), null));
+        User albert = new User(0, new Timeline("First message", 0, new Date(), null));
         assertEquals(albert, albert);
     }
 
     @Test
     public void testNotEqualNullUser(){
-        User albert = new User("Albert", new ArrayList<>(), new Timeline("First message", "Albert", new Date(), null));
+        User albert = new User(0, new Timeline("First message", 0, new Date(), null));
         assertNotEquals(albert, null);
     }
 
     @Test
     public void testNotEqualOtherObject(){
-        User albert = new User("Albert", new ArrayList<>(), new Timeline("First message", "Albert", new Date(), null));
+        User albert = new User(0, new Timeline("First message", 0, new Date(), null));
         assertNotEquals(albert, "I'm just a sentence");
     }
 
@@ -0,0 +1,123 @@
+package fr.baraud.codurance.monologue.timelines;
+
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TestWallMerger {
+
+    @Test
+    public void merge_noTimeline_returnNull(){
+        assertNull(new WallMerger().add(null).merge());
+    }
+
+    @Test
+    public void merge_severalTimelines_newestPostsFirst(){
+        //given
+        Timeline alice = new Timeline("Indeed, there is", 0, new Date(25000L),
+            new Timeline("Hello", 0, new Date(10000L), null));
+        Timeline john = new Timeline("Welcome", 1, new Date(15000L), null);
+        Timeline bob = new Timeline("There is a nice vibe here!", 2, new Date(20000L), null);
+        Timeline expectedWall = new Timeline("Indeed, there is", 0, new Date(25000L),
+            new Timeline("There is a nice vibe here!", 2, new Date(20000L),
+                new Timeline("Welcome", 1, new Date(15000L),
+                    new Timeline("Hello", 0, new Date(10000L), null))));
+        //when
+        Timeline wall = new WallMerger().add(alice).add(john).add(bob).merge();
+        //then
+        assertEquals(expectedWall, wall);
+    }
+
+    @Test
+    public void merge_sameTimestamp_biggerAuthorFirst(){
+        //given
+        Timeline alice = new Timeline("Hello", 0, new Date(0), null);
+        Timeline john = new Timeline("Hi", 1, new Date(0), null);
+        //when
+        Timeline wall = new WallMerger().add(alice).add(john).merge();
+        //then
+        assertEquals(1, wall.getUser());
+        assertEquals(0, wall.getNext().getUser());
+    }
+
+    @Test
+    public void merge_withAuthorFilter_skipOtherAuthors(){
+        //given
+        Timeline mixed = new Timeline("Kept", 0, new Date(3000L),
+            new Timeline("Skipped", 1, new Date(2000L),
+                new Timeline("Kept too", 0, new Date(1000L), null)));
+        //when
+        Timeline wall = new WallMerger().add(mixed, author -> author == 0).merge();
+        //then
+        assertEquals("Kept", wall.getMessage());
+        assertEquals("Kept too", wall.getNext().getMessage());
+        assertNull(wall.getNext().getNext());
+    }
+
+    @Test
+    public void merge_nextPost_isAlwaysTheSameInstance(){
+        //given
+        Timeline alice = new Timeline("Hello", 0, new Date(1000L), null);
+        Timeline john = new Timeline("Hi", 1, new Date(0), null);
+        //when
+        Timeline wall = new WallMerger().add(alice).add(john).merge();
+        //then
+        assertSame(wall.getNext(), wall.getNext());
+    }
+
+    @Test
+    public void merge_hugeTimelines_readWithoutStackOverflow(){
+        //given
+        Timeline alice = null;
+        Timeline john = null;
+        int postsPerUser = 100000;
+        for (int i = 0; i < postsPerUser; i++){
+            alice = new Timeline("Hello " + i, 0, new Date(2 * i), alice);
+            john = new Timeline("Hi " + i, 1, new Date(2 * i + 1), john);
+        }
+        //when
+        Timeline wall = new WallMerger().add(alice).add(john).merge();
+        //then
+        Timeline post = wall;
+        for (int i = 0; i < 20; i++){
+            post = post.getNext();
+        }
+        assertEquals("Hi " + (postsPerUser - 11), post.getMessage());
+        int count = 0;
+        for (post = wall; post != null; post = post.getNext()){
+            count++;
+        }
+        assertEquals(2 * postsPerUser, count);
+        assertEquals(wall, new WallMerger().add(john).add(alice).merge());
+    }
+
+    @Test
+    public void prepend_newerPosts_linkedInFrontOfPreviousWall(){
+        //given
+        Timeline previousWall = new Timeline("Hello", 0, new Date(10000L), null);
+        Timeline wall = new Timeline("News", 1, new Date(20000L),
+            new Timeline("Hello", 0, new Date(10000L), null));
+        //when
+        Timeline refreshed = WallMerger.prepend(wall, previousWall);
+        //then
+        assertEquals(wall, refreshed);
+        assertSame(previousWall, refreshed.getNext());
+    }
+
+    @Test
+    public void prepend_postsInTheSameMillisecond_onlyTheMissingOnesLinked(){
+        //given
+        Timeline previousWall = new Timeline("Hello", 1, new Date(10000L), null);
+        Timeline wall = new Timeline("Hello", 1, new Date(10000L),
+            new Timeline("Hi", 0, new Date(10000L), null));
+        //when
+        Timeline refreshed = WallMerger.prepend(wall, previousWall);
+        //then
+        assertEquals("Hi", refreshed.getMessage());
+        assertSame(previousWall, refreshed.getNext());
+    }
+}
@@ -0,0 +1,73 @@
+package fr.baraud.codurance.monologue.timelines.bulk;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load a dump of a million records, nine posts for every follow,
+ * from 10000 users, with a given number of parsing threads, against
+ * applying the same records one after the other as the console does. The
+ * records per second are the million divided by the time.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class BulkLoaderBenchmark {
+
+    private static final int RECORD_COUNT = 1000000;
+    private static final int USER_COUNT = 10000;
+    private static final int POSTS_PER_FOLLOW = 9;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private byte[] dump;
+
+    @Setup
+    public void writeDump(){
+        StringBuilder records = new StringBuilder();
+        for (int record = 0; record < RECORD_COUNT; record++){
+            int user = (record * 7919) % USER_COUNT;
+            if (record % (POSTS_PER_FOLLOW + 1) == 0){
+                records.append("follow,user").append(user).append(",user").append((user + record) % USER_COUNT);
+            } else {
+                records.append("post,user").append(user).append(',').append(1500000000000L + record)
+                    .append(",Hello, this is a post of about forty chars");
+            }
+            records.append('\n');
+        }
+        dump = records.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public SocialStack bulkLoad() throws IOException {
+        return new BulkLoader(new SymbolTable(), threads).load(new ByteArrayInputStream(dump), new MemorySocialStack());
+    }
+
+    @Benchmark
+    public SocialStack sequential(){
+        SymbolTable symbols = new SymbolTable();
+        SocialStack stack = new MemorySocialStack();
+        String[] lines = new String(dump, StandardCharsets.UTF_8).split("\n");
+        for (String line : lines){
+            String[] fields = line.split(",", 4);
+            if (fields[0].equals("post")){
+                stack = stack.post(symbols.intern(fields[1]), fields[3], new Date(Long.parseLong(fields[2])));
+            } else {
+                stack = stack.follow(symbols.intern(fields[1]), symbols.intern(fields[2]));
+            }
+        }
+        return stack;
+    }
+}
@@ -0,0 +1,89 @@
+package fr.baraud.codurance.monologue.timelines.bulk;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class TestBulkLoader {
+
+    @Test
+    public void load_postsOutOfOrder_timelinesOrderedByTimestamp() throws IOException {
+        //given
+        SymbolTable symbols = new SymbolTable();
+        String dump = "post,Bob,2000,Damn! We lost!\n"
+            + "post,Alice,5000,Hello, again\r\n"
+            + "post,Alice,1000,I love the weather today\n"
+            + "\n"
+            + "post,Bob,3000,Good game though.\n"
+            + "follow,Charlie,Alice\n"
+            + "post,Charlie,4000,I'm in New York today!\n"
+            + "follow,Charlie,Bob\n"
+            + "follow,Charlie,Nobody";
+        //when
+        SocialStack stack = new BulkLoader(symbols, 4, 16).load(input(dump), new MemorySocialStack());
+        //then
+        Timeline alice = stack.getTimeline(symbols.lookup("Alice"));
+        assertEquals("Hello, again", alice.getMessage());
+        assertEquals(new Date(5000L), alice.getMessageTimestamp());
+        assertEquals("I love the weather today", alice.getNext().getMessage());
+        assertNull(alice.getNext().getNext());
+        List<String> wall = new ArrayList<>();
+        for (Timeline post = stack.getWall(symbols.lookup("Charlie")); post != null; post = post.getNext()){
+            wall.add(post.getMessage());
+        }
+        assertEquals(5, wall.size());
+        assertEquals("Hello, again", wall.get(0));
+        assertEquals("I love the weather today", wall.get(4));
+        assertFalse(stack.userExist(symbols.lookup("Nobody")));
+    }
+
+    @Test
+    public void load_linesLongerThanBlocks_sameStackAsOneBlock() throws IOException {
+        //given
+        StringBuilder dump = new StringBuilder();
+        for (int post = 0; post < 1000; post++){
+            dump.append("post,user").append(post % 17).append(',').append(post)
+                .append(",Caf\u00e9 cr\u00e8me number ").append(post).append('\n');
+            if (post % 10 == 0){
+                dump.append("follow,user").append(post % 17).append(",user").append(post % 13).append('\n');
+            }
+        }
+        SymbolTable symbols = new SymbolTable();
+        //when
+        SocialStack small = new BulkLoader(symbols, 3, 7).load(input(dump.toString()), new MemorySocialStack());
+        SocialStack large = new BulkLoader(symbols, 1).load(input(dump.toString()), new MemorySocialStack());
+        //then
+        for (int user = 0; user < 17; user++){
+            int identifier = symbols.lookup("user" + user);
+            assertEquals(large.getTimeline(identifier), small.getTimeline(identifier));
+            assertEquals(large.getWall(identifier), small.getWall(identifier));
+        }
+        assertEquals("Caf\u00e9 cr\u00e8me number 999", small.getTimeline(symbols.lookup("user13")).getMessage());
+    }
+
+    @Test(expected = IOException.class)
+    public void load_malformedRecord_throwsIOException() throws IOException {
+        //given
+        String dump = "post,Alice,1000,Hello\npost,Bob,yesterday,Hi\n";
+        //when
+        new BulkLoader(new SymbolTable(), 2).load(input(dump), new MemorySocialStack());
+    }
+
+    private static InputStream input(String dump){
+        return new ByteArrayInputStream(dump.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,152 @@
+package fr.baraud.codurance.monologue.timelines.cache;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TestCachedSocialStack {
+
+    private static final int ALICE = 0;
+    private static final int BOB = 1;
+    private static final int CHARLIE = 2;
+
+    private WallCache cache;
+    private SocialStack stack;
+
+    /**
+     * Alice, Bob and Charlie posted, Alice follows Bob
+     */
+    @Before
+    public void fillStack(){
+        cache = new WallCache(1 << 20);
+        stack = new CachedSocialStack(new MemorySocialStack(), cache)
+            .post(ALICE, "Hello", new Date(0L))
+            .post(BOB, "Hi Alice", new Date(1000L))
+            .post(CHARLIE, "Hi all", new Date(2000L))
+            .follow(ALICE, BOB);
+    }
+
+    @Test
+    public void getWall_twice_isServedFromTheCache(){
+        //given
+        Timeline first = stack.getWall(ALICE);
+        //when
+        Timeline second = stack.getWall(ALICE);
+        //then
+        assertSame(first, second);
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+    }
+
+    @Test
+    public void getWall_afterFollowedUserPosted_isMergedAgain(){
+        //given
+        stack.getWall(ALICE);
+        SocialStack newStack = stack.post(BOB, "Still there?", new Date(3000L));
+        //when
+        Timeline wall = newStack.getWall(ALICE);
+        //then
+        assertEquals("Still there?", wall.getMessage());
+        assertEquals(2L, cache.getMissCount());
+    }
+
+    @Test
+    public void getWall_afterOwnerFollowed_isMergedAgain(){
+        //given
+        stack.getWall(ALICE);
+        SocialStack newStack = stack.follow(ALICE, CHARLIE);
+        //when
+        Timeline wall = newStack.getWall(ALICE);
+        //then
+        assertEquals("Hi all", wall.getMessage());
+        assertEquals(2L, cache.getMissCount());
+    }
+
+    @Test
+    public void getWall_afterOtherUserPosted_isServedFromTheCache(){
+        //given
+        Timeline first = stack.getWall(ALICE);
+        SocialStack newStack = stack.post(CHARLIE, "Nobody follows me", new Date(3000L));
+        //when
+        Timeline second = newStack.getWall(ALICE);
+        //then
+        assertSame(first, second);
+        assertEquals(1L, cache.getHitCount());
+    }
+
+    @Test
+    public void getWall_olderVersion_ignoresNewerWall(){
+        //given
+        SocialStack newStack = stack.post(BOB, "Still there?", new Date(3000L));
+        newStack.getWall(ALICE);
+        //when
+        Timeline wall = stack.getWall(ALICE);
+        //then
+        assertEquals("Hi Alice", wall.getMessage());
+    }
+
+    @Test
+    public void getWall_overBudget_evictsLeastRecentlyRead(){
+        //given
+        WallCache smallCache = new WallCache(600);
+        SocialStack smallStack = new CachedSocialStack(new MemorySocialStack(), smallCache)
+            .post(ALICE, "Hello", new Date(0L))
+            .post(BOB, "Hi Alice", new Date(1000L))
+            .post(CHARLIE, "Hi all", new Date(2000L));
+        smallStack.getWall(ALICE);
+        smallStack.getWall(BOB);
+        smallStack.getWall(ALICE);
+        //when
+        smallStack.getWall(CHARLIE);
+        smallStack.getWall(ALICE);
+        smallStack.getWall(BOB);
+        //then
+        assertEquals(2L, smallCache.getEvictionCount());
+        assertEquals(2L, smallCache.getHitCount());
+    }
+
+    @Test
+    public void getWall_readFurther_isChargedForThePostsRead(){
+        //given
+        Timeline wall = stack.getWall(ALICE);
+        long sizeBeforeRead = cache.getSize();
+        //when
+        Timeline second = wall.getNext();
+        second.getNext();
+        wall.getNext();
+        //then
+        assertEquals("Hello", second.getMessage());
+        assertEquals(sizeBeforeRead + 80L, cache.getSize());
+    }
+
+    @Test
+    public void getWall_readFurtherOverBudget_isEvicted(){
+        //given
+        WallCache smallCache = new WallCache(600);
+        SocialStack smallStack = new CachedSocialStack(new MemorySocialStack(), smallCache)
+            .post(ALICE, "Hello", new Date(0L))
+            .post(CHARLIE, "Hi all", new Date(1000L));
+        for (int post = 0; post < 10; post++){
+            smallStack = smallStack.post(BOB, "Post " + post, new Date(2000L + post));
+        }
+        smallStack.getWall(ALICE);
+        Timeline wall = smallStack.getWall(BOB);
+        //when
+        for (Timeline post = wall; post != null; post = post.getNext()){
+            assertEquals(BOB, post.getUser());
+        }
+        smallStack.getWall(ALICE);
+        smallStack.getWall(BOB);
+        //then
+        // the wall of Alice is evicted, then the wall of Bob, over the budget by itself
+        assertEquals(2L, smallCache.getEvictionCount());
+        assertEquals(0L, smallCache.getHitCount());
+    }
+}
@@ -0,0 +1,79 @@
+package fr.baraud.codurance.monologue.timelines.cache;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the first page of a few popular walls again and again, without
+ * any change in between, with and without a wall cache. The hit ratio is
+ * printed after each iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WallCacheBenchmark {
+
+    private static final int USER_COUNT = 1000;
+    private static final int POSTS_PER_USER = 20;
+    private static final int POPULAR_WALLS = 10;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"10", "100"})
+    public int followsPerUser;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    private WallCache cache;
+    private SocialStack socialStack;
+    private int next;
+
+    @Setup
+    public void fillStack(){
+        SocialStack stack = new MemorySocialStack();
+        if (cached){
+            cache = new WallCache(1 << 20);
+            stack = new CachedSocialStack(stack, cache);
+        }
+        long time = 0;
+        for (int post = 0; post < POSTS_PER_USER; post++){
+            for (int user = 0; user < USER_COUNT; user++){
+                stack = stack.post(user, "Hello, this is post number " + time, new Date(time++));
+            }
+        }
+        for (int user = 0; user < USER_COUNT; user++){
+            for (int follow = 1; follow <= followsPerUser; follow++){
+                stack = stack.follow(user, (user + follow) % USER_COUNT);
+            }
+        }
+        socialStack = stack;
+    }
+
+    @TearDown(Level.Iteration)
+    public void printHitRatio(){
+        if (cache != null){
+            System.out.printf("%nhits: %d, misses: %d, evictions: %d%n", cache.getHitCount(),
+                cache.getMissCount(), cache.getEvictionCount());
+        }
+    }
+
+    @Benchmark
+    public long readPopularWall(){
+        next = (next + 1) % POPULAR_WALLS;
+        long sum = 0;
+        Timeline post = socialStack.getWall(next);
+        for (int i = 0; i < PAGE_SIZE && post != null; i++){
+            sum += post.getTimestamp();
+            post = post.getNext();
+        }
+        return sum;
+    }
+}
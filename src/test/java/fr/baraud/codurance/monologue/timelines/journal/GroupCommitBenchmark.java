@@ -0,0 +1,82 @@
+package fr.baraud.codurance.monologue.timelines.journal;
+
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable posts per second against the number of concurrent writers, each
+ * writer waiting for its post to be forced to the disk: one force per post
+ * with ALWAYS, one per batch with GROUP. The writers take turns on the
+ * newest version of the stack, and only wait for the disk once they have
+ * released it.
+ * Run it once per number of writers with the -t option, e.g. -t 1, -t 4,
+ * -t 16.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GroupCommitBenchmark {
+
+    private static final int USER_COUNT = 1000;
+
+    @Param({"ALWAYS", "GROUP"})
+    public FsyncPolicy policy;
+
+    @Param({"1024"})
+    public int maxBatchSize;
+
+    @Param({"0"})
+    public long maxBatchDelay;
+
+    private SymbolTable symbols;
+    private Path directory;
+    private Journal journal;
+    private JournaledSocialStack socialStack;
+    private long time;
+
+    @Setup(Level.Trial)
+    public void nameUsers(){
+        symbols = new SymbolTable();
+        for (int user = 0; user < USER_COUNT; user++){
+            symbols.intern("user" + user);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void openJournal() throws IOException {
+        directory = Files.createTempDirectory("monologue");
+        journal = new Journal(directory, symbols, policy, 0, Journal.DEFAULT_SNAPSHOT_INTERVAL,
+            maxBatchSize, maxBatchDelay);
+        socialStack = JournaledSocialStack.open(new MemorySocialStack(), journal);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteJournal() throws IOException {
+        journal.close();
+        JournalBenchmark.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public void post(){
+        int user = ThreadLocalRandom.current().nextInt(USER_COUNT);
+        CompletableFuture<Void> durable;
+        synchronized (this){
+            socialStack = (JournaledSocialStack) socialStack.post(user,
+                "Hello, this is a post of about forty chars", new Date(time++));
+            durable = socialStack.whenDurable();
+        }
+        durable.join();
+    }
+}
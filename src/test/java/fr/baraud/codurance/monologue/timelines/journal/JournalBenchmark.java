@@ -0,0 +1,76 @@
+package fr.baraud.codurance.monologue.timelines.journal;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the posts on a journaled stack for each fsync policy, on a
+ * fresh journal in the temporary directory for each iteration.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+
+    private static final int USER_COUNT = 1000;
+    private static final long SYNC_INTERVAL = 100L;
+
+    @Param({"ALWAYS", "PERIODIC", "OS"})
+    public FsyncPolicy policy;
+
+    private SymbolTable symbols;
+    private Path directory;
+    private Journal journal;
+    private SocialStack socialStack;
+    private int next;
+    private long time;
+
+    @Setup(Level.Trial)
+    public void nameUsers(){
+        symbols = new SymbolTable();
+        for (int user = 0; user < USER_COUNT; user++){
+            symbols.intern("user" + user);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void openJournal() throws IOException {
+        directory = Files.createTempDirectory("monologue");
+        journal = new Journal(directory, symbols, policy, SYNC_INTERVAL);
+        socialStack = JournaledSocialStack.open(new MemorySocialStack(), journal);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteJournal() throws IOException {
+        journal.close();
+        deleteDirectory(directory);
+    }
+
+    static void deleteDirectory(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)){
+            for (Path file : files){
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public SocialStack post(){
+        next = (next + 1) % USER_COUNT;
+        socialStack = socialStack.post(next, "Hello, this is a post of about forty chars", new Date(time++));
+        return socialStack;
+    }
+}
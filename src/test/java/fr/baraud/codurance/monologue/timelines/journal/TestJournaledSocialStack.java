@@ -0,0 +1,423 @@
+package fr.baraud.codurance.monologue.timelines.journal;
+
+import fr.baraud.codurance.monologue.timelines.SharedSocialStack;
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.StaleVersionException;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import fr.baraud.codurance.monologue.ui.Action;
+import fr.baraud.codurance.monologue.ui.Instruction;
+import fr.baraud.codurance.monologue.ui.console.ConsoleInterface;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestJournaledSocialStack {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void reopen_afterPostsAndFollows_restoresTheStack() throws IOException {
+        //given
+        Path directory = folder.newFolder().toPath();
+        SymbolTable symbols = new SymbolTable();
+        int alice = symbols.intern("Alice");
+        int bob = symbols.intern("Bob");
+        try (Journal journal = new Journal(directory, symbols, FsyncPolicy.ALWAYS, 0)){
+            JournaledSocialStack.open(new MemorySocialStack(), journal)
+                .post(alice, "Hello", new Date(0L))
+                .post(bob, "Hi Alice", new Date(1000L))
+                .follow(alice, bob);
+        }
+        //when the names are interned in another order
+        SymbolTable newSymbols = new SymbolTable();
+        int newBob = newSymbols.intern("Bob");
+        SocialStack restored;
+        try (Journal journal = new Journal(directory, newSymbols, FsyncPolicy.ALWAYS, 0)){
+            restored = JournaledSocialStack.open(new MemorySocialStack(), journal);
+        }
+        //then
+        int newAlice = newSymbols.lookup("Alice");
+        Timeline wall = restored.getWall(newAlice);
+        assertEquals("Hi Alice", wall.getMessage());
+        assertEquals(newBob, wall.getUser());
+        assertEquals("Hello", wall.getNext().getMessage());
+        assertEquals(newAlice, wall.getNext().getUser());
+    }
+
+    @Test
+    public void post_tooLongToReplay_isRejectedAndTheJournalStaysReadable() throws IOException {
+        //given
+        Path directory = folder.newFolder().toPath();
+        SymbolTable symbols = new SymbolTable();
+        int alice = symbols.intern("Alice");
+        char[] oversized = new char[1 << 24];
+        java.util.Arrays.fill(oversized, 'a');
+        try (Journal journal = new Journal(directory, symbols, FsyncPolicy.ALWAYS, 0)){
+            SocialStack stack = JournaledSocialStack.open(new MemorySocialStack(), journal);
+            //when
+            try {
+                stack.post(alice, new String(oversized), new Date(0L));
+                fail("an oversized post should be rejected");
+            } catch (IllegalArgumentException e) {
+                //then
+                assertTrue(e.getMessage().contains("too long"));
+            }
+            stack.post(alice, "Hello", new Date(1000L));
+        }
+        SocialStack restored;
+        try (Journal journal = new Journal(directory, new SymbolTable(), FsyncPolicy.ALWAYS, 0)){
+            restored = JournaledSocialStack.open(new MemorySocialStack(), journal);
+        }
+        assertEquals("Hello", restored.getTimeline(0).getMessage());
+        assertNull(restored.getTimeline(0).getNext());
+    }
+
+    @Test
+    public void reopen_severalSessions_namesStayBound() throws IOException {
+        //given
+        Path directory = folder.newFolder().toPath();
+        for (String name : new String[]{"Alice", "Bob", "Alice"}){
+            SymbolTable symbols = new SymbolTable();
+            symbols.intern("Someone reading");
+            try (Journal journal = new Journal(directory, symbols, FsyncPolicy.OS, 0)){
+                JournaledSocialStack.open(new MemorySocialStack(), journal)
+                    .post(symbols.intern(name), name + " was here", new Date(0L));
+            }
+        }
+        //when
+        SymbolTable symbols = new SymbolTable();
+        SocialStack restored;
+        try (Journal journal = new Journal(directory, symbols, FsyncPolicy.OS, 0)){
+            restored = JournaledSocialStack.open(new MemorySocialStack(), journal);
+        }
+        //then
+        assertEquals("Alice was here", restored.getTimeline(symbols.lookup("Alice")).getMessage());
+        assertEquals("Alice was here", restored.getTimeline(symbols.lookup("Alice")).getNext().getMessage());
+        assertEquals("Bob was here", restored.getTimeline(symbols.lookup("Bob")).getMessage());
+    }
+
+    @Test
+    public void reopen_incompleteLastRecord_isCutOff() throws IOException {
+        //given
+        Path directory = folder.newFolder().toPath();
+        SymbolTable symbols = new SymbolTable();
+        int alice = symbols.intern("Alice");
+        try (Journal journal = new Journal(directory, symbols, FsyncPolicy.PERIODIC, 10)){
+            JournaledSocialStack.open(new MemorySocialStack(), journal).post(alice, "Hello", new Date(0L));
+        }
+        Path segment = lastSegment(directory);
+        long validSize = Files.size(segment);
+        Files.write(segment, new byte[]{0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+        //when
+        SymbolTable newSymbols = new SymbolTable();
+        try (Journal journal = new Journal(directory, newSymbols, FsyncPolicy.ALWAYS, 0)){
+            JournaledSocialStack.open(new MemorySocialStack(), journal)
+                .post(newSymbols.intern("Alice"), "Still here", new Date(1000L));
+        }
+        //then
+        assertEquals(validSize, Files.size(segment));
+        SymbolTable lastSymbols = new SymbolTable();
+        try (Journal journal = new Journal(directory, lastSymbols, FsyncPolicy.ALWAYS, 0)){
+            Timeline timeline = JournaledSocialStack.open(new MemorySocialStack(), journal)
+                .getTimeline(lastSymbols.lookup("Alice"));
+            assertEquals("Still here", timeline.getMessage());
+            assertEquals("Hello", timeline.getNext().getMessage());
+            assertNull(timeline.getNext().getNext());
+        }
+    }
+
+    @Test(expected = StaleVersionException.class)
+    public void post_onOlderVersion_throwsException() throws IOException {
+        //given
+        SymbolTable symbols = new SymbolTable();
+        int alice = symbols.intern("Alice");
+        try (Journal journal = new Journal(folder.newFolder().toPath(), symbols, FsyncPolicy.OS, 0)){
+            SocialStack first = JournaledSocialStack.open(new MemorySocialStack(), journal);
+            first.post(alice, "Hello", new Date(0L));
+            //when
+            first.post(alice, "Another history", new Date(0L));
+        }
+    }
+
+    @Test
+    public void post_emptyMessage_isNotJournaled() throws IOException {
+        //given
+        Path directory = folder.newFolder().toPath();
+        SymbolTable symbols = new SymbolTable();
+        try (Journal journal = new Journal(directory, symbols, FsyncPolicy.ALWAYS, 0)){
+            SocialStack stack = JournaledSocialStack.open(new MemorySocialStack(), journal);
+            //when
+            SocialStack newStack = stack.post(symbols.intern("Alice"), "", new Date(0L));
+            //then
+            assertSame(stack, newStack);
+            assertEquals(0L, Files.size(lastSegment(directory)));
+        }
+    }
+
+    @Test
+    public void post_afterSnapshotInterval_compactsTheJournal() throws IOException {
+        //given
+        Path directory = folder.newFolder().toPath();
+        SymbolTable symbols = new SymbolTable();
+        int alice = symbols.intern("Alice");
+        int bob = symbols.intern("Bob");
+        try (Journal journal = new Journal(directory, symbols, FsyncPolicy.OS, 0, 3)){
+            //when
+            JournaledSocialStack.open(new MemorySocialStack(), journal)
+                .post(alice, "Hello", new Date(0L))
+                .post(bob, "Hi Alice", new Date(1000L))
+                .follow(alice, bob)
+                .post(alice, "After the snapshot", new Date(2000L));
+        }
+        //then
+        assertEquals(1, list(directory, "snapshot-*.snap").size());
+        assertEquals(1, list(directory, "journal-*.log").size());
+        SymbolTable newSymbols = new SymbolTable();
+        try (Journal journal = new Journal(directory, newSymbols, FsyncPolicy.OS, 0, 3)){
+            SocialStack restored = JournaledSocialStack.open(new MemorySocialStack(), journal);
+            Timeline wall = restored.getWall(newSymbols.lookup("Alice"));
+            assertEquals("After the snapshot", wall.getMessage());
+            assertEquals("Hi Alice", wall.getNext().getMessage());
+            assertEquals(newSymbols.lookup("Bob"), wall.getNext().getUser());
+            assertEquals("Hello", wall.getNext().getNext().getMessage());
+            assertEquals(4L, journal.getVersion());
+        }
+    }
+
+    @Test
+    public void reopen_afterSeveralSnapshots_keepsOnlyTheNewest() throws IOException {
+        //given
+        Path directory = folder.newFolder().toPath();
+        for (int session = 0; session < 3; session++){
+            SymbolTable symbols = new SymbolTable();
+            int alice = symbols.intern("Alice");
+            try (Journal journal = new Journal(directory, symbols, FsyncPolicy.OS, 0, 2)){
+                JournaledSocialStack.open(new MemorySocialStack(), journal)
+                    .post(alice, "Post " + (2 * session), new Date(2000L * session))
+                    .post(alice, "Post " + (2 * session + 1), new Date(2000L * session + 1000L));
+            }
+        }
+        //when
+        SymbolTable symbols = new SymbolTable();
+        Timeline timeline;
+        try (Journal journal = new Journal(directory, symbols, FsyncPolicy.OS, 0, 2)){
+            timeline = JournaledSocialStack.open(new MemorySocialStack(), journal)
+                .getTimeline(symbols.lookup("Alice"));
+        }
+        //then
+        assertEquals(1, list(directory, "snapshot-*.snap").size());
+        int count = 0;
+        for (Timeline post = timeline; post != null; post = post.getNext()){
+            assertEquals("Post " + (5 - count), post.getMessage());
+            count++;
+        }
+        assertEquals(6, count);
+    }
+
+    @Test
+    public void reopenMapped_afterSnapshot_readsTheSnapshotInPlace() throws IOException {
+        //given
+        Path directory = folder.newFolder().toPath();
+        SymbolTable symbols = new SymbolTable();
+        int alice = symbols.intern("Alice");
+        int bob = symbols.intern("Bob");
+        try (Journal journal = new Journal(directory, symbols, FsyncPolicy.OS, 0, 2)){
+            JournaledSocialStack.open(new MemorySocialStack(), journal)
+                .post(alice, "Hello", new Date(0L))
+                .post(bob, "Hi Alice", new Date(1000L))
+                .follow(bob, alice);
+        }
+        //when
+        SymbolTable newSymbols = new SymbolTable();
+        try (Journal journal = new Journal(directory, newSymbols, FsyncPolicy.OS, 0, 2)){
+            SocialStack restored = JournaledSocialStack.open(new MemorySocialStack(), journal, true)
+                .post(newSymbols.intern("Alice"), "Mapped", new Date(2000L));
+            //then
+            Timeline wall = restored.getWall(newSymbols.lookup("Bob"));
+            assertEquals("Mapped", wall.getMessage());
+            assertEquals("Hi Alice", wall.getNext().getMessage());
+            assertEquals("Hello", wall.getNext().getNext().getMessage());
+            assertEquals(4L, journal.getVersion());
+        }
+    }
+
+    @Test
+    public void reopenMapped_namesOfTheSnapshotAreKnownByTheConsole() throws IOException {
+        //given
+        Path directory = folder.newFolder().toPath();
+        SymbolTable symbols = new SymbolTable();
+        int alice = symbols.intern("Alice");
+        int bob = symbols.intern("Bob");
+        try (Journal journal = new Journal(directory, symbols, FsyncPolicy.OS, 0, 4)){
+            JournaledSocialStack.open(new MemorySocialStack(), journal)
+                .post(alice, "Hello", new Date(0L))
+                .post(bob, "Hi Alice", new Date(1000L))
+                .follow(bob, alice)
+                .post(alice, "Hello again", new Date(1500L));
+        }
+        Properties props = new Properties();
+        try (InputStream resourceStream = Thread.currentThread().getContextClassLoader()
+            .getResourceAsStream("console-interface.properties")) {
+            props.load(resourceStream);
+        }
+        //when
+        SymbolTable newSymbols = new SymbolTable();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Journal journal = new Journal(directory, newSymbols, FsyncPolicy.OS, 0, 4)){
+            SocialStack restored = JournaledSocialStack.open(new MemorySocialStack(), journal, true);
+            ConsoleInterface console = ConsoleInterface.script(new ByteArrayInputStream(
+                "Alice\nBob wall\n".getBytes(StandardCharsets.UTF_8)), out, props, newSymbols);
+            for (Instruction instruction = console.getNextInstruction(); instruction.getAction() != Action.EXIT;
+                 instruction = console.getNextInstruction()){
+                instruction.apply(restored, console, new Date(2000L));
+            }
+            console.close();
+        }
+        //then
+        String output = new String(out.toByteArray(), StandardCharsets.UTF_8);
+        assertFalse(output, output.contains("Unknown user"));
+        assertTrue(output, output.contains("Hello again ("));
+        assertTrue(output, output.contains("Alice - Hello again ("));
+        assertTrue(output, output.contains("Bob - Hi Alice ("));
+        assertTrue(output, output.contains("Alice - Hello ("));
+    }
+
+    @Test
+    public void post_groupPolicy_concurrentWritersAreAllDurable() throws Exception {
+        //given
+        Path directory = folder.newFolder().toPath();
+        SymbolTable symbols = new SymbolTable();
+        int writerCount = 4;
+        int postsPerWriter = 50;
+        try (Journal journal = new Journal(directory, symbols, FsyncPolicy.GROUP, 0,
+            Journal.DEFAULT_SNAPSHOT_INTERVAL, 8, 100)){
+            AtomicReference<JournaledSocialStack> newest =
+                new AtomicReference<>(JournaledSocialStack.open(new MemorySocialStack(), journal));
+            ExecutorService writers = Executors.newFixedThreadPool(writerCount);
+            List<Future<?>> results = new ArrayList<>();
+            //when
+            for (int writer = 0; writer < writerCount; writer++){
+                int user = symbols.intern("Writer " + writer);
+                results.add(writers.submit(() -> {
+                    for (int post = 0; post < postsPerWriter; post++){
+                        CompletableFuture<Void> durable;
+                        synchronized (newest){
+                            JournaledSocialStack stack = (JournaledSocialStack) newest.get()
+                                .post(user, "Post " + post, new Date(post));
+                            newest.set(stack);
+                            durable = stack.whenDurable();
+                        }
+                        durable.join();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results){
+                result.get();
+            }
+            writers.shutdown();
+        }
+        //then
+        SymbolTable newSymbols = new SymbolTable();
+        try (Journal journal = new Journal(directory, newSymbols, FsyncPolicy.GROUP, 0)){
+            SocialStack restored = JournaledSocialStack.open(new MemorySocialStack(), journal);
+            assertEquals((long) writerCount * postsPerWriter, journal.getVersion());
+            for (int writer = 0; writer < writerCount; writer++){
+                assertEquals("Post " + (postsPerWriter - 1),
+                    restored.getTimeline(newSymbols.lookup("Writer " + writer)).getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void sharedStack_concurrentSessions_allPostsJournaled() throws Exception {
+        //given
+        Path directory = folder.newFolder().toPath();
+        SymbolTable symbols = new SymbolTable();
+        int sessionCount = 4;
+        int postsPerSession = 50;
+        try (Journal journal = new Journal(directory, symbols, FsyncPolicy.OS, 0)){
+            SharedSocialStack shared = new SharedSocialStack(
+                JournaledSocialStack.open(new MemorySocialStack(), journal));
+            ExecutorService sessions = Executors.newFixedThreadPool(sessionCount);
+            List<Future<?>> results = new ArrayList<>();
+            //when
+            for (int session = 0; session < sessionCount; session++){
+                int user = symbols.intern("Session " + session);
+                results.add(sessions.submit(() -> {
+                    for (int post = 0; post < postsPerSession; post++){
+                        shared.post(user, "Post " + post, new Date(post));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results){
+                result.get();
+            }
+            sessions.shutdown();
+        }
+        //then
+        SymbolTable newSymbols = new SymbolTable();
+        try (Journal journal = new Journal(directory, newSymbols, FsyncPolicy.OS, 0)){
+            JournaledSocialStack.open(new MemorySocialStack(), journal);
+            assertEquals((long) sessionCount * postsPerSession, journal.getVersion());
+        }
+    }
+
+    @Test
+    public void whenDurable_alwaysPolicy_isCompleted() throws IOException {
+        //given
+        SymbolTable symbols = new SymbolTable();
+        try (Journal journal = new Journal(folder.newFolder().toPath(), symbols, FsyncPolicy.ALWAYS, 0)){
+            //when
+            JournaledSocialStack stack = (JournaledSocialStack) JournaledSocialStack
+                .open(new MemorySocialStack(), journal).post(symbols.intern("Alice"), "Hello", new Date(0L));
+            //then
+            assertTrue(stack.whenDurable().isDone());
+        }
+    }
+
+    private static Path lastSegment(Path directory) throws IOException {
+        List<Path> segments = list(directory, "journal-*.log");
+        return segments.get(segments.size() - 1);
+    }
+
+    private static List<Path> list(Path directory, String glob) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, glob)){
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,75 @@
+package fr.baraud.codurance.monologue.timelines.mapped;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to the first wall after a restart: loading a snapshot image into a
+ * MemorySocialStack against reading it in place with a MappedSocialStack.
+ * Each user follows the next ten users.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StackImageBenchmark {
+
+    private static final int FOLLOWS_PER_USER = 10;
+    private static final String MESSAGE = "Hello, this is post number ";
+
+    @Param({"1000", "10000"})
+    public int userCount;
+
+    @Param({"10", "100"})
+    public int postsPerUser;
+
+    private Path file;
+
+    @Setup
+    public void writeImage() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        SocialStack stack = new MemorySocialStack();
+        long time = 0;
+        for (int post = 0; post < postsPerUser; post++){
+            for (int user = 0; user < userCount; user++){
+                stack = stack.post(symbols.intern("user" + user), MESSAGE + time, new Date(time++));
+            }
+        }
+        for (int user = 0; user < userCount; user++){
+            for (int follow = 1; follow <= FOLLOWS_PER_USER; follow++){
+                stack = stack.follow(user, (user + follow) % userCount);
+            }
+        }
+        file = Files.createTempFile("monologue", ".img");
+        StackImage.write(stack, 0L, symbols, file);
+    }
+
+    @TearDown
+    public void deleteImage() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public String load() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        SocialStack stack = StackImage.open(file).load(new MemorySocialStack(), symbols);
+        return stack.getWall(symbols.lookup("user0")).getMessage();
+    }
+
+    @Benchmark
+    public String map() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        SocialStack stack = new MappedSocialStack(StackImage.open(file), symbols);
+        return stack.getWall(symbols.intern("user0")).getMessage();
+    }
+}
@@ -0,0 +1,115 @@
+package fr.baraud.codurance.monologue.timelines.mapped;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestMappedSocialStack {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private SymbolTable symbols;
+    private SocialStack mapped;
+
+    /**
+     * Alice and Bob are in the image, Bob following Alice
+     */
+    @Before
+    public void writeImage() throws IOException {
+        SymbolTable imageSymbols = new SymbolTable();
+        int alice = imageSymbols.intern("Alice");
+        int bob = imageSymbols.intern("Bob");
+        SocialStack stack = new MemorySocialStack()
+            .post(alice, "Hello", new Date(0L))
+            .post(bob, "Hi Alice", new Date(1000L))
+            .follow(bob, alice);
+        Path file = folder.getRoot().toPath().resolve("stack.img");
+        StackImage.write(stack, 3L, imageSymbols, file);
+        symbols = new SymbolTable();
+        mapped = new MappedSocialStack(StackImage.open(file), symbols);
+    }
+
+    @Test
+    public void getTimeline_userInImage_readsTheImage(){
+        //given
+        int alice = symbols.intern("Alice");
+        //when
+        Timeline timeline = mapped.getTimeline(alice);
+        //then
+        assertEquals(new Timeline("Hello", alice, new Date(0L), null), timeline);
+        assertTrue(mapped.userExist(alice));
+        assertFalse(mapped.userExist(symbols.intern("Charlie")));
+        assertNull(mapped.getTimeline(symbols.lookup("Charlie")));
+    }
+
+    @Test
+    public void post_userInImage_continuesTheImageTimeline(){
+        //given
+        int alice = symbols.intern("Alice");
+        //when
+        SocialStack newStack = mapped.post(alice, "Still here", new Date(2000L));
+        //then
+        Timeline timeline = newStack.getTimeline(alice);
+        assertEquals("Still here", timeline.getMessage());
+        assertEquals("Hello", timeline.getNext().getMessage());
+        assertEquals("Hello", mapped.getTimeline(alice).getMessage());
+    }
+
+    @Test
+    public void getWall_followsOfImageAndDelta_mergesAllTimelines(){
+        //given
+        int charlie = symbols.intern("Charlie");
+        int bob = symbols.intern("Bob");
+        SocialStack stack = mapped.post(charlie, "I'm new", new Date(500L)).follow(bob, charlie);
+        //when
+        Timeline wall = stack.getWall(bob);
+        //then
+        assertEquals("Hi Alice", wall.getMessage());
+        assertEquals("I'm new", wall.getNext().getMessage());
+        assertEquals("Hello", wall.getNext().getNext().getMessage());
+        assertEquals(symbols.lookup("Alice"), wall.getNext().getNext().getUser());
+    }
+
+    @Test
+    public void follow_alreadyFollowedInImage_returnsSameInstance(){
+        //given
+        int bob = symbols.intern("Bob");
+        int alice = symbols.intern("Alice");
+        //when
+        SocialStack newStack = mapped.follow(bob, alice);
+        //then
+        assertSame(mapped, newStack);
+    }
+
+    @Test
+    public void forEachUser_listsImageAndDeltaUsers(){
+        //given
+        int charlie = symbols.intern("Charlie");
+        SocialStack stack = mapped.post(charlie, "I'm new", new Date(500L))
+            .post(symbols.intern("Alice"), "Again", new Date(600L));
+        List<String> names = new ArrayList<>();
+        //when
+        stack.forEachUser(user -> names.add(symbols.nameOf(user)));
+        //then
+        assertEquals(Arrays.asList("Alice", "Bob", "Charlie"), names);
+    }
+}
@@ -0,0 +1,104 @@
+package fr.baraud.codurance.monologue.timelines.mapped;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestStackImage {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void write_thenOpen_readsUsersInPlace() throws IOException {
+        //given
+        SymbolTable symbols = new SymbolTable();
+        int zoe = symbols.intern("Zo\u00e9");
+        int alice = symbols.intern("Alice");
+        SocialStack stack = new MemorySocialStack()
+            .post(zoe, "Bonjour \ud83d\ude00", new Date(0L))
+            .post(alice, "Hello", new Date(1000L))
+            .post(zoe, "\u00c7a va ?", new Date(2000L))
+            .follow(zoe, alice);
+        Path file = folder.getRoot().toPath().resolve("stack.img");
+        //when
+        StackImage.write(stack, 42L, symbols, file);
+        StackImage image = StackImage.open(file);
+        //then
+        assertEquals(42L, image.getVersion());
+        assertEquals(2, image.getUserCount());
+        assertEquals("Alice", image.nameOf(0));
+        assertEquals(1, image.indexOf("Zo\u00e9"));
+        assertEquals(-1, image.indexOf("Bob"));
+        assertEquals(stack.getTimeline(zoe), image.getTimeline(1, zoe));
+        assertEquals(1, image.followCount(1));
+        assertEquals(0, image.followed(1, 0));
+        assertEquals(0, image.followCount(0));
+    }
+
+    @Test
+    public void open_smallRegions_readsAcrossRegions() throws IOException {
+        //given
+        SymbolTable symbols = new SymbolTable();
+        int alice = symbols.intern("Alice");
+        SocialStack stack = new MemorySocialStack();
+        for (int i = 0; i < 50; i++){
+            stack = stack.post(alice, "A message long enough to span regions, number " + i, new Date(i * 1000L));
+        }
+        Path file = folder.getRoot().toPath().resolve("stack.img");
+        StackImage.write(stack, 50L, symbols, file);
+        //when
+        StackImage image = StackImage.open(file, 128);
+        //then
+        assertEquals(stack.getTimeline(alice), image.getTimeline(0, alice));
+    }
+
+    @Test
+    public void load_rebuildsTheStack() throws IOException {
+        //given
+        SymbolTable symbols = new SymbolTable();
+        int alice = symbols.intern("Alice");
+        int bob = symbols.intern("Bob");
+        SocialStack stack = new MemorySocialStack()
+            .post(alice, "Hello", new Date(0L))
+            .post(bob, "Hi Alice", new Date(1000L))
+            .follow(bob, alice);
+        Path file = folder.getRoot().toPath().resolve("stack.img");
+        StackImage.write(stack, 3L, symbols, file);
+        //when
+        SymbolTable newSymbols = new SymbolTable();
+        SocialStack loaded = StackImage.open(file).load(new MemorySocialStack(), newSymbols);
+        //then
+        Timeline wall = loaded.getWall(newSymbols.lookup("Bob"));
+        assertEquals("Hi Alice", wall.getMessage());
+        assertEquals("Hello", wall.getNext().getMessage());
+        assertEquals(newSymbols.lookup("Alice"), wall.getNext().getUser());
+        assertNull(wall.getNext().getNext());
+    }
+
+    @Test(expected = IOException.class)
+    public void open_truncatedFile_throwsException() throws IOException {
+        //given
+        SymbolTable symbols = new SymbolTable();
+        SocialStack stack = new MemorySocialStack().post(symbols.intern("Alice"), "Hello", new Date(0L));
+        Path file = folder.getRoot().toPath().resolve("stack.img");
+        StackImage.write(stack, 1L, symbols, file);
+        byte[] content = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(content, content.length - 1));
+        //when
+        StackImage.open(file);
+    }
+}
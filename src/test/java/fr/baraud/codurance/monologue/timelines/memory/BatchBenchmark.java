@@ -0,0 +1,71 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+import fr.baraud.codurance.monologue.timelines.Batch;
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of applying 10000 posts, with a follow for every ten posts, to a
+ * stack of a given number of users: one after the other, building every
+ * version in between, against a batch changing the maps in place. Run it
+ * with -prof gc to compare the allocations.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    private static final int CHANGE_COUNT = 10000;
+    private static final int POSTS_PER_FOLLOW = 10;
+
+    @Param({"1000", "100000"})
+    public int userCount;
+
+    @Param({"PULL", "PUSH"})
+    public WallDelivery delivery;
+
+    private SocialStack stack;
+
+    @Setup
+    public void fillStack(){
+        Batch batch = new MemorySocialStack(delivery).batch();
+        for (int user = 0; user < userCount; user++){
+            batch.post(user, "Hello, this is my first post", new Date(user));
+        }
+        stack = batch.freeze();
+    }
+
+    @Benchmark
+    public SocialStack sequential(){
+        SocialStack result = stack;
+        for (int change = 0; change < CHANGE_COUNT; change++){
+            int user = (change * 7919) % userCount;
+            if (change % POSTS_PER_FOLLOW == 0){
+                result = result.follow(user, (user + change) % userCount);
+            } else {
+                result = result.post(user, "Hello, this is a post of about forty chars", new Date(userCount + change));
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public SocialStack batch(){
+        Batch batch = stack.batch();
+        for (int change = 0; change < CHANGE_COUNT; change++){
+            int user = (change * 7919) % userCount;
+            if (change % POSTS_PER_FOLLOW == 0){
+                batch.follow(user, (user + change) % userCount);
+            } else {
+                batch.post(user, "Hello, this is a post of about forty chars", new Date(userCount + change));
+            }
+        }
+        return batch.freeze();
+    }
+}
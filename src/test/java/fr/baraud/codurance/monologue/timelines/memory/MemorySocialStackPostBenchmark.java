@@ -0,0 +1,63 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.User;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one post on a stack of a given number of users: the hash trie behind
+ * MemorySocialStack against the previous copy of the whole HashMap per write.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MemorySocialStackPostBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int userCount;
+
+    private SocialStack trieStack;
+    private Map<Integer, User> copiedUsers;
+    private int next;
+
+    @Setup
+    public void fillStacks(){
+        Map<Integer, User> users = new HashMap<>();
+        Date date = new Date(0);
+        for (int i = 0; i < userCount; i++){
+            users.put(i, new User(i, new Timeline("Hello", i, date, null)));
+        }
+        trieStack = new MemorySocialStack(users);
+        copiedUsers = users;
+    }
+
+    private int nextUser(){
+        next = (next + 1) % userCount;
+        return next;
+    }
+
+    @Benchmark
+    public SocialStack postOnHashTrie(){
+        return trieStack.post(nextUser(), "Hello again", new Date(1));
+    }
+
+    @Benchmark
+    public Map<Integer, User> postOnCopiedHashMap(){
+        int id = nextUser();
+        User user = copiedUsers.get(id);
+        Map<Integer, User> newUsers = new HashMap<>();
+        newUsers.putAll(copiedUsers);
+        newUsers.put(id, new User(id,
+            new Timeline("Hello again", id, new Date(1), user.getTimeline())));
+        return newUsers;
+    }
+}
@@ -0,0 +1,112 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestChunkedTimeline {
+
+    private static final int ALICE = 0;
+
+    @Test
+    public void append_manyPosts_readBackNewestFirst(){
+        //given
+        Timeline chunked = null;
+        Timeline linked = null;
+        //when
+        for (int i = 0; i < 1000; i++){
+            chunked = ChunkedTimeline.append(chunked, ALICE, "post " + i, i);
+            linked = new Timeline("post " + i, ALICE, new Date(i), linked);
+        }
+        //then
+        assertEquals(linked, chunked);
+        assertEquals("post 999", chunked.getMessage());
+        assertEquals(999L, chunked.getTimestamp());
+        assertEquals(new Date(999L), chunked.getMessageTimestamp());
+    }
+
+    @Test
+    public void append_twiceToSameVersion_versionsDoNotInterfere(){
+        //given
+        Timeline first = ChunkedTimeline.append(null, ALICE, "Hello", 0L);
+        //when
+        Timeline left = ChunkedTimeline.append(first, ALICE, "Left", 1000L);
+        Timeline right = ChunkedTimeline.append(first, ALICE, "Right", 2000L);
+        Timeline leftAgain = ChunkedTimeline.append(left, ALICE, "Left again", 3000L);
+        //then
+        assertEquals("Left", left.getMessage());
+        assertEquals("Right", right.getMessage());
+        assertEquals("Hello", right.getNext().getMessage());
+        assertEquals("Left", leftAgain.getNext().getMessage());
+        assertNull(first.getNext());
+    }
+
+    @Test
+    public void append_branchAfterFullChunks_sharesOlderPosts(){
+        //given
+        Timeline timeline = null;
+        for (int i = 0; i < 100; i++){
+            timeline = ChunkedTimeline.append(timeline, ALICE, "post " + i, i);
+        }
+        Timeline trunk = ChunkedTimeline.append(timeline, ALICE, "trunk", 100L);
+        //when
+        Timeline branch = ChunkedTimeline.append(timeline, ALICE, "branch", 100L);
+        //then
+        assertEquals(trunk.getNext(), branch.getNext());
+        assertEquals("trunk", trunk.getMessage());
+        assertEquals("branch", branch.getMessage());
+    }
+
+    @Test
+    public void append_offHeap_readBackMessages(){
+        //given
+        MessageArena arena = new MessageArena(64);
+        Timeline timeline = null;
+        //when
+        for (int i = 0; i < 100; i++){
+            timeline = ChunkedTimeline.append(timeline, ALICE, "post " + i, i, arena, Long.MAX_VALUE);
+        }
+        //then
+        int count = 0;
+        for (Timeline post = timeline; post != null; post = post.getNext()){
+            assertEquals("post " + (99 - count), post.getMessage());
+            count++;
+        }
+        assertEquals(100, count);
+    }
+
+    @Test
+    public void append_withRetention_dropsOldChunksOnly(){
+        //given
+        Timeline timeline = null;
+        Timeline oldVersion = null;
+        //when
+        for (int i = 0; i < 1000; i++){
+            timeline = ChunkedTimeline.append(timeline, ALICE, "post " + i, i * 1000L, null, 100000L);
+            if (i == 500){
+                oldVersion = timeline;
+            }
+        }
+        //then
+        int count = 0;
+        Timeline oldest = null;
+        for (Timeline post = timeline; post != null; post = post.getNext()){
+            oldest = post;
+            count++;
+        }
+        assertTrue(count >= 100);
+        assertTrue(count < 1000);
+        assertTrue(oldest.getTimestamp() <= 999000L - 100000L);
+        assertEquals("post 500", oldVersion.getMessage());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void append_toLinkedTimeline_throwsException(){
+        ChunkedTimeline.append(new Timeline("Hello", ALICE, new Date(0L), null), ALICE, "Hi", 1000L);
+    }
+}
@@ -1,5 +1,7 @@
 package fr.baraud.codurance.monologue.timelines.memory;
 
+import fr.baraud.codurance.monologue.timelines.Batch;
+import fr.baraud.codurance.monologue.timelines.Page;
 import fr.baraud.codurance.monologue.timelines.SocialStack;
 import fr.baraud.codurance.monologue.timelines.Timeline;
 import fr.baraud.codurance.monologue.timelines.User;
@@ -10,22 +12,28 @@ import java.util.*;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 
 
 public class TestMemorySocialStack {
 
+    private static final int ALICE = 0;
+    private static final int JOHN = 1;
+    private static final int BOB = 2;
+    private static final int SANTA = 3;
+
     @Test
     public void timeline_getByName_returnTimeline(){
         //given
         Timeline aliceTimeline = new Timeline("I want this test to pass",
-            "Alice", new Date(0), null);
-        User alice = new User("Alice", Collections.emptyList(), aliceTimeline);
+            ALICE, new Date(0), null);
+        User alice = new User(ALICE, aliceTimeline);
         SocialStack socialStack = new MemorySocialStack(
-            Collections.singletonMap(alice.getName(), alice));
+            Collections.singletonMap(alice.getId(), alice));
         //when
-        Timeline foundTimeline = socialStack.getTimeline(alice.getName());
+        Timeline foundTimeline = socialStack.getTimeline(alice.getId());
         //then
         assertEquals(aliceTimeline, foundTimeline);
     }
@@ -34,13 +42,13 @@ public class TestMemorySocialStack {
     public void timeline_post_createTimeline() {
         //given
         SocialStack timelineStack = new MemorySocialStack();
-        Timeline aliceTimeline = new Timeline("I want this test to pass", "Alice",
+        Timeline aliceTimeline = new Timeline("I want this test to pass", ALICE,
             new Date(0), null);
         //when
-        timelineStack = timelineStack.post("Alice", "I want this test to pass",
+        timelineStack = timelineStack.post(ALICE, "I want this test to pass",
             new Date(0));
         //then
-        assertEquals(aliceTimeline, timelineStack.getTimeline("Alice"));
+        assertEquals(aliceTimeline, timelineStack.getTimeline(ALICE));
     }
 
     @Test
@@ -48,7 +56,7 @@ public class TestMemorySocialStack {
         //given
         SocialStack firstVersion = new MemorySocialStack();
         //when
-        SocialStack newVersion = firstVersion.post("Alice", "", new Date());
+        SocialStack newVersion = firstVersion.post(ALICE, "", new Date());
         //then
         assertEquals(firstVersion, newVersion);
 
@@ -60,9 +68,9 @@ public class TestMemorySocialStack {
         SocialStack timelineStack = new MemorySocialStack();
         Date startTime = new Date(0);
         Date aMinuteLater = new Date(60000L);
-        Timeline aliceTimeline1 = new Timeline("I want this test to pass", "Alice",
+        Timeline aliceTimeline1 = new Timeline("I want this test to pass", ALICE,
             startTime, null);
-        Timeline aliceTimeline2 = new Timeline("Does it?", "Alice", aMinuteLater,
+        Timeline aliceTimeline2 = new Timeline("Does it?", ALICE, aMinuteLater,
             aliceTimeline1);
         //when
         timelineStack = timelineStack.post(aliceTimeline1.getUser(),
@@ -70,41 +78,93 @@ public class TestMemorySocialStack {
         timelineStack = timelineStack.post(aliceTimeline2.getUser(),
             aliceTimeline2.getMessage(), aMinuteLater);
         //then
-        assertEquals(aliceTimeline2, timelineStack.getTimeline("Alice"));
+        assertEquals(aliceTimeline2, timelineStack.getTimeline(ALICE));
     }
 
     @Test
     public void wall_followJohn_addHimToWall(){
         //given
-        String aliceName = "Alice";
-        String johnName = "John";
         Date startTime = new Date(0);
         Date aMinuteLater = new Date(60000L);
         Timeline aliceTimeline = new Timeline("I want to be friends with you John",
-            aliceName,  startTime, null);
+            ALICE,  startTime, null);
         Timeline johnTimeline = new Timeline("I want to be friends with you too, Alice",
-            johnName, aMinuteLater, null);
-        User alice = new User(aliceName, new ArrayList<>(), aliceTimeline);
-        User john = new User(johnName, new ArrayList<>(), johnTimeline);
-        Map<String, User> users = new HashMap<>();
-        users.put(aliceName, alice);
-        users.put(johnName, john);
+            JOHN, aMinuteLater, null);
+        User alice = new User(ALICE, aliceTimeline);
+        User john = new User(JOHN, johnTimeline);
+        Map<Integer, User> users = new HashMap<>();
+        users.put(ALICE, alice);
+        users.put(JOHN, john);
         SocialStack socialStack = new MemorySocialStack(users);
         //when
-        socialStack = socialStack.follow(aliceName, johnName);
+        socialStack = socialStack.follow(ALICE, JOHN);
         //then
-        assertEquals(socialStack.getWall(aliceName).getMessage(),
+        assertEquals(socialStack.getWall(ALICE).getMessage(),
             johnTimeline.getMessage());
     }
 
+    @Test
+    public void wall_followedUserPostsAfterFollow_showsNewPost(){
+        //given
+        SocialStack socialStack = new MemorySocialStack()
+            .post(ALICE, "Hello", new Date(0))
+            .post(JOHN, "Welcome", new Date(1000L))
+            .follow(ALICE, JOHN);
+        //when
+        socialStack = socialStack.post(JOHN, "I am still here", new Date(2000L));
+        //then
+        Timeline wall = socialStack.getWall(ALICE);
+        assertEquals("I am still here", wall.getMessage());
+        assertEquals("Welcome", wall.getNext().getMessage());
+        assertEquals("Hello", wall.getNext().getNext().getMessage());
+        assertNull(wall.getNext().getNext().getNext());
+    }
+
+    @Test
+    public void follow_sameUserTwice_keepSameSocialStackInstance(){
+        //given
+        SocialStack socialStack = new MemorySocialStack()
+            .post(ALICE, "Hello", new Date(0))
+            .post(JOHN, "Welcome", new Date(1000L))
+            .follow(ALICE, JOHN);
+        //when
+        SocialStack followedAgain = socialStack.follow(ALICE, JOHN);
+        //then
+        assertSame(socialStack, followedAgain);
+    }
+
+    @Test
+    public void follow_manyUsersTwice_keepSameSocialStackInstance(){
+        //given
+        int userCount = 3 * FollowList.INDEX_THRESHOLD;
+        SocialStack socialStack = new MemorySocialStack();
+        for (int user = 0; user <= userCount; user++){
+            socialStack = socialStack.post(user, "Hello", new Date(user));
+        }
+        for (int followed = 1; followed < userCount; followed++){
+            socialStack = socialStack.follow(0, followed);
+        }
+        //when
+        SocialStack followedAgain = socialStack;
+        for (int followed = 1; followed < userCount; followed++){
+            followedAgain = followedAgain.follow(0, followed);
+        }
+        SocialStack followedLast = socialStack.follow(0, userCount);
+        //then
+        assertSame(socialStack, followedAgain);
+        int[] count = new int[1];
+        followedLast.forEachFollowed(0, followed -> count[0]++);
+        assertEquals(userCount, count[0]);
+    }
+
     @Test
     public void socialStack_followUnknownUser_keepSameSocialStackInstance() {
         //given
         SocialStack beforeFollow = new MemorySocialStack();
-        beforeFollow = beforeFollow.post("Alice", "I think I am alone here",
+        beforeFollow = beforeFollow.post(ALICE, "I think I am alone here",
             new Date(0));
         //when
-        SocialStack afterFollow = beforeFollow.follow("Alice", "Santa");
+        SocialStack afterFollow = beforeFollow.follow(ALICE, SANTA);
         //then
         assertEquals(beforeFollow, afterFollow);
     }
@@ -112,30 +172,25 @@ public class TestMemorySocialStack {
     @Test
     public void stack_buildWall_EqualsToSelfBuiltTimeline(){
         //given
-        String aliceName = "Alice";
-        String johnName = "John";
-        String bobName = "Bob";
         Date date1 = new Date(0);
         Date date2 = new Date(60000L);
         Date date3 = new Date(120000L);
         Date date4 = new Date(180000L);
-        Timeline timeline1 = new Timeline("Hello", aliceName, date1, null);
-        Timeline timeline2 = new Timeline("Welcome", johnName, date2, null);
-        Timeline timeline3 = new Timeline("There is a nice vibe here!", bobName,
+        Timeline timeline1 = new Timeline("Hello", ALICE, date1, null);
+        Timeline timeline2 = new Timeline("Welcome", JOHN, date2, null);
+        Timeline timeline3 = new Timeline("There is a nice vibe here!", BOB,
             date3, null);
-        Timeline timeline4 = new Timeline("Indeed, there is", aliceName, date4,
+        Timeline timeline4 = new Timeline("Indeed, there is", ALICE, date4,
             timeline1);
-        User john = new User(johnName, Collections.emptyList(), timeline2);
-        User bob = new User(bobName, Collections.emptyList(), timeline3);
-        List<User> following = new ArrayList<>();
-        following.add(john);
-        following.add(bob);
-        User alice = new User(aliceName, following, timeline4);
-        Map<String, User> users = new HashMap<>();
-        users.put(aliceName, alice);
-        users.put(johnName, john);
-        users.put(bobName, bob);
-        SocialStack socialStack = new MemorySocialStack(users);
+        User john = new User(JOHN, timeline2);
+        User bob = new User(BOB, timeline3);
+        User alice = new User(ALICE, timeline4);
+        Map<Integer, User> users = new HashMap<>();
+        users.put(ALICE, alice);
+        users.put(JOHN, john);
+        users.put(BOB, bob);
+        SocialStack socialStack = new MemorySocialStack(users,
+            Collections.singletonMap(ALICE, Arrays.asList(JOHN, BOB)));
         Timeline aliceWall = new Timeline(timeline4.getMessage(),
             timeline4.getUser(), timeline4.getMessageTimestamp(),
             new Timeline(timeline3.getMessage(), timeline3.getUser(),
@@ -147,7 +202,7 @@ public class TestMemorySocialStack {
                         timeline1.getMessageTimestamp(),
                         null))));
         //when
-        Timeline receivedWall = socialStack.getWall(aliceName);
+        Timeline receivedWall = socialStack.getWall(ALICE);
         //then
         assertEquals(aliceWall, receivedWall);
     }
@@ -157,7 +212,7 @@ public class TestMemorySocialStack {
         //given
         SocialStack socialStack = new MemorySocialStack();
         //when
-        Timeline wall = socialStack.getWall("Santa");
+        Timeline wall = socialStack.getWall(SANTA);
         //then
         assertNull(wall);
     }
@@ -165,13 +220,13 @@ public class TestMemorySocialStack {
     @Test
     public void stack_userExist_returnTrue(){
         //given
-        Timeline aliceTimeline = new Timeline("I want this test to pass", "Alice",
+        Timeline aliceTimeline = new Timeline("I want this test to pass", ALICE,
             new Date(0), null);
-        User alice = new User("Alice", new ArrayList<>(), aliceTimeline);
+        User alice = new User(ALICE, aliceTimeline);
         SocialStack socialStack = new MemorySocialStack(
-            Collections.singletonMap(alice.getName(), alice));
+            Collections.singletonMap(alice.getId(), alice));
         //when
-        boolean doesAliceExist = socialStack.userExist(alice.getName());
+        boolean doesAliceExist = socialStack.userExist(alice.getId());
         //then
         assertTrue(doesAliceExist);
     }
@@ -180,6 +235,285 @@ public class TestMemorySocialStack {
     public void testUserNotExist(){
         //given
         SocialStack socialStack = new MemorySocialStack();
-        assertFalse(socialStack.userExist("Alice"));
+        assertFalse(socialStack.userExist(ALICE));
+    }
+
+    @Test
+    public void pushDelivery_followThenPost_wallContainsBothUsersPosts(){
+        //given
+        SocialStack socialStack = new MemorySocialStack(WallDelivery.PUSH)
+            .post(ALICE, "Hello", new Date(0))
+            .post(JOHN, "Welcome", new Date(1000L))
+            .follow(ALICE, JOHN);
+        //when
+        socialStack = socialStack.post(JOHN, "I am still here", new Date(2000L));
+        //then
+        Timeline wall = socialStack.getWall(ALICE);
+        assertEquals("I am still here", wall.getMessage());
+        assertEquals(JOHN, wall.getUser());
+        assertEquals("Welcome", wall.getNext().getMessage());
+        assertEquals("Hello", wall.getNext().getNext().getMessage());
+        assertNull(wall.getNext().getNext().getNext());
+        assertEquals("I am still here", socialStack.getWall(JOHN).getMessage());
+        assertNull(socialStack.getWall(JOHN).getNext().getNext());
+    }
+
+    @Test
+    public void pushDelivery_randomHistory_sameWallsAsPullDelivery(){
+        assertSameWallsAsPullDelivery(new MemorySocialStack(WallDelivery.PUSH));
+    }
+
+    @Test
+    public void hybridDelivery_randomHistory_sameWallsAsPullDelivery(){
+        assertSameWallsAsPullDelivery(new MemorySocialStack(WallDelivery.HYBRID, 3));
+    }
+
+    @Test
+    public void chunkedStorage_randomHistory_sameWallsAsLinkedStorage(){
+        assertSameWallsAsPullDelivery(new MemorySocialStack(WallDelivery.PUSH,
+            MemorySocialStack.DEFAULT_CELEBRITY_THRESHOLD, TimelineStorage.CHUNKED));
+        assertSameWallsAsPullDelivery(new MemorySocialStack(WallDelivery.PULL,
+            MemorySocialStack.DEFAULT_CELEBRITY_THRESHOLD, TimelineStorage.CHUNKED));
+    }
+
+    @Test
+    public void offHeapStorage_randomHistory_sameWallsAsLinkedStorage(){
+        assertSameWallsAsPullDelivery(new MemorySocialStack(WallDelivery.HYBRID, 3,
+            TimelineStorage.OFF_HEAP));
+        assertSameWallsAsPullDelivery(new MemorySocialStack(WallDelivery.PULL,
+            MemorySocialStack.DEFAULT_CELEBRITY_THRESHOLD, TimelineStorage.OFF_HEAP));
+    }
+
+    @Test
+    public void hybridDelivery_userBecomesCelebrity_wallKeepsAllHisPosts(){
+        //given
+        SocialStack socialStack = new MemorySocialStack(WallDelivery.HYBRID, 2)
+            .post(ALICE, "Hello", new Date(0))
+            .post(JOHN, "Welcome", new Date(1000L))
+            .post(BOB, "Hi", new Date(2000L))
+            .follow(ALICE, JOHN)
+            .post(JOHN, "Pushed to Alice", new Date(3000L));
+        //when John reaches 2 followers
+        socialStack = socialStack.follow(BOB, JOHN)
+            .post(JOHN, "Merged when read", new Date(4000L));
+        //then
+        Timeline wall = socialStack.getWall(ALICE);
+        assertEquals("Merged when read", wall.getMessage());
+        assertEquals("Pushed to Alice", wall.getNext().getMessage());
+        assertEquals("Welcome", wall.getNext().getNext().getMessage());
+        assertEquals("Hello", wall.getNext().getNext().getNext().getMessage());
+        assertNull(wall.getNext().getNext().getNext().getNext());
+        assertEquals("Merged when read", socialStack.getWall(BOB).getMessage());
+        assertEquals("Merged when read", socialStack.getWall(JOHN).getMessage());
+    }
+
+    @Test
+    public void wallPages_readWithCursors_coverTheWholeWall(){
+        //given
+        SocialStack socialStack = new MemorySocialStack()
+            .post(ALICE, "Hello", new Date(0))
+            .post(JOHN, "Welcome", new Date(1000L))
+            .post(BOB, "Hi", new Date(2000L))
+            .post(ALICE, "Anyone here?", new Date(3000L))
+            .follow(ALICE, JOHN)
+            .follow(ALICE, BOB);
+        //when
+        Page first = socialStack.getWall(ALICE, 3, null);
+        Page second = socialStack.getWall(ALICE, 3, first.getNext());
+        //then
+        assertEquals(3, first.getPosts().size());
+        assertEquals("Anyone here?", first.getPosts().get(0).getMessage());
+        assertEquals("Welcome", first.getPosts().get(2).getMessage());
+        assertEquals(1, second.getPosts().size());
+        assertEquals("Hello", second.getPosts().get(0).getMessage());
+        assertNull(second.getNext());
+    }
+
+    @Test
+    public void timelinePages_newPostAfterFirstPage_nextPageUnchanged(){
+        //given
+        SocialStack socialStack = new MemorySocialStack()
+            .post(ALICE, "Hello", new Date(0))
+            .post(ALICE, "Anyone here?", new Date(1000L));
+        Page first = socialStack.getTimeline(ALICE, 1, null);
+        //when
+        socialStack = socialStack.post(ALICE, "Still nobody", new Date(2000L));
+        Page second = socialStack.getTimeline(ALICE, 1, first.getNext());
+        //then
+        assertEquals("Anyone here?", first.getPosts().get(0).getMessage());
+        assertEquals("Hello", second.getPosts().get(0).getMessage());
+        assertNull(second.getNext());
+    }
+
+    @Test
+    public void timelinePage_unknownUser_isEmpty(){
+        //given
+        SocialStack socialStack = new MemorySocialStack();
+        //when
+        Page page = socialStack.getTimeline(SANTA, 10, null);
+        //then
+        assertTrue(page.getPosts().isEmpty());
+        assertNull(page.getNext());
+    }
+
+    @Test
+    public void refreshWall_newPosts_mergedInFrontOfPreviousWall(){
+        //given
+        SocialStack socialStack = new MemorySocialStack()
+            .post(ALICE, "Hello", new Date(0))
+            .post(JOHN, "Welcome", new Date(1000L))
+            .post(BOB, "Hi", new Date(2000L))
+            .follow(ALICE, JOHN);
+        Timeline previousWall = socialStack.getWall(ALICE);
+        //when
+        socialStack = socialStack.post(JOHN, "News", new Date(3000L))
+            .post(BOB, "Not followed", new Date(4000L))
+            .post(ALICE, "Thanks", new Date(5000L));
+        Timeline wall = socialStack.refreshWall(ALICE, previousWall);
+        //then
+        assertEquals(socialStack.getWall(ALICE), wall);
+        assertSame(previousWall, wall.getNext().getNext());
+    }
+
+    @Test
+    public void refreshWall_postInTheSameMillisecondByALowerId_isNotLost(){
+        for (WallDelivery delivery : new WallDelivery[]{WallDelivery.PULL, WallDelivery.PUSH}){
+            //given
+            SocialStack socialStack = new MemorySocialStack(delivery)
+                .post(ALICE, "Hello", new Date(0))
+                .post(JOHN, "Welcome", new Date(1000L))
+                .follow(ALICE, JOHN);
+            Timeline previousWall = socialStack.getWall(ALICE);
+            //when
+            socialStack = socialStack.post(ALICE, "Thanks", new Date(1000L));
+            Timeline wall = socialStack.refreshWall(ALICE, previousWall);
+            //then
+            assertEquals("Thanks", wall.getMessage());
+            assertSame(previousWall, wall.getNext());
+            assertSame(wall, socialStack.refreshWall(ALICE, wall));
+        }
+    }
+
+    @Test
+    public void refreshWall_randomPosts_sameAsWholeWall(){
+        assertRefreshedWallsAsWholeWalls(new MemorySocialStack(WallDelivery.PULL));
+        assertRefreshedWallsAsWholeWalls(new MemorySocialStack(WallDelivery.PUSH));
+        assertRefreshedWallsAsWholeWalls(new MemorySocialStack(WallDelivery.HYBRID, 3));
+    }
+
+    /**
+     * Follow randomly, then post randomly and check the walls refreshed
+     * after each post are the same as the whole walls
+     */
+    private void assertRefreshedWallsAsWholeWalls(SocialStack stack){
+        //given
+        Random random = new Random(42);
+        int userCount = 10;
+        for (int user = 0; user < userCount; user++){
+            stack = stack.post(user, "first message", new Date(user));
+        }
+        for (int i = 0; i < 30; i++){
+            stack = stack.follow(random.nextInt(userCount), random.nextInt(userCount));
+        }
+        Timeline[] walls = new Timeline[userCount];
+        for (int user = 0; user < userCount; user++){
+            walls[user] = stack.getWall(user);
+        }
+        //when
+        for (int i = 0; i < 200; i++){
+            stack = stack.post(random.nextInt(userCount), "message " + i, new Date(1000L * (i + 1)));
+            //then
+            int wallOwner = random.nextInt(userCount);
+            walls[wallOwner] = stack.refreshWall(wallOwner, walls[wallOwner]);
+            assertEquals(stack.getWall(wallOwner), walls[wallOwner]);
+        }
+    }
+
+    @Test
+    public void batch_postsAndFollows_sameStackAsSequential(){
+        for (WallDelivery delivery : WallDelivery.values()){
+            //given
+            Random random = new Random(42);
+            SocialStack first = new MemorySocialStack(delivery, 3).post(ALICE, "Hello", new Date(0L));
+            SocialStack sequential = first;
+            Batch batch = first.batch();
+            int userCount = 10;
+            //when
+            for (int i = 0; i < 500; i++){
+                int user = random.nextInt(userCount);
+                if (random.nextInt(4) == 0){
+                    int followed = random.nextInt(userCount);
+                    sequential = sequential.follow(user, followed);
+                    batch.follow(user, followed);
+                } else {
+                    Date date = new Date(i * 1000L);
+                    sequential = sequential.post(user, "message " + i, date);
+                    batch.post(user, "message " + i, date);
+                }
+            }
+            SocialStack batched = batch.freeze();
+            //then
+            for (int user = 0; user < userCount; user++){
+                assertEquals(sequential.getTimeline(user), batched.getTimeline(user));
+                assertEquals(sequential.getWall(user), batched.getWall(user));
+            }
+            assertEquals("Hello", first.getTimeline(ALICE).getMessage());
+            assertNull(first.getTimeline(JOHN));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void batch_frozen_cannotBeChanged(){
+        //given
+        Batch batch = new MemorySocialStack().batch();
+        batch.post(ALICE, "Hello", new Date(0L)).freeze();
+        //when
+        batch.post(ALICE, "Again", new Date(1000L));
+    }
+
+    @Test
+    public void batch_frozenThenChanged_keepsFrozenVersion(){
+        //given
+        SocialStack frozen = new MemorySocialStack().batch()
+            .post(ALICE, "Hello", new Date(0L))
+            .post(BOB, "Hi", new Date(1000L))
+            .freeze();
+        //when
+        SocialStack next = frozen.post(ALICE, "Again", new Date(2000L));
+        //then
+        assertEquals("Hello", frozen.getTimeline(ALICE).getMessage());
+        assertEquals("Again", next.getTimeline(ALICE).getMessage());
+    }
+
+    /**
+     * Apply the same random history to the stack and to a PULL stack, and
+     * check the walls of all the users are the same
+     */
+    private void assertSameWallsAsPullDelivery(SocialStack stack){
+        //given
+        Random random = new Random(42);
+        SocialStack pull = new MemorySocialStack(WallDelivery.PULL);
+        int userCount = 10;
+        long time = 0;
+        //when
+        for (int i = 0; i < 500; i++){
+            int user = random.nextInt(userCount);
+            if (random.nextInt(4) == 0){
+                int followed = random.nextInt(userCount);
+                pull = pull.follow(user, followed);
+                stack = stack.follow(user, followed);
+            } else {
+                // several posts can share the same timestamp
+                time += random.nextInt(2) * 1000L;
+                Date date = new Date(time);
+                String message = "message " + random.nextInt(3);
+                pull = pull.post(user, message, date);
+                stack = stack.post(user, message, date);
+            }
+            //then
+            for (int wallOwner = 0; wallOwner < userCount; wallOwner++){
+                assertEquals(pull.getWall(wallOwner), stack.getWall(wallOwner));
+            }
+        }
     }
 }
@@ -0,0 +1,40 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class TestMessageArena {
+
+    @Test
+    public void store_thenRead_returnsSameMessage(){
+        //given
+        MessageArena arena = new MessageArena();
+        long[] references = new long[2];
+        //when
+        MessageArena.Segment first = arena.store("Hello", references, 0);
+        MessageArena.Segment second = arena.store("\u00c7a va ? \ud83d\ude00", references, 1);
+        //then
+        assertSame(first, second);
+        assertEquals("Hello", first.read(references[0]));
+        assertEquals("\u00c7a va ? \ud83d\ude00", second.read(references[1]));
+    }
+
+    @Test
+    public void store_segmentFull_startsNewSegment(){
+        //given
+        MessageArena arena = new MessageArena(8);
+        long[] references = new long[3];
+        //when
+        MessageArena.Segment first = arena.store("Hello", references, 0);
+        MessageArena.Segment second = arena.store("World", references, 1);
+        MessageArena.Segment large = arena.store("A message longer than a segment", references, 2);
+        //then
+        assertNotSame(first, second);
+        assertEquals("Hello", first.read(references[0]));
+        assertEquals("World", second.read(references[1]));
+        assertEquals("A message longer than a segment", large.read(references[2]));
+    }
+}
@@ -0,0 +1,129 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestPersistentHashMap {
+
+    @Test
+    public void emptyMap_getAnyKey_returnNull(){
+        //given
+        PersistentHashMap<String, String> map = PersistentHashMap.empty();
+        //then
+        assertNull(map.get("Alice"));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void put_keyValue_isFoundInNewVersionOnly(){
+        //given
+        PersistentHashMap<String, String> before = PersistentHashMap.empty();
+        //when
+        PersistentHashMap<String, String> after = before.put("Alice", "Hello");
+        //then
+        assertEquals("Hello", after.get("Alice"));
+        assertTrue(after.containsKey("Alice"));
+        assertFalse(before.containsKey("Alice"));
+        assertEquals(1, after.size());
+        assertEquals(0, before.size());
+    }
+
+    @Test
+    public void put_existingKey_replaceValueWithoutChangingSize(){
+        //given
+        PersistentHashMap<String, String> first = PersistentHashMap.<String, String>empty().put("Alice", "Hello");
+        //when
+        PersistentHashMap<String, String> second = first.put("Alice", "Goodbye");
+        //then
+        assertEquals("Hello", first.get("Alice"));
+        assertEquals("Goodbye", second.get("Alice"));
+        assertEquals(1, second.size());
+    }
+
+    @Test
+    public void put_sameValue_returnSameInstance(){
+        //given
+        String value = "Hello";
+        PersistentHashMap<String, String> map = PersistentHashMap.<String, String>empty().put("Alice", value);
+        //then
+        assertSame(map, map.put("Alice", value));
+    }
+
+    @Test
+    public void put_keysWithSameHash_keepBothEntries(){
+        //given "Aa" and "BB" share the same hash code
+        PersistentHashMap<String, String> map = PersistentHashMap.empty();
+        //when
+        map = map.put("Aa", "first").put("BB", "second").put("Aa", "third");
+        //then
+        assertEquals("third", map.get("Aa"));
+        assertEquals("second", map.get("BB"));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    public void manyEntries_areAllFoundAndIterated(){
+        //given
+        PersistentHashMap<Integer, Integer> map = PersistentHashMap.empty();
+        int count = 100000;
+        //when
+        for (int i = 0; i < count; i++){
+            map = map.put(i, i * 2);
+        }
+        //then
+        assertEquals(count, map.size());
+        for (int i = 0; i < count; i++){
+            assertEquals(Integer.valueOf(i * 2), map.get(i));
+        }
+        Map<Integer, Integer> iterated = new HashMap<>();
+        map.forEach(iterated::put);
+        assertEquals(count, iterated.size());
+    }
+
+    @Test
+    public void putWithEdit_manyEntries_previousVersionUnchanged(){
+        //given
+        PersistentHashMap<Integer, Integer> before = PersistentHashMap.empty();
+        for (int i = 0; i < 1000; i++){
+            before = before.put(i, i);
+        }
+        Object edit = new Object();
+        PersistentHashMap<Integer, Integer> batch = before;
+        //when
+        for (int i = 0; i < 2000; i++){
+            batch = batch.put(i, -i, edit);
+        }
+        PersistentHashMap<Integer, Integer> after = batch.put(5000, 5000);
+        //then
+        assertEquals(1000, before.size());
+        assertEquals(2000, batch.size());
+        assertEquals(2001, after.size());
+        for (int i = 0; i < 1000; i++){
+            assertEquals(Integer.valueOf(i), before.get(i));
+            assertEquals(Integer.valueOf(-i), after.get(i));
+        }
+        assertNull(batch.get(5000));
+    }
+
+    @Test
+    public void fromMap_containsAllEntries(){
+        //given
+        Map<String, String> entries = new HashMap<>();
+        entries.put("Alice", "Hello");
+        entries.put("Bob", "Welcome");
+        //when
+        PersistentHashMap<String, String> map = PersistentHashMap.fromMap(entries);
+        //then
+        assertEquals(2, map.size());
+        assertEquals("Hello", map.get("Alice"));
+        assertEquals("Welcome", map.get("Bob"));
+    }
+}
@@ -0,0 +1,84 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Linked against chunked timelines, with messages in the heap or not: cost of
+ * a post, of reading a whole timeline, and the heap footprint in bytes per
+ * post, printed once the stack is filled. Each post has its own message of
+ * about 40 characters.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimelineStorageBenchmark {
+
+    private static final int USER_COUNT = 1000;
+    private static final String MESSAGE = "Hello, this is post number ";
+
+    @Param({"1", "10", "100", "1000"})
+    public int postsPerUser;
+
+    @Param({"LINKED", "CHUNKED", "OFF_HEAP"})
+    public TimelineStorage storage;
+
+    private SocialStack filledStack;
+
+    /**
+     * The latest version of the stack, the posts being appended to it
+     */
+    private SocialStack socialStack;
+    private int next;
+    private long time;
+
+    @Setup
+    public void fillStack(){
+        SocialStack stack = new MemorySocialStack(WallDelivery.PULL,
+            MemorySocialStack.DEFAULT_CELEBRITY_THRESHOLD, storage);
+        for (int post = 0; post < postsPerUser; post++){
+            for (int user = 0; user < USER_COUNT; user++){
+                stack = stack.post(user, MESSAGE + time, new Date(time++));
+            }
+        }
+        filledStack = stack;
+        long emptyStackSize = GraphLayout.parseInstance(new MemorySocialStack(WallDelivery.PULL,
+            MemorySocialStack.DEFAULT_CELEBRITY_THRESHOLD, storage)).totalSize();
+        long stackSize = GraphLayout.parseInstance(filledStack).totalSize();
+        System.out.printf("%n%s storage, %d posts per user: %.1f heap bytes per post%n", storage, postsPerUser,
+            (double) (stackSize - emptyStackSize) / (USER_COUNT * postsPerUser));
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStack(){
+        socialStack = filledStack;
+    }
+
+    private int nextUser(){
+        next = (next + 1) % USER_COUNT;
+        return next;
+    }
+
+    @Benchmark
+    public SocialStack post(){
+        socialStack = socialStack.post(nextUser(), MESSAGE + time, new Date(time++));
+        return socialStack;
+    }
+
+    @Benchmark
+    public long readTimeline(){
+        long sum = 0;
+        for (Timeline post = socialStack.getTimeline(nextUser()); post != null; post = post.getNext()){
+            sum += post.getTimestamp() + post.getMessage().length();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,76 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read/write trade-off of the wall deliveries, depending on the number of
+ * followers of the author (for the posts) and the number of followed users of
+ * the reader (for the walls). With the default celebrity threshold of the
+ * HYBRID delivery, the author of the posts becomes a celebrity at 1000
+ * followers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WallDeliveryBenchmark {
+
+    private static final int POSTS_PER_USER = 2;
+
+    @Param({"10", "100", "1000"})
+    public int followerCount;
+
+    @Param({"PULL", "PUSH", "HYBRID"})
+    public WallDelivery delivery;
+
+    /**
+     * User 0 is followed by all the others and follows all of them
+     */
+    private SocialStack socialStack;
+
+    private long time;
+
+    @Setup
+    public void fillStack(){
+        SocialStack stack = new MemorySocialStack(delivery);
+        for (int post = 0; post < POSTS_PER_USER; post++){
+            for (int user = 0; user <= followerCount; user++){
+                stack = stack.post(user, "Hello " + post, new Date(time++));
+            }
+        }
+        for (int user = 1; user <= followerCount; user++){
+            stack = stack.follow(user, 0).follow(0, user);
+        }
+        socialStack = stack;
+    }
+
+    @Benchmark
+    public SocialStack post(){
+        return socialStack.post(0, "Hello again", new Date(time++));
+    }
+
+    @Benchmark
+    public int readWall(){
+        return readPosts(Integer.MAX_VALUE);
+    }
+
+    @Benchmark
+    public int readFirst20PostsOfWall(){
+        return readPosts(20);
+    }
+
+    private int readPosts(int limit){
+        int count = 0;
+        for (Timeline post = socialStack.getWall(0); post != null && count < limit; post = post.getNext()){
+            count++;
+        }
+        return count;
+    }
+}
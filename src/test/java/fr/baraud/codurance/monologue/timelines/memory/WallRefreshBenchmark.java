@@ -0,0 +1,70 @@
+package fr.baraud.codurance.monologue.timelines.memory;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a whole wall again once a few posts were added since it was last
+ * read: merged again from all the followed timelines, or refreshed from the
+ * wall read before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WallRefreshBenchmark {
+
+    private static final int POSTS_PER_USER = 20;
+    private static final int NEW_POSTS = 5;
+    private static final int OWNER = 0;
+
+    @Param({"10", "100", "1000"})
+    public int followCount;
+
+    private SocialStack socialStack;
+    private Timeline previousWall;
+
+    @Setup
+    public void fillStack(){
+        SocialStack stack = new MemorySocialStack();
+        long time = 0;
+        for (int post = 0; post < POSTS_PER_USER; post++){
+            for (int user = 0; user <= followCount; user++){
+                stack = stack.post(user, "Hello, this is post number " + time, new Date(time++));
+            }
+        }
+        for (int user = 1; user <= followCount; user++){
+            stack = stack.follow(OWNER, user);
+        }
+        previousWall = stack.getWall(OWNER);
+        walk(previousWall);
+        for (int post = 0; post < NEW_POSTS; post++){
+            stack = stack.post(1 + post % followCount, "A new post " + time, new Date(time++));
+        }
+        socialStack = stack;
+    }
+
+    private static long walk(Timeline wall){
+        long sum = 0;
+        for (Timeline post = wall; post != null; post = post.getNext()){
+            sum += post.getTimestamp();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long mergeAgain(){
+        return walk(socialStack.getWall(OWNER));
+    }
+
+    @Benchmark
+    public long refresh(){
+        return walk(socialStack.refreshWall(OWNER, previousWall));
+    }
+}
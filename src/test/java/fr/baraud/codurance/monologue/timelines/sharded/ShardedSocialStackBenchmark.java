@@ -0,0 +1,76 @@
+package fr.baraud.codurance.monologue.timelines.sharded;
+
+import fr.baraud.codurance.monologue.timelines.SharedSocialStack;
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of concurrent writers posting as random users, through the
+ * writers of a sharded stack for each number of shards, compared with a
+ * single stack shared through a CAS handle. A post is waited for before the
+ * next one. Run it once per number of writers with the -t option, e.g. -t 1,
+ * -t 8, -t 32.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShardedSocialStackBenchmark {
+
+    private static final int USER_COUNT = 1000;
+    private static final int FOLLOWS_PER_USER = 10;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int shardCount;
+
+    private ShardWriters writers;
+    private SharedSocialStack shared;
+
+    @Setup
+    public void fillStacks(){
+        writers = new ShardWriters((ShardedSocialStack) fill(new ShardedSocialStack(shardCount, MemorySocialStack::new)));
+        shared = new SharedSocialStack(fill(new MemorySocialStack()));
+    }
+
+    private static SocialStack fill(SocialStack stack){
+        for (int user = 0; user < USER_COUNT; user++){
+            stack = stack.post(user, "Hello, this is my first post", new Date(user));
+        }
+        for (int user = 0; user < USER_COUNT; user++){
+            for (int follow = 1; follow <= FOLLOWS_PER_USER; follow++){
+                stack = stack.follow(user, (user + follow) % USER_COUNT);
+            }
+        }
+        return stack;
+    }
+
+    @TearDown
+    public void stopWriters(){
+        writers.close();
+    }
+
+    @Benchmark
+    public Object shardedPost(){
+        int user = ThreadLocalRandom.current().nextInt(USER_COUNT);
+        return writers.post(user, "Hello, this is a post of about forty chars", new Date()).join();
+    }
+
+    @Benchmark
+    public Object shardedWall(){
+        int user = ThreadLocalRandom.current().nextInt(USER_COUNT);
+        return writers.get().getWall(user).getMessage();
+    }
+
+    @Benchmark
+    public SocialStack sharedPost(){
+        int user = ThreadLocalRandom.current().nextInt(USER_COUNT);
+        return shared.post(user, "Hello, this is a post of about forty chars", new Date());
+    }
+}
@@ -0,0 +1,137 @@
+package fr.baraud.codurance.monologue.timelines.sharded;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TestShardedSocialStack {
+
+    @Test
+    public void getWall_followedOnOtherShards_mergesTheirTimelines(){
+        //given
+        SocialStack stack = new ShardedSocialStack(4, MemorySocialStack::new)
+            .post(0, "Alice 1", new Date(1000L))
+            .post(1, "Bob 1", new Date(2000L))
+            .post(2, "Charlie 1", new Date(3000L))
+            .post(0, "Alice 2", new Date(4000L));
+        //when
+        stack = stack.follow(0, 1).follow(0, 2);
+        //then
+        Timeline wall = stack.getWall(0);
+        assertEquals("Alice 2", wall.getMessage());
+        assertEquals("Charlie 1", wall.getNext().getMessage());
+        assertEquals("Bob 1", wall.getNext().getNext().getMessage());
+        assertEquals("Alice 1", wall.getNext().getNext().getNext().getMessage());
+        assertNull(wall.getNext().getNext().getNext().getNext());
+    }
+
+    @Test
+    public void follow_unknownUser_keepsSameVersion(){
+        //given
+        SocialStack stack = new ShardedSocialStack(4, MemorySocialStack::new)
+            .post(0, "Alice 1", new Date(1000L));
+        //when
+        SocialStack result = stack.follow(0, 1).follow(0, 0);
+        //then
+        assertSame(stack, result);
+        assertFalse(result.userExist(1));
+    }
+
+    @Test
+    public void post_oneShard_keepsPreviousVersion(){
+        //given
+        SocialStack stack = new ShardedSocialStack(4, MemorySocialStack::new)
+            .post(0, "Alice 1", new Date(1000L));
+        //when
+        SocialStack result = stack.post(0, "Alice 2", new Date(2000L));
+        //then
+        assertEquals("Alice 1", stack.getTimeline(0).getMessage());
+        assertEquals("Alice 2", result.getTimeline(0).getMessage());
+    }
+
+    @Test
+    public void forEachUser_allShards_listsEveryUser(){
+        //given
+        SocialStack stack = new ShardedSocialStack(8, MemorySocialStack::new);
+        for (int user = 0; user < 20; user++){
+            stack = stack.post(user, "Hello", new Date(user));
+        }
+        //when
+        Set<Integer> users = new HashSet<>();
+        stack.forEachUser(users::add);
+        //then
+        assertEquals(20, users.size());
+    }
+
+    @Test
+    public void post_concurrentWriters_noPostIsLost(){
+        //given
+        int userCount = 16;
+        int postsPerUser = 100;
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        try (ShardWriters writers = new ShardWriters(new ShardedSocialStack(4, MemorySocialStack::new))){
+            //when
+            for (int post = 0; post < postsPerUser; post++){
+                for (int user = 0; user < userCount; user++){
+                    results.add(writers.post(user, "Post " + post, new Date(post)));
+                }
+            }
+            for (int user = 0; user < userCount; user++){
+                results.add(writers.follow(user, (user + 1) % userCount));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+            //then
+            SocialStack stack = writers.get();
+            for (int user = 0; user < userCount; user++){
+                int count = 0;
+                for (Timeline post = stack.getTimeline(user); post != null; post = post.getNext()){
+                    assertEquals("Post " + (postsPerUser - 1 - count), post.getMessage());
+                    count++;
+                }
+                assertEquals(postsPerUser, count);
+                List<Integer> followed = new ArrayList<>();
+                stack.forEachFollowed(user, followed::add);
+                assertEquals((user + 1) % userCount, (int) followed.get(0));
+            }
+            assertTrue(stack.getWall(0).getNext() != null);
+        }
+    }
+
+    @Test
+    public void follow_justAfterThePostOfTheFollowed_isApplied(){
+        //given
+        int userCount = 200;
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        try (ShardWriters writers = new ShardWriters(new ShardedSocialStack(4, MemorySocialStack::new))){
+            //when
+            results.add(writers.post(0, "First", new Date(0L)));
+            for (int user = 1; user < userCount; user++){
+                results.add(writers.post(user, "Hello", new Date(user)));
+                results.add(writers.follow(user - 1, user));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+            //then
+            SocialStack stack = writers.get();
+            for (int user = 0; user < userCount - 1; user++){
+                List<Integer> followed = new ArrayList<>();
+                stack.forEachFollowed(user, followed::add);
+                assertEquals(Collections.singletonList(user + 1), followed);
+            }
+        }
+    }
+}
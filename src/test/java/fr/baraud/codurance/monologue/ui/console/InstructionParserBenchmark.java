@@ -0,0 +1,71 @@
+package fr.baraud.codurance.monologue.ui.console;
+
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.ui.Instruction;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to parse a line of the console, from a mix of posts, follows,
+ * timeline and wall reads of 1000 users, the user names being already
+ * known.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InstructionParserBenchmark {
+
+    private static final int LINE_COUNT = 1024;
+    private static final int USER_COUNT = 1000;
+
+    private String[] lines;
+    private ConsoleInterface consoleInterface;
+    private int next;
+
+    @Setup
+    public void writeLines() throws IOException {
+        Properties props = new Properties();
+        try (InputStream resourceStream = Thread.currentThread().getContextClassLoader()
+            .getResourceAsStream("console-interface.properties")) {
+            props.load(resourceStream);
+        }
+        lines = new String[LINE_COUNT];
+        for (int line = 0; line < LINE_COUNT; line++){
+            String user = "user" + (line * 7919) % USER_COUNT;
+            switch (line % 4){
+                case 0:
+                    lines[line] = user;
+                    break;
+                case 1:
+                    lines[line] = user + " wall";
+                    break;
+                case 2:
+                    lines[line] = user + " follows user" + line % USER_COUNT;
+                    break;
+                default:
+                    lines[line] = user + " -> Hello, this is a post of about forty chars";
+            }
+        }
+        SymbolTable symbols = new SymbolTable();
+        for (int user = 0; user < USER_COUNT; user++){
+            symbols.intern("user" + user);
+        }
+        consoleInterface = new ConsoleInterface(new ByteArrayInputStream(new byte[0]), new ByteArrayOutputStream(),
+            props, symbols);
+    }
+
+    @Benchmark
+    public Instruction parseLine(){
+        next = (next + 1) & (LINE_COUNT - 1);
+        return consoleInterface.parseLine(lines[next]);
+    }
+}
@@ -1,5 +1,8 @@
 package fr.baraud.codurance.monologue.ui.console;
 
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
 import fr.baraud.codurance.monologue.timelines.Timeline;
 import fr.baraud.codurance.monologue.ui.Action;
 import fr.baraud.codurance.monologue.ui.Instruction;
@@ -26,6 +29,7 @@ public class TestConsoleInterface {
     private static final String PROPERTY_MESSAGE_INFO = "ui.console.message.information.format";
     private static final String PROPERTY_MESSAGE_UNKNOWN_USER = "ui.console.message.unknown.user";
     private static final String PROPERTY_MESSAGE_UNKNOWN_COMMAND = "ui.console.message.unknown.command";
+    private static final String PROPERTY_MESSAGE_NO_MORE_POSTS = "ui.console.message.no.more.posts";
     private static final String PROPERTY_DISPLAY_INSTRUCTION = "ui.console.display.instruction";
 
 
@@ -56,12 +60,38 @@ public class TestConsoleInterface {
         assertEquals(PostInstruction.class, instruction.getClass());
     }
 
+    /**
+     * @return a table where Alice and Bob are known, as if they posted
+     */
+    private static SymbolTable knownUsers(){
+        SymbolTable symbols = new SymbolTable();
+        symbols.intern("Alice");
+        symbols.intern("Bob");
+        return symbols;
+    }
+
+    @Test
+    public void unknownUser_ShouldBeWarnedWithoutBeingInterned(){
+        //given
+        SymbolTable symbols = knownUsers();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UserInterface userInterface = new ConsoleInterface(new ByteArrayInputStream(
+            String.format("Alcie%nAlcie wall%nAlice follows Bobb%nquit%n").getBytes()), out, props, symbols);
+        //when
+        Instruction instruction = userInterface.getNextInstruction();
+        //then
+        assertEquals(ExitInstruction.class, instruction.getClass());
+        assertEquals(2, symbols.size());
+        assertTrue(out.toString().contains(String.format(props.getProperty(PROPERTY_MESSAGE_UNKNOWN_USER), "Alcie")));
+        assertTrue(out.toString().contains(String.format(props.getProperty(PROPERTY_MESSAGE_UNKNOWN_USER), "Bobb")));
+    }
+
     @Test
     public void stringShouldGenerateTimelineInstruction(){
         //given
         String aliceTimeline = String.format("Alice%n");
         UserInterface userInterface = new ConsoleInterface(new ByteArrayInputStream(aliceTimeline.getBytes()),
-            new ByteArrayOutputStream(), props);
+            new ByteArrayOutputStream(), props, knownUsers());
         //when
         Instruction instruction = userInterface.getNextInstruction();
         //then
@@ -73,18 +103,72 @@ public class TestConsoleInterface {
         //given
         String aliceWall = String.format("Alice wall%n");
         UserInterface userInterface = new ConsoleInterface(new ByteArrayInputStream(aliceWall.getBytes()),
-            new ByteArrayOutputStream(), props);
+            new ByteArrayOutputStream(), props, knownUsers());
         //when
         Instruction instruction = userInterface.getNextInstruction();
         //then
         assertEquals(ShowWallInstruction.class, instruction.getClass());
     }
 
+    @Test
+    public void stringWithPageSize_shouldGeneratePagedInstructions(){
+        //given
+        String pagedReads = String.format("Alice 20%nAlice wall 20%n");
+        UserInterface userInterface = new ConsoleInterface(new ByteArrayInputStream(pagedReads.getBytes()),
+            new ByteArrayOutputStream(), props, knownUsers());
+        //when
+        Instruction timelineInstruction = userInterface.getNextInstruction();
+        Instruction wallInstruction = userInterface.getNextInstruction();
+        //then
+        assertEquals(ShowTimelineInstruction.class, timelineInstruction.getClass());
+        assertEquals(ShowWallInstruction.class, wallInstruction.getClass());
+    }
+
+    @Test
+    public void moreInstruction_shouldDisplayNextPageThenWarnWhenNoMorePosts(){
+        //given
+        SymbolTable symbols = new SymbolTable();
+        int alice = symbols.intern("Alice");
+        SocialStack socialStack = new MemorySocialStack()
+            .post(alice, "Hello", new Date(0L))
+            .post(alice, "Anyone here?", new Date(5000L));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConsoleInterface consoleInterface = new ConsoleInterface(new ByteArrayInputStream(
+            String.format("Alice 1%nmore%nmore%nquit%n").getBytes()), out, props, symbols);
+        Date now = new Date(10000L);
+        consoleInterface.getNextInstruction().apply(socialStack, consoleInterface, now);
+        //when
+        consoleInterface.getNextInstruction().apply(socialStack, consoleInterface, now);
+        out.reset();
+        Instruction instruction = consoleInterface.getNextInstruction();
+        //then
+        assertEquals(ExitInstruction.class, instruction.getClass());
+        assertTrue(out.toString().contains(props.getProperty(PROPERTY_MESSAGE_NO_MORE_POSTS)));
+    }
+
+    @Test
+    public void writeTimelinePage_printsOnlyThePage(){
+        //given
+        ByteArrayInputStream in =  new ByteArrayInputStream(new byte[0]);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SymbolTable symbols = new SymbolTable();
+        ConsoleInterface consoleInterface = new ConsoleInterface(in, out, props, symbols);
+        int alice = symbols.intern("Alice");
+        SocialStack socialStack = new MemorySocialStack()
+            .post(alice, "Hello", new Date(0L))
+            .post(alice, "Indeed, there is", new Date(5000L));
+        out.reset();
+        //when
+        consoleInterface.writeTimeline(socialStack.getTimeline(alice, 1, null), new Date(10000L));
+        //then
+        assertEquals(String.format("Indeed, there is (5 seconds ago)%n"), out.toString());
+    }
+
     @Test
     public void testFollowInstruction(){
         String aliceFollowsBob = String.format("Alice follows Bob%n");
         UserInterface userInterface = new ConsoleInterface(new ByteArrayInputStream(aliceFollowsBob.getBytes()),
-            new ByteArrayOutputStream(), props);
+            new ByteArrayOutputStream(), props, knownUsers());
         Instruction instruction = userInterface.getNextInstruction();
         assertEquals(FollowInstruction.class, instruction.getClass());
     }
@@ -121,7 +205,8 @@ public class TestConsoleInterface {
         String rightInstruction = String.format("Alice%n");
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         UserInterface userInterface = new ConsoleInterface(new ByteArrayInputStream(
-            String.format(wrongInstruction1+wrongInstruction2+rightInstruction).getBytes()), out, props);
+            String.format(wrongInstruction1+wrongInstruction2+rightInstruction).getBytes()), out, props,
+            knownUsers());
         //when
         Instruction instruction = userInterface.getNextInstruction();
         //then
@@ -139,26 +224,6 @@ public class TestConsoleInterface {
         assertTrue(out.toString().contains(String.format(props.getProperty(PROPERTY_MESSAGE_GOODBYE))));
     }
 
-    @Test
-    public void printInUnit1dividedBy1InSeconds_shouldPrint1secondAgo(){
-        //given
-        ByteArrayInputStream in =  new ByteArrayInputStream(new byte[0]);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ConsoleInterface consoleInterface = new ConsoleInterface(in, out, props);
-        //then
-        assertEquals("1 second ago", consoleInterface.printInUnit(1, 1, "%1d second ago", "%1d seconds ago"));
-    }
-
-    @Test
-    public void printInUnit275dividedBy100InSeconds_shouldPrint2secondsAgo(){
-        //given
-        ByteArrayInputStream in =  new ByteArrayInputStream(new byte[0]);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ConsoleInterface consoleInterface = new ConsoleInterface(in, out, props);
-        //then
-        assertEquals("2 seconds ago", consoleInterface.printInUnit(275, 100, "%1d second ago", "%1d seconds ago"));
-    }
-
     @Test
     public void  printDelayShouldPrintSecondMinuteOrMonth_dependingOnTheDelay() {
         //given
@@ -202,13 +267,14 @@ public class TestConsoleInterface {
         //given
         ByteArrayInputStream in =  new ByteArrayInputStream(new byte[0]);
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ConsoleInterface consoleInterface = new ConsoleInterface(in, out, props);
-        String aliceName = "Alice";
+        SymbolTable symbols = new SymbolTable();
+        ConsoleInterface consoleInterface = new ConsoleInterface(in, out, props, symbols);
+        int alice = symbols.intern("Alice");
         Date date10secAgo = new Date(0L);
         Date date5secAgo = new Date(5000L);
         Date date = new Date(10000L);
-        Timeline timeline1 = new Timeline("Hello", aliceName, date10secAgo, null);
-        Timeline timeline4 = new Timeline("Indeed, there is", aliceName, date5secAgo, timeline1);
+        Timeline timeline1 = new Timeline("Hello", alice, date10secAgo, null);
+        Timeline timeline4 = new Timeline("Indeed, there is", alice, date5secAgo, timeline1);
         out.reset();
         String result = String.format("Indeed, there is (5 seconds ago)%nHello (10 seconds ago)%n");
         //when
@@ -235,12 +301,13 @@ public class TestConsoleInterface {
         //given
         ByteArrayInputStream in =  new ByteArrayInputStream(new byte[0]);
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ConsoleInterface consoleInterface = new ConsoleInterface(in, out, props);
+        SymbolTable symbols = new SymbolTable();
+        ConsoleInterface consoleInterface = new ConsoleInterface(in, out, props, symbols);
         out.reset();
         String result = String.format(props.getProperty(PROPERTY_MESSAGE_INFO),
             String.format(props.getProperty(PROPERTY_MESSAGE_UNKNOWN_USER), "Elliot"));
         //when
-        consoleInterface.writeWarningUnknownUser("Elliot");
+        consoleInterface.writeWarningUnknownUser(symbols.intern("Elliot"));
         //then
         assertEquals(result, out.toString());
     }
@@ -250,19 +317,20 @@ public class TestConsoleInterface {
         //given
         ByteArrayInputStream in =  new ByteArrayInputStream(new byte[0]);
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        ConsoleInterface consoleInterface = new ConsoleInterface(in, out, props);
-        String aliceName = "Alice";
-        String johnName = "John";
-        String bobName = "Bob";
+        SymbolTable symbols = new SymbolTable();
+        ConsoleInterface consoleInterface = new ConsoleInterface(in, out, props, symbols);
+        int alice = symbols.intern("Alice");
+        int john = symbols.intern("John");
+        int bob = symbols.intern("Bob");
         Date date20secAgo = new Date(10000L);
         Date date15secAgo = new Date(15000L);
         Date date10secAgo = new Date(20000L);
         Date date5secAgo = new Date(25000L);
         Date now = new Date(30000L);
-        Timeline timeline1 = new Timeline("Hello", aliceName, date20secAgo, null);
-        Timeline timeline2 = new Timeline("Welcome", johnName, date15secAgo, null);
-        Timeline timeline3 = new Timeline("There is a nice vibe here!", bobName, date10secAgo, null);
-        Timeline timeline4 = new Timeline("Indeed, there is", aliceName, date5secAgo, timeline1);
+        Timeline timeline1 = new Timeline("Hello", alice, date20secAgo, null);
+        Timeline timeline2 = new Timeline("Welcome", john, date15secAgo, null);
+        Timeline timeline3 = new Timeline("There is a nice vibe here!", bob, date10secAgo, null);
+        Timeline timeline4 = new Timeline("Indeed, there is", alice, date5secAgo, timeline1);
         Timeline aliceWall = new Timeline(timeline4.getMessage(), timeline4.getUser(), timeline4.getMessageTimestamp(),
                 new Timeline(timeline3.getMessage(), timeline3.getUser(), timeline3.getMessageTimestamp(),
                         new Timeline(timeline2.getMessage(), timeline2.getUser(), timeline2.getMessageTimestamp(),
@@ -282,11 +350,13 @@ public class TestConsoleInterface {
     @Test
     public void emptyInstruction_ShouldPrintNewInstructionInvitation(){
         //given
-        ByteArrayInputStream in =  new ByteArrayInputStream("%nquit%n".getBytes());
+        ByteArrayInputStream in =  new ByteArrayInputStream(String.format("%nquit%n").getBytes());
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         ConsoleInterface consoleInterface = new ConsoleInterface(in, out, props);
         out.reset();
-        String result = String.format(props.getProperty(PROPERTY_DISPLAY_INSTRUCTION), "");
+        String prompt = String.format(props.getProperty(PROPERTY_DISPLAY_INSTRUCTION), "");
+        // the invitation before the empty line, then again before quit
+        String result = prompt + prompt;
         //when
         consoleInterface.getNextInstruction();
         //then
@@ -306,4 +376,75 @@ public class TestConsoleInterface {
         assertTrue(out.toString().contains(props.getProperty(PROPERTY_MESSAGE_UNKNOWN_COMMAND)));
     }
 
+    @Test
+    public void script_ShouldEndWithExitInstructionWithoutPrompt(){
+        //given
+        ByteArrayInputStream in = new ByteArrayInputStream(String.format("%nAlice -> Hello").getBytes());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConsoleInterface consoleInterface = ConsoleInterface.script(in, out, props, new SymbolTable());
+        //when
+        Instruction post = consoleInterface.getNextInstruction();
+        Instruction exit = consoleInterface.getNextInstruction();
+        consoleInterface.close();
+        //then
+        assertEquals(PostInstruction.class, post.getClass());
+        assertEquals(Action.EXIT, exit.getAction());
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    public void script_ShouldFlushOutputOnClose(){
+        //given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConsoleInterface consoleInterface = ConsoleInterface.script(new ByteArrayInputStream(new byte[0]), out,
+            props, new SymbolTable());
+        Date now = new Date();
+        consoleInterface.writeTimeline(new Timeline("Hello", 0, new Date(now.getTime() - 5000), null), now);
+        String buffered = out.toString();
+        //when
+        consoleInterface.close();
+        //then
+        assertEquals("", buffered);
+        assertEquals(String.format("Hello (5 seconds ago)%n"), out.toString());
+    }
+
+    @Test
+    public void writeTimeline_MessageWithPercentShouldBePrintedAsIs(){
+        //given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConsoleInterface consoleInterface = new ConsoleInterface(new ByteArrayInputStream(new byte[0]), out, props);
+        out.reset();
+        Date now = new Date();
+        //when
+        consoleInterface.writeTimeline(new Timeline("100% sure %s", 0, new Date(now.getTime() - 5000), null), now);
+        //then
+        assertEquals(String.format("100%% sure %%s (5 seconds ago)%n"), out.toString());
+    }
+
+    @Test
+    public void postWithRegexCharactersShouldKeepTheMessage(){
+        //given
+        SymbolTable symbols = new SymbolTable();
+        String post = String.format("a+b -> $1 (x)* [%n");
+        UserInterface userInterface = new ConsoleInterface(new ByteArrayInputStream(post.getBytes()),
+            new ByteArrayOutputStream(), props, symbols);
+        //when
+        SocialStack stack = userInterface.getNextInstruction().apply(new MemorySocialStack(), userInterface,
+            new Date());
+        //then
+        assertEquals("$1 (x)* [", stack.getTimeline(symbols.lookup("a+b")).getMessage());
+    }
+
+    @Test
+    public void blankLineShouldBeIgnored(){
+        //given
+        String blank = String.format("   %nquit%n");
+        UserInterface userInterface = new ConsoleInterface(new ByteArrayInputStream(blank.getBytes()),
+            new ByteArrayOutputStream(), props);
+        //when
+        Instruction instruction = userInterface.getNextInstruction();
+        //then
+        assertEquals(Action.EXIT, instruction.getAction());
+    }
+
 }
@@ -6,6 +6,7 @@ import fr.baraud.codurance.monologue.ui.Action;
 import org.junit.Test;
 
 import java.util.Date;
+import java.util.function.IntConsumer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
@@ -29,28 +30,38 @@ public class TestExitInstruction {
     public class MockSocialStack implements SocialStack{
 
         @Override
-        public SocialStack post(String user, String message, Date messageTimestamp) {
+        public SocialStack post(int user, String message, Date messageTimestamp) {
             return null;
         }
 
         @Override
-        public SocialStack follow(String user, String following) {
+        public SocialStack follow(int user, int following) {
             return null;
         }
 
         @Override
-        public Timeline getTimeline(String user) {
+        public Timeline getTimeline(int user) {
             return null;
         }
 
         @Override
-        public Timeline getWall(String user) {
+        public Timeline getWall(int user) {
             return null;
         }
 
         @Override
-        public boolean userExist(String user) {
+        public boolean userExist(int user) {
             return false;
         }
+
+        @Override
+        public void forEachUser(IntConsumer action) {
+
+        }
+
+        @Override
+        public void forEachFollowed(int user, IntConsumer action) {
+
+        }
     }
 }
@@ -1,5 +1,6 @@
 package fr.baraud.codurance.monologue.ui.console;
 
+import fr.baraud.codurance.monologue.timelines.Page;
 import fr.baraud.codurance.monologue.timelines.SocialStack;
 import fr.baraud.codurance.monologue.timelines.Timeline;
 import fr.baraud.codurance.monologue.ui.Action;
@@ -8,6 +9,7 @@ import fr.baraud.codurance.monologue.ui.UserInterface;
 import org.junit.Test;
 
 import java.util.Date;
+import java.util.function.IntConsumer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -17,52 +19,57 @@ import static org.junit.Assert.assertTrue;
  */
 public class TestFollowInstruction {
 
+    private static final int ME = 0;
+    private static final int YOU = 1;
+    private static final int NOT_ME = 2;
+    private static final int NOT_YOU = 3;
+
     @Test
     public void action_shouldBeFollow(){
-        assertEquals(Action.FOLLOW, new FollowInstruction(null, null).getAction());
+        assertEquals(Action.FOLLOW, new FollowInstruction(ME, YOU).getAction());
     }
 
     @Test
     public void social_shouldCallFollow(){
         //given
-        FollowInstruction instruction = new FollowInstruction("me", "you");
+        FollowInstruction instruction = new FollowInstruction(ME, YOU);
         MockSocial mockSocial = new MockSocial();
         //when
         instruction.apply(mockSocial, new MockUI(), new Date());
         //then
         assertTrue(mockSocial.followed);
-        assertEquals("me", mockSocial.follower);
-        assertEquals("you", mockSocial.following);
+        assertEquals(ME, mockSocial.follower);
+        assertEquals(YOU, mockSocial.following);
     }
 
     @Test
     public void ui_printUnknownFollower(){
         //given
-        FollowInstruction instruction = new FollowInstruction("notMe", "you");
+        FollowInstruction instruction = new FollowInstruction(NOT_ME, YOU);
         MockUI mockUI = new MockUI();
         MockSocial mockSocial = new MockSocial();
         //when
         instruction.apply(mockSocial, mockUI, new Date());
         //then
-        assertEquals("notMe", mockUI.unknownUser);
+        assertEquals(NOT_ME, mockUI.unknownUser);
 
     }
 
     @Test
     public void ui_printUnknownFollowing(){
         //given
-        FollowInstruction instruction = new FollowInstruction("me", "notYou");
+        FollowInstruction instruction = new FollowInstruction(ME, NOT_YOU);
         MockUI mockUI = new MockUI();
         MockSocial mockSocial = new MockSocial();
         //when
         instruction.apply(mockSocial, mockUI, new Date());
         //then
-        assertEquals("notYou", mockUI.unknownUser);
+        assertEquals(NOT_YOU, mockUI.unknownUser);
 
     }
 
     public class MockUI implements UserInterface {
-        public String unknownUser;
+        public int unknownUser = -1;
 
         @Override
         public Instruction getNextInstruction() {
@@ -79,17 +86,31 @@ public class TestFollowInstruction {
 
         }
 
+        @Override
+        public void writeTimeline(Page page, Date currentTime) {
+
+        }
+
+        @Override
+        public void writeWall(Page page, Date currentTime) {
+
+        }
+
         @Override
         public void writeHelp() {
 
         }
 
         @Override
-        public void writeWarningUnknownUser(String user) {
+        public void writeWarningUnknownUser(int user) {
             this.unknownUser = user;
 
         }
 
+        @Override
+        public void writeError(String message) {
+        }
+
         @Override
         public void close() {
 
@@ -99,16 +120,16 @@ public class TestFollowInstruction {
     public class MockSocial implements SocialStack {
 
         public boolean followed = false;
-        public String follower;
-        public String following;
+        public int follower = -1;
+        public int following = -1;
 
         @Override
-        public SocialStack post(String user, String message, Date messageTimestamp) {
+        public SocialStack post(int user, String message, Date messageTimestamp) {
             return null;
         }
 
         @Override
-        public SocialStack follow(String user, String following) {
+        public SocialStack follow(int user, int following) {
             followed = true;
             follower = user;
             this.following = following;
@@ -116,18 +137,29 @@ public class TestFollowInstruction {
         }
 
         @Override
-        public Timeline getTimeline(String user) {
+        public Timeline getTimeline(int user) {
             return null;
         }
 
         @Override
-        public Timeline getWall(String user) {
+        public Timeline getWall(int user) {
             return null;
         }
 
         @Override
-        public boolean userExist(String user) {
-            return "you".equals(user) || "me".equals(user);
+        public boolean userExist(int user) {
+            return YOU == user || ME == user;
+        }
+
+        @Override
+        public void forEachUser(IntConsumer action) {
+            action.accept(YOU);
+            action.accept(ME);
+        }
+
+        @Override
+        public void forEachFollowed(int user, IntConsumer action) {
+
         }
     }
 
@@ -1,6 +1,7 @@
 package fr.baraud.codurance.monologue.ui.console;
 
 import fr.baraud.codurance.monologue.TestMonologue;
+import fr.baraud.codurance.monologue.timelines.Page;
 import fr.baraud.codurance.monologue.timelines.SocialStack;
 import fr.baraud.codurance.monologue.timelines.Timeline;
 import fr.baraud.codurance.monologue.ui.Action;
@@ -9,6 +10,7 @@ import fr.baraud.codurance.monologue.ui.UserInterface;
 import org.junit.Test;
 
 import java.util.Date;
+import java.util.function.IntConsumer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -57,13 +59,28 @@ public class TestHelpInstruction {
 
         }
 
+        @Override
+        public void writeTimeline(Page page, Date currentTime) {
+
+        }
+
+        @Override
+        public void writeWall(Page page, Date currentTime) {
+
+        }
+
         @Override
         public void writeHelp() {
             helpWritten = true;
         }
 
         @Override
-        public void writeWarningUnknownUser(String user) {
+        public void writeWarningUnknownUser(int user) {
+
+        }
+
+        @Override
+        public void writeError(String message) {
 
         }
 
@@ -76,28 +93,38 @@ public class TestHelpInstruction {
     public class MockSocial implements SocialStack{
 
         @Override
-        public SocialStack post(String user, String message, Date messageTimestamp) {
+        public SocialStack post(int user, String message, Date messageTimestamp) {
             return null;
         }
 
         @Override
-        public SocialStack follow(String user, String following) {
+        public SocialStack follow(int user, int following) {
             return null;
         }
 
         @Override
-        public Timeline getTimeline(String user) {
+        public Timeline getTimeline(int user) {
             return null;
         }
 
         @Override
-        public Timeline getWall(String user) {
+        public Timeline getWall(int user) {
             return null;
         }
 
         @Override
-        public boolean userExist(String user) {
+        public boolean userExist(int user) {
             return false;
         }
+
+        @Override
+        public void forEachUser(IntConsumer action) {
+
+        }
+
+        @Override
+        public void forEachFollowed(int user, IntConsumer action) {
+
+        }
     }
 }
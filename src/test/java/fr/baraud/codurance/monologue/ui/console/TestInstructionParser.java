@@ -0,0 +1,72 @@
+package fr.baraud.codurance.monologue.ui.console;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestInstructionParser {
+
+    private InstructionParser parser;
+
+    @Before
+    public void loadProperties() throws IOException {
+        Properties props = new Properties();
+        try (InputStream resourceStream = Thread.currentThread().getContextClassLoader()
+            .getResourceAsStream("console-interface.properties")) {
+            props.load(resourceStream);
+        }
+        parser = new InstructionParser(props);
+    }
+
+    @Test
+    public void cut_ShouldCountTheWordsAsSplit(){
+        //given
+        String[] lines = {"Alice", "Alice wall", "Alice -> Hello world", "Alice  wall", " Alice", "Alice ",
+            "Alice wall  ", "a b c d e"};
+        for (String line : lines){
+            //when
+            int wordCount = parser.cut(line);
+            //then
+            assertEquals(line, line.split(" ").length, wordCount);
+        }
+    }
+
+    @Test
+    public void cut_EmptyOrBlankLineShouldHaveNoWord(){
+        assertEquals(0, parser.cut(""));
+        assertEquals(0, parser.cut("   "));
+    }
+
+    @Test
+    public void afterSecondWord_ShouldBeTheMessageAsTyped(){
+        //given
+        parser.cut("a+b ->  $1 (x)* \\ [");
+        //when
+        String message = parser.afterSecondWord();
+        //then
+        assertTrue(parser.isPost(1));
+        assertEquals("a+b", parser.word(0));
+        assertEquals(" $1 (x)* \\ [", message);
+    }
+
+    @Test
+    public void limit_ShouldOnlyAcceptPositiveNumbers(){
+        parser.cut("Alice wall 12");
+        assertTrue(parser.isWall(1));
+        assertEquals(12, parser.limit(2));
+        parser.cut("Alice -3");
+        assertEquals(0, parser.limit(1));
+        parser.cut("Alice 99999999999");
+        assertEquals(0, parser.limit(1));
+        parser.cut("Alice walls");
+        assertFalse(parser.isWall(1));
+        assertEquals(0, parser.limit(1));
+    }
+}
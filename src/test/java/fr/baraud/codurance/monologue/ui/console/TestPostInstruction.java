@@ -1,5 +1,6 @@
 package fr.baraud.codurance.monologue.ui.console;
 
+import fr.baraud.codurance.monologue.timelines.Page;
 import fr.baraud.codurance.monologue.timelines.SocialStack;
 import fr.baraud.codurance.monologue.timelines.Timeline;
 import fr.baraud.codurance.monologue.ui.Action;
@@ -8,6 +9,7 @@ import fr.baraud.codurance.monologue.ui.UserInterface;
 import org.junit.Test;
 
 import java.util.Date;
+import java.util.function.IntConsumer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -19,13 +21,13 @@ public class TestPostInstruction {
 
     @Test
     public void action_shouldBePost(){
-        assertEquals(Action.POST, new PostInstruction(null, null).getAction());
+        assertEquals(Action.POST, new PostInstruction(0, null).getAction());
     }
 
     @Test
     public void social_shouldCallPost(){
         //given
-        PostInstruction instruction = new PostInstruction(null, null);
+        PostInstruction instruction = new PostInstruction(0, null);
         MockSocial mockSocial = new MockSocial();
         //when
         instruction.apply(mockSocial, new MockUI(), new Date());
@@ -38,30 +40,40 @@ public class TestPostInstruction {
         boolean posted = false;
 
         @Override
-        public SocialStack post(String user, String message, Date messageTimestamp) {
+        public SocialStack post(int user, String message, Date messageTimestamp) {
             posted = true;
             return this;
         }
 
         @Override
-        public SocialStack follow(String user, String following) {
+        public SocialStack follow(int user, int following) {
             return null;
         }
 
         @Override
-        public Timeline getTimeline(String user) {
+        public Timeline getTimeline(int user) {
             return null;
         }
 
         @Override
-        public Timeline getWall(String user) {
+        public Timeline getWall(int user) {
             return null;
         }
 
         @Override
-        public boolean userExist(String user) {
+        public boolean userExist(int user) {
             return false;
         }
+
+        @Override
+        public void forEachUser(IntConsumer action) {
+
+        }
+
+        @Override
+        public void forEachFollowed(int user, IntConsumer action) {
+
+        }
     }
 
     public class MockUI implements UserInterface{
@@ -82,13 +94,28 @@ public class TestPostInstruction {
         public void writeWall(Timeline wall, Date currentTime) {
         }
 
+        @Override
+        public void writeTimeline(Page page, Date currentTime) {
+
+        }
+
+        @Override
+        public void writeWall(Page page, Date currentTime) {
+
+        }
+
         @Override
         public void writeHelp() {
 
         }
 
         @Override
-        public void writeWarningUnknownUser(String user) {
+        public void writeWarningUnknownUser(int user) {
+
+        }
+
+        @Override
+        public void writeError(String message) {
 
         }
 
@@ -0,0 +1,69 @@
+package fr.baraud.codurance.monologue.ui.console;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TestRelativeTimeFormatter {
+
+    private static final long ONE_YEAR_IN_MS = 31104000000L;
+
+    private RelativeTimeFormatter formatter;
+
+    @Before
+    public void loadProperties() throws IOException {
+        Properties props = new Properties();
+        try (InputStream resourceStream = Thread.currentThread().getContextClassLoader()
+            .getResourceAsStream("console-interface.properties")) {
+            props.load(resourceStream);
+        }
+        formatter = new RelativeTimeFormatter(props);
+    }
+
+    @Test
+    public void format_ShouldUseTheLargestUnitReached(){
+        assertEquals("0 second ago", formatter.format(1000L, 1000L));
+        assertEquals("59 seconds ago", formatter.format(0L, 59999L));
+        assertEquals("1 minute ago", formatter.format(0L, 60000L));
+        assertEquals("23 hours ago", formatter.format(0L, 86399999L));
+        assertEquals("29 days ago", formatter.format(0L, 2591999999L));
+        assertEquals("11 months ago", formatter.format(0L, ONE_YEAR_IN_MS - 1));
+        assertEquals("1 year ago", formatter.format(0L, ONE_YEAR_IN_MS));
+    }
+
+    @Test
+    public void format_OneSecondShouldPrint1secondAgo(){
+        assertEquals("1 second ago", formatter.format(0L, 1000L));
+    }
+
+    @Test
+    public void format_2750msShouldPrint2secondsAgo(){
+        assertEquals("2 seconds ago", formatter.format(0L, 2750L));
+    }
+
+    @Test
+    public void format_SameDelayShouldReuseTheSentence(){
+        //given
+        String first = formatter.format(0L, 5000L);
+        //when
+        String second = formatter.format(10000L, 15500L);
+        //then
+        assertSame(first, second);
+    }
+
+    @Test
+    public void format_DelayBeyondTheCachedYearsShouldBeRendered(){
+        assertEquals("150 years ago", formatter.format(0L, 150 * ONE_YEAR_IN_MS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void format_TimestampAfterNowShouldThrow(){
+        formatter.format(2000L, 1000L);
+    }
+}
@@ -1,5 +1,6 @@
 package fr.baraud.codurance.monologue.ui.console;
 
+import fr.baraud.codurance.monologue.timelines.Page;
 import fr.baraud.codurance.monologue.timelines.SocialStack;
 import fr.baraud.codurance.monologue.timelines.Timeline;
 import fr.baraud.codurance.monologue.ui.Action;
@@ -8,6 +9,7 @@ import fr.baraud.codurance.monologue.ui.UserInterface;
 import org.junit.Test;
 
 import java.util.Date;
+import java.util.function.IntConsumer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -17,10 +19,13 @@ import static org.junit.Assert.assertTrue;
  */
 public class TestShowTimelineInstruction {
 
+    private static final int SANTA = 0;
+    private static final int NOT_ME = 1;
+
     @Test
     public void action_shouldBeShowTimeline(){
         //given
-        Instruction instruction = new ShowTimelineInstruction(null);
+        Instruction instruction = new ShowTimelineInstruction(SANTA);
         //then
         assertEquals(Action.SHOW_TIMELINE, instruction.getAction());
     }
@@ -28,7 +33,7 @@ public class TestShowTimelineInstruction {
     @Test
     public void ui_ShowTimelineShouldBeCalled(){
         //given
-        Instruction instruction = new ShowTimelineInstruction("Santa");
+        Instruction instruction = new ShowTimelineInstruction(SANTA);
         MockUI mockUI = new MockUI();
         MockSocial mockSocial = new MockSocial("Hello");
         //when
@@ -36,26 +41,26 @@ public class TestShowTimelineInstruction {
         //then
         assertTrue(mockUI.timelineWritten);
         assertEquals("Hello", mockUI.message);
-        assertEquals("Santa", mockUI.user);
+        assertEquals(SANTA, mockUI.user);
     }
 
     @Test
     public void ui_UnknownUserShouldBePrinted(){
         //given
-        Instruction instruction = new ShowTimelineInstruction("NotMe");
+        Instruction instruction = new ShowTimelineInstruction(NOT_ME);
         MockUI mockUI = new MockUI();
         MockSocial mockSocial = new MockSocial("Hello");
         //when
         instruction.apply(mockSocial, mockUI, new Date());
         //then
-        assertEquals("NotMe", mockUI.unknownUser);
+        assertEquals(NOT_ME, mockUI.unknownUser);
     }
 
     public class MockUI implements UserInterface {
         public boolean timelineWritten;
         public String message;
-        public String user;
-        public String unknownUser;
+        public int user = -1;
+        public int unknownUser = -1;
 
         @Override
         public Instruction getNextInstruction() {
@@ -74,16 +79,30 @@ public class TestShowTimelineInstruction {
 
         }
 
+        @Override
+        public void writeTimeline(Page page, Date currentTime) {
+
+        }
+
+        @Override
+        public void writeWall(Page page, Date currentTime) {
+
+        }
+
         @Override
         public void writeHelp() {
 
         }
 
         @Override
-        public void writeWarningUnknownUser(String user) {
+        public void writeWarningUnknownUser(int user) {
             this.unknownUser = user;
         }
 
+        @Override
+        public void writeError(String message) {
+        }
+
         @Override
         public void close() {
 
@@ -99,28 +118,38 @@ public class TestShowTimelineInstruction {
         }
 
         @Override
-        public SocialStack post(String user, String message, Date messageTimestamp) {
+        public SocialStack post(int user, String message, Date messageTimestamp) {
             return null;
         }
 
         @Override
-        public SocialStack follow(String user, String following) {
+        public SocialStack follow(int user, int following) {
             return null;
         }
 
         @Override
-        public Timeline getTimeline(String user) {
+        public Timeline getTimeline(int user) {
             return new Timeline(this.message,user, new Date(), null);
         }
 
         @Override
-        public Timeline getWall(String user) {
+        public Timeline getWall(int user) {
             return null;
         }
 
         @Override
-        public boolean userExist(String user) {
-            return "Santa".equals(user);
+        public boolean userExist(int user) {
+            return SANTA == user;
+        }
+
+        @Override
+        public void forEachUser(IntConsumer action) {
+            action.accept(SANTA);
+        }
+
+        @Override
+        public void forEachFollowed(int user, IntConsumer action) {
+
         }
     }
 }
@@ -1,5 +1,6 @@
 package fr.baraud.codurance.monologue.ui.console;
 
+import fr.baraud.codurance.monologue.timelines.Page;
 import fr.baraud.codurance.monologue.timelines.SocialStack;
 import fr.baraud.codurance.monologue.timelines.Timeline;
 import fr.baraud.codurance.monologue.ui.Action;
@@ -8,6 +9,7 @@ import fr.baraud.codurance.monologue.ui.UserInterface;
 import org.junit.Test;
 
 import java.util.Date;
+import java.util.function.IntConsumer;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -17,10 +19,13 @@ import static org.junit.Assert.assertTrue;
  */
 public class TestShowWallInstruction {
 
+    private static final int SANTA = 0;
+    private static final int NOT_ME = 1;
+
     @Test
     public void action_shouldBeShowWall(){
         //given
-        Instruction instruction = new ShowWallInstruction(null);
+        Instruction instruction = new ShowWallInstruction(SANTA);
         //then
         assertEquals(Action.SHOW_WALL, instruction.getAction());
     }
@@ -28,34 +33,48 @@ public class TestShowWallInstruction {
     @Test
     public void ui_shouldPrintWall(){
         //given
-        Instruction instruction = new ShowWallInstruction("Santa");
+        Instruction instruction = new ShowWallInstruction(SANTA);
         MockUI mockUI = new MockUI();
-        MockSocial mockSocial = new MockSocial("Santa", "Hello");
+        MockSocial mockSocial = new MockSocial(SANTA, "Hello");
         //when
         instruction.apply(mockSocial, mockUI, new Date());
         //then
         assertTrue(mockUI.wallWritten);
         assertEquals("Hello", mockUI.message);
-        assertEquals("Santa", mockUI.user);
+        assertEquals(SANTA, mockUI.user);
     }
 
     @Test
     public void ui_shouldPrintUnknownUser() {
         //given
-        Instruction instruction = new ShowWallInstruction("NotMe");
+        Instruction instruction = new ShowWallInstruction(NOT_ME);
+        MockUI mockUI = new MockUI();
+        MockSocial mockSocial = new MockSocial(NOT_ME, "Hello");
+        //when
+        instruction.apply(mockSocial, mockUI, new Date());
+        //then
+        assertEquals(NOT_ME, mockUI.unknownUser);
+    }
+
+    @Test
+    public void ui_shouldPrintWallPage(){
+        //given
+        Instruction instruction = new ShowWallInstruction(SANTA, 10, null);
         MockUI mockUI = new MockUI();
-        MockSocial mockSocial = new MockSocial("NotMe", "Hello");
+        MockSocial mockSocial = new MockSocial(SANTA, "Hello");
         //when
         instruction.apply(mockSocial, mockUI, new Date());
         //then
-        assertEquals("NotMe", mockUI.unknownUser);
+        assertEquals(1, mockUI.pageSize);
+        assertEquals("Hello", mockUI.message);
     }
 
     public class MockUI implements UserInterface {
         public boolean wallWritten = false;
+        public int pageSize = -1;
         public String message;
-        public String user;
-        public String unknownUser;
+        public int user = -1;
+        public int unknownUser = -1;
 
         @Override
         public Instruction getNextInstruction() {
@@ -74,16 +93,31 @@ public class TestShowWallInstruction {
             this.user = wall.getUser();
         }
 
+        @Override
+        public void writeTimeline(Page page, Date currentTime) {
+
+        }
+
+        @Override
+        public void writeWall(Page page, Date currentTime) {
+            this.pageSize = page.getPosts().size();
+            this.message = page.getPosts().get(0).getMessage();
+        }
+
         @Override
         public void writeHelp() {
 
         }
 
         @Override
-        public void writeWarningUnknownUser(String user) {
+        public void writeWarningUnknownUser(int user) {
             this.unknownUser = user;
         }
 
+        @Override
+        public void writeError(String message) {
+        }
+
         @Override
         public void close() {
 
@@ -93,36 +127,46 @@ public class TestShowWallInstruction {
     public class MockSocial implements SocialStack {
 
         private final String message;
-        private final String user;
+        private final int user;
 
-        public MockSocial(String user, String message){
+        public MockSocial(int user, String message){
             this.message = message;
             this.user = user;
         }
 
         @Override
-        public SocialStack post(String user, String message, Date messageTimestamp) {
+        public SocialStack post(int user, String message, Date messageTimestamp) {
             return null;
         }
 
         @Override
-        public SocialStack follow(String user, String following) {
+        public SocialStack follow(int user, int following) {
             return null;
         }
 
         @Override
-        public Timeline getTimeline(String user) {
+        public Timeline getTimeline(int user) {
             return null;
         }
 
         @Override
-        public Timeline getWall(String user) {
+        public Timeline getWall(int user) {
             return new Timeline(this.message, this.user, new Date(), null);
         }
 
         @Override
-        public boolean userExist(String user) {
-            return "Santa".equals(user);
+        public boolean userExist(int user) {
+            return SANTA == user;
+        }
+
+        @Override
+        public void forEachUser(IntConsumer action) {
+            action.accept(SANTA);
+        }
+
+        @Override
+        public void forEachFollowed(int user, IntConsumer action) {
+
         }
     }
 }
@@ -0,0 +1,45 @@
+package fr.baraud.codurance.monologue.ui.console;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestTemplate {
+
+    @Test
+    public void render_ShouldMatchStringFormat(){
+        //given
+        String[] formats = {"%1s (%2s)", "%1s - %2s (%3s)", "%1s%n", "%1d seconds ago", "100%% %s", "%2$s %1$-4s|",
+            "%-3d|%5s"};
+        Object[][] arguments = {{"Hello", "5 seconds ago"}, {"Bob", "a", "1 minute ago"}, {""}, {42L},
+            {"sure"}, {"a", "b"}, {7, "ab"}};
+        for (int format = 0; format < formats.length; format++){
+            Object[] values = java.util.Arrays.copyOf(arguments[format], 3);
+            //when
+            String rendered = Template.compile(formats[format])
+                .render(new StringBuilder(), values[0], values[1], values[2]).toString();
+            //then
+            assertEquals(String.format(formats[format], values), rendered);
+        }
+    }
+
+    @Test
+    public void render_ShouldNotFormatTheArguments(){
+        //given
+        Template template = Template.compile("%1s (%2s)");
+        //when
+        String rendered = template.render(new StringBuilder(), "100% sure %n", "now").toString();
+        //then
+        assertEquals("100% sure %n (now)", rendered);
+    }
+
+    @Test
+    public void render_UnsupportedFormatShouldFallBackOnFormatter(){
+        //given
+        Template template = Template.compile("%.2f%%");
+        //when
+        String rendered = template.render(new StringBuilder(), 3.14159).toString();
+        //then
+        assertEquals("3.14%", rendered);
+    }
+}
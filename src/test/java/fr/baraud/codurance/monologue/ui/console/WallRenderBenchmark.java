@@ -0,0 +1,73 @@
+package fr.baraud.codurance.monologue.ui.console;
+
+import fr.baraud.codurance.monologue.timelines.SocialStack;
+import fr.baraud.codurance.monologue.timelines.SymbolTable;
+import fr.baraud.codurance.monologue.timelines.Timeline;
+import fr.baraud.codurance.monologue.timelines.memory.MemorySocialStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to render a wall of 10000 posts from 100 users to an output
+ * discarding the bytes. Run with -prof gc to see the bytes allocated per
+ * wall.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WallRenderBenchmark {
+
+    private static final int WALL_SIZE = 10000;
+    private static final int USER_COUNT = 100;
+
+    private ConsoleInterface consoleInterface;
+    private Timeline wall;
+    private Date now;
+
+    @Setup
+    public void buildWall() throws IOException {
+        Properties props = new Properties();
+        try (InputStream resourceStream = Thread.currentThread().getContextClassLoader()
+            .getResourceAsStream("console-interface.properties")) {
+            props.load(resourceStream);
+        }
+        SymbolTable symbols = new SymbolTable();
+        SocialStack stack = new MemorySocialStack();
+        int reader = symbols.intern("reader");
+        stack = stack.post(reader, "Hello", new Date(0L));
+        for (int user = 0; user < USER_COUNT; user++){
+            int followed = symbols.intern("user" + user);
+            stack = stack.post(followed, "Hello", new Date(0L)).follow(reader, followed);
+        }
+        for (int post = 0; post < WALL_SIZE; post++){
+            stack = stack.post(symbols.intern("user" + post % USER_COUNT),
+                "Hello, this is a post of about forty chars", new Date(1000L * post));
+        }
+        wall = stack.getWall(reader);
+        now = new Date(1000L * WALL_SIZE);
+        consoleInterface = new ConsoleInterface(new ByteArrayInputStream(new byte[0]), new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }, props, symbols);
+    }
+
+    @Benchmark
+    public void writeWall(){
+        consoleInterface.writeWall(wall, now);
+    }
+}